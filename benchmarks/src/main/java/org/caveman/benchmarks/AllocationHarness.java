@@ -0,0 +1,129 @@
+package org.caveman.benchmarks;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+import dev.dominion.ecs.api.Entity;
+import org.caveman.components.Tags;
+import org.caveman.core.InputHandler;
+import org.caveman.systems.CameraSystem;
+import org.caveman.systems.CollisionSystem;
+import org.caveman.systems.GameContactListener;
+import org.caveman.systems.MovementSystem;
+import org.caveman.systems.PhysicsSystem;
+import org.caveman.systems.SpatialIndex;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Checks that the simulation systems allocate nothing per tick once the scene has settled.
+ * Every system runs on the calling thread, and the bytes that thread allocated are read from the
+ * {@link com.sun.management.ThreadMXBean} counters around each run. The same measurement is
+ * taken for a small and a four times larger scene; the harness prints bytes per tick for both
+ * and exits with status 1 if any system allocated on more than one of the measured ticks in
+ * either scene.
+ * <p>
+ * A single allocating tick is reported but not failed. It is the JVM, not the system: when a
+ * branch the JIT compiled away is first taken, say the first contact in a scene that was at rest
+ * during warmup, the method is deoptimized and the interpreter resolves a few constants once.
+ * Anything a system allocates per tick, or every few hundred ticks, shows on many ticks.
+ * <p>
+ * The JVM must run without escape analysis. With it, the JIT removes some allocations, and a
+ * deoptimization on a rarely taken path later materializes them again, so the result would depend
+ * on compilation timing. Without it every allocation in the code is counted, every tick.
+ * <p>
+ * Usage: {@code java -XX:-DoEscapeAnalysis -cp benchmarks/target/benchmarks.jar org.caveman.benchmarks.AllocationHarness [entities] [warmupTicks] [ticks]}
+ */
+public class AllocationHarness {
+    private static final float PIXELS_PER_METER = 32f;
+    private static final float TIME_STEP = 1f / 60f;
+    private static final int SCALE = 4;
+    private static final String[] SYSTEMS = {"movement", "physics", "collision", "camera"};
+
+    public static void main(String[] args) {
+        int entities = args.length > 0 ? Integer.parseInt(args[0]) : 1_000;
+        int warmupTicks = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        int ticks = args.length > 2 ? Integer.parseInt(args[2]) : 2_000;
+
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads)
+                || !threads.isThreadAllocatedMemorySupported()) {
+            System.err.println("Thread allocation counters are not supported by this JVM");
+            System.exit(2);
+            return;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+        HotSpotDiagnosticMXBean diagnostics = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+        if (diagnostics == null || !"false".equals(diagnostics.getVMOption("DoEscapeAnalysis").getValue())) {
+            System.err.println("Run with -XX:-DoEscapeAnalysis, see the class documentation");
+            System.exit(2);
+            return;
+        }
+
+        Result small = measure(threads, entities, warmupTicks, ticks);
+        Result large = measure(threads, entities * SCALE, warmupTicks, ticks);
+
+        boolean failed = false;
+        System.out.printf("%-10s %22s %22s%n", "system", entities + " ents", entities * SCALE + " ents");
+        for (int i = 0; i < SYSTEMS.length; i++) {
+            System.out.printf("%-10s %8.1f B/tick %5d ticks %8.1f B/tick %5d ticks%n", SYSTEMS[i],
+                    small.bytesPerTick[i], small.allocatingTicks[i], large.bytesPerTick[i], large.allocatingTicks[i]);
+            failed |= small.allocatingTicks[i] > 1 || large.allocatingTicks[i] > 1;
+        }
+        System.out.println(failed ? "FAILED: a system allocates in steady state"
+                : "OK: no allocation in steady state");
+        System.exit(failed ? 1 : 0);
+    }
+
+    /**
+     * Bytes allocated per tick on average, and the number of ticks anything was allocated on, per
+     * system.
+     */
+    private record Result(double[] bytesPerTick, int[] allocatingTicks) {
+    }
+
+    private static Result measure(com.sun.management.ThreadMXBean threads, int entities, int warmupTicks, int ticks) {
+        BenchmarkWorld scene = BenchmarkWorld.create(entities, 0);
+        Entity player = scene.dominion.findEntitiesWith(Tags.PlayerTag.class).iterator().next().entity();
+        scene.camera.setTarget(player);
+
+        SpatialIndex spatialIndex = new SpatialIndex(PIXELS_PER_METER);
+        PhysicsSystem physics = new PhysicsSystem(scene.dominion, scene.world, TIME_STEP, PIXELS_PER_METER);
+        physics.setSpatialIndex(spatialIndex);
+        CollisionSystem collision = new CollisionSystem(scene.dominion);
+        scene.world.setContactListener(new GameContactListener(collision));
+        Runnable[] systems = {
+                new MovementSystem(scene.dominion, new InputHandler(), PIXELS_PER_METER, TIME_STEP),
+                physics,
+                collision,
+                new CameraSystem(scene.dominion, new InputHandler())
+        };
+
+        for (int tick = 0; tick < warmupTicks; tick++) {
+            for (Runnable system : systems) {
+                system.run();
+            }
+        }
+
+        // The counter itself is read twice per run; measure that overhead on an empty run.
+        long overhead = threads.getCurrentThreadAllocatedBytes();
+        overhead = threads.getCurrentThreadAllocatedBytes() - overhead;
+
+        long[] allocated = new long[systems.length];
+        int[] allocatingTicks = new int[systems.length];
+        for (int tick = 0; tick < ticks; tick++) {
+            for (int i = 0; i < systems.length; i++) {
+                long before = threads.getCurrentThreadAllocatedBytes();
+                systems[i].run();
+                long bytes = threads.getCurrentThreadAllocatedBytes() - before - overhead;
+                if (bytes > 0) {
+                    allocated[i] += bytes;
+                    allocatingTicks[i]++;
+                }
+            }
+        }
+
+        double[] perTick = new double[systems.length];
+        for (int i = 0; i < systems.length; i++) {
+            perTick[i] = allocated[i] / (double) ticks;
+        }
+        return new Result(perTick, allocatingTicks);
+    }
+}
@@ -0,0 +1,38 @@
+package org.caveman.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the selected benchmarks once per thread count with the GC profiler attached, which gives
+ * per-system tick cost, allocation rate and thread scaling in one report. Every benchmark thread
+ * owns its own scene, so the thread sweep shows how independent worlds scale across cores.
+ * <p>
+ * Usage: {@code java -cp benchmarks/target/benchmarks.jar org.caveman.benchmarks.BenchmarkRunner [regex] [threads...]}
+ */
+public class BenchmarkRunner {
+    private static final int[] DEFAULT_THREADS = {1, 2, 4, 8};
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : "org.caveman.benchmarks.*";
+        int[] threadCounts = DEFAULT_THREADS;
+        if (args.length > 1) {
+            threadCounts = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                threadCounts[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+
+        for (int threads : threadCounts) {
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .addProfiler(GCProfiler.class)
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package org.caveman.benchmarks;
+
+import dev.dominion.ecs.api.Dominion;
+import org.caveman.components.CameraComponent;
+import org.caveman.core.GameObjectFactory;
+import org.caveman.systems.PhysicsSystem;
+import org.jbox2d.common.Vec2;
+import org.jbox2d.dynamics.Body;
+import org.jbox2d.dynamics.World;
+
+import java.awt.*;
+
+/**
+ * Builds a benchmark scene through {@link GameObjectFactory}: a grid of static obstacles with
+ * one dynamic player body for every ten entities dropped on top of them, a camera looking at the
+ * middle of the grid and an optional set of lights.
+ */
+public final class BenchmarkWorld {
+    public static final int VIEWPORT_WIDTH = 1240;
+    public static final int VIEWPORT_HEIGHT = 800;
+    private static final float SPACING = 3f;
+    private static final Vec2 GRAVITY = new Vec2(0, 9.8f * 2);
+
+    public final Dominion dominion;
+    public final World world;
+    public final CameraComponent camera;
+
+    private BenchmarkWorld(Dominion dominion, World world, CameraComponent camera) {
+        this.dominion = dominion;
+        this.world = world;
+        this.camera = camera;
+    }
+
+    public static BenchmarkWorld create(int entityCount, int lightCount) {
+        Dominion dominion = Dominion.create();
+        World world = new World(GRAVITY);
+
+        int players = entityCount / 10;
+        int obstacles = entityCount - players;
+        int columns = (int) Math.ceil(Math.sqrt(obstacles));
+
+        for (int i = 0; i < obstacles; i++) {
+            float x = (i % columns) * SPACING;
+            float y = (i / columns) * SPACING;
+            GameObjectFactory.createObstacle(dominion, world, x, y, 1f, 1f, Color.red);
+        }
+        for (int i = 0; i < players; i++) {
+            float x = (i % columns) * SPACING;
+            float y = (i / columns) * SPACING - 1.5f;
+            GameObjectFactory.createPlayer(dominion, world, 10f, 12f, x, y, 1f, 1f, Color.BLUE);
+        }
+
+        float center = columns * SPACING / 2f;
+        CameraComponent camera = new CameraComponent(VIEWPORT_WIDTH, VIEWPORT_HEIGHT);
+        camera.setPosition(new Vec2(center, center));
+        dominion.createEntity(camera);
+
+        int lightColumns = Math.max(1, (int) Math.ceil(Math.sqrt(lightCount)));
+        for (int i = 0; i < lightCount; i++) {
+            float x = center + (i % lightColumns - lightColumns / 2f) * SPACING;
+            float y = center + (i / lightColumns - lightColumns / 2f) * SPACING;
+            GameObjectFactory.createLight(dominion, x, y);
+        }
+        return new BenchmarkWorld(dominion, world, camera);
+    }
+
+    /**
+     * Marks every body, static ones included, for the next transform sync of the given system, as
+     * if the whole scene moved. The sync skips sleeping bodies and static ones it already synced.
+     */
+    public void wakeBodies(PhysicsSystem physics) {
+        for (Body body = world.getBodyList(); body != null; body = body.getNext()) {
+            physics.resync(body);
+        }
+    }
+}
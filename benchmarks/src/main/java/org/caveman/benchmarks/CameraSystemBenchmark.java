@@ -0,0 +1,31 @@
+package org.caveman.benchmarks;
+
+import org.caveman.core.InputHandler;
+import org.caveman.systems.CameraSystem;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The camera system only touches camera entities, so the scene size is fixed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CameraSystemBenchmark {
+    private CameraSystem system;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkWorld scene = BenchmarkWorld.create(1000, 0);
+        system = new CameraSystem(scene.dominion, new InputHandler());
+    }
+
+    @Benchmark
+    public void run() {
+        system.run();
+    }
+}
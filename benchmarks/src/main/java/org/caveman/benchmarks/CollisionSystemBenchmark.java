@@ -0,0 +1,30 @@
+package org.caveman.benchmarks;
+
+import org.caveman.systems.CollisionSystem;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CollisionSystemBenchmark {
+    @Param({"1000", "10000", "100000"})
+    private int entityCount;
+
+    private CollisionSystem system;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkWorld scene = BenchmarkWorld.create(entityCount, 0);
+        system = new CollisionSystem(scene.dominion);
+    }
+
+    @Benchmark
+    public void run() {
+        system.run();
+    }
+}
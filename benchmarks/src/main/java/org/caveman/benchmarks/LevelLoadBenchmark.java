@@ -0,0 +1,53 @@
+package org.caveman.benchmarks;
+
+import dev.dominion.ecs.api.Dominion;
+import org.caveman.core.level.LevelLoader;
+import org.jbox2d.common.Vec2;
+import org.jbox2d.dynamics.World;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading a level into a fresh dominion and world: the same grid of obstacles with a
+ * player for every ten entities as {@link BenchmarkWorld}, written in the level format and parsed
+ * from memory, so the numbers cover parsing and entity and body creation but not the disk.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LevelLoadBenchmark {
+    private static final float SPACING = 3f;
+
+    @Param({"1000", "10000", "100000"})
+    private int entityCount;
+
+    private String level;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int players = entityCount / 10;
+        int obstacles = entityCount - players;
+        int columns = (int) Math.ceil(Math.sqrt(obstacles));
+        StringBuilder text = new StringBuilder("prefab crate obstacle w=1 h=1 color=red\n");
+        for (int i = 0; i < obstacles; i++) {
+            text.append("crate ").append((i % columns) * SPACING).append(' ').append((i / columns) * SPACING).append('\n');
+        }
+        for (int i = 0; i < players; i++) {
+            text.append("player ").append((i % columns) * SPACING).append(' ')
+                    .append((i / columns) * SPACING - 1.5f).append('\n');
+        }
+        level = text.toString();
+    }
+
+    @Benchmark
+    public Object load() {
+        Dominion dominion = Dominion.create();
+        World world = new World(new Vec2(0, 9.8f * 2));
+        return new LevelLoader(dominion, world).load(new StringReader(level), "benchmark");
+    }
+}
@@ -0,0 +1,64 @@
+package org.caveman.benchmarks;
+
+import org.caveman.components.LightEmitterComponent;
+import org.caveman.systems.RenderingSystem;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import static org.caveman.benchmarks.BenchmarkWorld.VIEWPORT_HEIGHT;
+import static org.caveman.benchmarks.BenchmarkWorld.VIEWPORT_WIDTH;
+import static org.caveman.core.GameEngine.PIXELS_PER_METER;
+
+/**
+ * Measures the ray-cast lighting pass: a fixed scene with a growing number of lights,
+ * drawn into an offscreen image. {@code renderFrameUncached} drops the light cache before
+ * every frame to expose the cost of building the light polygons in each shadow mode.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class LightingBenchmark {
+    @Param({"1", "8", "32"})
+    private int lightCount;
+
+    @Param({"RAY_FAN", "VISIBILITY_POLYGON"})
+    private LightEmitterComponent.ShadowMode shadowMode;
+
+    private RenderingSystem system;
+    private BufferedImage target;
+    private Graphics2D graphics;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkWorld scene = BenchmarkWorld.create(1000, lightCount);
+        scene.dominion.findEntitiesWith(LightEmitterComponent.class)
+                .forEach(entity -> entity.comp().setShadowMode(shadowMode));
+        system = new RenderingSystem(scene.dominion, scene.world, PIXELS_PER_METER);
+        target = new BufferedImage(VIEWPORT_WIDTH, VIEWPORT_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        graphics = target.createGraphics();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage renderFrame() {
+        system.renderFrame(graphics, VIEWPORT_WIDTH, VIEWPORT_HEIGHT);
+        return target;
+    }
+
+    @Benchmark
+    public BufferedImage renderFrameUncached() {
+        system.getLightCache().invalidateAll();
+        system.renderFrame(graphics, VIEWPORT_WIDTH, VIEWPORT_HEIGHT);
+        return target;
+    }
+}
@@ -0,0 +1,67 @@
+package org.caveman.benchmarks;
+
+import org.caveman.core.MatchHost;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Packs matches of the test level into one {@link MatchHost} and reports how well the host keeps
+ * up once they have warmed up. It prints the tick rate every match got, the spread between the
+ * best and the worst served match, the ticks dropped for falling behind, and the tick time and
+ * start lag percentiles across matches. A host that keeps up runs every match at the engine's tick
+ * rate. An overloaded one slows all matches down alike, which shows as a small spread.
+ * <p>
+ * Usage: {@code java -cp benchmarks/target/benchmarks.jar org.caveman.benchmarks.MatchHostHarness [matches] [threads] [seconds]}
+ */
+public class MatchHostHarness {
+    public static void main(String[] args) throws InterruptedException {
+        int matchCount = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        try (MatchHost host = new MatchHost(threads)) {
+            long openStart = System.nanoTime();
+            for (int i = 0; i < matchCount; i++) {
+                host.open(i);
+            }
+            System.out.printf("Opened %d matches on %d threads in %.2f s%n",
+                    matchCount, threads, (System.nanoTime() - openStart) / 1e9);
+            Thread.sleep(seconds * 500L); // Warm up for half the run
+
+            List<MatchHost.Match> matches = host.getMatches();
+            long[] ticksBefore = new long[matches.size()];
+            long[] droppedBefore = new long[matches.size()];
+            for (int i = 0; i < matches.size(); i++) {
+                ticksBefore[i] = matches.get(i).getTickCount();
+                droppedBefore[i] = matches.get(i).getDroppedTicks();
+            }
+            long start = System.nanoTime();
+            Thread.sleep(seconds * 500L);
+            double elapsed = (System.nanoTime() - start) / 1e9;
+
+            double[] rates = new double[matches.size()];
+            double[] tickP99 = new double[matches.size()];
+            double[] lagP99 = new double[matches.size()];
+            long dropped = 0;
+            int failed = 0;
+            for (int i = 0; i < matches.size(); i++) {
+                MatchHost.Match match = matches.get(i);
+                rates[i] = (match.getTickCount() - ticksBefore[i]) / elapsed;
+                tickP99[i] = match.getTickStats().getP99Micros();
+                lagP99[i] = match.getLagStats().getP99Micros();
+                dropped += match.getDroppedTicks() - droppedBefore[i];
+                if (match.getFailure() != null) failed++;
+            }
+            Arrays.sort(rates);
+            Arrays.sort(tickP99);
+            Arrays.sort(lagP99);
+            int last = matches.size() - 1;
+            System.out.printf("Tick rate per match: min %.1f  median %.1f  max %.1f ticks/s (target %.1f)%n",
+                    rates[0], rates[last / 2], rates[last], 1e9 / host.getPeriodNanos());
+            System.out.printf("Ticks dropped: %d, failed matches: %d%n", dropped, failed);
+            System.out.printf("Tick p99 across matches: median %.1f us  worst %.1f us%n", tickP99[last / 2], tickP99[last]);
+            System.out.printf("Start lag p99 across matches: median %.1f us  worst %.1f us%n", lagP99[last / 2], lagP99[last]);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package org.caveman.benchmarks;
+
+import org.caveman.core.InputHandler;
+import org.caveman.systems.MovementSystem;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.caveman.core.GameEngine.PIXELS_PER_METER;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MovementSystemBenchmark {
+    @Param({"1000", "10000", "100000"})
+    private int entityCount;
+
+    private MovementSystem system;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkWorld scene = BenchmarkWorld.create(entityCount, 0);
+        system = new MovementSystem(scene.dominion, new InputHandler(), PIXELS_PER_METER, 1 / 60f);
+    }
+
+    @Benchmark
+    public void run() {
+        system.run();
+    }
+}
@@ -0,0 +1,63 @@
+package org.caveman.benchmarks;
+
+import org.caveman.systems.PhysicsSystem;
+import org.caveman.systems.RenderingSystem;
+import org.caveman.systems.SpatialIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import static org.caveman.benchmarks.BenchmarkWorld.VIEWPORT_HEIGHT;
+import static org.caveman.benchmarks.BenchmarkWorld.VIEWPORT_WIDTH;
+import static org.caveman.core.GameEngine.PIXELS_PER_METER;
+
+/**
+ * Draws full frames into an offscreen image so the benchmark runs without a display. With
+ * {@code spatialIndex} set, sprites are culled through a {@link SpatialIndex} filled by one
+ * physics step; otherwise every sprite is tested against the view.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RenderingSystemBenchmark {
+    @Param({"1000", "10000", "100000"})
+    private int entityCount;
+
+    @Param({"true", "false"})
+    private boolean spatialIndex;
+
+    private RenderingSystem system;
+    private BufferedImage target;
+    private Graphics2D graphics;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkWorld scene = BenchmarkWorld.create(entityCount, 0);
+        system = new RenderingSystem(scene.dominion, scene.world, PIXELS_PER_METER);
+        if (spatialIndex) {
+            SpatialIndex index = new SpatialIndex(PIXELS_PER_METER);
+            PhysicsSystem physics = new PhysicsSystem(scene.dominion, scene.world, 1 / 60f, PIXELS_PER_METER);
+            physics.setSpatialIndex(index);
+            physics.run();
+            system.setSpatialIndex(index);
+        }
+        target = new BufferedImage(VIEWPORT_WIDTH, VIEWPORT_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        graphics = target.createGraphics();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage renderFrame() {
+        system.renderFrame(graphics, VIEWPORT_WIDTH, VIEWPORT_HEIGHT);
+        return target;
+    }
+}
@@ -0,0 +1,84 @@
+package org.caveman.benchmarks;
+
+import dev.dominion.ecs.api.Dominion;
+import dev.dominion.ecs.api.Entity;
+import org.caveman.components.CollisionComponent;
+import org.caveman.components.SpriteComponent;
+import org.caveman.core.EntityFactory;
+import org.jbox2d.collision.shapes.PolygonShape;
+import org.jbox2d.common.Vec2;
+import org.jbox2d.dynamics.BodyDef;
+import org.jbox2d.dynamics.BodyType;
+import org.jbox2d.dynamics.FixtureDef;
+import org.jbox2d.dynamics.World;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a burst of bullets spawned and then removed, through the prefab pool and by creating
+ * and destroying every entity and body, in a world of {@link BenchmarkWorld} obstacles. Run with
+ * {@code -prof gc} to compare the garbage each leaves behind.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SpawnBenchmark {
+    private static final float SPACING = 2f;
+
+    @Param({"100", "1000"})
+    private int burstSize;
+
+    @Param({"true", "false"})
+    private boolean pooled;
+
+    private Dominion dominion;
+    private World world;
+    private EntityFactory factory;
+    private EntityFactory.Prefab bullet;
+    private Entity[] burst;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkWorld scene = BenchmarkWorld.create(10_000, 0);
+        dominion = scene.dominion;
+        world = scene.world;
+        factory = new EntityFactory(dominion, world);
+
+        BodyDef bodyDef = new BodyDef();
+        bodyDef.type = BodyType.DYNAMIC;
+        bodyDef.bullet = true;
+        PolygonShape shape = new PolygonShape();
+        shape.setAsBox(0.1f, 0.1f);
+        FixtureDef fixtureDef = new FixtureDef();
+        fixtureDef.shape = shape;
+        fixtureDef.density = 1f;
+        bullet = factory.define("bullet", bodyDef, fixtureDef,
+                () -> new Object[]{new SpriteComponent(Color.YELLOW, 6, 6), new CollisionComponent()});
+        if (pooled) {
+            factory.prewarm(bullet, burstSize);
+        }
+        burst = new Entity[burstSize];
+    }
+
+    @Benchmark
+    public void spawnAndRemove() {
+        // Spawned above the obstacle grid, so the burst only costs broadphase insertion.
+        for (int i = 0; i < burst.length; i++) {
+            burst[i] = factory.spawn(bullet, (i % 100) * SPACING, -10 - (i / 100) * SPACING);
+        }
+        for (Entity entity : burst) {
+            if (pooled) {
+                factory.despawn(entity);
+            } else {
+                factory.destroy(entity);
+            }
+        }
+        // Lets the broadphase process the moved proxies, as the next physics step would.
+        world.step(0, 1, 1);
+    }
+}
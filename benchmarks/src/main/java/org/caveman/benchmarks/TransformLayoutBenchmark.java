@@ -0,0 +1,162 @@
+package org.caveman.benchmarks;
+
+import org.caveman.components.TransformComponent;
+import org.caveman.components.TransformStore;
+import org.caveman.systems.PhysicsSystem;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.caveman.core.GameEngine.PIXELS_PER_METER;
+
+/**
+ * Compares transforms held by their components with transforms held by a {@link TransformStore},
+ * on the two loops that dominate big scenes: writing every transform after the physics step, and
+ * culling every transform against a view rectangle.
+ * <ul>
+ *     <li>{@code object}: one component per entity, visited in a shuffled order as entities
+ *     scattered over the heap are.</li>
+ *     <li>{@code storeAccessors}: the same components attached to a store and used through their
+ *     accessors, as the systems do; the previous step is stored in bulk.</li>
+ *     <li>{@code storeColumns}: the store's columns walked directly in slot order, with the body
+ *     values laid out in slot order too, as a physics sync that kept its bodies by slot would.</li>
+ * </ul>
+ * {@link #physicsSync()} runs the physics system's transform sync on a {@link BenchmarkWorld},
+ * without a store for {@code object} and with one otherwise, after waking every body so all of
+ * them are synced.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransformLayoutBenchmark {
+    private static final float WORLD_SIZE = 1000f;
+    private static final float VIEW_SIZE = 40f;
+
+    @Param({"10000", "100000"})
+    private int entityCount;
+
+    @Param({"object", "storeAccessors", "storeColumns"})
+    private String layout;
+
+    private TransformComponent[] transforms;
+    private TransformStore store;
+    private float[] bodyXs; // Where the physics step left each body
+    private float[] bodyYs;
+    private float[] bodyAngles;
+    private BenchmarkWorld scene;
+    private PhysicsSystem physics;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        transforms = new TransformComponent[entityCount];
+        bodyXs = new float[entityCount];
+        bodyYs = new float[entityCount];
+        bodyAngles = new float[entityCount];
+        for (int i = 0; i < entityCount; i++) {
+            transforms[i] = new TransformComponent(random.nextFloat() * WORLD_SIZE, random.nextFloat() * WORLD_SIZE);
+            bodyXs[i] = transforms[i].getX() + random.nextFloat();
+            bodyYs[i] = transforms[i].getY() + random.nextFloat();
+            bodyAngles[i] = random.nextFloat() * 360;
+        }
+        // Shuffle so consecutive entities are not neighbours in memory.
+        for (int i = entityCount - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            TransformComponent swap = transforms[i];
+            transforms[i] = transforms[j];
+            transforms[j] = swap;
+        }
+        if (!layout.equals("object")) {
+            store = new TransformStore(entityCount);
+            for (TransformComponent transform : transforms) {
+                store.attach(transform);
+            }
+            if (layout.equals("storeColumns")) {
+                float[] xs = new float[entityCount], ys = new float[entityCount], angles = new float[entityCount];
+                for (int i = 0; i < entityCount; i++) {
+                    int slot = transforms[i].getSlot();
+                    xs[slot] = bodyXs[i];
+                    ys[slot] = bodyYs[i];
+                    angles[slot] = bodyAngles[i];
+                }
+                bodyXs = xs;
+                bodyYs = ys;
+                bodyAngles = angles;
+            }
+        }
+
+        scene = BenchmarkWorld.create(entityCount, 0);
+        physics = new PhysicsSystem(scene.dominion, scene.world, 1 / 60f, PIXELS_PER_METER);
+        if (!layout.equals("object")) {
+            TransformStore sceneStore = new TransformStore(entityCount);
+            for (TransformComponent transform : scene.dominion.findCompositionsWith(TransformComponent.class)) {
+                sceneStore.attach(transform);
+            }
+            physics.setTransformStore(sceneStore);
+        }
+    }
+
+    @Benchmark
+    public void sync() {
+        switch (layout) {
+            case "object" -> {
+                for (int i = 0; i < transforms.length; i++) {
+                    TransformComponent transform = transforms[i];
+                    transform.storePrevious();
+                    transform.set(bodyXs[i], bodyYs[i], bodyAngles[i]);
+                }
+            }
+            case "storeAccessors" -> {
+                store.storePrevious();
+                for (int i = 0; i < transforms.length; i++) {
+                    transforms[i].set(bodyXs[i], bodyYs[i], bodyAngles[i]);
+                }
+            }
+            default -> {
+                store.storePrevious();
+                float[] xs = store.getXs();
+                float[] ys = store.getYs();
+                float[] rotations = store.getRotations();
+                for (int slot = 0, size = store.size(); slot < size; slot++) {
+                    xs[slot] = bodyXs[slot];
+                    ys[slot] = bodyYs[slot];
+                    rotations[slot] = bodyAngles[slot];
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public int cull() {
+        float minX = WORLD_SIZE / 2, minY = WORLD_SIZE / 2;
+        float maxX = minX + VIEW_SIZE, maxY = minY + VIEW_SIZE;
+        float alpha = 0.5f;
+        int visible = 0;
+        if (layout.equals("storeColumns")) {
+            float[] xs = store.getXs(), ys = store.getYs();
+            float[] prevXs = store.getPrevXs(), prevYs = store.getPrevYs();
+            for (int slot = 0, size = store.size(); slot < size; slot++) {
+                float x = prevXs[slot] + (xs[slot] - prevXs[slot]) * alpha;
+                float y = prevYs[slot] + (ys[slot] - prevYs[slot]) * alpha;
+                if (x >= minX && x <= maxX && y >= minY && y <= maxY) visible++;
+            }
+        } else {
+            for (TransformComponent transform : transforms) {
+                float x = transform.getInterpolatedX(alpha);
+                float y = transform.getInterpolatedY(alpha);
+                if (x >= minX && x <= maxX && y >= minY && y <= maxY) visible++;
+            }
+        }
+        return visible;
+    }
+
+    @Benchmark
+    public void physicsSync() {
+        scene.wakeBodies(physics);
+        physics.syncTransforms();
+    }
+}
@@ -0,0 +1,52 @@
+package org.caveman.benchmarks;
+
+import org.caveman.core.ParallelFor;
+import org.caveman.systems.PhysicsSystem;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.caveman.core.GameEngine.PIXELS_PER_METER;
+
+/**
+ * Measures the transform sync after the physics step on its own, sequentially and split into
+ * chunks on the common pool, to find the entity count where the parallel loop starts paying off
+ * for each grain size. The parallel runs use as many threads as the common pool has; set
+ * {@code -Djava.util.concurrent.ForkJoinPool.common.parallelism} to try other counts. Every body
+ * is woken before each sync, so all of them are visited; the transforms already match their
+ * bodies, so this measures the visit rather than the writes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransformSyncBenchmark {
+    @Param({"1000", "10000", "50000", "100000"})
+    private int entityCount;
+
+    @Param({"256", "1024", "4096"})
+    private int grainSize;
+
+    @Param({"false", "true"})
+    private boolean parallel;
+
+    private BenchmarkWorld scene;
+    private PhysicsSystem system;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        scene = BenchmarkWorld.create(entityCount, 0);
+        system = new PhysicsSystem(scene.dominion, scene.world, 1 / 60f, PIXELS_PER_METER);
+        ParallelFor parallelFor = system.getParallelFor();
+        parallelFor.setGrainSize(grainSize);
+        parallelFor.setSequentialThreshold(parallel ? 0 : Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public void syncTransforms() {
+        scene.wakeBodies(system);
+        system.syncTransforms();
+    }
+}
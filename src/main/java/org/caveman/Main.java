@@ -1,10 +1,63 @@
 package org.caveman;
 
 import org.caveman.core.GameEngine;
+import org.caveman.core.profiling.SystemStats;
+import org.caveman.core.replay.InputReplay;
+
+import java.nio.file.Path;
 
 
 public class Main {
+    private static final long DEFAULT_HEADLESS_TICKS = 10_000;
+
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--headless")) {
+            long ticks = args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_HEADLESS_TICKS;
+            runHeadless(ticks);
+            return;
+        }
+        if (args.length > 1 && args[0].equals("--replay")) {
+            runReplay(Path.of(args[1]));
+            return;
+        }
+        if (args.length > 1 && args[0].equals("--record")) {
+            GameEngine engine = new GameEngine(false, System.nanoTime(), Path.of(args[1]));
+            // The window exits the JVM when closed
+            Runtime.getRuntime().addShutdownHook(new Thread(engine::stopRecording));
+            return;
+        }
         new GameEngine();
     }
+
+    private static void runReplay(Path inputLog) {
+        InputReplay replay = InputReplay.open(inputLog);
+        GameEngine engine = new GameEngine(true, replay.getSeed(), null);
+        engine.replay(replay);
+        long start = System.nanoTime();
+        long ticks = engine.runReplay();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Replayed %d ticks in %.3f s (%.0f ticks/s), physics checksum %016x%n",
+                ticks, seconds, ticks / seconds, engine.getPhysicsChecksum());
+        printStats(engine);
+        engine.shutDown();
+    }
+
+    private static void runHeadless(long ticks) {
+        GameEngine engine = new GameEngine(true);
+        System.out.println("Loaded " + engine.getLevel());
+        long start = System.nanoTime();
+        engine.runHeadless(ticks);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Simulated %d ticks in %.3f s (%.0f ticks/s)%n", ticks, seconds, ticks / seconds);
+        printStats(engine);
+        engine.shutDown();
+    }
+
+    private static void printStats(GameEngine engine) {
+        for (SystemStats stats : engine.getProfiler().getStats()) {
+            System.out.printf("  %-10s p50 %8.1f us  p99 %8.1f us  max %9.1f us  tick %5.1f%%  overruns %d%n",
+                    stats.getName(), stats.getP50Micros(), stats.getP99Micros(), stats.getMaxMicros(),
+                    stats.getTickSharePercent(), stats.getOverruns());
+        }
+    }
 }
\ No newline at end of file
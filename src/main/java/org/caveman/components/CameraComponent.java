@@ -12,6 +12,7 @@ public class CameraComponent {
     private float orthoWidth;   // Base orthographic width in world units
     private float orthoHeight;  // Base orthographic height in world units
     private final Vec2 position = new Vec2(); // Current camera center position
+    private final Vec2 previousPosition = new Vec2(); // Center position at the previous simulation step
     private float zoom = 1.0f;        // Current zoom level
 
     private Entity target;            // Optional target entity for following
@@ -40,70 +41,26 @@ public class CameraComponent {
      * @param deltaTime the time elapsed since the last update (in seconds)
      */
     public void update(float deltaTime) {
+        previousPosition.set(position);
         if (target != null) {
-            Vec2 targetPos = getTargetPosition(target);
+            TransformComponent targetTransform = target.get(TransformComponent.class);
+            if (targetTransform == null) return;
+            float targetX = targetTransform.getX();
+            float targetY = targetTransform.getY();
             if (followSmoothing <= 0) {
                 // Snap immediately to the target's position
-                position.set(targetPos);
+                position.set(targetX, targetY);
             } else {
                 // Effective smooth time scales with followSmoothing
                 float effectiveSmoothTime = smoothTime * followSmoothing;
                 // Calculate interpolation factor using exponential decay for frame rate independence
                 float t = 1 - (float) Math.exp(-deltaTime / effectiveSmoothTime);
                 // Update the camera position towards the target
-                position.x += ((targetPos.x) - position.x) * t;
-                position.y += ((targetPos.y) - position.y) * t;
+                position.x += (targetX - position.x) * t;
+                position.y += (targetY - position.y) * t;
             }
         }
     }
-    /**
-     * Checks if an object with a given position and dimensions (in pixels) is in view.
-     *
-     * @param x              the center x position of the object (in world units)
-     * @param y              the center y position of the object (in world units)
-     * @param objectWidth    the object's width in pixels
-     * @param objectHeight   the object's height in pixels
-     * @param pixelsPerMeter conversion factor from world units to pixels
-     * @return true if the object is in the camera's view, false otherwise.
-     */
-    public boolean isInView(float x, float y, float objectWidth, float objectHeight, float pixelsPerMeter) {
-        // Convert object dimensions from pixels to world units.
-        float worldObjectWidth = objectWidth / pixelsPerMeter;
-        float worldObjectHeight = objectHeight / pixelsPerMeter;
-
-        // Assuming (x, y) is the object's center, compute its bounding box.
-        float objectLeft = x - worldObjectWidth / 2;
-        float objectRight = x + worldObjectWidth / 2;
-        float objectTop = y - worldObjectHeight / 2;
-        float objectBottom = y + worldObjectHeight / 2;
-
-        // Introduce a factor to shrink the view for testing.
-        float testFactor = 6f;
-
-        // Calculate the view bounds in world units, scaled down.
-        float viewWidth = (orthoWidth / zoom) * testFactor;
-        float viewHeight = (orthoHeight / zoom) * testFactor;
-        float cameraLeft = position.x - viewWidth / 2;
-        float cameraRight = position.x + viewWidth / 2;
-        float cameraTop = position.y - viewHeight / 2;
-        float cameraBottom = position.y + viewHeight / 2;
-
-        // Check if the object intersects the scaled camera view.
-        return (objectRight >= cameraLeft && objectLeft <= cameraRight &&
-                objectBottom >= cameraTop && objectTop <= cameraBottom);
-    }
-    /**
-     * Retrieves the target entity's position.
-     * Adapt this method if you need a more complex extraction of the target’s world position.
-     *
-     * @param target the target entity
-     * @return the target's position as a Vec2
-     */
-    private Vec2 getTargetPosition(Entity target) {
-        TransformComponent transform = target.get(TransformComponent.class);
-        return new Vec2(transform.getX(), transform.getY());
-    }
-
     /**
      * Sets the camera's zoom level. The value is clamped between the configured minimum and maximum zoom.
      *
@@ -150,12 +107,33 @@ public class CameraComponent {
     }
 
     /**
-     * Sets the camera's center position directly.
+     * Sets the camera's center position directly. The move is not interpolated.
      *
      * @param pos the new position
      */
     public void setPosition(Vec2 pos) {
         position.set(pos);
+        previousPosition.set(pos);
+    }
+
+    /**
+     * Returns the camera center X interpolated between the previous and the current simulation step.
+     *
+     * @param alpha the interpolation factor (0 = previous step, 1 = current step)
+     * @return the interpolated X position (in world units)
+     */
+    public float getInterpolatedX(float alpha) {
+        return previousPosition.x + (position.x - previousPosition.x) * alpha;
+    }
+
+    /**
+     * Returns the camera center Y interpolated between the previous and the current simulation step.
+     *
+     * @param alpha the interpolation factor (0 = previous step, 1 = current step)
+     * @return the interpolated Y position (in world units)
+     */
+    public float getInterpolatedY(float alpha) {
+        return previousPosition.y + (position.y - previousPosition.y) * alpha;
     }
 
     /**
@@ -215,6 +193,25 @@ public class CameraComponent {
         return followSmoothing;
     }
 
+    /**
+     * Sets the time, in seconds, the camera takes to catch up with its target at a follow
+     * smoothing of 1.
+     *
+     * @param smoothTime the catch-up time in seconds
+     */
+    public void setSmoothTime(float smoothTime) {
+        this.smoothTime = smoothTime;
+    }
+
+    /**
+     * Gets the catch-up time, in seconds, at a follow smoothing of 1.
+     *
+     * @return the catch-up time in seconds
+     */
+    public float getSmoothTime() {
+        return smoothTime;
+    }
+
     /**
      * Sets the minimum allowed zoom level.
      *
@@ -0,0 +1,23 @@
+package org.caveman.components;
+
+/**
+ * Marks an entity as part of a streamed chunk of the level. The chunk streamer deletes the entity
+ * when the chunk is unloaded, and recreates it from the level when the chunk loads again.
+ */
+public class ChunkComponent {
+    private final int chunkX;
+    private final int chunkY;
+
+    public ChunkComponent(int chunkX, int chunkY) {
+        this.chunkX = chunkX;
+        this.chunkY = chunkY;
+    }
+
+    public int getChunkX() {
+        return chunkX;
+    }
+
+    public int getChunkY() {
+        return chunkY;
+    }
+}
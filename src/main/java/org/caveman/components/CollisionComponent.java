@@ -2,28 +2,93 @@ package org.caveman.components;
 
 import dev.dominion.ecs.api.Entity;
 
+import java.util.Arrays;
+
+/**
+ * The set of entities this entity is currently touching, maintained by the collision system from
+ * contact begin and end events. Two entities can touch through several fixture pairs, so each
+ * entry counts its contacts and is removed when the last one ends.
+ */
 public class CollisionComponent {
-    private boolean colliding;
-    private Entity otherEntity;
+    private Entity[] contacts = new Entity[4];
+    private int[] contactCounts = new int[4];
+    private int size;
+
+    /**
+     * Adds one contact with the other entity.
+     */
+    public void addContact(Entity other) {
+        int index = indexOf(other);
+        if (index >= 0) {
+            contactCounts[index]++;
+            return;
+        }
+        if (size == contacts.length) {
+            contacts = Arrays.copyOf(contacts, size * 2);
+            contactCounts = Arrays.copyOf(contactCounts, size * 2);
+        }
+        contacts[size] = other;
+        contactCounts[size++] = 1;
+    }
+
+    /**
+     * Removes one contact with the other entity.
+     *
+     * @return true if that was the last contact and the entities no longer touch
+     */
+    public boolean removeContact(Entity other) {
+        int index = indexOf(other);
+        if (index < 0 || --contactCounts[index] > 0) {
+            return false;
+        }
+        // Shift rather than swap, so the order of contacts stays the order they began in.
+        System.arraycopy(contacts, index + 1, contacts, index, size - index - 1);
+        System.arraycopy(contactCounts, index + 1, contactCounts, index, size - index - 1);
+        contacts[--size] = null;
+        return true;
+    }
 
     public void reset() {
-        colliding = false;
-        otherEntity = null;
+        Arrays.fill(contacts, 0, size, null);
+        size = 0;
     }
 
     public boolean isColliding() {
-        return colliding;
+        return size > 0;
+    }
+
+    /**
+     * Returns true if this entity currently touches the other entity.
+     */
+    public boolean isTouching(Entity other) {
+        return indexOf(other) >= 0;
+    }
+
+    public int getContactCount() {
+        return size;
     }
 
-    public void setColliding(boolean colliding) {
-        this.colliding = colliding;
+    /**
+     * Returns the i-th touched entity, in the order the contacts began.
+     */
+    public Entity getContact(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Contact " + i + " of " + size);
+        }
+        return contacts[i];
     }
 
+    /**
+     * Returns the entity touched most recently, or null if none is touched.
+     */
     public Entity getOtherEntity() {
-        return otherEntity;
+        return size > 0 ? contacts[size - 1] : null;
     }
 
-    public void setOtherEntity(Entity otherEntity) {
-        this.otherEntity = otherEntity;
+    private int indexOf(Entity other) {
+        for (int i = 0; i < size; i++) {
+            if (contacts[i] == other) return i;
+        }
+        return -1;
     }
-}
\ No newline at end of file
+}
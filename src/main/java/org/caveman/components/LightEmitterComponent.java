@@ -0,0 +1,105 @@
+package org.caveman.components;
+
+import java.awt.*;
+
+/**
+ * A point light that is rendered by casting rays against the physics world.
+ * The intensity can pulse over time to simulate flickering torches.
+ */
+public class LightEmitterComponent {
+    /**
+     * How the lit area of a light is computed.
+     */
+    public enum ShadowMode {
+        /** A uniform fan of {@code rays} ray casts; cost and shadow accuracy grow with the ray count. */
+        RAY_FAN,
+        /** Rays aimed at the corners of nearby fixtures; exact shadow edges with O(vertices) ray casts. */
+        VISIBILITY_POLYGON
+    }
+
+    private Color color;
+    private float range;          // Range in meters
+    private int rays;             // Number of rays cast to build the light polygon
+    private float baseIntensity;  // Base intensity (0 to 1)
+    private float pulseSpeed;     // Pulses per second (in radians)
+    private float pulseAmplitude; // How far the intensity swings around the base
+    private ShadowMode shadowMode = ShadowMode.RAY_FAN;
+
+    public LightEmitterComponent(Color color, float range, int rays,
+                                 float baseIntensity, float pulseSpeed, float pulseAmplitude) {
+        this.color = color;
+        this.range = range;
+        this.rays = rays;
+        this.baseIntensity = baseIntensity;
+        this.pulseSpeed = pulseSpeed;
+        this.pulseAmplitude = pulseAmplitude;
+    }
+
+    /**
+     * Returns the animated intensity of the light at the given time.
+     *
+     * @param currentTimeMillis the current time in milliseconds
+     * @return the intensity clamped between 0 and 1
+     */
+    public float getCurrentIntensity(long currentTimeMillis) {
+        float seconds = currentTimeMillis / 1000f;
+        float intensity = baseIntensity + pulseAmplitude * (float) Math.sin(seconds * pulseSpeed);
+        return Math.max(0f, Math.min(1f, intensity));
+    }
+
+    public Color getColor() {
+        return color;
+    }
+
+    public void setColor(Color color) {
+        this.color = color;
+    }
+
+    public float getRange() {
+        return range;
+    }
+
+    public void setRange(float range) {
+        this.range = range;
+    }
+
+    public int getRays() {
+        return rays;
+    }
+
+    public void setRays(int rays) {
+        this.rays = rays;
+    }
+
+    public float getBaseIntensity() {
+        return baseIntensity;
+    }
+
+    public void setBaseIntensity(float baseIntensity) {
+        this.baseIntensity = baseIntensity;
+    }
+
+    public float getPulseSpeed() {
+        return pulseSpeed;
+    }
+
+    public void setPulseSpeed(float pulseSpeed) {
+        this.pulseSpeed = pulseSpeed;
+    }
+
+    public float getPulseAmplitude() {
+        return pulseAmplitude;
+    }
+
+    public void setPulseAmplitude(float pulseAmplitude) {
+        this.pulseAmplitude = pulseAmplitude;
+    }
+
+    public ShadowMode getShadowMode() {
+        return shadowMode;
+    }
+
+    public void setShadowMode(ShadowMode shadowMode) {
+        this.shadowMode = shadowMode;
+    }
+}
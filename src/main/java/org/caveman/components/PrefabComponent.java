@@ -0,0 +1,17 @@
+package org.caveman.components;
+
+/**
+ * Names the prefab an entity was spawned from, so the entity factory can take it back into that
+ * prefab's pool when it is despawned.
+ */
+public class PrefabComponent {
+    private final String prefab;
+
+    public PrefabComponent(String prefab) {
+        this.prefab = prefab;
+    }
+
+    public String getPrefab() {
+        return prefab;
+    }
+}
@@ -1,15 +1,37 @@
 package org.caveman.components;
 
+import org.caveman.core.assets.TextureRegion;
+
 import java.awt.*;
 
 public class SpriteComponent {
+    public static final int MIN_LAYER = -128;
+    public static final int MAX_LAYER = 127;
+
     private Color color;
     private int width, height;
+    private int layer; // Draw order: higher layers are drawn on top of lower ones
+    private TextureRegion region; // Drawn instead of the color once its atlas is loaded
 
     public SpriteComponent(Color color, int width, int height) {
+        this(color, width, height, 0);
+    }
+
+    public SpriteComponent(Color color, int width, int height, int layer) {
         this.color = color;
         this.width = width;
         this.height = height;
+        setLayer(layer);
+    }
+
+    /**
+     * Creates an image sprite. The color is drawn while the atlas image is not loaded.
+     *
+     * @param region the atlas region drawn, scaled to the sprite size
+     */
+    public SpriteComponent(TextureRegion region, Color placeholder, int width, int height, int layer) {
+        this(placeholder, width, height, layer);
+        this.region = region;
     }
 
     public Color getColor() {
@@ -36,4 +58,28 @@ public class SpriteComponent {
         this.height = height;
     }
 
+    public TextureRegion getRegion() {
+        return region;
+    }
+
+    /**
+     * Sets the atlas region drawn for this sprite, or null to draw the plain color.
+     */
+    public void setRegion(TextureRegion region) {
+        this.region = region;
+    }
+
+    public int getLayer() {
+        return layer;
+    }
+
+    /**
+     * Sets the draw order of the sprite. Within a layer, sprites are grouped by color.
+     *
+     * @param layer the layer, clamped between {@link #MIN_LAYER} and {@link #MAX_LAYER}
+     */
+    public void setLayer(int layer) {
+        this.layer = Math.max(MIN_LAYER, Math.min(MAX_LAYER, layer));
+    }
+
 }
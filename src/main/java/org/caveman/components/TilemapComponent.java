@@ -0,0 +1,237 @@
+package org.caveman.components;
+
+import org.jbox2d.dynamics.Body;
+import org.jbox2d.dynamics.Fixture;
+
+import java.awt.*;
+import java.util.Arrays;
+
+/**
+ * A grid of tiles stored as one byte per tile, in rows. Tile id 0 is empty; every other id is
+ * solid and drawn in its palette color. The grid is split into chunks of {@link #CHUNK_TILES} by
+ * {@link #CHUNK_TILES} tiles: the tilemap system collides each chunk through a few merged box
+ * fixtures on one static body, and the renderer caches each chunk as an image. Both are rebuilt
+ * only for the chunks whose tiles changed since.
+ * <p>
+ * Positions are in meters, with the tilemap origin at the top left corner of tile (0, 0).
+ */
+public class TilemapComponent {
+    public static final int CHUNK_TILES = 16;
+    public static final int EMPTY = 0;
+
+    private final float x;
+    private final float y;
+    private final int columns;
+    private final int rows;
+    private final float tileSize;
+    private final byte[] tiles;
+    private final Color[] palette = new Color[256];
+    private int layer;
+
+    private final int chunkColumns;
+    private final int chunkRows;
+    private final int[] chunkVersions;     // Bumped whenever a tile of the chunk changes
+    private final boolean[] collisionDirty; // Chunks whose fixtures no longer match their tiles
+    private boolean collisionChanged;
+    private Body body;
+    private final Fixture[][] chunkFixtures;
+
+    /**
+     * Creates an empty tilemap.
+     *
+     * @param x        the left edge, in meters
+     * @param y        the top edge, in meters
+     * @param tileSize the side of a tile, in meters
+     */
+    public TilemapComponent(float x, float y, int columns, int rows, float tileSize) {
+        if (columns <= 0 || rows <= 0 || tileSize <= 0) {
+            throw new IllegalArgumentException("Invalid tilemap size " + columns + "x" + rows + " of " + tileSize);
+        }
+        this.x = x;
+        this.y = y;
+        this.columns = columns;
+        this.rows = rows;
+        this.tileSize = tileSize;
+        this.tiles = new byte[columns * rows];
+        this.chunkColumns = (columns + CHUNK_TILES - 1) / CHUNK_TILES;
+        this.chunkRows = (rows + CHUNK_TILES - 1) / CHUNK_TILES;
+        this.chunkVersions = new int[chunkColumns * chunkRows];
+        this.collisionDirty = new boolean[chunkColumns * chunkRows];
+        this.chunkFixtures = new Fixture[chunkColumns * chunkRows][];
+        Arrays.fill(palette, 1, palette.length, Color.PINK);
+    }
+
+    /**
+     * Returns the id of the tile, or {@link #EMPTY} outside the grid.
+     */
+    public int getTile(int column, int row) {
+        if (column < 0 || row < 0 || column >= columns || row >= rows) return EMPTY;
+        return tiles[row * columns + column] & 0xFF;
+    }
+
+    public boolean isSolid(int column, int row) {
+        return getTile(column, row) != EMPTY;
+    }
+
+    /**
+     * Sets the id of a tile, between 0 and 255.
+     */
+    public void setTile(int column, int row, int id) {
+        if (column < 0 || row < 0 || column >= columns || row >= rows) {
+            throw new IndexOutOfBoundsException("Tile " + column + "," + row + " outside " + columns + "x" + rows);
+        }
+        if (id < 0 || id > 255) {
+            throw new IllegalArgumentException("Tile id out of range: " + id);
+        }
+        int index = row * columns + column;
+        int previous = tiles[index] & 0xFF;
+        if (previous == id) return;
+        tiles[index] = (byte) id;
+        int chunk = (row / CHUNK_TILES) * chunkColumns + column / CHUNK_TILES;
+        chunkVersions[chunk]++;
+        if ((previous == EMPTY) != (id == EMPTY)) {
+            collisionDirty[chunk] = true;
+            collisionChanged = true;
+        }
+    }
+
+    /**
+     * Sets every tile of a rectangle, clipped to the grid.
+     */
+    public void fill(int column, int row, int width, int height, int id) {
+        int endColumn = Math.min(columns, column + width);
+        int endRow = Math.min(rows, row + height);
+        for (int r = Math.max(0, row); r < endRow; r++) {
+            for (int c = Math.max(0, column); c < endColumn; c++) {
+                setTile(c, r, id);
+            }
+        }
+    }
+
+    public Color getTileColor(int id) {
+        return palette[id];
+    }
+
+    /**
+     * Sets the color tiles with the given id are drawn in. Every chunk is redrawn.
+     */
+    public void setTileColor(int id, Color color) {
+        if (id == EMPTY) {
+            throw new IllegalArgumentException("The empty tile has no color");
+        }
+        palette[id] = color;
+        for (int i = 0; i < chunkVersions.length; i++) {
+            chunkVersions[i]++;
+        }
+    }
+
+    public float getX() {
+        return x;
+    }
+
+    public float getY() {
+        return y;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public float getTileSize() {
+        return tileSize;
+    }
+
+    public int getLayer() {
+        return layer;
+    }
+
+    /**
+     * Sets the draw order of the tiles against sprites, as {@link SpriteComponent#setLayer(int)}.
+     */
+    public void setLayer(int layer) {
+        this.layer = Math.max(SpriteComponent.MIN_LAYER, Math.min(SpriteComponent.MAX_LAYER, layer));
+        for (int i = 0; i < chunkVersions.length; i++) {
+            chunkVersions[i]++;
+        }
+    }
+
+    public int getChunkColumns() {
+        return chunkColumns;
+    }
+
+    public int getChunkRows() {
+        return chunkRows;
+    }
+
+    /**
+     * Returns a number that changes whenever the chunk has to be redrawn.
+     */
+    public int getChunkVersion(int chunk) {
+        return chunkVersions[chunk];
+    }
+
+    /**
+     * Returns the static body the tiles collide through, or null if it was not created yet.
+     */
+    public Body getBody() {
+        return body;
+    }
+
+    /**
+     * Sets the body the tiles collide through. Every chunk has to be given fixtures on it.
+     */
+    public void setBody(Body body) {
+        this.body = body;
+        Arrays.fill(chunkFixtures, null);
+        Arrays.fill(collisionDirty, true);
+        collisionChanged = true;
+    }
+
+    /**
+     * Returns true if a chunk's solid tiles changed since its fixtures were last built.
+     */
+    public boolean hasCollisionChanges() {
+        return collisionChanged;
+    }
+
+    public boolean isCollisionDirty(int chunk) {
+        return collisionDirty[chunk];
+    }
+
+    /**
+     * Returns the fixtures of the chunk, or null if it has none.
+     */
+    public Fixture[] getChunkFixtures(int chunk) {
+        return chunkFixtures[chunk];
+    }
+
+    /**
+     * Records the fixtures built for the chunk's current tiles.
+     */
+    public void setChunkFixtures(int chunk, Fixture[] fixtures) {
+        chunkFixtures[chunk] = fixtures;
+        collisionDirty[chunk] = false;
+    }
+
+    /**
+     * Marks every chunk's fixtures as up to date, once the dirty ones have been rebuilt.
+     */
+    public void clearCollisionChanges() {
+        collisionChanged = false;
+    }
+
+    /**
+     * Returns the number of fixtures all chunks collide through.
+     */
+    public int getFixtureCount() {
+        int count = 0;
+        for (Fixture[] fixtures : chunkFixtures) {
+            if (fixtures != null) count += fixtures.length;
+        }
+        return count;
+    }
+}
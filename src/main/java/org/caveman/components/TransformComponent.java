@@ -1,35 +1,158 @@
 package org.caveman.components;
 
+/**
+ * The position and rotation of an entity, at the current and the previous simulation step. The
+ * values are held by the component itself, or by a {@link TransformStore} while it is attached to
+ * one; the accessors work the same either way.
+ */
 public class TransformComponent {
-    private float x, y, rotation;
+    // Only read while detached; the store's columns hold the values while attached.
+    float x, y, rotation;
+    // State at the previous simulation step, used to interpolate between steps when rendering.
+    float prevX, prevY, prevRotation;
+    TransformStore store;
+    int slot = -1;
+    private long changedTick;
 
     public TransformComponent(float x, float y) {
         this.x = x;
         this.y = y;
         this.rotation = 0;
+        storePrevious();
+    }
+
+    /**
+     * Copies the current state into the previous-step snapshot. Call this before writing the
+     * new state of a simulation step.
+     */
+    public void storePrevious() {
+        TransformStore s = store;
+        if (s != null) {
+            int i = slot;
+            s.prevX[i] = s.x[i];
+            s.prevY[i] = s.y[i];
+            s.prevRotation[i] = s.rotation[i];
+            return;
+        }
+        prevX = x;
+        prevY = y;
+        prevRotation = rotation;
+    }
+
+    /**
+     * Sets the position and rotation at once, which saves looking up the slot three times.
+     */
+    public void set(float x, float y, float rotation) {
+        TransformStore s = store;
+        if (s != null) {
+            int i = slot;
+            s.x[i] = x;
+            s.y[i] = y;
+            s.rotation[i] = rotation;
+            return;
+        }
+        this.x = x;
+        this.y = y;
+        this.rotation = rotation;
+    }
+
+    public float getInterpolatedX(float alpha) {
+        float prev = getPrevX();
+        return prev + (getX() - prev) * alpha;
+    }
+
+    public float getInterpolatedY(float alpha) {
+        float prev = getPrevY();
+        return prev + (getY() - prev) * alpha;
+    }
+
+    public float getInterpolatedRotation(float alpha) {
+        float prev = getPrevRotation();
+        return prev + (getRotation() - prev) * alpha;
+    }
+
+    public float getPrevX() {
+        TransformStore s = store;
+        return s != null ? s.prevX[slot] : prevX;
+    }
+
+    public float getPrevY() {
+        TransformStore s = store;
+        return s != null ? s.prevY[slot] : prevY;
+    }
+
+    public float getPrevRotation() {
+        TransformStore s = store;
+        return s != null ? s.prevRotation[slot] : prevRotation;
     }
 
     public float getX() {
-        return x;
+        TransformStore s = store;
+        return s != null ? s.x[slot] : x;
     }
 
     public void setX(float x) {
-        this.x = x;
+        TransformStore s = store;
+        if (s != null) s.x[slot] = x;
+        else this.x = x;
     }
 
     public float getY() {
-        return y;
+        TransformStore s = store;
+        return s != null ? s.y[slot] : y;
     }
 
     public void setY(float y) {
-        this.y = y;
+        TransformStore s = store;
+        if (s != null) s.y[slot] = y;
+        else this.y = y;
     }
 
     public float getRotation() {
-        return rotation;
+        TransformStore s = store;
+        return s != null ? s.rotation[slot] : rotation;
     }
 
     public void setRotation(float rotation) {
-        this.rotation = rotation;
+        TransformStore s = store;
+        if (s != null) s.rotation[slot] = rotation;
+        else this.rotation = rotation;
+    }
+
+    /**
+     * Records that the transform was moved on the given tick. Called by the physics sync when the
+     * transform's body moved; a body at rest or asleep leaves the tick as it was.
+     */
+    public void markChanged(long tick) {
+        changedTick = tick;
+    }
+
+    /**
+     * Returns the last tick the transform was moved on, or 0 if it never was. Entities that were
+     * just created are announced through the entity lifecycle instead.
+     */
+    public long getChangedTick() {
+        return changedTick;
+    }
+
+    /**
+     * Returns true if the transform was moved after the given tick.
+     */
+    public boolean hasChangedSince(long tick) {
+        return changedTick > tick;
+    }
+
+    /**
+     * Returns the store holding the values, or null if the component holds them itself.
+     */
+    public TransformStore getStore() {
+        return store;
+    }
+
+    /**
+     * Returns the slot of the values in the store, or -1 if not attached.
+     */
+    public int getSlot() {
+        return slot;
     }
 }
@@ -0,0 +1,196 @@
+package org.caveman.components;
+
+import dev.dominion.ecs.api.Entity;
+import org.caveman.core.EntityLifecycle;
+
+import java.util.Arrays;
+
+/**
+ * Structure-of-arrays storage for transforms. The position, rotation and previous-step values of
+ * every attached {@link TransformComponent} live in six float columns, indexed by a dense slot,
+ * instead of in the component object. The component keeps its accessors, which read and write its
+ * slot once attached, so systems work the same either way; loops over many transforms can walk
+ * the columns directly, and storing the previous step of every transform is three array copies.
+ * <p>
+ * Slots are dense: detaching a transform moves the one in the last slot into the freed slot, so
+ * slots are only stable between attaches and detaches. The columns are replaced when the store
+ * grows, so they must be fetched again after attaching.
+ * <p>
+ * As an {@link EntityLifecycle.Listener}, the store attaches the transforms of created entities
+ * and detaches those of destroyed ones. Entities that are disabled when their creation is
+ * announced, such as pooled prefab instances, are left to whoever enables them. The store is not thread safe, but the transforms of
+ * different slots may be written from different threads, as the physics sync does.
+ */
+public class TransformStore implements EntityLifecycle.Listener {
+    float[] x, y, rotation;
+    float[] prevX, prevY, prevRotation;
+    private TransformComponent[] components;
+    private int size;
+
+    public TransformStore() {
+        this(1024);
+    }
+
+    /**
+     * @param capacity the number of transforms the columns hold before they grow
+     */
+    public TransformStore(int capacity) {
+        capacity = Math.max(16, capacity);
+        x = new float[capacity];
+        y = new float[capacity];
+        rotation = new float[capacity];
+        prevX = new float[capacity];
+        prevY = new float[capacity];
+        prevRotation = new float[capacity];
+        components = new TransformComponent[capacity];
+    }
+
+    /**
+     * Moves the values of a transform into a slot of this store, which its accessors use from
+     * then on. Does nothing if it is attached already.
+     *
+     * @throws IllegalStateException if the transform is attached to another store
+     */
+    public void attach(TransformComponent transform) {
+        if (transform.store == this) return;
+        if (transform.store != null) {
+            throw new IllegalStateException("The transform is attached to another store");
+        }
+        if (size == components.length) {
+            grow();
+        }
+        int slot = size++;
+        x[slot] = transform.x;
+        y[slot] = transform.y;
+        rotation[slot] = transform.rotation;
+        prevX[slot] = transform.prevX;
+        prevY[slot] = transform.prevY;
+        prevRotation[slot] = transform.prevRotation;
+        components[slot] = transform;
+        transform.slot = slot;
+        transform.store = this;
+    }
+
+    /**
+     * Copies the values of a transform back into it and frees its slot. Does nothing if it is
+     * not attached to this store.
+     */
+    public void detach(TransformComponent transform) {
+        if (transform.store != this) return;
+        int slot = transform.slot;
+        transform.x = x[slot];
+        transform.y = y[slot];
+        transform.rotation = rotation[slot];
+        transform.prevX = prevX[slot];
+        transform.prevY = prevY[slot];
+        transform.prevRotation = prevRotation[slot];
+        transform.store = null;
+        transform.slot = -1;
+
+        int last = --size;
+        if (slot != last) {
+            x[slot] = x[last];
+            y[slot] = y[last];
+            rotation[slot] = rotation[last];
+            prevX[slot] = prevX[last];
+            prevY[slot] = prevY[last];
+            prevRotation[slot] = prevRotation[last];
+            components[slot] = components[last];
+            components[slot].slot = slot;
+        }
+        components[last] = null;
+    }
+
+    /**
+     * Detaches every transform.
+     */
+    public void clear() {
+        while (size > 0) {
+            detach(components[size - 1]);
+        }
+    }
+
+    /**
+     * Copies the current values of every transform into its previous-step values, as
+     * {@link TransformComponent#storePrevious()} does for one.
+     */
+    public void storePrevious() {
+        System.arraycopy(x, 0, prevX, 0, size);
+        System.arraycopy(y, 0, prevY, 0, size);
+        System.arraycopy(rotation, 0, prevRotation, 0, size);
+    }
+
+    /**
+     * Returns the number of attached transforms; slots run from zero to this number, exclusive.
+     */
+    public int size() {
+        return size;
+    }
+
+    public TransformComponent getComponent(int slot) {
+        return components[slot];
+    }
+
+    // The columns, for loops over many slots. Valid until the next attach.
+
+    public float[] getXs() {
+        return x;
+    }
+
+    public float[] getYs() {
+        return y;
+    }
+
+    public float[] getRotations() {
+        return rotation;
+    }
+
+    public float[] getPrevXs() {
+        return prevX;
+    }
+
+    public float[] getPrevYs() {
+        return prevY;
+    }
+
+    public float[] getPrevRotations() {
+        return prevRotation;
+    }
+
+    @Override
+    public void entityCreated(Entity entity) {
+        // A disabled entity returns stale components; pooled ones are attached when spawned,
+        // see EntityFactory.setTransformStore.
+        if (entity.isDeleted() || !entity.isEnabled()) return;
+        TransformComponent transform = entity.get(TransformComponent.class);
+        if (transform != null) {
+            attach(transform);
+        }
+    }
+
+    @Override
+    public void componentAdded(Entity entity, Object component) {
+        if (component instanceof TransformComponent transform) {
+            attach(transform);
+        }
+    }
+
+    @Override
+    public void entityDestroyed(Entity entity) {
+        TransformComponent transform = entity.get(TransformComponent.class);
+        if (transform != null) {
+            detach(transform);
+        }
+    }
+
+    private void grow() {
+        int capacity = components.length * 2;
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        rotation = Arrays.copyOf(rotation, capacity);
+        prevX = Arrays.copyOf(prevX, capacity);
+        prevY = Arrays.copyOf(prevY, capacity);
+        prevRotation = Arrays.copyOf(prevRotation, capacity);
+        components = Arrays.copyOf(components, capacity);
+    }
+}
@@ -0,0 +1,19 @@
+package org.caveman.core;
+
+/**
+ * Declares what a system touches, so a {@link SystemGraph} can order it against the other systems
+ * and run it in parallel with the ones it does not conflict with. Entries are component classes,
+ * or the class of a shared resource such as the physics world.
+ */
+public interface ComponentAccess {
+
+    /**
+     * Returns the component and resource types the system only reads.
+     */
+    Class<?>[] reads();
+
+    /**
+     * Returns the component and resource types the system modifies.
+     */
+    Class<?>[] writes();
+}
@@ -1,5 +1,337 @@
 package org.caveman.core;
 
+import dev.dominion.ecs.api.Dominion;
+import dev.dominion.ecs.api.Entity;
+import org.caveman.components.CollisionComponent;
+import org.caveman.components.PhysicsComponent;
+import org.caveman.components.PrefabComponent;
+import org.caveman.components.TransformComponent;
+import org.caveman.components.TransformStore;
+import org.caveman.systems.PhysicsSystem;
+import org.caveman.systems.SpatialIndex;
+import org.jbox2d.common.Vec2;
+import org.jbox2d.dynamics.Body;
+import org.jbox2d.dynamics.BodyDef;
+import org.jbox2d.dynamics.Fixture;
+import org.jbox2d.dynamics.FixtureDef;
+import org.jbox2d.dynamics.World;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Spawns entities from prefabs and keeps despawned ones for reuse. A prefab is defined once: its
+ * body and fixture definitions are shared by all of its instances, and its components are only
+ * made when its pool is empty. Despawning disables the entity, which hides it from every query,
+ * and deactivates its body, which takes it out of the broadphase and ends its contacts. Spawning
+ * a pooled instance moves it into place and turns both back on, so bursts of spawns and despawns
+ * allocate nothing once the pools are warm.
+ * <p>
+ * Every method must be called on the tick thread, outside of the physics step.
+ */
 public class EntityFactory {
+    private final Dominion dominion;
+    private final World world;
+    private final Map<String, Prefab> prefabs = new HashMap<>();
+    private final Vec2 scratch = new Vec2(); // Copied by the body on use
+    private SpatialIndex spatialIndex;
+    private EntityLifecycle lifecycle;
+    private PhysicsSystem physicsSystem;
+    private TransformStore transformStore;
+
+    /**
+     * An archetype entities are spawned from. Every instance gets the prefab's components, a
+     * {@link TransformComponent}, a {@link PrefabComponent} and, if the prefab has a body, a
+     * {@link PhysicsComponent} with a body built from the shared definitions.
+     */
+    public static final class Prefab {
+        private final String name;
+        private final BodyDef bodyDef;
+        private final FixtureDef fixtureDef;
+        private final Supplier<Object[]> components;
+        private Consumer<Entity> reset;
+        private Entity[] pool = new Entity[16];
+        private int pooled;
+        private int created;
+
+        private Prefab(String name, BodyDef bodyDef, FixtureDef fixtureDef, Supplier<Object[]> components) {
+            this.name = name;
+            this.bodyDef = bodyDef;
+            this.fixtureDef = fixtureDef;
+            this.components = components;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Sets what puts the components of a pooled instance back into their initial state before
+         * it is spawned again. The transform, body and contacts are reset by the factory.
+         */
+        public Prefab setReset(Consumer<Entity> reset) {
+            this.reset = reset;
+            return this;
+        }
+
+        /**
+         * Returns the number of despawned instances waiting to be reused.
+         */
+        public int getPooledCount() {
+            return pooled;
+        }
+
+        /**
+         * Returns the number of instances ever created, pooled or not.
+         */
+        public int getCreatedCount() {
+            return created;
+        }
+    }
+
+    public EntityFactory(Dominion dominion, World world) {
+        this.dominion = dominion;
+        this.world = world;
+    }
+
+    /**
+     * Removes despawned entities from the given index, which the physics system adds them to.
+     */
+    public void setSpatialIndex(SpatialIndex spatialIndex) {
+        this.spatialIndex = spatialIndex;
+    }
+
+    /**
+     * Resyncs the body of every pooled instance spawned, so the physics system indexes it again
+     * and reports its transform as changed even when it respawns where it was despawned. Without
+     * one, the body is only woken.
+     */
+    public void setPhysicsSystem(PhysicsSystem physicsSystem) {
+        this.physicsSystem = physicsSystem;
+    }
+
+    /**
+     * Attaches the transform of every pooled instance spawned to the given store. The store
+     * cannot attach them itself: instances are pooled before the lifecycle announces them, and
+     * Dominion does not return the right components for a disabled entity.
+     *
+     * @param transformStore the store, or null
+     */
+    public void setTransformStore(TransformStore transformStore) {
+        this.transformStore = transformStore;
+    }
+
+    /**
+     * Creates and destroys entities through the given lifecycle, so its listeners are told about
+     * them. Without one, {@link #destroy(Entity)} destroys the body and deletes the entity
+     * directly.
+     */
+    public void setLifecycle(EntityLifecycle lifecycle) {
+        this.lifecycle = lifecycle;
+    }
+
+    /**
+     * Defines a prefab with a body, replacing any prefab of the same name. The definitions are
+     * shared by all instances and must not be changed afterwards; their position and angle are
+     * ignored.
+     *
+     * @param components makes the components of a new instance, besides the ones the factory adds
+     */
+    public Prefab define(String name, BodyDef bodyDef, FixtureDef fixtureDef, Supplier<Object[]> components) {
+        Prefab prefab = new Prefab(name, bodyDef, fixtureDef, components);
+        prefabs.put(name, prefab);
+        return prefab;
+    }
+
+    /**
+     * Defines a prefab without a body.
+     */
+    public Prefab define(String name, Supplier<Object[]> components) {
+        return define(name, null, null, components);
+    }
+
+    public Prefab getPrefab(String name) {
+        return prefabs.get(name);
+    }
+
+    /**
+     * Creates instances of the prefab until its pool holds the given number, so a burst of
+     * spawns later on creates none.
+     */
+    public void prewarm(Prefab prefab, int count) {
+        while (prefab.pooled < count) {
+            despawn(create(prefab, 0, 0, 0));
+        }
+    }
+
+    public Entity spawn(String prefab, float x, float y) {
+        Prefab found = prefabs.get(prefab);
+        if (found == null) {
+            throw new IllegalArgumentException("Unknown prefab '" + prefab + "'");
+        }
+        return spawn(found, x, y, 0);
+    }
+
+    public Entity spawn(Prefab prefab, float x, float y) {
+        return spawn(prefab, x, y, 0);
+    }
+
+    /**
+     * Spawns an instance of the prefab at rest at the given position, reusing a pooled one if
+     * there is any.
+     *
+     * @param angle the angle of the body, in radians
+     */
+    public Entity spawn(Prefab prefab, float x, float y, float angle) {
+        if (prefab.pooled == 0) {
+            return create(prefab, x, y, angle);
+        }
+        Entity entity = prefab.pool[--prefab.pooled];
+        prefab.pool[prefab.pooled] = null;
+        entity.setEnabled(true);
+
+        TransformComponent transform = entity.get(TransformComponent.class);
+        if (transformStore != null) {
+            transformStore.attach(transform);
+        }
+        transform.setX(x);
+        transform.setY(y);
+        transform.setRotation((float) Math.toDegrees(angle));
+        transform.storePrevious();
+        CollisionComponent collision = entity.get(CollisionComponent.class);
+        if (collision != null) {
+            collision.reset();
+        }
+        PhysicsComponent physics = entity.get(PhysicsComponent.class);
+        if (physics != null) {
+            Body body = physics.getBody();
+            body.setTransform(scratch.set(x, y), angle);
+            scratch.setZero();
+            body.setLinearVelocity(scratch);
+            body.setAngularVelocity(0);
+            body.setActive(true);
+            if (physicsSystem != null) {
+                physicsSystem.resync(body);
+            } else {
+                body.setAwake(true);
+            }
+        }
+        if (prefab.reset != null) {
+            prefab.reset.accept(entity);
+        }
+        return entity;
+    }
+
+    /**
+     * Takes an entity spawned by this factory out of the world and into its prefab's pool.
+     *
+     * @return false if the entity was not spawned from a prefab of this factory, or is already
+     *         despawned
+     */
+    public boolean despawn(Entity entity) {
+        if (entity.isDeleted() || !entity.isEnabled()) return false;
+        PrefabComponent instance = entity.get(PrefabComponent.class);
+        Prefab prefab = instance != null ? prefabs.get(instance.getPrefab()) : null;
+        if (prefab == null) return false;
+
+        if (spatialIndex != null) {
+            spatialIndex.remove(entity);
+        }
+        PhysicsComponent physics = entity.get(PhysicsComponent.class);
+        if (physics != null && physics.getBody() != null) {
+            physics.getBody().setActive(false);
+        }
+        entity.setEnabled(false);
+        if (prefab.pooled == prefab.pool.length) {
+            prefab.pool = Arrays.copyOf(prefab.pool, prefab.pooled * 2);
+        }
+        prefab.pool[prefab.pooled++] = entity;
+        return true;
+    }
+
+    /**
+     * Deletes an entity for good, destroying its body. Works for any entity, spawned from a
+     * prefab or not. With a lifecycle, the entity is deleted when the lifecycle is drained.
+     */
+    public void destroy(Entity entity) {
+        if (entity.isDeleted() || (lifecycle != null && lifecycle.isDestroyed(entity))) return;
+        boolean pooled = !entity.isEnabled();
+        if (pooled) {
+            entity.setEnabled(true); // Dominion only returns the right components for enabled entities
+        }
+        PrefabComponent instance = entity.get(PrefabComponent.class);
+        Prefab prefab = instance != null ? prefabs.get(instance.getPrefab()) : null;
+        if (prefab != null && pooled) {
+            for (int i = 0; i < prefab.pooled; i++) {
+                if (prefab.pool[i] == entity) {
+                    prefab.pool[i] = prefab.pool[--prefab.pooled];
+                    prefab.pool[prefab.pooled] = null;
+                    break;
+                }
+            }
+        }
+        if (lifecycle != null) {
+            lifecycle.destroy(entity);
+            return;
+        }
+        if (spatialIndex != null) {
+            spatialIndex.remove(entity);
+        }
+        PhysicsComponent physics = entity.get(PhysicsComponent.class);
+        if (physics != null && physics.getBody() != null) {
+            world.destroyBody(physics.getBody());
+            physics.setBody(null);
+        }
+        dominion.deleteEntity(entity);
+    }
+
+    /**
+     * Destroys every pooled instance of every prefab.
+     */
+    public void clearPools() {
+        for (Prefab prefab : prefabs.values()) {
+            while (prefab.pooled > 0) {
+                destroy(prefab.pool[prefab.pooled - 1]);
+            }
+        }
+    }
+
+    /**
+     * Forgets every pooled instance without destroying it, after the world they lived in was
+     * replaced, for instance by restoring a snapshot.
+     */
+    public void forgetPools() {
+        for (Prefab prefab : prefabs.values()) {
+            Arrays.fill(prefab.pool, 0, prefab.pooled, null);
+            prefab.pooled = 0;
+        }
+    }
 
+    private Entity create(Prefab prefab, float x, float y, float angle) {
+        Object[] extra = prefab.components.get();
+        Object[] components = Arrays.copyOf(extra, extra.length + (prefab.bodyDef != null ? 3 : 2));
+        TransformComponent transform = new TransformComponent(x, y);
+        transform.setRotation((float) Math.toDegrees(angle));
+        transform.storePrevious();
+        components[extra.length] = transform;
+        components[extra.length + 1] = new PrefabComponent(prefab.name);
+        if (prefab.bodyDef != null) {
+            components[extra.length + 2] = new PhysicsComponent(prefab.bodyDef, prefab.fixtureDef);
+        }
+        Entity entity = lifecycle != null ? lifecycle.create(components) : dominion.createEntity(components);
+        if (prefab.bodyDef != null) {
+            prefab.bodyDef.position.set(x, y);
+            prefab.bodyDef.angle = angle;
+            Body body = world.createBody(prefab.bodyDef);
+            body.setUserData(entity);
+            Fixture fixture = body.createFixture(prefab.fixtureDef);
+            fixture.setUserData(entity);
+            entity.get(PhysicsComponent.class).setBody(body);
+        }
+        prefab.created++;
+        return entity;
+    }
 }
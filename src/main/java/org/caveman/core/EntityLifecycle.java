@@ -0,0 +1,190 @@
+package org.caveman.core;
+
+import dev.dominion.ecs.api.Dominion;
+import dev.dominion.ecs.api.Entity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Creates, changes and destroys entities and tells the systems that keep state about them. Each
+ * call records an event in a queue, and {@link #drain()} delivers the queued events to the
+ * listeners in the order they happened. The engine drains the queue at both tick boundaries:
+ * before the systems run, so entities created between ticks are set up for the first system that
+ * sees them, and after they all finished, so the entities they destroyed are gone before the next
+ * frame is drawn. Systems react to the few entities that changed instead of scanning every entity
+ * on every tick.
+ * <p>
+ * Destruction is deferred: a destroyed entity stays as it is until the next drain, where the
+ * listeners are told while they can still read its components to release what they hold for it,
+ * such as its body, and only then is it deleted. Systems that run after the call in the same tick
+ * still see it. It is not disabled meanwhile, because Dominion does not hand out the right
+ * components for disabled entities.
+ * <p>
+ * Every method must be called on the tick thread, outside of the physics step.
+ */
+public class EntityLifecycle {
+    private static final byte CREATED = 0;
+    private static final byte COMPONENT_ADDED = 1;
+    private static final byte DESTROYED = 2;
+
+    private final Dominion dominion;
+    private final List<Listener> listeners = new ArrayList<>();
+    private final Set<Entity> destroying = Collections.newSetFromMap(new IdentityHashMap<>());
+    private byte[] kinds = new byte[64];
+    private Entity[] entities = new Entity[64];
+    private Object[] components = new Object[64];
+    private int size;
+    private boolean draining;
+
+    /**
+     * Receives the lifecycle events of entities when the queue is drained. Listeners may create,
+     * change and destroy entities themselves; the resulting events are delivered in the same drain.
+     */
+    public interface Listener {
+        /**
+         * Called for an entity created through {@link #create(Object...)}. By the time the event
+         * is delivered, components may have been added to the entity or it may be destroyed.
+         */
+        default void entityCreated(Entity entity) {
+        }
+
+        /**
+         * Called for a component added through {@link #add(Entity, Object)}.
+         */
+        default void componentAdded(Entity entity, Object component) {
+        }
+
+        /**
+         * Called for an entity passed to {@link #destroy(Entity)}, while its components can
+         * still be read. The entity is deleted after every listener was called.
+         */
+        default void entityDestroyed(Entity entity) {
+        }
+    }
+
+    public EntityLifecycle(Dominion dominion) {
+        this.dominion = dominion;
+    }
+
+    /**
+     * Adds a listener. Listeners are called in the order they were added.
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public Dominion getDominion() {
+        return dominion;
+    }
+
+    /**
+     * Creates an entity with the given components.
+     */
+    public Entity create(Object... components) {
+        Entity entity = dominion.createEntity(components);
+        record(CREATED, entity, null);
+        return entity;
+    }
+
+    /**
+     * Adds a component to an entity.
+     */
+    public void add(Entity entity, Object component) {
+        entity.add(component);
+        record(COMPONENT_ADDED, entity, component);
+    }
+
+    /**
+     * Deletes the entity at the next drain, after telling the listeners. A disabled entity is
+     * enabled again.
+     *
+     * @return false if the entity is already deleted or waiting to be
+     */
+    public boolean destroy(Entity entity) {
+        if (entity.isDeleted() || !destroying.add(entity)) return false;
+        if (!entity.isEnabled()) {
+            entity.setEnabled(true);
+        }
+        record(DESTROYED, entity, null);
+        return true;
+    }
+
+    /**
+     * Returns true if the entity is deleted or waiting to be.
+     */
+    public boolean isDestroyed(Entity entity) {
+        return entity.isDeleted() || destroying.contains(entity);
+    }
+
+    /**
+     * Delivers the queued events to the listeners and deletes the destroyed entities, until the
+     * queue is empty. Costs nothing but a check when no entity changed.
+     */
+    public void drain() {
+        if (size == 0 || draining) return;
+        draining = true;
+        try {
+            // Listeners may queue more events, which land behind the ones being delivered.
+            for (int i = 0; i < size; i++) {
+                Entity entity = entities[i];
+                Object component = components[i];
+                switch (kinds[i]) {
+                    case CREATED -> {
+                        for (int l = 0; l < listeners.size(); l++) listeners.get(l).entityCreated(entity);
+                    }
+                    case COMPONENT_ADDED -> {
+                        for (int l = 0; l < listeners.size(); l++) listeners.get(l).componentAdded(entity, component);
+                    }
+                    default -> {
+                        for (int l = 0; l < listeners.size(); l++) listeners.get(l).entityDestroyed(entity);
+                        destroying.remove(entity);
+                        dominion.deleteEntity(entity);
+                    }
+                }
+            }
+        } finally {
+            Arrays.fill(entities, 0, size, null);
+            Arrays.fill(components, 0, size, null);
+            size = 0;
+            draining = false;
+        }
+    }
+
+    /**
+     * Drops the queued events without delivering them, after the entities they are about were
+     * deleted some other way, for instance by restoring a snapshot.
+     */
+    public void clear() {
+        Arrays.fill(entities, 0, size, null);
+        Arrays.fill(components, 0, size, null);
+        size = 0;
+        destroying.clear();
+    }
+
+    /**
+     * Returns the number of events waiting for the next drain.
+     */
+    public int getPendingCount() {
+        return size;
+    }
+
+    private void record(byte kind, Entity entity, Object component) {
+        if (size == kinds.length) {
+            kinds = Arrays.copyOf(kinds, size * 2);
+            entities = Arrays.copyOf(entities, size * 2);
+            components = Arrays.copyOf(components, size * 2);
+        }
+        kinds[size] = kind;
+        entities[size] = entity;
+        components[size++] = component;
+    }
+}
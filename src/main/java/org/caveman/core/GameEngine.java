@@ -4,6 +4,14 @@ import dev.dominion.ecs.api.Dominion;
 import dev.dominion.ecs.api.Entity;
 import dev.dominion.ecs.api.Scheduler;
 import org.caveman.components.*;
+import org.caveman.core.assets.ImageCache;
+import org.caveman.core.level.Level;
+import org.caveman.core.level.ChunkStreamer;
+import org.caveman.core.profiling.SystemProfiler;
+import org.caveman.core.replay.InputRecorder;
+import org.caveman.core.replay.InputReplay;
+import org.caveman.core.snapshot.SnapshotFormat;
+import org.caveman.core.snapshot.WorldSnapshot;
 import org.caveman.systems.*;
 import org.jbox2d.common.*;
 import org.jbox2d.dynamics.*;
@@ -12,44 +20,175 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
+import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * One game: its own ECS, physics world, scheduler and systems. Engines share no state, so several
+ * can run in one JVM, for instance hosted side by side by a {@link MatchHost}.
+ */
 public class GameEngine {
     public static final float PIXELS_PER_METER = 32.0f;
     public static final Vec2 UP_VEC = new Vec2(0,1);
-    private static final float PLAYER_SPEED = 10f;
-    private static final float PLAYER_JUMP_FORCE = 12f;
     private static final Vec2 GRAVITY = new Vec2(0, 9.8f * 2);
+    private static final int VIEWPORT_WIDTH = 1240;
+    private static final int VIEWPORT_HEIGHT = 800;
+    private static final int TICKS_PER_SECOND = 60;
+    private static final float TIME_STEP = 1f / TICKS_PER_SECOND;
+    private static final int MAX_CATCH_UP_STEPS = 5;
+    private static final int TARGET_FPS = 144;
+    private static final long IMAGE_CACHE_BYTES = 64L * 1024 * 1024;
+    private static final String DEFAULT_LEVEL = "/levels/test.level";
+    static final String HOSTED_DOMINION_NAME = "match";
     final float DESIRED_WORLD_WIDTH = 20.0f;
 
-    private static final Dominion dominion = Dominion.create();
-    private static final World physicsWorld = new World(GRAVITY);
-    private static final Scheduler scheduler = dominion.createScheduler();
+    private final Dominion dominion;
+    private final World physicsWorld = new World(GRAVITY);
+    private final Scheduler scheduler;
+    // Keeps the game loop and callers of tick() from running ticks at the same time
+    private final Object tickLock = new Object();
+    private Runnable[] tickTasks;
+    private final EntityLifecycle lifecycle;
+    private final boolean headless;
+    private final long seed;
+    private final Random random;
+    private final ImageCache imageCache = new ImageCache(IMAGE_CACHE_BYTES);
+    private final InputHandler inputHandler = new InputHandler();
+    private final SnapshotFormat snapshotFormat = SnapshotFormat.standard();
+    // Saves and loads wait here for the next tick boundary, the only point the world is consistent
+    private final Queue<Runnable> snapshotRequests = new ConcurrentLinkedQueue<>();
+    private ExecutorService snapshotWriter;
+    private SpatialIndex spatialIndex;
+    private PhysicsSystem physicsSystem;
+    private MovementSystem movementSystem;
+    private CameraSystem cameraSystem;
+    private TransformStore transformStore;
+    private ChunkStreamer chunkStreamer;
+    private EntityFactory entityFactory;
+    private InputRecorder inputRecorder;
+    private InputReplay inputReplay;
+    private long tickCount;
+    private final SystemProfiler profiler = new SystemProfiler(1_000_000_000L / TICKS_PER_SECOND);
+    private final SystemGraph systemGraph;
+    private RenderingSystem renderingSystem;
+    private Runnable profiledRendering;
+    private GameLoop gameLoop;
     private JFrame window;
     private Canvas canvas;
+    private Level level;
     private Entity player;
     private Entity camera;
 
     public GameEngine() {
-        setupWindow();
-        setupInput();
+        this(false);
+    }
+
+    /**
+     * Creates the engine and populates the test scene.
+     * In windowed mode a {@link GameLoop} steps the simulation at a fixed rate and renders
+     * interpolated frames at display rate. In headless mode no window, canvas or input listener
+     * is created and the rendering system is left out; the simulation only advances through
+     * {@link #tick()} or {@link #runHeadless(long)}, so it runs as fast as the CPU allows.
+     *
+     * @param headless true to run the simulation without AWT
+     */
+    public GameEngine(boolean headless) {
+        this(headless, System.nanoTime(), null);
+    }
+
+    /**
+     * Creates the engine with a fixed random seed, optionally recording the input of every tick
+     * so the session can be replayed with {@link #replay(InputReplay)}.
+     *
+     * @param headless true to run the simulation without AWT
+     * @param seed     the seed of the random generator returned by {@link #getRandom()}
+     * @param inputLog the file to record input to, or null to record nothing
+     */
+    public GameEngine(boolean headless, long seed, Path inputLog) {
+        this(Dominion.create(), headless, seed, inputLog, ForkJoinPool.commonPool(), null);
+        profiler.registerMBeans(dominion.getName());
+        if (!headless) {
+            gameLoop = new GameLoop(TIME_STEP, MAX_CATCH_UP_STEPS, TARGET_FPS, scheduler::tick, this::render);
+            gameLoop.start();
+        }
+    }
+
+    /**
+     * Creates a headless engine to be stepped by a {@link MatchHost}. Every system runs on the
+     * thread that calls {@link #tick()}, since the host keeps its threads busy with other engines,
+     * and chunks are prepared on the given executor. The profiler's MBeans are not registered, to
+     * keep hundreds of hosted engines out of JMX.
+     * <p>
+     * The ECS is named {@value #HOSTED_DOMINION_NAME}, so the size and logging of every hosted
+     * engine's ECS can be set at once through the {@code dominion.match.*} system properties.
+     *
+     * @param chunkLoader the executor level chunks are prepared on
+     */
+    GameEngine(long seed, Executor chunkLoader) {
+        this(Dominion.create(HOSTED_DOMINION_NAME), true, seed, null, null, chunkLoader);
+        physicsSystem.getParallelFor().setSequentialThreshold(Integer.MAX_VALUE);
+    }
+
+    private GameEngine(Dominion dominion, boolean headless, long seed, Path inputLog, ForkJoinPool pool,
+                       Executor chunkLoader) {
+        this.dominion = dominion;
+        this.scheduler = dominion.createScheduler();
+        this.lifecycle = new EntityLifecycle(dominion);
+        this.headless = headless;
+        this.seed = seed;
+        this.random = new Random(seed);
+        this.systemGraph = new SystemGraph(pool, profiler);
+        if (inputLog != null) {
+            inputRecorder = new InputRecorder(inputLog, seed);
+        }
+        bindKeys();
+        if (!headless) {
+            setupWindow();
+            setupInput();
+        }
         setupCamera();
         setupSystems();
-        createGround();
-        createObstacles();
-        createPlayer();
-        createLights();
-        scheduler.tickAtFixedRate(60);
+        if (chunkLoader != null) {
+            chunkStreamer.setLoader(chunkLoader);
+        }
+        loadLevel(DEFAULT_LEVEL);
     }
 
+    /**
+     * Returns the simulated time covered by one tick. The simulation always advances in fixed
+     * steps, regardless of how much real time passed.
+     */
     public static double getDeltaTime() {
-        return scheduler.deltaTime();
+        return TIME_STEP;
+    }
+
+    private void render(float alpha) {
+        renderingSystem.setInterpolationAlpha(alpha);
+        profiledRendering.run();
     }
 
     private void setupWindow() {
         window = new JFrame("2D Game Engine");
         window.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         canvas = new Canvas();
-        canvas.setPreferredSize(new Dimension(1240, 800));
+        canvas.setPreferredSize(new Dimension(VIEWPORT_WIDTH, VIEWPORT_HEIGHT));
         window.setLayout(new BorderLayout()); // Add layout manager
         window.add(canvas, BorderLayout.CENTER); // Add to center
         window.pack();
@@ -58,6 +197,11 @@ public class GameEngine {
     }
 
     private void setupCamera() {
+        if (headless) {
+            camera = dominion.createEntity(new CameraComponent(VIEWPORT_WIDTH, VIEWPORT_HEIGHT));
+            camera.get(CameraComponent.class).setZoom(1.0f);
+            return;
+        }
         camera = dominion.createEntity(
                 new CameraComponent(canvas.getWidth() , canvas.getHeight())
         );
@@ -78,78 +222,358 @@ public class GameEngine {
     private void setupInput() {
         canvas.setFocusable(true);
         canvas.requestFocusInWindow();
-        InputHandler.setup(canvas);
+        inputHandler.attach(canvas);
+    }
+
+    private void bindKeys() {
+        inputHandler.bind("moveLeft", KeyEvent.VK_A);
+        inputHandler.bind("moveRight", KeyEvent.VK_D);
+        inputHandler.bind("jump", KeyEvent.VK_SPACE);
+        inputHandler.bind("zoomIn", KeyEvent.VK_UP);
+        inputHandler.bind("zoomOut", KeyEvent.VK_DOWN);
     }
 
     private void setupSystems() {
-        RenderingSystem renderingSystem = new RenderingSystem(dominion, canvas,physicsWorld, PIXELS_PER_METER);
-        PhysicsSystem physicsSystem = new PhysicsSystem(
-                dominion, physicsWorld, 1/60f, PIXELS_PER_METER
+        physicsSystem = new PhysicsSystem(
+                dominion, physicsWorld, TIME_STEP, PIXELS_PER_METER
         );
-        CameraSystem cameraSystem = new CameraSystem(dominion);
+        cameraSystem = new CameraSystem(dominion, inputHandler);
         CollisionSystem collisionSystem = new CollisionSystem(dominion);
-        MovementSystem movementSystem = new MovementSystem(dominion, PIXELS_PER_METER);
+        movementSystem = new MovementSystem(dominion, inputHandler, PIXELS_PER_METER, TIME_STEP);
+        TilemapSystem tilemapSystem = new TilemapSystem(dominion, physicsWorld);
+        spatialIndex = new SpatialIndex(PIXELS_PER_METER);
+        physicsSystem.setSpatialIndex(spatialIndex);
         physicsWorld.setContactListener(new GameContactListener(collisionSystem));
+        chunkStreamer = new ChunkStreamer(dominion, physicsWorld);
+        chunkStreamer.setLifecycle(lifecycle);
+        chunkStreamer.setSnapshotFormat(snapshotFormat, imageCache); // Unloaded chunks keep their state
+        entityFactory = new EntityFactory(dominion, physicsWorld);
+        entityFactory.setSpatialIndex(spatialIndex);
+        entityFactory.setPhysicsSystem(physicsSystem);
+        entityFactory.setLifecycle(lifecycle);
+        lifecycle.addListener(physicsSystem);  // Builds and destroys bodies, keeps the index clean
+        lifecycle.addListener(tilemapSystem);
+        lifecycle.addListener(movementSystem); // Re-query their cached players and cameras
+        lifecycle.addListener(cameraSystem);
 
-        scheduler.parallelSchedule(
-                movementSystem,    // Process input first
-                physicsSystem,     // Update physics
-                collisionSystem,   // Handle collisions
-                cameraSystem,      // Update camera
-                renderingSystem
-        );
+        // Systems are added in logical order; the graph runs the ones whose declared component
+        // access does not conflict in parallel. With the current systems that gives input alongside
+        // the tilemap collision, movement, then physics, then collision alongside the camera, then level streaming.
+        systemGraph.add("input", this::pollInput,      // Snapshot this tick's input
+                new Class<?>[0], new Class<?>[]{InputHandler.class}, null);
+        systemGraph.add("tilemap", tilemapSystem,      // Rebuild the collision of changed tiles
+                () -> dominion.findEntitiesWith(TilemapComponent.class));
+        systemGraph.add("movement", movementSystem,    // Process input first
+                () -> dominion.findEntitiesWith(Tags.PlayerTag.class, MovementController.class, PhysicsComponent.class));
+        systemGraph.add("physics", physicsSystem,      // Update physics
+                () -> dominion.findEntitiesWith(PhysicsComponent.class, TransformComponent.class));
+        systemGraph.add("collision", collisionSystem,  // Handle collisions
+                () -> dominion.findEntitiesWith(CollisionComponent.class));
+        systemGraph.add("camera", cameraSystem,        // Update camera
+                () -> dominion.findEntitiesWith(CameraComponent.class));
+        systemGraph.add("streaming", chunkStreamer,    // Load and unload chunks around the camera
+                () -> dominion.findEntitiesWith(ChunkComponent.class));
+
+        tickTasks = new Runnable[]{
+                this::processSnapshotRequests,
+                profiler.tickStart(),
+                // Entity lifecycle events are delivered at both tick boundaries, never while systems run.
+                lifecycle::drain,
+                systemGraph,
+                lifecycle::drain,
+                profiler.tickEnd()
+        };
+        scheduler.schedule(this::runTick); // Driven by the game loop
+
+        // Rendering is an optional extra, driven by the game loop at display rate.
+        if (!headless) {
+            renderingSystem = new RenderingSystem(dominion, canvas, physicsWorld, PIXELS_PER_METER);
+            renderingSystem.setSpatialIndex(spatialIndex);
+            lifecycle.addListener(renderingSystem);
+            profiledRendering = profiler.wrap("rendering", renderingSystem,
+                    () -> dominion.findEntitiesWith(TransformComponent.class, SpriteComponent.class));
+        }
     }
-    private void createPlayer() {
-        player = GameObjectFactory.createPlayer(
-                dominion,
-                physicsWorld,
-                PLAYER_SPEED,
-                PLAYER_JUMP_FORCE,
-                -3f, // Body X in meters
-                -3f, // Body Y in meters
-                1, // Transform X in pixels
-                1, // Transform Y in pixels
-                Color.BLUE
-        );
-        setCameraTarget(player);
-    }
-    private void createGround() {
-        GameObjectFactory.createGround(
-                dominion,
-                physicsWorld,
-                0f,
-                10f,
-                100f,
-                1f,
-                Color.pink
-        );
-        GameObjectFactory.createGround(
-                dominion,
-                physicsWorld,
-                0f,
-                7f,
-                10f,
-                1f,
-                Color.pink
-        );
+
+    private void runTick() {
+        synchronized (tickLock) {
+            for (Runnable task : tickTasks) {
+                task.run();
+            }
+        }
     }
 
-    private void createObstacles() {
-        GameObjectFactory.createObstacle(
-                dominion,
-                physicsWorld,
-                10f,
-                4f,
-                1f,1f,
-                Color.red
-        );
+    private void pollInput() {
+        if (inputReplay != null) {
+            inputReplay.feed(inputHandler.getQueue());
+        }
+        inputHandler.poll();
+        if (inputRecorder != null) {
+            inputRecorder.record(inputHandler);
+        }
+        tickCount++;
     }
 
-    private void createLights() {
-        GameObjectFactory.createLight(
-                dominion,
-                6,6
-        );
+    /**
+     * Feeds the recorded input to the following ticks in place of the keyboard and mouse. Run the
+     * engine with {@link #runReplay()}; given the seed the log was recorded with, the simulation
+     * retraces the recorded session exactly.
+     *
+     * @throws IllegalStateException    if the engine is not headless or has already ticked
+     * @throws IllegalArgumentException if the log was recorded with a different seed
+     */
+    public void replay(InputReplay replay) {
+        if (!headless) {
+            throw new IllegalStateException("Input can only be replayed by a headless engine");
+        }
+        if (tickCount > 0) {
+            throw new IllegalStateException("Input must be replayed from the first tick");
+        }
+        if (replay.getSeed() != seed) {
+            throw new IllegalArgumentException("The input log was recorded with seed " + replay.getSeed()
+                    + ", the engine uses " + seed);
+        }
+        inputReplay = replay;
+    }
+
+    /**
+     * Runs ticks back to back until the replayed input log is exhausted.
+     *
+     * @return the number of ticks run
+     */
+    public long runReplay() {
+        if (inputReplay == null) {
+            throw new IllegalStateException("No input log is being replayed");
+        }
+        long ticks = 0;
+        while (inputReplay.hasNext()) {
+            runTick();
+            ticks++;
+        }
+        return ticks;
+    }
+
+    /**
+     * Writes the recorded input to disk and stops recording. Safe to call from a shutdown hook
+     * while the simulation is still running.
+     */
+    public void stopRecording() {
+        InputRecorder recorder = inputRecorder;
+        if (recorder != null) {
+            recorder.close();
+        }
+    }
+
+    /**
+     * Saves the state of every entity and body at the start of the next tick. The state is copied
+     * on the tick thread and written to the file on a background thread, so the simulation does
+     * not wait for the disk.
+     *
+     * @return a future completed with the snapshot once it is on disk
+     */
+    public CompletableFuture<WorldSnapshot> saveSnapshot(Path path) {
+        CompletableFuture<WorldSnapshot> result = new CompletableFuture<>();
+        snapshotRequests.add(() -> {
+            WorldSnapshot snapshot;
+            try {
+                snapshot = snapshotFormat.capture(dominion, physicsWorld, tickCount);
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+                return;
+            }
+            CompletableFuture.runAsync(() -> snapshot.write(path), snapshotWriter())
+                    .whenComplete((ignored, error) -> {
+                        if (error != null) result.completeExceptionally(error);
+                        else result.complete(snapshot);
+                    });
+        });
+        return result;
+    }
+
+    /**
+     * Replaces every entity and body with the contents of a snapshot file at the start of the
+     * next tick. The player and camera are taken from the snapshot. The snapshot is decoded once
+     * before the world is cleared, so a file that cannot be restored leaves the world as it was.
+     *
+     * @return a future completed once the snapshot has been restored, or completed exceptionally
+     *         if it could not be
+     */
+    public CompletableFuture<Void> loadSnapshot(Path path) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        snapshotRequests.add(() -> {
+            try {
+                restoreSnapshot(WorldSnapshot.read(path));
+                result.complete(null);
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    public SnapshotFormat getSnapshotFormat() { return snapshotFormat; }
+
+    private void processSnapshotRequests() {
+        Runnable request;
+        while ((request = snapshotRequests.poll()) != null) {
+            request.run();
+        }
+    }
+
+    private void restoreSnapshot(WorldSnapshot snapshot) {
+        snapshotFormat.validate(snapshot, imageCache); // Fails before anything is torn down
+        List<Entity> existing = new ArrayList<>();
+        for (Object entity : dominion.findAllEntities()) {
+            existing.add((Entity) entity);
+        }
+        lifecycle.clear(); // The entities it was about are deleted below
+        for (Entity entity : existing) {
+            spatialIndex.remove(entity);
+            dominion.deleteEntity(entity);
+        }
+        for (Body body = physicsWorld.getBodyList(); body != null; ) {
+            Body next = body.getNext();
+            physicsWorld.destroyBody(body);
+            body = next;
+        }
+
+        player = null;
+        camera = null;
+        for (Entity entity : snapshotFormat.restore(snapshot, dominion, physicsWorld, imageCache)) {
+            if (player == null && entity.has(Tags.PlayerTag.class)) player = entity;
+            if (camera == null && entity.has(CameraComponent.class)) camera = entity;
+        }
+        if (transformStore != null) {
+            // The transforms it held are gone; attach the restored ones to a new store
+            lifecycle.removeListener(transformStore);
+            transformStore = null;
+            enableTransformStore();
+        }
+        movementSystem.invalidate();
+        cameraSystem.invalidate();
+        chunkStreamer.resync();
+        entityFactory.forgetPools(); // Pooled entities are not saved; the pools refill as instances despawn
+        chunkStreamer.setFocus(camera);
+        tickCount = snapshot.getTick();
+    }
+
+    private synchronized ExecutorService snapshotWriter() {
+        if (snapshotWriter == null) {
+            snapshotWriter = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "snapshot-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return snapshotWriter;
+    }
+
+    /**
+     * Returns a hash of the position, angle and velocities of every body, bit for bit, to check
+     * that two runs ended in the same state. The order of the bodies does not matter, so a world
+     * restored from a snapshot hashes like the one it was saved from.
+     */
+    public long getPhysicsChecksum() {
+        long checksum = 0;
+        for (Body body = physicsWorld.getBodyList(); body != null; body = body.getNext()) {
+            long hash = 17;
+            hash = 31 * hash + Float.floatToRawIntBits(body.getPosition().x);
+            hash = 31 * hash + Float.floatToRawIntBits(body.getPosition().y);
+            hash = 31 * hash + Float.floatToRawIntBits(body.getAngle());
+            hash = 31 * hash + Float.floatToRawIntBits(body.getLinearVelocity().x);
+            hash = 31 * hash + Float.floatToRawIntBits(body.getLinearVelocity().y);
+            hash = 31 * hash + Float.floatToRawIntBits(body.getAngularVelocity());
+            checksum += hash * 0x9E3779B97F4A7C15L;
+        }
+        return checksum;
+    }
+
+    /**
+     * Advances the simulation by a single tick on the calling thread.
+     */
+    public void tick() {
+        runTick();
+    }
+
+    /**
+     * Runs the given number of ticks back to back, without waiting for a frame rate.
+     *
+     * @param ticks the number of ticks to simulate
+     */
+    public void runHeadless(long ticks) {
+        for (long i = 0; i < ticks; i++) {
+            runTick();
+        }
+    }
+
+    /**
+     * Stops the scheduler threads so the JVM can exit once a headless run is finished.
+     */
+    public void shutDown() {
+        if (gameLoop != null) {
+            gameLoop.stop();
+        }
+        scheduler.shutDown();
+        profiler.unregisterMBeans();
+        chunkStreamer.close();
+        stopRecording();
+        if (inputReplay != null) {
+            inputReplay.close();
+        }
+        ExecutorService writer;
+        synchronized (this) {
+            writer = snapshotWriter;
+        }
+        if (writer != null) {
+            writer.shutdown();
+            try {
+                writer.awaitTermination(10, TimeUnit.SECONDS); // Let pending saves reach the disk
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    private void loadLevel(String resource) {
+        InputStream stream = GameEngine.class.getResourceAsStream(resource);
+        if (stream == null) {
+            throw new IllegalStateException("Missing level resource " + resource);
+        }
+        try (Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8)) {
+            level = chunkStreamer.open(reader, resource);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read level " + resource, e);
+        }
+        player = level.getPlayer();
+        if (player != null) {
+            setCameraTarget(player);
+        }
+        chunkStreamer.setFocus(camera);
+    }
+
+    /**
+     * Moves the transforms of every entity into a {@link TransformStore}, and those of entities
+     * created through the lifecycle from then on. Transforms created some other way keep their
+     * values themselves; both kinds work the same for every system. Call it between ticks.
+     */
+    public void enableTransformStore() {
+        if (transformStore != null) return;
+        TransformStore store = new TransformStore();
+        for (TransformComponent transform : dominion.findCompositionsWith(TransformComponent.class)) {
+            store.attach(transform);
+        }
+        lifecycle.addListener(store);
+        physicsSystem.setTransformStore(store);
+        entityFactory.setTransformStore(store); // Pooled instances are attached as they spawn
+        transformStore = store;
+    }
+
+    /**
+     * Shows or hides the per-system timing overlay. Has no effect in headless mode.
+     */
+    public void setProfilerOverlayVisible(boolean visible) {
+        if (renderingSystem != null) {
+            renderingSystem.setProfilerOverlay(visible ? profiler : null);
+        }
     }
 
     public void setCameraTarget(Entity target) {
@@ -157,11 +581,35 @@ public class GameEngine {
     }
 
     // Getters (Removed unnecessary setters)
+    /**
+     * Returns the engine's ECS. Entities with a {@link PhysicsComponent} must be created through
+     * {@link #getLifecycle()} instead, or their body is never built.
+     */
     public Dominion getDominion() { return dominion; }
     public World getPhysicsWorld() { return physicsWorld; }
     public Scheduler getScheduler() { return scheduler; }
+    public GameLoop getGameLoop() { return gameLoop; }
     public JFrame getWindow() { return window; }
     public Canvas getCanvas() { return canvas; }
     public Entity getPlayer() { return player; }
+    public Level getLevel() { return level; }
     public Entity getCamera() { return camera; }
+    public boolean isHeadless() { return headless; }
+    public SystemProfiler getProfiler() { return profiler; }
+    public ImageCache getImageCache() { return imageCache; }
+    public InputHandler getInputHandler() { return inputHandler; }
+    public SystemGraph getSystemGraph() { return systemGraph; }
+    public ChunkStreamer getChunkStreamer() { return chunkStreamer; }
+    /** Returns what entities are created and destroyed through so systems are told. Use it on the tick thread only. */
+    public EntityLifecycle getLifecycle() { return lifecycle; }
+    /** Returns the store transforms are kept in, or null unless {@link #enableTransformStore()} was called. */
+    public TransformStore getTransformStore() { return transformStore; }
+    /** Returns the physics system, whose tick transforms record when they changed on. */
+    public PhysicsSystem getPhysicsSystem() { return physicsSystem; }
+    /** Returns the factory prefabs are defined in and spawned from. Use it on the tick thread only. */
+    public EntityFactory getEntityFactory() { return entityFactory; }
+    public long getSeed() { return seed; }
+    /** Returns the simulation's random generator. Systems must draw from it only on the tick thread. */
+    public Random getRandom() { return random; }
+    public long getTickCount() { return tickCount; }
 }
\ No newline at end of file
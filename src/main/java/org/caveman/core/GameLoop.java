@@ -0,0 +1,109 @@
+package org.caveman.core;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A fixed-timestep game loop. Real time is accumulated and the simulation is advanced in whole
+ * steps of {@code stepSeconds}, with at most {@code maxStepsPerFrame} catch-up steps per frame so a
+ * slow frame cannot drag the loop into a spiral. Between steps a frame is rendered with the
+ * interpolation factor {@code accumulator / step}, which lets rendering run at display rate or
+ * drop frames without changing the simulation.
+ */
+public class GameLoop implements Runnable {
+    // Frames longer than this (debugger pauses, window drags) are clamped instead of simulated.
+    private static final double MAX_FRAME_SECONDS = 0.25;
+
+    /**
+     * Draws one frame.
+     */
+    public interface FrameRenderer {
+        /**
+         * @param alpha how far the simulation has progressed from the previous to the current step (0 to 1)
+         */
+        void render(float alpha);
+    }
+
+    private final double stepSeconds;
+    private final int maxStepsPerFrame;
+    private final long minFrameNanos;
+    private final Runnable simulationStep;
+    private final FrameRenderer renderer;
+    private volatile boolean running;
+    private volatile long droppedSteps; // Written by the loop thread only, read from any thread
+
+    /**
+     * @param stepSeconds      the fixed simulation time step
+     * @param maxStepsPerFrame the catch-up limit: simulation steps allowed before a frame is rendered
+     * @param targetFps        the render rate cap, or 0 to render as fast as possible
+     * @param simulationStep   advances the simulation by exactly one step
+     * @param renderer         draws an interpolated frame
+     */
+    public GameLoop(double stepSeconds, int maxStepsPerFrame, int targetFps,
+                    Runnable simulationStep, FrameRenderer renderer) {
+        this.stepSeconds = stepSeconds;
+        this.maxStepsPerFrame = maxStepsPerFrame;
+        this.minFrameNanos = targetFps > 0 ? 1_000_000_000L / targetFps : 0;
+        this.simulationStep = simulationStep;
+        this.renderer = renderer;
+    }
+
+    public void start() {
+        running = true;
+        new Thread(this, "game-loop").start();
+    }
+
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public void run() {
+        long previous = System.nanoTime();
+        double accumulator = 0;
+
+        while (running) {
+            long frameStart = System.nanoTime();
+            double frameSeconds = Math.min((frameStart - previous) / 1e9, MAX_FRAME_SECONDS);
+            previous = frameStart;
+            accumulator += frameSeconds;
+
+            int steps = 0;
+            while (accumulator >= stepSeconds && steps < maxStepsPerFrame) {
+                simulationStep.run();
+                accumulator -= stepSeconds;
+                steps++;
+            }
+            // Catch-up limit reached: drop the backlog but keep the partial step for interpolation.
+            if (accumulator >= stepSeconds) {
+                long dropped = (long) (accumulator / stepSeconds);
+                droppedSteps += dropped;
+                accumulator -= dropped * stepSeconds;
+            }
+
+            renderer.render((float) (accumulator / stepSeconds));
+
+            if (minFrameNanos > 0) {
+                long wakeUp = frameStart + minFrameNanos;
+                long remaining;
+                while (running && (remaining = wakeUp - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(remaining);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of simulation steps skipped because the catch-up limit was hit.
+     */
+    public long getDroppedSteps() {
+        return droppedSteps;
+    }
+
+    public double getStepSeconds() {
+        return stepSeconds;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+}
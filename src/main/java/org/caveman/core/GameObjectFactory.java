@@ -9,14 +9,91 @@ import org.jbox2d.common.Vec2;
 import org.jbox2d.dynamics.*;
 
 import java.awt.*;
+import java.util.Arrays;
 
 import static org.caveman.core.GameEngine.PIXELS_PER_METER;
 
 public class GameObjectFactory {
 
+    /**
+     * The components and body definition of an entity that does not exist yet. Building one only
+     * allocates, so it can be done on any thread; {@link #create(Dominion, World, Blueprint)} then
+     * adds it to the dominion and world, which must happen on the tick thread. A blueprint is
+     * created once: its components become the entity's.
+     */
+    public static final class Blueprint {
+        private Object[] components;
+        private final BodyDef bodyDef;
+        private final FixtureDef fixtureDef;
+
+        Blueprint(BodyDef bodyDef, FixtureDef fixtureDef, Object... components) {
+            this.bodyDef = bodyDef;
+            this.fixtureDef = fixtureDef;
+            this.components = components;
+        }
+
+        /**
+         * Adds a component to the entity.
+         */
+        public Blueprint with(Object component) {
+            components = Arrays.copyOf(components, components.length + 1);
+            components[components.length - 1] = component;
+            return this;
+        }
+
+        public Object[] getComponents() {
+            return components;
+        }
+
+        /**
+         * Returns the definition of the entity's body, or null if it has none.
+         */
+        public BodyDef getBodyDef() {
+            return bodyDef;
+        }
+
+        public FixtureDef getFixtureDef() {
+            return fixtureDef;
+        }
+    }
+
+    /**
+     * Creates the blueprint's entity and, if it has one, its body. The body and fixture point back
+     * at the entity.
+     */
+    public static Entity create(Dominion dominion, World physicsWorld, Blueprint blueprint) {
+        return attachBody(dominion.createEntity(blueprint.components), physicsWorld, blueprint);
+    }
+
+    /**
+     * Creates the blueprint's entity through the given lifecycle, so its listeners are told, and
+     * its body if it has one.
+     */
+    public static Entity create(EntityLifecycle lifecycle, World physicsWorld, Blueprint blueprint) {
+        return attachBody(lifecycle.create(blueprint.components), physicsWorld, blueprint);
+    }
+
+    private static Entity attachBody(Entity entity, World physicsWorld, Blueprint blueprint) {
+        if (blueprint.bodyDef != null) {
+            Body body = physicsWorld.createBody(blueprint.bodyDef);
+            body.setUserData(entity);
+            Fixture fixture = body.createFixture(blueprint.fixtureDef);
+            fixture.setUserData(entity);
+
+            entity.get(PhysicsComponent.class).setBody(body);
+        }
+        return entity;
+    }
+
     public static Entity createPlayer(Dominion dominion, World physicsWorld, float speed, float jumpForce,
                                       float posX, float posY, float width, float height,
                                       Color color) {
+        return create(dominion, physicsWorld, playerBlueprint(speed, jumpForce, posX, posY, width, height, color));
+    }
+
+    public static Blueprint playerBlueprint(float speed, float jumpForce,
+                                            float posX, float posY, float width, float height,
+                                            Color color) {
         BodyDef bodyDef = new BodyDef();
         bodyDef.type = BodyType.DYNAMIC;
         bodyDef.fixedRotation = true;
@@ -31,7 +108,7 @@ public class GameObjectFactory {
         fixtureDef.density = 1.0f;
         fixtureDef.restitution = 0.0f;
 
-        Entity player = dominion.createEntity(
+        return new Blueprint(bodyDef, fixtureDef,
                 new TransformComponent(posX, posY),
                 new SpriteComponent(color, (int) ((width) * PIXELS_PER_METER), (int) ((height) * PIXELS_PER_METER)),
                 new PhysicsComponent(bodyDef, fixtureDef),
@@ -39,14 +116,6 @@ public class GameObjectFactory {
                 new MovementController(speed, jumpForce),
                 new CollisionComponent()
         );
-
-        Body body = physicsWorld.createBody(bodyDef);
-        Fixture fixture = body.createFixture(fixtureDef);
-        fixture.setUserData(player);
-
-        player.get(PhysicsComponent.class).setBody(body);
-
-        return player;
     }
 
     public static Entity createGround(
@@ -77,6 +146,16 @@ public class GameObjectFactory {
             float sizeX,
             float sizeY,
             Color color
+    ) {
+        return create(dominion, physicsWorld, obstacleBlueprint(posX, posY, sizeX, sizeY, color));
+    }
+
+    public static Blueprint obstacleBlueprint(
+            float posX,
+            float posY,
+            float sizeX,
+            float sizeY,
+            Color color
     ) {
         BodyDef boxDef = new BodyDef();
         boxDef.type = BodyType.STATIC;
@@ -89,26 +168,34 @@ public class GameObjectFactory {
         FixtureDef boxFixture = new FixtureDef();
         boxFixture.shape = boxShape;
 
-        Entity obstacle = dominion.createEntity(
+        return new Blueprint(boxDef, boxFixture,
                 new TransformComponent(posX/2, posY/2),
                 new SpriteComponent(color, (int) (sizeX *PIXELS_PER_METER), (int) (sizeY * PIXELS_PER_METER)),
                 new PhysicsComponent(boxDef, boxFixture),
                 new CollisionComponent(),
                 new Tags.GroundTag()
         );
+    }
 
-        Body body = physicsWorld.createBody(boxDef);
-        Fixture fixture = body.createFixture(boxFixture);
-        fixture.setUserData(obstacle);
-
-        obstacle.get(PhysicsComponent.class).setBody(body);
-
-        return obstacle;
+    /**
+     * Creates a tilemap entity. Its body is created by the tilemap system on the next tick; the
+     * tiles count as ground for players landing on them.
+     */
+    public static Entity createTilemap(Dominion dominion, TilemapComponent tilemap) {
+        return dominion.createEntity(tilemap, new CollisionComponent(), new Tags.GroundTag());
     }
+
     public static Entity createLight(
             Dominion dominion,
             float posX,
             float posY
+    ) {
+        return create(dominion, null, lightBlueprint(posX, posY)); // No body, so no world needed
+    }
+
+    public static Blueprint lightBlueprint(
+            float posX,
+            float posY
     ) {
         // Define some example light properties.
         Color lightColor = new Color(255, 255, 180); // A warm light color.
@@ -118,13 +205,11 @@ public class GameObjectFactory {
         float pulseSpeed = 2.0f;    // Speed of pulsation.
         float pulseAmplitude = 0.1f; // Amplitude of pulsation.
 
-        // Create the light entity with a TransformComponent and a LightEmitterComponent.
-        Entity light = dominion.createEntity(
+        // The light entity has a TransformComponent and a LightEmitterComponent, and no body.
+        return new Blueprint(null, null,
                 new TransformComponent(posX, posY),
                 new LightEmitterComponent(lightColor, range, rays, baseIntensity, pulseSpeed, pulseAmplitude)
         );
-
-        return light;
     }
 
-}
\ No newline at end of file
+}
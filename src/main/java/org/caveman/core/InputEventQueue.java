@@ -0,0 +1,125 @@
+package org.caveman.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free single-producer, single-consumer ring of timestamped input events. The AWT event
+ * thread offers events as they arrive and the simulation drains them once per tick. Events are
+ * kept in parallel primitive arrays, so neither side allocates. When the ring is full, new events
+ * are dropped and counted rather than blocking the event thread.
+ */
+public class InputEventQueue {
+    public static final int KEY_DOWN = 0;
+    public static final int KEY_UP = 1;
+    public static final int MOUSE_DOWN = 2;
+    public static final int MOUSE_UP = 3;
+    public static final int MOUSE_MOVE = 4;
+    /** Focus was lost; every held key and button counts as released. */
+    public static final int FOCUS_LOST = 5;
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final int mask;
+    private final byte[] types;
+    private final int[] codes;
+    private final int[] xs;
+    private final int[] ys;
+    private final long[] times;
+    // Written by the consumer and the producer respectively, read by the other side
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    public InputEventQueue() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the number of events the ring holds, rounded up to a power of two
+     */
+    public InputEventQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mask = size - 1;
+        types = new byte[size];
+        codes = new int[size];
+        xs = new int[size];
+        ys = new int[size];
+        times = new long[size];
+    }
+
+    /**
+     * Appends an event. Must only be called from the producer thread.
+     *
+     * @param type one of the event type constants
+     * @param code the key code or mouse button, 0 if the type has none
+     * @param x    the pointer x position in canvas pixels, 0 for key events
+     * @param y    the pointer y position in canvas pixels, 0 for key events
+     * @param time the {@link System#nanoTime()} the event arrived at
+     * @return false if the ring was full and the event was dropped
+     */
+    public boolean offer(int type, int code, int x, int y, long time) {
+        long t = tail.get();
+        if (t - head.get() > mask) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        int i = (int) t & mask;
+        types[i] = (byte) type;
+        codes[i] = code;
+        xs[i] = x;
+        ys[i] = y;
+        times[i] = time;
+        tail.lazySet(t + 1); // Publishes the slot
+        return true;
+    }
+
+    /**
+     * Returns the number of events ready to be read. Must only be called from the consumer thread;
+     * the events up to this count stay valid until they are {@link #discard(int) discarded}.
+     */
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    public int getType(int index) {
+        return types[slot(index)];
+    }
+
+    public int getCode(int index) {
+        return codes[slot(index)];
+    }
+
+    public int getX(int index) {
+        return xs[slot(index)];
+    }
+
+    public int getY(int index) {
+        return ys[slot(index)];
+    }
+
+    public long getTime(int index) {
+        return times[slot(index)];
+    }
+
+    /**
+     * Frees the first {@code count} events for the producer.
+     */
+    public void discard(int count) {
+        head.lazySet(head.get() + count);
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Returns the number of events dropped because the ring was full.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    private int slot(int index) {
+        return (int) (head.get() + index) & mask;
+    }
+}
@@ -1,47 +1,346 @@
 package org.caveman.core;
 
-import javax.swing.*;
 import java.awt.*;
-import java.awt.event.KeyEvent;
-import java.util.HashSet;
-import java.util.Set;
-
 import java.awt.event.*;
-import java.util.Collections;
-
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
+/**
+ * Collects keyboard and mouse input from AWT and presents it to the simulation one tick at a time.
+ * The listeners only append events to an {@link InputEventQueue}; {@link #poll()} drains it once
+ * per tick into bit sets of held keys and of the keys pressed and released during the tick. Reads
+ * between two polls see the same state and cost a bit test, and a key pressed and released within
+ * one tick still shows up as pressed.
+ * <p>
+ * Keys can be bound to named {@link Action actions}, so systems ask for "jump" rather than for
+ * the space bar.
+ */
 public class InputHandler {
-    private static final Set<Integer> pressedKeys = Collections.synchronizedSet(new HashSet<>());
+    private static final int KEY_CODES = 1 << 16;
+
+    private final InputEventQueue queue;
+    private final long[] keysDown = new long[KEY_CODES >>> 6];
+    private final long[] keysPressed = new long[KEY_CODES >>> 6];
+    private final long[] keysReleased = new long[KEY_CODES >>> 6];
+    private long buttonsDown;
+    private long buttonsPressed;
+    private long buttonsReleased;
+    private int mouseX;
+    private int mouseY;
+    private boolean focusLost;
+    private final Map<String, Action> actions = new HashMap<>();
+    // The events applied by the last poll
+    private int[] eventTypes = new int[64];
+    private int[] eventCodes = new int[64];
+    private int[] eventXs = new int[64];
+    private int[] eventYs = new int[64];
+    private long[] eventTimes = new long[64];
+    private int eventCount;
+
+    /**
+     * A named action triggered by any of the keys bound to it.
+     */
+    public static final class Action {
+        private final String name;
+        private int[] keyCodes = new int[0];
+
+        private Action(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int[] getKeyCodes() {
+            return keyCodes.clone();
+        }
+    }
+
+    public InputHandler() {
+        this(new InputEventQueue());
+    }
 
-    public static void setup(Component frame) {
-        KeyListener keyListener = new KeyListener() {
+    public InputHandler(InputEventQueue queue) {
+        this.queue = queue;
+    }
+
+    /**
+     * Starts listening to the keyboard, mouse and focus events of the component. The listeners
+     * run on the AWT event thread, which is the queue's only producer.
+     */
+    public void attach(Component component) {
+        component.addKeyListener(new KeyAdapter() {
             @Override
             public void keyPressed(KeyEvent e) {
-                if (!pressedKeys.contains(e.getKeyCode())) {
-                    System.out.println("Key Pressed: " + KeyEvent.getKeyText(e.getKeyCode()));
-                    pressedKeys.add(e.getKeyCode());
-                }
+                queue.offer(InputEventQueue.KEY_DOWN, e.getKeyCode(), 0, 0, System.nanoTime());
             }
 
             @Override
             public void keyReleased(KeyEvent e) {
-                pressedKeys.remove(e.getKeyCode());
+                queue.offer(InputEventQueue.KEY_UP, e.getKeyCode(), 0, 0, System.nanoTime());
+            }
+        });
+        component.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                queue.offer(InputEventQueue.MOUSE_DOWN, e.getButton(), e.getX(), e.getY(), System.nanoTime());
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                queue.offer(InputEventQueue.MOUSE_UP, e.getButton(), e.getX(), e.getY(), System.nanoTime());
+            }
+        });
+        component.addMouseMotionListener(new MouseMotionAdapter() {
+            @Override
+            public void mouseMoved(MouseEvent e) {
+                queue.offer(InputEventQueue.MOUSE_MOVE, 0, e.getX(), e.getY(), System.nanoTime());
             }
 
             @Override
-            public void keyTyped(KeyEvent e) {
-                // Optional: Handle typed events if needed
+            public void mouseDragged(MouseEvent e) {
+                queue.offer(InputEventQueue.MOUSE_MOVE, 0, e.getX(), e.getY(), System.nanoTime());
+            }
+        });
+        component.addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusLost(FocusEvent e) {
+                queue.offer(InputEventQueue.FOCUS_LOST, 0, 0, 0, System.nanoTime());
+            }
+        });
+    }
+
+    /**
+     * Binds keys to the named action, in addition to the keys already bound to it.
+     *
+     * @return the action, created if it did not exist
+     */
+    public Action bind(String name, int... keyCodes) {
+        Action action = getAction(name);
+        int[] bound = Arrays.copyOf(action.keyCodes, action.keyCodes.length + keyCodes.length);
+        System.arraycopy(keyCodes, 0, bound, action.keyCodes.length, keyCodes.length);
+        action.keyCodes = bound;
+        return action;
+    }
+
+    /**
+     * Removes every key bound to the named action. The action itself stays valid.
+     */
+    public void unbind(String name) {
+        getAction(name).keyCodes = new int[0];
+    }
+
+    /**
+     * Returns the named action, creating it without bindings if it does not exist yet, so systems
+     * can look up their actions before the keys are bound.
+     */
+    public Action getAction(String name) {
+        return actions.computeIfAbsent(name, Action::new);
+    }
+
+    /**
+     * Applies the events queued since the last poll. Clears the pressed and released edges of the
+     * previous tick first. Call once per tick, before any system reads input.
+     */
+    public void poll() {
+        clearEdges();
+        int count = queue.size();
+        ensureEventCapacity(count);
+        for (int i = 0; i < count; i++) {
+            eventTypes[i] = queue.getType(i);
+            eventCodes[i] = queue.getCode(i);
+            eventXs[i] = queue.getX(i);
+            eventYs[i] = queue.getY(i);
+            eventTimes[i] = queue.getTime(i);
+            apply(eventTypes[i], eventCodes[i], eventXs[i], eventYs[i]);
+        }
+        eventCount = count;
+        queue.discard(count);
+    }
+
+    private void clearEdges() {
+        if (focusLost) {
+            Arrays.fill(keysReleased, 0);
+            focusLost = false;
+        }
+        for (int i = 0; i < eventCount; i++) {
+            int type = eventTypes[i];
+            if ((type == InputEventQueue.KEY_DOWN || type == InputEventQueue.KEY_UP) && isKeyCode(eventCodes[i])) {
+                int word = eventCodes[i] >>> 6;
+                keysPressed[word] = 0;
+                keysReleased[word] = 0;
+            }
+        }
+        buttonsPressed = 0;
+        buttonsReleased = 0;
+    }
+
+    private void apply(int type, int code, int x, int y) {
+        switch (type) {
+            case InputEventQueue.KEY_DOWN -> {
+                if (!isKeyCode(code) || isKeyDown(code)) return; // Auto-repeat of a held key
+                long bit = 1L << code;
+                keysDown[code >>> 6] |= bit;
+                keysPressed[code >>> 6] |= bit;
+            }
+            case InputEventQueue.KEY_UP -> {
+                if (!isKeyCode(code) || !isKeyDown(code)) return;
+                long bit = 1L << code;
+                keysDown[code >>> 6] &= ~bit;
+                keysReleased[code >>> 6] |= bit;
+            }
+            case InputEventQueue.MOUSE_DOWN -> {
+                mouseX = x;
+                mouseY = y;
+                if (code < 0 || code >= 64 || isButtonDown(code)) return;
+                buttonsDown |= 1L << code;
+                buttonsPressed |= 1L << code;
+            }
+            case InputEventQueue.MOUSE_UP -> {
+                mouseX = x;
+                mouseY = y;
+                if (code < 0 || code >= 64 || !isButtonDown(code)) return;
+                buttonsDown &= ~(1L << code);
+                buttonsReleased |= 1L << code;
             }
-        };
+            case InputEventQueue.MOUSE_MOVE -> {
+                mouseX = x;
+                mouseY = y;
+            }
+            case InputEventQueue.FOCUS_LOST -> {
+                for (int i = 0; i < keysDown.length; i++) {
+                    keysReleased[i] |= keysDown[i];
+                    keysDown[i] = 0;
+                }
+                buttonsReleased |= buttonsDown;
+                buttonsDown = 0;
+                focusLost = true;
+            }
+            default -> { }
+        }
+    }
+
+    private void ensureEventCapacity(int count) {
+        if (count <= eventTypes.length) return;
+        int capacity = Math.max(count, eventTypes.length * 2);
+        eventTypes = Arrays.copyOf(eventTypes, capacity);
+        eventCodes = Arrays.copyOf(eventCodes, capacity);
+        eventXs = Arrays.copyOf(eventXs, capacity);
+        eventYs = Arrays.copyOf(eventYs, capacity);
+        eventTimes = Arrays.copyOf(eventTimes, capacity);
+    }
+
+    private static boolean isKeyCode(int code) {
+        return code >= 0 && code < KEY_CODES;
+    }
+
+    /**
+     * Returns true if the key is held at the end of the tick.
+     */
+    public boolean isKeyDown(int keyCode) {
+        return isKeyCode(keyCode) && (keysDown[keyCode >>> 6] & (1L << keyCode)) != 0;
+    }
+
+    /**
+     * Returns true if the key went down during the tick, even if it was released again.
+     */
+    public boolean wasKeyPressed(int keyCode) {
+        return isKeyCode(keyCode) && (keysPressed[keyCode >>> 6] & (1L << keyCode)) != 0;
+    }
+
+    /**
+     * Returns true if the key was released during the tick.
+     */
+    public boolean wasKeyReleased(int keyCode) {
+        return isKeyCode(keyCode) && (keysReleased[keyCode >>> 6] & (1L << keyCode)) != 0;
+    }
+
+    /**
+     * Returns true if any key bound to the action is held.
+     */
+    public boolean isDown(Action action) {
+        for (int keyCode : action.keyCodes) {
+            if (isKeyDown(keyCode)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if any key bound to the action went down during the tick.
+     */
+    public boolean wasPressed(Action action) {
+        for (int keyCode : action.keyCodes) {
+            if (wasKeyPressed(keyCode)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if any key bound to the action was released during the tick.
+     */
+    public boolean wasReleased(Action action) {
+        for (int keyCode : action.keyCodes) {
+            if (wasKeyReleased(keyCode)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param button the AWT mouse button number, such as {@link MouseEvent#BUTTON1}
+     */
+    public boolean isButtonDown(int button) {
+        return button >= 0 && button < 64 && (buttonsDown & (1L << button)) != 0;
+    }
+
+    public boolean wasButtonPressed(int button) {
+        return button >= 0 && button < 64 && (buttonsPressed & (1L << button)) != 0;
+    }
+
+    public boolean wasButtonReleased(int button) {
+        return button >= 0 && button < 64 && (buttonsReleased & (1L << button)) != 0;
+    }
+
+    public int getMouseX() {
+        return mouseX;
+    }
+
+    public int getMouseY() {
+        return mouseY;
+    }
+
+    /**
+     * Returns the number of events applied by the last poll, in the order they arrived.
+     */
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    public int getEventType(int i) {
+        return eventTypes[i];
+    }
+
+    public int getEventCode(int i) {
+        return eventCodes[i];
+    }
+
+    public int getEventX(int i) {
+        return eventXs[i];
+    }
 
-        frame.addKeyListener(keyListener);
+    public int getEventY(int i) {
+        return eventYs[i];
     }
 
-    public static boolean isKeyPressed(int keyCode) {
-        return pressedKeys.contains(keyCode);
+    /**
+     * Returns the {@link System#nanoTime()} the i-th event of the tick arrived at.
+     */
+    public long getEventTime(int i) {
+        return eventTimes[i];
     }
 
-    public static void clearPressedKeys() {
-        pressedKeys.clear();
+    public InputEventQueue getQueue() {
+        return queue;
     }
 }
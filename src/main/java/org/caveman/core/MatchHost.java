@@ -0,0 +1,279 @@
+package org.caveman.core;
+
+import org.caveman.core.profiling.SystemStats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs many independent matches in one JVM. Each match is a headless {@link GameEngine} of its
+ * own, and a fixed set of worker threads steps all of them at the engine's tick rate.
+ * <p>
+ * Scheduling is earliest deadline first. Every match is due one tick period after its previous
+ * tick was due. A free worker always takes the match that has been due the longest, runs exactly
+ * one tick, and puts it back with its next deadline. A match that falls behind is served before
+ * matches that are on time. It still cannot take a worker for more than one tick while another
+ * match is waiting. When the host is overloaded, all matches slow down evenly instead of some
+ * starving. A match that falls more than {@link #MAX_CATCH_UP_TICKS} ticks behind drops the
+ * backlog, as the {@link GameLoop} does, so it does not steal workers to catch up.
+ * <p>
+ * Every match records how late each of its ticks started, next to the tick timings of its engine's
+ * profiler. Level chunks of every match are prepared on a loader pool shared by the host.
+ */
+public class MatchHost implements AutoCloseable {
+    public static final int MAX_CATCH_UP_TICKS = 5;
+
+    private final long periodNanos;
+    private final DelayQueue<Match> queue = new DelayQueue<>();
+    private final List<Match> matches = new CopyOnWriteArrayList<>();
+    private final Thread[] workers;
+    private final ExecutorService chunkLoader;
+    private final AtomicLong nextId = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * A match stepped by the host. Its engine is ticked on the host's threads, one tick at a time,
+     * so it must only be touched through what is safe to call from other threads, such as the
+     * input queue and snapshot requests.
+     */
+    public final class Match implements Delayed, AutoCloseable {
+        private final long id;
+        private final GameEngine engine;
+        // How late each tick started; ticks that started a whole period late count as overruns
+        private final SystemStats lag;
+        private long dueNanos;
+        private long droppedTicks;
+        private boolean running;
+        private boolean finished;
+        private Throwable failure;
+
+        private Match(long id, GameEngine engine, long dueNanos) {
+            this.id = id;
+            this.engine = engine;
+            this.lag = new SystemStats("lag", periodNanos);
+            this.dueNanos = dueNanos;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public GameEngine getEngine() {
+            return engine;
+        }
+
+        /**
+         * Returns the timing of this match's ticks, as measured by its engine's profiler.
+         */
+        public SystemStats getTickStats() {
+            return engine.getProfiler().getTickStats();
+        }
+
+        /**
+         * Returns how late the ticks of this match started. The overruns are the ticks that
+         * started more than a whole tick late.
+         */
+        public SystemStats getLagStats() {
+            return lag;
+        }
+
+        public long getTickCount() {
+            return lag.getInvocations();
+        }
+
+        /**
+         * Returns the number of ticks skipped because the match fell too far behind.
+         */
+        public synchronized long getDroppedTicks() {
+            return droppedTicks;
+        }
+
+        /**
+         * Returns what a tick of this match threw, which closed it, or null.
+         */
+        public synchronized Throwable getFailure() {
+            return failure;
+        }
+
+        public synchronized boolean isClosed() {
+            return finished;
+        }
+
+        /**
+         * Stops stepping the match and shuts its engine down. A tick in progress is finished first,
+         * on the worker running it.
+         */
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (finished) return;
+                finished = true;
+                if (running) return; // The worker shuts it down after the tick
+            }
+            queue.remove(this);
+            shutDown();
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            Match match = (Match) other;
+            int order = Long.compare(dueNanos, match.dueNanos);
+            return order != 0 ? order : Long.compare(id, match.id);
+        }
+
+        // Runs one tick on a worker. Returns false once the match is closed.
+        private boolean step() {
+            synchronized (this) {
+                if (finished) return false;
+                running = true;
+            }
+            long start = System.nanoTime();
+            long late = Math.max(0, start - dueNanos);
+            lag.record(late, -1);
+            try {
+                engine.tick();
+            } catch (RuntimeException | Error e) {
+                synchronized (this) {
+                    failure = e;
+                    finished = true;
+                }
+            }
+            synchronized (this) {
+                running = false;
+                if (late > MAX_CATCH_UP_TICKS * periodNanos) {
+                    // Too far behind to catch up; start over from now
+                    droppedTicks += late / periodNanos;
+                    dueNanos = start;
+                }
+                dueNanos += periodNanos;
+                if (!finished) return true;
+            }
+            shutDown();
+            return false;
+        }
+
+        private void shutDown() {
+            matches.remove(this);
+            engine.shutDown();
+        }
+
+        @Override
+        public String toString() {
+            return "Match " + id;
+        }
+    }
+
+    /**
+     * Starts a host with the given number of worker threads, stepping matches at the engine's
+     * tick rate.
+     */
+    public MatchHost(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("A match host needs at least one thread: " + threads);
+        }
+        this.periodNanos = Math.round(GameEngine.getDeltaTime() * 1e9);
+        this.chunkLoader = Executors.newFixedThreadPool(threads, daemonThreads("match-chunk-loader"));
+        this.workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(this::work, "match-host-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Creates a match and starts stepping it. The engine is built on the calling thread.
+     *
+     * @param seed the seed of the match's random generator
+     * @throws IllegalStateException if the host is closed
+     */
+    public Match open(long seed) {
+        if (closed) {
+            throw new IllegalStateException("The match host is closed");
+        }
+        Match match = new Match(nextId.incrementAndGet(), new GameEngine(seed, chunkLoader), System.nanoTime());
+        matches.add(match);
+        queue.put(match);
+        return match;
+    }
+
+    /**
+     * Returns the open matches, in the order they were opened.
+     */
+    public List<Match> getMatches() {
+        return Collections.unmodifiableList(new ArrayList<>(matches));
+    }
+
+    public int getMatchCount() {
+        return matches.size();
+    }
+
+    public int getThreadCount() {
+        return workers.length;
+    }
+
+    public long getPeriodNanos() {
+        return periodNanos;
+    }
+
+    /**
+     * Stops the workers once their current tick is done and shuts down every match.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        for (Match match : matches) {
+            match.close();
+        }
+        chunkLoader.shutdown();
+    }
+
+    private void work() {
+        while (!closed) {
+            Match match;
+            try {
+                match = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (match.step()) {
+                queue.put(match);
+            }
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, name + "-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
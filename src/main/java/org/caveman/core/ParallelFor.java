@@ -0,0 +1,183 @@
+package org.caveman.core;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Splits a loop over many entities into chunks of {@link #getGrainSize() grain size} and runs them
+ * on a fork-join pool. The calling thread and up to one helper per pool thread claim chunks from a
+ * shared counter until none are left, so a slow chunk never holds up the others. Loops shorter
+ * than the {@link #getSequentialThreshold() sequential threshold} run on the calling thread, where
+ * handing out work would cost more than it saves.
+ * <p>
+ * An instance keeps its helper tasks and gather buffer from call to call, so it is meant to be
+ * owned by one system and is not reentrant. The action must only touch the entity it is given
+ * and data no other chunk writes.
+ */
+public class ParallelFor {
+    public static final int DEFAULT_GRAIN_SIZE = 1024;
+    public static final int DEFAULT_SEQUENTIAL_THRESHOLD = 16384;
+
+    /**
+     * Processes the indices from {@code from} inclusive to {@code to} exclusive.
+     */
+    @FunctionalInterface
+    public interface RangeAction {
+        void run(int from, int to);
+    }
+
+    private final ForkJoinPool pool;
+    private final ForkJoinTask<?>[] helpers;
+    private final AtomicInteger nextChunk = new AtomicInteger();
+    private final RangeAction eachItem = this::runItems;
+    private int grainSize;
+    private int sequentialThreshold;
+
+    // The loop in progress; published to the helpers by pool.execute.
+    private RangeAction action;
+    private int count;
+    private Object[] items = new Object[64];
+    private Consumer<Object> itemAction;
+
+    public ParallelFor(ForkJoinPool pool) {
+        this(pool, DEFAULT_GRAIN_SIZE, DEFAULT_SEQUENTIAL_THRESHOLD);
+    }
+
+    /**
+     * @param pool                the pool chunks run on
+     * @param grainSize           the number of indices a thread claims at a time
+     * @param sequentialThreshold loops with fewer indices run on the calling thread
+     */
+    public ParallelFor(ForkJoinPool pool, int grainSize, int sequentialThreshold) {
+        this.pool = pool;
+        setGrainSize(grainSize);
+        setSequentialThreshold(sequentialThreshold);
+        helpers = new ForkJoinTask<?>[Math.max(0, pool.getParallelism() - 1)];
+        for (int i = 0; i < helpers.length; i++) {
+            helpers[i] = ForkJoinTask.adapt(this::runChunks);
+        }
+    }
+
+    public int getGrainSize() {
+        return grainSize;
+    }
+
+    public void setGrainSize(int grainSize) {
+        if (grainSize < 1) {
+            throw new IllegalArgumentException("Grain size must be positive: " + grainSize);
+        }
+        this.grainSize = grainSize;
+    }
+
+    public int getSequentialThreshold() {
+        return sequentialThreshold;
+    }
+
+    public void setSequentialThreshold(int sequentialThreshold) {
+        this.sequentialThreshold = Math.max(0, sequentialThreshold);
+    }
+
+    /**
+     * Runs the action over the indices from 0 to {@code count}, in parallel chunks if the loop is
+     * long enough. Returns once every chunk has finished. An exception thrown by a chunk is
+     * rethrown here after the others have finished.
+     */
+    public void forRange(int count, RangeAction action) {
+        int chunks = (int) (((long) count + grainSize - 1) / grainSize);
+        int helperCount = Math.min(helpers.length, chunks - 1);
+        if (count < sequentialThreshold || helperCount <= 0) {
+            if (count > 0) action.run(0, count);
+            return;
+        }
+
+        this.action = action;
+        this.count = count;
+        nextChunk.set(0);
+        for (int i = 0; i < helperCount; i++) {
+            helpers[i].reinitialize();
+            pool.execute(helpers[i]);
+        }
+        RuntimeException failure = null;
+        try {
+            runChunks();
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        for (int i = 0; i < helperCount; i++) {
+            try {
+                helpers[i].join();
+            } catch (RuntimeException e) {
+                if (failure == null) failure = e;
+                else failure.addSuppressed(e);
+            }
+        }
+        this.action = null;
+        if (failure != null) throw failure;
+    }
+
+    /**
+     * Runs the action on the first {@code count} elements of the array.
+     */
+    public <T> void forEach(T[] array, int count, Consumer<? super T> action) {
+        Object[] previous = items;
+        items = array;
+        try {
+            forEachItem(count, action);
+        } finally {
+            items = previous;
+        }
+    }
+
+    /**
+     * Runs the action on every element of a query result. The elements are first gathered into a
+     * buffer on the calling thread, since query results can only be walked in order; iterating a
+     * single component type keeps that pass free of per-entity allocation.
+     */
+    public <T> void forEach(Iterable<? extends T> results, Consumer<? super T> action) {
+        Object[] buffer = items;
+        int size = 0;
+        for (T item : results) {
+            if (size == buffer.length) {
+                buffer = items = Arrays.copyOf(buffer, size * 2);
+            }
+            buffer[size++] = item;
+        }
+        try {
+            forEachItem(size, action);
+        } finally {
+            Arrays.fill(buffer, 0, size, null);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void forEachItem(int count, Consumer<?> action) {
+        itemAction = (Consumer<Object>) action;
+        try {
+            forRange(count, eachItem);
+        } finally {
+            itemAction = null;
+        }
+    }
+
+    private void runItems(int from, int to) {
+        Object[] items = this.items;
+        Consumer<Object> action = itemAction;
+        for (int i = from; i < to; i++) {
+            action.accept(items[i]);
+        }
+    }
+
+    private void runChunks() {
+        RangeAction action = this.action;
+        int count = this.count;
+        int grainSize = this.grainSize;
+        for (int chunk = nextChunk.getAndIncrement(); (long) chunk * grainSize < count;
+             chunk = nextChunk.getAndIncrement()) {
+            int from = chunk * grainSize;
+            action.run(from, Math.min(count, from + grainSize));
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package org.caveman.core;
+
+import dev.dominion.ecs.api.Results;
+import org.caveman.core.profiling.SystemProfiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+
+/**
+ * Runs systems in dependency-ordered stages. Systems are added in their logical order, each with
+ * the component types it reads and writes. A system depends on every earlier system it conflicts
+ * with (one writes a type the other reads or writes) and is placed in the stage after the last of
+ * them. Systems within a stage touch disjoint data, so they run in parallel on a fork-join pool;
+ * the stages themselves run one after the other. The graph is rebuilt lazily after a system is
+ * added. Without a pool every system runs on the calling thread, in stage order, which suits
+ * engines that are stepped side by side on a pool of their own.
+ */
+public class SystemGraph implements Runnable {
+    private final ForkJoinPool pool;
+    private final SystemProfiler profiler;
+    private final List<Node> nodes = new ArrayList<>();
+    private Stage[] stages;
+
+    // The systems of one stage: all but the last are forked, the last runs on the calling thread.
+    private static final class Stage {
+        private final Runnable[] systems;
+        private final ForkJoinTask<?>[] forked;
+        private final Runnable last;
+
+        Stage(List<Runnable> systems) {
+            this.systems = systems.toArray(new Runnable[0]);
+            forked = new ForkJoinTask<?>[systems.size() - 1];
+            for (int i = 0; i < forked.length; i++) {
+                forked[i] = ForkJoinTask.adapt(systems.get(i));
+            }
+            last = systems.get(systems.size() - 1);
+        }
+    }
+
+    private static final class Node {
+        private final String name;
+        private final Runnable system;
+        private final Set<Class<?>> reads;
+        private final Set<Class<?>> writes;
+        private int stage;
+
+        Node(String name, Runnable system, Class<?>[] reads, Class<?>[] writes) {
+            this.name = name;
+            this.system = system;
+            this.reads = new HashSet<>(Arrays.asList(reads));
+            this.writes = new HashSet<>(Arrays.asList(writes));
+        }
+
+        boolean conflictsWith(Node other) {
+            for (Class<?> type : writes) {
+                if (other.writes.contains(type) || other.reads.contains(type)) return true;
+            }
+            for (Class<?> type : reads) {
+                if (other.writes.contains(type)) return true;
+            }
+            return false;
+        }
+    }
+
+    public SystemGraph(ForkJoinPool pool) {
+        this(pool, null);
+    }
+
+    /**
+     * @param pool     the pool parallel stages run on, or null to run every system on the calling thread
+     * @param profiler records every system run under its name, or null to run them unprofiled
+     */
+    public SystemGraph(ForkJoinPool pool, SystemProfiler profiler) {
+        this.pool = pool;
+        this.profiler = profiler;
+    }
+
+    /**
+     * Adds a system that declares its own access.
+     */
+    public <S extends Runnable & ComponentAccess> void add(String name, S system) {
+        add(name, system, null);
+    }
+
+    /**
+     * Adds a system that declares its own access.
+     *
+     * @param query the query the system iterates, sampled for entity counts by the profiler; may be null
+     */
+    public <S extends Runnable & ComponentAccess> void add(String name, S system, Supplier<? extends Results<?>> query) {
+        add(name, system, system.reads(), system.writes(), query);
+    }
+
+    /**
+     * Adds a system with the given access.
+     *
+     * @param reads  the component and resource types the system only reads
+     * @param writes the component and resource types the system modifies
+     * @param query  the query the system iterates, sampled for entity counts by the profiler; may be null
+     */
+    public void add(String name, Runnable system, Class<?>[] reads, Class<?>[] writes, Supplier<? extends Results<?>> query) {
+        for (Node node : nodes) {
+            if (node.name.equals(name)) {
+                throw new IllegalArgumentException("A system named '" + name + "' is already in the graph");
+            }
+        }
+        Runnable runnable = profiler != null ? profiler.wrap(name, system, query) : system;
+        nodes.add(new Node(name, runnable, reads, writes));
+        stages = null;
+    }
+
+    /**
+     * Runs every stage in order. A stage with several systems forks all but one onto the pool and
+     * runs the last on the calling thread. The forked tasks are reused from tick to tick. An
+     * exception thrown by a system is rethrown here once the rest of its stage has finished.
+     * Systems must not be added while the graph runs.
+     */
+    @Override
+    public void run() {
+        Stage[] stages = this.stages;
+        if (stages == null) {
+            stages = build();
+        }
+        for (Stage stage : stages) {
+            if (pool == null) {
+                for (Runnable system : stage.systems) {
+                    system.run();
+                }
+                continue;
+            }
+            if (stage.forked.length == 0) {
+                stage.last.run();
+                continue;
+            }
+            for (ForkJoinTask<?> task : stage.forked) {
+                task.reinitialize();
+                pool.execute(task);
+            }
+            RuntimeException failure = null;
+            try {
+                stage.last.run();
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+            for (ForkJoinTask<?> task : stage.forked) {
+                try {
+                    task.join();
+                } catch (RuntimeException e) {
+                    if (failure == null) failure = e;
+                    else failure.addSuppressed(e);
+                }
+            }
+            if (failure != null) throw failure;
+        }
+    }
+
+    /**
+     * Returns the system names of every stage, in execution order.
+     */
+    public List<List<String>> getStages() {
+        if (stages == null) {
+            build();
+        }
+        List<List<String>> names = new ArrayList<>();
+        for (Node node : nodes) {
+            while (names.size() <= node.stage) {
+                names.add(new ArrayList<>());
+            }
+            names.get(node.stage).add(node.name);
+        }
+        return names;
+    }
+
+    private Stage[] build() {
+        int stageCount = 0;
+        for (int i = 0; i < nodes.size(); i++) {
+            Node node = nodes.get(i);
+            node.stage = 0;
+            for (int j = 0; j < i; j++) {
+                Node earlier = nodes.get(j);
+                if (node.conflictsWith(earlier)) {
+                    node.stage = Math.max(node.stage, earlier.stage + 1);
+                }
+            }
+            stageCount = Math.max(stageCount, node.stage + 1);
+        }
+
+        List<List<Runnable>> grouped = new ArrayList<>();
+        for (int i = 0; i < stageCount; i++) {
+            grouped.add(new ArrayList<>());
+        }
+        for (Node node : nodes) {
+            grouped.get(node.stage).add(node.system);
+        }
+        Stage[] built = new Stage[stageCount];
+        for (int i = 0; i < stageCount; i++) {
+            built[i] = new Stage(grouped.get(i));
+        }
+        stages = built;
+        return built;
+    }
+}
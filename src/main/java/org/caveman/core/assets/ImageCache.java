@@ -0,0 +1,215 @@
+package org.caveman.core.assets;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loads images in the background and keeps them in a least-recently-used cache bounded by the
+ * memory the decoded pixels take. Files are read through a memory-mapped {@link FileChannel} and
+ * decoded on a dedicated loader thread, so a level load never stalls the render thread. Every
+ * image is converted once into the format of the screen's {@link GraphicsConfiguration}, which
+ * lets Java2D blit it without per-frame conversion and cache it in video memory; without a screen
+ * the images are converted to premultiplied ARGB, the fastest software blit source.
+ * <p>
+ * The cache is shared by all entities: sprites reference sub-regions of a cached image through
+ * {@link TextureRegion}s instead of holding images themselves.
+ */
+public class ImageCache {
+    private final long maxBytes;
+    private final GraphicsConfiguration config;
+    private final ExecutorService loader;
+    // Access ordered, so iteration starts at the least recently used image.
+    private final LinkedHashMap<Path, BufferedImage> images = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Path, CompletableFuture<BufferedImage>> pending = new HashMap<>();
+    private long bytes;
+    private int version;
+
+    /**
+     * Creates a cache that converts images for the default screen, if there is one.
+     *
+     * @param maxBytes the memory budget of the decoded images
+     */
+    public ImageCache(long maxBytes) {
+        this(maxBytes, GraphicsEnvironment.isHeadless() ? null
+                : GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration());
+    }
+
+    /**
+     * @param maxBytes the memory budget of the decoded images
+     * @param config   the configuration images are made compatible with, or null for premultiplied ARGB
+     */
+    public ImageCache(long maxBytes, GraphicsConfiguration config) {
+        this.maxBytes = maxBytes;
+        this.config = config;
+        this.loader = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "image-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the cached image, or null if it is not loaded. Counts as a use for the LRU order.
+     */
+    public synchronized BufferedImage getIfPresent(Path path) {
+        return images.get(path);
+    }
+
+    /**
+     * Loads the image in the background, or returns the cached image or pending load for it.
+     *
+     * @param path the image file
+     * @return a future completed on the loader thread, or exceptionally if the file cannot be read
+     */
+    public synchronized CompletableFuture<BufferedImage> load(Path path) {
+        BufferedImage cached = images.get(path);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<BufferedImage> future = pending.get(path);
+        if (future == null) {
+            future = CompletableFuture.supplyAsync(() -> toCompatible(read(path)), loader)
+                    .whenComplete((image, error) -> loaded(path, image));
+            pending.put(path, future);
+        }
+        return future;
+    }
+
+    /**
+     * Runs the given task on the loader thread, after every load submitted before it.
+     */
+    CompletableFuture<Void> runOnLoader(Runnable task) {
+        return CompletableFuture.runAsync(task, loader);
+    }
+
+    /**
+     * Drops every cached image. Loads in progress still complete and are cached.
+     */
+    public synchronized void clear() {
+        for (BufferedImage image : images.values()) {
+            image.flush();
+        }
+        images.clear();
+        bytes = 0;
+        version++;
+    }
+
+    /**
+     * Returns a counter that changes whenever an image is added or evicted, so caches built from
+     * these images know when to rebuild.
+     */
+    public synchronized int getVersion() {
+        return version;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized int size() {
+        return images.size();
+    }
+
+    private synchronized void loaded(Path path, BufferedImage image) {
+        pending.remove(path);
+        if (image == null) return;
+
+        images.put(path, image);
+        bytes += sizeOf(image);
+        version++;
+        // Evict least recently used images, but always keep the one just loaded.
+        Iterator<Map.Entry<Path, BufferedImage>> iterator = images.entrySet().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<Path, BufferedImage> eldest = iterator.next();
+            if (eldest.getValue() == image) continue;
+            bytes -= sizeOf(eldest.getValue());
+            eldest.getValue().flush();
+            iterator.remove();
+        }
+    }
+
+    private static long sizeOf(BufferedImage image) {
+        return (long) image.getWidth() * image.getHeight() * 4;
+    }
+
+    private static BufferedImage read(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            BufferedImage image = ImageIO.read(new ByteBufferInputStream(buffer));
+            if (image == null) {
+                throw new IOException("Unsupported image format: " + path);
+            }
+            return image;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load image " + path, e);
+        }
+    }
+
+    private BufferedImage toCompatible(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        BufferedImage converted = config != null
+                ? config.createCompatibleImage(width, height, image.getTransparency())
+                : new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = converted.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return converted;
+    }
+
+    // Lets ImageIO decode straight from the mapped file without copying it onto the heap first.
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) return 0;
+            if (!buffer.hasRemaining()) return -1;
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long count) {
+            int skipped = (int) Math.max(0, Math.min(count, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
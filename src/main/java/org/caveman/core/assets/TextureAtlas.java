@@ -0,0 +1,153 @@
+package org.caveman.core.assets;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A packed texture atlas: one image holding many sprites, plus the named regions that locate
+ * them. Sprites drawn from the same atlas share its image, which keeps them in one cache entry
+ * and lets the renderer batch them.
+ * <p>
+ * The descriptor is a text file naming the image, relative to the descriptor, followed by one
+ * region per line as name, x, y, width and height in image pixels. Blank lines and lines
+ * starting with {@code #} are ignored:
+ * <pre>
+ * image: sprites.png
+ * player 0 0 32 32
+ * crate  32 0 16 16
+ * </pre>
+ */
+public final class TextureAtlas {
+    private static final AtomicInteger NEXT_ID = new AtomicInteger(1);
+
+    private final int id = NEXT_ID.getAndIncrement();
+    private final Path descriptor;
+    private final Path imagePath;
+    private final ImageCache cache;
+    private final Map<String, TextureRegion> regions = new LinkedHashMap<>();
+
+    private TextureAtlas(Path descriptor, Path imagePath, ImageCache cache) {
+        this.descriptor = descriptor;
+        this.imagePath = imagePath;
+        this.cache = cache;
+    }
+
+    /**
+     * Reads the descriptor and decodes the atlas image on the cache's loader thread.
+     *
+     * @param descriptor the atlas descriptor file
+     * @param cache      the cache the image is kept in
+     * @return a future completed once the image is loaded, or exceptionally if either file is invalid
+     */
+    public static CompletableFuture<TextureAtlas> load(Path descriptor, ImageCache cache) {
+        CompletableFuture<TextureAtlas> result = new CompletableFuture<>();
+        cache.runOnLoader(() -> {
+            TextureAtlas atlas = parse(descriptor, cache);
+            cache.load(atlas.imagePath).whenComplete((image, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(atlas);
+                }
+            });
+        }).exceptionally(error -> {
+            result.completeExceptionally(error);
+            return null;
+        });
+        return result;
+    }
+
+    /**
+     * Returns the region with the given name, or null if the atlas has none.
+     */
+    public TextureRegion findRegion(String name) {
+        return regions.get(name);
+    }
+
+    public Map<String, TextureRegion> getRegions() {
+        return Collections.unmodifiableMap(regions);
+    }
+
+    /**
+     * Returns the atlas image, or null if it has been evicted from the cache. An evicted image is
+     * reloaded in the background.
+     */
+    public BufferedImage getImage() {
+        BufferedImage image = cache.getIfPresent(imagePath);
+        if (image == null) {
+            cache.load(imagePath);
+        }
+        return image;
+    }
+
+    /**
+     * Returns a small number that identifies the atlas for the lifetime of the process, used by
+     * the renderer to group sprites drawn from the same image.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns the descriptor file the atlas was loaded from.
+     */
+    public Path getDescriptorPath() {
+        return descriptor;
+    }
+
+    public Path getImagePath() {
+        return imagePath;
+    }
+
+    private static TextureAtlas parse(Path descriptor, ImageCache cache) {
+        try (BufferedReader reader = Files.newBufferedReader(descriptor, StandardCharsets.UTF_8)) {
+            TextureAtlas atlas = null;
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.strip();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+
+                if (atlas == null) {
+                    if (!line.startsWith("image:")) {
+                        throw new IllegalArgumentException(descriptor + ":" + lineNumber + ": expected 'image: <file>'");
+                    }
+                    Path image = descriptor.resolveSibling(line.substring("image:".length()).strip());
+                    atlas = new TextureAtlas(descriptor, image, cache);
+                    continue;
+                }
+
+                String[] fields = line.split("\\s+");
+                if (fields.length != 5) {
+                    throw new IllegalArgumentException(descriptor + ":" + lineNumber + ": expected 'name x y width height'");
+                }
+                try {
+                    int x = Integer.parseInt(fields[1]);
+                    int y = Integer.parseInt(fields[2]);
+                    int width = Integer.parseInt(fields[3]);
+                    int height = Integer.parseInt(fields[4]);
+                    atlas.regions.put(fields[0], new TextureRegion(atlas, fields[0], x, y, width, height));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException(descriptor + ":" + lineNumber + ": invalid region bounds", e);
+                }
+            }
+            if (atlas == null) {
+                throw new IllegalArgumentException(descriptor + ": missing 'image: <file>'");
+            }
+            return atlas;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read atlas " + descriptor, e);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package org.caveman.core.assets;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * A named rectangle within the image of a {@link TextureAtlas}, in image pixels. Regions are
+ * lightweight references: any number of sprites can share one, and the pixels stay in the
+ * atlas's {@link ImageCache}.
+ */
+public final class TextureRegion {
+    private final TextureAtlas atlas;
+    private final String name;
+    private final int x, y, width, height;
+
+    TextureRegion(TextureAtlas atlas, String name, int x, int y, int width, int height) {
+        this.atlas = atlas;
+        this.name = name;
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Returns the atlas image, or null while it is not loaded. An evicted image is reloaded in
+     * the background, so callers should draw a placeholder and try again on the next frame.
+     */
+    public BufferedImage getImage() {
+        return atlas.getImage();
+    }
+
+    public TextureAtlas getAtlas() {
+        return atlas;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
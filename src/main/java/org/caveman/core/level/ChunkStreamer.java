@@ -0,0 +1,471 @@
+package org.caveman.core.level;
+
+import dev.dominion.ecs.api.Dominion;
+import dev.dominion.ecs.api.Entity;
+import org.caveman.components.*;
+import org.caveman.core.ComponentAccess;
+import org.caveman.core.EntityLifecycle;
+import org.caveman.core.GameObjectFactory;
+import org.caveman.core.assets.ImageCache;
+import org.caveman.core.snapshot.SnapshotFormat;
+import org.caveman.core.snapshot.WorldSnapshot;
+import org.caveman.systems.ContactEventQueue;
+import org.caveman.systems.SpatialIndex;
+import org.jbox2d.common.Vec2;
+import org.jbox2d.dynamics.Body;
+import org.jbox2d.dynamics.World;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * Keeps only the part of a level around a focus entity, usually the camera, in the world. The
+ * level is split into square chunks by the position of each placement; ground, obstacles and
+ * lights belong to a chunk, players are created once and never unloaded.
+ * <p>
+ * Every tick, chunks within the load radius of the focus that are not loaded are queued. Their
+ * entities are built on a background thread and created on the tick thread a fixed number of
+ * ticks after they were queued, waiting for the background thread if it has not finished by then,
+ * so the world changes on the same ticks in every run and replays stay exact. Chunks further than
+ * the unload radius have their bodies destroyed and entities deleted; the band between the two
+ * radii keeps a focus moving back and forth over a chunk border from reloading the same chunks.
+ * <p>
+ * With a {@link #setSnapshotFormat snapshot format}, an unloaded chunk keeps the state of its
+ * entities, encoded in memory: when it loads again, entities that moved are where they were left,
+ * destroyed ones stay destroyed and bodies keep their velocities. Without one, a reloaded chunk
+ * starts over from its placements in the level. Either way, only entities the streamer created
+ * belong to a chunk; anything else, such as spawned prefab instances, is never unloaded. Saved
+ * chunk states are not part of world snapshots, so {@link #resync()} drops them.
+ * <p>
+ * The placements of the whole level stay in memory as primitive arrays, a few dozen bytes each,
+ * which is far less than the entities and bodies they stand for. Objects belong to the chunk their
+ * center lies in, so anything larger than a chunk should be split in the level file.
+ */
+public class ChunkStreamer implements Runnable, ComponentAccess {
+    public static final float DEFAULT_CHUNK_SIZE = 32f;
+    public static final int DEFAULT_LOAD_RADIUS = 1;
+    public static final int DEFAULT_UNLOAD_RADIUS = 2;
+    public static final int DEFAULT_LOAD_DELAY = 4;
+
+    private static final int BATCH_SIZE = 4096;
+
+    private final Dominion dominion;
+    private final World world;
+    private final float chunkSize;
+    private final int loadRadius;
+    private final int unloadRadius;
+    private int loadDelay = DEFAULT_LOAD_DELAY;
+    private final Map<Long, Placements> chunks = new HashMap<>();
+    // Both in the order chunks were loaded or queued, so every run handles them alike
+    private final Map<Long, List<Entity>> loaded = new LinkedHashMap<>();
+    private final Map<Long, PendingChunk> pending = new LinkedHashMap<>();
+    // The entities of unloaded chunks, restored instead of their placements when they load again
+    private final Map<Long, WorldSnapshot> unloadedStates = new HashMap<>();
+    private SnapshotFormat snapshotFormat;
+    private ImageCache imageCache;
+    private ExecutorService loader;
+    private Executor sharedLoader;
+    private boolean closed;
+    private SpatialIndex spatialIndex;
+    private EntityLifecycle lifecycle;
+    private Entity focus;
+    private long tick;
+
+    // The blueprints are null for a chunk restored from its unloaded state.
+    private record PendingChunk(CompletableFuture<GameObjectFactory.Blueprint[]> blueprints, long dueTick) {
+    }
+
+    public ChunkStreamer(Dominion dominion, World world) {
+        this(dominion, world, DEFAULT_CHUNK_SIZE, DEFAULT_LOAD_RADIUS, DEFAULT_UNLOAD_RADIUS);
+    }
+
+    /**
+     * @param chunkSize    the side of a chunk, in meters
+     * @param loadRadius   how many chunks around the focus chunk are loaded in every direction
+     * @param unloadRadius how far from the focus chunk, in chunks, a chunk has to be to unload; at
+     *                     least the load radius
+     */
+    public ChunkStreamer(Dominion dominion, World world, float chunkSize, int loadRadius, int unloadRadius) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        if (loadRadius < 0 || unloadRadius < loadRadius) {
+            throw new IllegalArgumentException("Expected 0 <= load radius <= unload radius, got "
+                    + loadRadius + " and " + unloadRadius);
+        }
+        this.dominion = dominion;
+        this.world = world;
+        this.chunkSize = chunkSize;
+        this.loadRadius = loadRadius;
+        this.unloadRadius = unloadRadius;
+    }
+
+    @Override
+    public Class<?>[] reads() {
+        return new Class<?>[]{CameraComponent.class};
+    }
+
+    @Override
+    public Class<?>[] writes() {
+        // Loading and unloading create and delete entities with all of these, and destroying a
+        // body reports the end of its contacts to the collision system's event queue.
+        return new Class<?>[]{ChunkComponent.class, TransformComponent.class, SpriteComponent.class,
+                PhysicsComponent.class, CollisionComponent.class, Tags.GroundTag.class,
+                LightEmitterComponent.class, World.class, SpatialIndex.class, ContactEventQueue.class};
+    }
+
+    /**
+     * Removes unloaded entities from the given index, which the physics system adds them to.
+     * Not needed when entities are destroyed through a lifecycle.
+     */
+    public void setSpatialIndex(SpatialIndex spatialIndex) {
+        this.spatialIndex = spatialIndex;
+    }
+
+    /**
+     * Creates and destroys entities through the given lifecycle, so its listeners release what
+     * they hold for unloaded entities. Without one, unloading destroys bodies and deletes
+     * entities directly.
+     */
+    public void setLifecycle(EntityLifecycle lifecycle) {
+        this.lifecycle = lifecycle;
+    }
+
+    /**
+     * Saves the entities of every chunk unloaded from then on with the given format, and restores
+     * them when the chunk loads again instead of rebuilding it from the level. Restoring decodes on
+     * the tick thread, when the chunk is due.
+     *
+     * @param format     the format, or null to rebuild reloaded chunks from the level
+     * @param imageCache the cache sprite atlases are restored from, or null
+     */
+    public void setSnapshotFormat(SnapshotFormat format, ImageCache imageCache) {
+        this.snapshotFormat = format;
+        this.imageCache = imageCache;
+        if (format == null) {
+            unloadedStates.clear();
+        }
+    }
+
+    /**
+     * Sets the entity chunks are loaded around: the position of its camera if it has one,
+     * otherwise its transform.
+     */
+    public void setFocus(Entity focus) {
+        this.focus = focus;
+    }
+
+    public Entity getFocus() {
+        return focus;
+    }
+
+    /**
+     * Sets how many ticks after being queued a chunk is created.
+     */
+    public void setLoadDelay(int ticks) {
+        if (ticks < 0) {
+            throw new IllegalArgumentException("Load delay must not be negative: " + ticks);
+        }
+        this.loadDelay = ticks;
+    }
+
+    /**
+     * Reads the level file, creates its players and loads the chunks around the first one.
+     *
+     * @throws IllegalArgumentException if a line is malformed, with the file and line number
+     */
+    public Level open(Path path) {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return open(reader, path.toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read level " + path, e);
+        }
+    }
+
+    /**
+     * Reads a level from the reader, which is not closed, splits it into chunks, then loads the
+     * chunks around the first player and creates the players, in that order. Levels read
+     * earlier are kept.
+     *
+     * @param source the name reported in errors and in the returned level
+     * @return the players and the entities of the chunks loaded
+     */
+    public Level open(Reader reader, String source) {
+        long start = System.nanoTime();
+        Placements players = new Placements(4);
+        int lineCount = LevelLoader.parse(reader, source, BATCH_SIZE, batch -> {
+            for (int i = 0; i < batch.size(); i++) {
+                if (batch.getKind(i) == Placements.PLAYER) {
+                    batch.copyTo(i, players);
+                } else {
+                    long key = key(chunkCoordinate(batch.getX(i)), chunkCoordinate(batch.getY(i)));
+                    batch.copyTo(i, chunks.computeIfAbsent(key, k -> new Placements(16)));
+                }
+            }
+        });
+        long parsed = System.nanoTime();
+
+        List<Entity> entities = new ArrayList<>();
+        if (players.size() > 0) {
+            loadAround(players.getX(0), players.getY(0));
+        } else {
+            loadAround(0, 0);
+        }
+        for (List<Entity> chunk : loaded.values()) {
+            entities.addAll(chunk);
+        }
+        for (int i = 0; i < players.size(); i++) {
+            entities.add(create(players.blueprint(i)));
+        }
+        return new Level(source, entities, lineCount, parsed - start, System.nanoTime() - parsed);
+    }
+
+    /**
+     * Loads every chunk within the load radius of the position right away, on the calling thread.
+     */
+    public void loadAround(float x, float y) {
+        int centerX = chunkCoordinate(x);
+        int centerY = chunkCoordinate(y);
+        for (int chunkY = centerY - loadRadius; chunkY <= centerY + loadRadius; chunkY++) {
+            for (int chunkX = centerX - loadRadius; chunkX <= centerX + loadRadius; chunkX++) {
+                long key = key(chunkX, chunkY);
+                Placements placements = chunks.get(key);
+                if (placements == null || loaded.containsKey(key)) continue;
+                PendingChunk queued = pending.remove(key);
+                if (queued != null) {
+                    activate(key, queued.blueprints().join());
+                } else {
+                    activate(key, unloadedStates.containsKey(key) ? null : prepare(chunkX, chunkY, placements));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        tick++;
+        Entity focus = this.focus;
+        if (focus == null || focus.isDeleted()) return;
+        CameraComponent camera = focus.get(CameraComponent.class);
+        if (camera != null) {
+            Vec2 position = camera.getPosition();
+            update(position.x, position.y);
+            return;
+        }
+        TransformComponent transform = focus.get(TransformComponent.class);
+        if (transform != null) {
+            update(transform.getX(), transform.getY());
+        }
+    }
+
+    private void update(float x, float y) {
+        int centerX = chunkCoordinate(x);
+        int centerY = chunkCoordinate(y);
+
+        for (Iterator<Map.Entry<Long, List<Entity>>> it = loaded.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Long, List<Entity>> chunk = it.next();
+            if (distance(chunk.getKey(), centerX, centerY) > unloadRadius) {
+                unload(chunk.getKey(), chunk.getValue());
+                it.remove();
+            }
+        }
+        for (Iterator<Map.Entry<Long, PendingChunk>> it = pending.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Long, PendingChunk> chunk = it.next();
+            if (distance(chunk.getKey(), centerX, centerY) > unloadRadius) {
+                chunk.getValue().blueprints().cancel(false);
+                it.remove();
+            }
+        }
+
+        for (int chunkY = centerY - loadRadius; chunkY <= centerY + loadRadius; chunkY++) {
+            for (int chunkX = centerX - loadRadius; chunkX <= centerX + loadRadius; chunkX++) {
+                long key = key(chunkX, chunkY);
+                Placements placements = chunks.get(key);
+                if (placements == null || loaded.containsKey(key) || pending.containsKey(key)) continue;
+                int cx = chunkX;
+                int cy = chunkY;
+                pending.put(key, new PendingChunk(unloadedStates.containsKey(key)
+                        ? CompletableFuture.completedFuture(null) // Due on the same tick as a fresh chunk
+                        : CompletableFuture.supplyAsync(() -> prepare(cx, cy, placements), loader()),
+                        tick + loadDelay));
+            }
+        }
+
+        for (Iterator<Map.Entry<Long, PendingChunk>> it = pending.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Long, PendingChunk> chunk = it.next();
+            if (chunk.getValue().dueTick() <= tick) {
+                activate(chunk.getKey(), chunk.getValue().blueprints().join());
+                it.remove();
+            }
+        }
+    }
+
+    // Builds the entities of a chunk. Runs on the loader thread and touches neither the dominion
+    // nor the world.
+    private static GameObjectFactory.Blueprint[] prepare(int chunkX, int chunkY, Placements placements) {
+        GameObjectFactory.Blueprint[] blueprints = new GameObjectFactory.Blueprint[placements.size()];
+        for (int i = 0; i < blueprints.length; i++) {
+            blueprints[i] = placements.blueprint(i).with(new ChunkComponent(chunkX, chunkY));
+        }
+        return blueprints;
+    }
+
+    // Creates the chunk's entities from the blueprints, or from its unloaded state if they are null.
+    private void activate(long key, GameObjectFactory.Blueprint[] blueprints) {
+        if (blueprints == null) {
+            Function<Object[], Entity> create = lifecycle != null ? lifecycle::create : dominion::createEntity;
+            List<Entity> restored = snapshotFormat.restoreEntities(unloadedStates.remove(key), create, world, imageCache);
+            loaded.put(key, new ArrayList<>(restored));
+            return;
+        }
+        List<Entity> entities = new ArrayList<>(blueprints.length);
+        for (GameObjectFactory.Blueprint blueprint : blueprints) {
+            entities.add(create(blueprint));
+        }
+        loaded.put(key, entities);
+    }
+
+    private Entity create(GameObjectFactory.Blueprint blueprint) {
+        return lifecycle != null
+                ? GameObjectFactory.create(lifecycle, world, blueprint)
+                : GameObjectFactory.create(dominion, world, blueprint);
+    }
+
+    private void unload(long key, List<Entity> entities) {
+        if (snapshotFormat != null) {
+            List<Entity> live = new ArrayList<>(entities.size());
+            for (Entity entity : entities) {
+                if (!entity.isDeleted() && (lifecycle == null || !lifecycle.isDestroyed(entity))) {
+                    live.add(entity);
+                }
+            }
+            unloadedStates.put(key, snapshotFormat.capture(live, world, tick));
+        }
+        for (Entity entity : entities) {
+            if (entity.isDeleted()) continue;
+            if (lifecycle != null) {
+                lifecycle.destroy(entity);
+                continue;
+            }
+            if (spatialIndex != null) {
+                spatialIndex.remove(entity);
+            }
+            PhysicsComponent physics = entity.get(PhysicsComponent.class);
+            Body body = physics != null ? physics.getBody() : null;
+            if (body != null) {
+                world.destroyBody(body);
+            }
+            dominion.deleteEntity(entity);
+        }
+    }
+
+    /**
+     * Rebuilds the set of loaded chunks from the entities that carry a {@link ChunkComponent},
+     * after the world was replaced, for instance by restoring a snapshot. Chunks that were queued
+     * are queued again on the next tick. The saved states of unloaded chunks belong to the world
+     * that was replaced and are dropped, so those chunks start over from the level.
+     */
+    public void resync() {
+        for (PendingChunk chunk : pending.values()) {
+            chunk.blueprints().cancel(false);
+        }
+        pending.clear();
+        loaded.clear();
+        unloadedStates.clear();
+        for (var result : dominion.findEntitiesWith(ChunkComponent.class)) {
+            ChunkComponent chunk = result.comp();
+            loaded.computeIfAbsent(key(chunk.getChunkX(), chunk.getChunkY()), k -> new ArrayList<>())
+                    .add(result.entity());
+        }
+    }
+
+    /**
+     * Prepares chunks on the given executor, for instance one shared by many engines, instead of
+     * on a thread of the streamer's own. {@link #close()} leaves it running.
+     *
+     * @param executor the executor, or null to go back to a thread of the streamer's own
+     */
+    public synchronized void setLoader(Executor executor) {
+        sharedLoader = executor;
+    }
+
+    /**
+     * Stops the background thread. Chunks queued afterwards are loaded when they are due on the
+     * tick thread.
+     */
+    public synchronized void close() {
+        closed = true;
+        if (loader != null) {
+            loader.shutdown(); // Chunks already queued still complete, so nothing waits on them forever
+        }
+    }
+
+    public int getChunkCount() {
+        return chunks.size();
+    }
+
+    public int getLoadedChunkCount() {
+        return loaded.size();
+    }
+
+    public int getPendingChunkCount() {
+        return pending.size();
+    }
+
+    /**
+     * Returns the number of unloaded chunks whose state is kept, see
+     * {@link #setSnapshotFormat(SnapshotFormat, ImageCache)}.
+     */
+    public int getSavedChunkCount() {
+        return unloadedStates.size();
+    }
+
+    public float getChunkSize() {
+        return chunkSize;
+    }
+
+    private synchronized Executor loader() {
+        if (closed) {
+            return Runnable::run;
+        }
+        if (sharedLoader != null) {
+            return sharedLoader;
+        }
+        if (loader == null) {
+            loader = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "chunk-loader");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return loader;
+    }
+
+    private int chunkCoordinate(float meters) {
+        return (int) Math.floor(meters / chunkSize);
+    }
+
+    private static long key(int chunkX, int chunkY) {
+        return ((long) chunkX << 32) | (chunkY & 0xFFFFFFFFL);
+    }
+
+    private static int distance(long key, int chunkX, int chunkY) {
+        return Math.max(Math.abs((int) (key >> 32) - chunkX), Math.abs((int) key - chunkY));
+    }
+}
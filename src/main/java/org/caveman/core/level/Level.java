@@ -0,0 +1,71 @@
+package org.caveman.core.level;
+
+import dev.dominion.ecs.api.Entity;
+import org.caveman.components.Tags;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The entities a {@link LevelLoader} or {@link ChunkStreamer} created, and how long loading took.
+ */
+public final class Level {
+    private final String source;
+    private final List<Entity> entities;
+    private final int lineCount;
+    private final long parseNanos;
+    private final long createNanos;
+
+    Level(String source, List<Entity> entities, int lineCount, long parseNanos, long createNanos) {
+        this.source = source;
+        this.entities = Collections.unmodifiableList(entities);
+        this.lineCount = lineCount;
+        this.parseNanos = parseNanos;
+        this.createNanos = createNanos;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Returns the created entities, in file order.
+     */
+    public List<Entity> getEntities() {
+        return entities;
+    }
+
+    /**
+     * Returns the first player placed in the level, or null if there is none.
+     */
+    public Entity getPlayer() {
+        for (Entity entity : entities) {
+            if (entity.has(Tags.PlayerTag.class)) return entity;
+        }
+        return null;
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Returns the time spent reading and parsing the file, in milliseconds.
+     */
+    public double getParseMillis() {
+        return parseNanos / 1e6;
+    }
+
+    /**
+     * Returns the time spent creating entities and bodies, in milliseconds.
+     */
+    public double getCreateMillis() {
+        return createNanos / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d entities from %d lines, parsed in %.1f ms, created in %.1f ms",
+                source, entities.size(), lineCount, getParseMillis(), getCreateMillis());
+    }
+}
@@ -0,0 +1,256 @@
+package org.caveman.core.level;
+
+import dev.dominion.ecs.api.Dominion;
+import dev.dominion.ecs.api.Entity;
+import org.caveman.core.GameObjectFactory;
+import org.jbox2d.dynamics.World;
+
+import java.awt.*;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Builds a level from a text file through {@link GameObjectFactory}. The file is read one line at
+ * a time and never held in memory as a whole: each line is parsed into a batch of primitive
+ * placements, and full batches are created in one go, which keeps the parser and the ECS and
+ * physics code out of each other's caches.
+ * <p>
+ * Each line places one entity by kind, or by the name of a prefab defined earlier, followed by its
+ * position in meters and optional {@code key=value} properties. A prefab line names a kind and
+ * the properties its placements start from. Blank lines and lines starting with {@code #} are
+ * ignored:
+ * <pre>
+ * prefab crate obstacle w=1 h=1 color=#ff0000
+ * ground 0 10 w=100 h=1 color=pink
+ * crate  10 4
+ * player -3 -3 speed=10 jump=12 color=blue
+ * light  6 6
+ * </pre>
+ * The kinds are {@code ground}, {@code obstacle}, {@code player} and {@code light}; the properties
+ * are {@code w} and {@code h} in meters, {@code color} as a name or {@code #rrggbb}, and
+ * {@code speed} and {@code jump} for players.
+ */
+public class LevelLoader {
+    public static final int DEFAULT_BATCH_SIZE = 4096;
+
+    private static final String[] KINDS = {"ground", "obstacle", "player", "light"};
+    private static final Map<String, Color> NAMED_COLORS = Map.ofEntries(
+            Map.entry("black", Color.BLACK), Map.entry("blue", Color.BLUE), Map.entry("cyan", Color.CYAN),
+            Map.entry("darkgray", Color.DARK_GRAY), Map.entry("gray", Color.GRAY), Map.entry("green", Color.GREEN),
+            Map.entry("lightgray", Color.LIGHT_GRAY), Map.entry("magenta", Color.MAGENTA),
+            Map.entry("orange", Color.ORANGE), Map.entry("pink", Color.PINK), Map.entry("red", Color.RED),
+            Map.entry("white", Color.WHITE), Map.entry("yellow", Color.YELLOW));
+
+    private final Dominion dominion;
+    private final World world;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    // The properties a placement starts from: the defaults of its kind or a prefab.
+    private static final class Template {
+        private final int kind;
+        private float width = 1f;
+        private float height = 1f;
+        private Color color;
+        private float speed = 10f;
+        private float jump = 12f;
+
+        Template(int kind) {
+            this.kind = kind;
+            this.color = switch (kind) {
+                case Placements.GROUND -> Color.PINK;
+                case Placements.PLAYER -> Color.BLUE;
+                default -> Color.RED;
+            };
+        }
+
+        Template(Template other) {
+            this.kind = other.kind;
+            this.width = other.width;
+            this.height = other.height;
+            this.color = other.color;
+            this.speed = other.speed;
+            this.jump = other.jump;
+        }
+    }
+
+    public LevelLoader(Dominion dominion, World world) {
+        this.dominion = dominion;
+        this.world = world;
+    }
+
+    /**
+     * Sets how many placements are parsed before they are created.
+     */
+    public LevelLoader setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Loads the level file.
+     *
+     * @throws IllegalArgumentException if a line is malformed, with the file and line number
+     */
+    public Level load(Path path) {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return load(reader, path.toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read level " + path, e);
+        }
+    }
+
+    /**
+     * Loads a level from the reader, which is not closed.
+     *
+     * @param source the name reported in errors and in the returned level
+     */
+    public Level load(Reader reader, String source) {
+        long start = System.nanoTime();
+        long[] createNanos = new long[1];
+        List<Entity> entities = new ArrayList<>();
+        int lineCount = parse(reader, source, batchSize, batch -> {
+            long createStart = System.nanoTime();
+            for (int i = 0; i < batch.size(); i++) {
+                entities.add(GameObjectFactory.create(dominion, world, batch.blueprint(i)));
+            }
+            createNanos[0] += System.nanoTime() - createStart;
+        });
+        long totalNanos = System.nanoTime() - start;
+        return new Level(source, entities, lineCount, totalNanos - createNanos[0], createNanos[0]);
+    }
+
+    /**
+     * Parses a level from the reader, which is not closed, handing the placements to the consumer
+     * in batches of up to the given size. A batch is cleared and reused once the consumer returns.
+     *
+     * @return the number of lines read
+     */
+    static int parse(Reader reader, String source, int batchSize, Consumer<Placements> consumer) {
+        BufferedReader lines = reader instanceof BufferedReader buffered ? buffered : new BufferedReader(reader);
+        Map<String, Template> templates = new HashMap<>();
+        for (int kind = 0; kind < KINDS.length; kind++) {
+            templates.put(KINDS[kind], new Template(kind));
+        }
+        Placements batch = new Placements(batchSize);
+        String[] tokens = new String[16];
+        int lineNumber = 0;
+        try {
+            String line;
+            while ((line = lines.readLine()) != null) {
+                lineNumber++;
+                int count = tokenize(line, tokens);
+                if (count < 0) {
+                    throw error(source, lineNumber, "too many properties");
+                }
+                if (count == 0 || tokens[0].startsWith("#")) continue;
+
+                if (tokens[0].equals("prefab")) {
+                    if (count < 3) throw error(source, lineNumber, "expected 'prefab <name> <kind> [key=value...]'");
+                    Template base = templates.get(tokens[2]);
+                    if (base == null) throw error(source, lineNumber, "unknown kind or prefab '" + tokens[2] + "'");
+                    Template prefab = new Template(base);
+                    applyProperties(prefab, tokens, 3, count, source, lineNumber);
+                    templates.put(tokens[1], prefab);
+                    continue;
+                }
+
+                Template template = templates.get(tokens[0]);
+                if (template == null) throw error(source, lineNumber, "unknown kind or prefab '" + tokens[0] + "'");
+                if (count < 3) throw error(source, lineNumber, "expected '" + tokens[0] + " <x> <y> [key=value...]'");
+                Template placement = template;
+                if (count > 3) {
+                    placement = new Template(template);
+                    applyProperties(placement, tokens, 3, count, source, lineNumber);
+                }
+                batch.add(placement.kind, parseFloat(tokens[1], source, lineNumber),
+                        parseFloat(tokens[2], source, lineNumber), placement.width, placement.height,
+                        placement.color, placement.speed, placement.jump);
+                if (batch.size() == batchSize) {
+                    consumer.accept(batch);
+                    batch.clear();
+                }
+            }
+            if (batch.size() > 0) {
+                consumer.accept(batch);
+                batch.clear();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read level " + source, e);
+        }
+        return lineNumber;
+    }
+
+    private static void applyProperties(Template template, String[] tokens, int from, int to,
+                                        String source, int lineNumber) {
+        for (int i = from; i < to; i++) {
+            String token = tokens[i];
+            int equals = token.indexOf('=');
+            if (equals <= 0) throw error(source, lineNumber, "expected key=value, got '" + token + "'");
+            String key = token.substring(0, equals);
+            String value = token.substring(equals + 1);
+            switch (key) {
+                case "w" -> template.width = parseFloat(value, source, lineNumber);
+                case "h" -> template.height = parseFloat(value, source, lineNumber);
+                case "speed" -> template.speed = parseFloat(value, source, lineNumber);
+                case "jump" -> template.jump = parseFloat(value, source, lineNumber);
+                case "color" -> template.color = parseColor(value, source, lineNumber);
+                default -> throw error(source, lineNumber, "unknown property '" + key + "'");
+            }
+        }
+    }
+
+    private static float parseFloat(String value, String source, int lineNumber) {
+        try {
+            return Float.parseFloat(value);
+        } catch (NumberFormatException e) {
+            throw error(source, lineNumber, "invalid number '" + value + "'");
+        }
+    }
+
+    private static Color parseColor(String value, String source, int lineNumber) {
+        if (value.startsWith("#") && value.length() == 7) {
+            try {
+                return new Color(Integer.parseInt(value.substring(1), 16));
+            } catch (NumberFormatException e) {
+                throw error(source, lineNumber, "invalid color '" + value + "'");
+            }
+        }
+        Color color = NAMED_COLORS.get(value.toLowerCase(Locale.ROOT));
+        if (color == null) throw error(source, lineNumber, "unknown color '" + value + "'");
+        return color;
+    }
+
+    // Splits the line on whitespace into the array. Returns the token count, or -1 if the array is too small.
+    private static int tokenize(String line, String[] tokens) {
+        int count = 0;
+        int length = line.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && Character.isWhitespace(line.charAt(i))) i++;
+            if (i == length) break;
+            int start = i;
+            while (i < length && !Character.isWhitespace(line.charAt(i))) i++;
+            if (count == tokens.length) return -1;
+            tokens[count++] = line.substring(start, i);
+        }
+        return count;
+    }
+
+    private static IllegalArgumentException error(String source, int lineNumber, String message) {
+        return new IllegalArgumentException(source + ":" + lineNumber + ": " + message);
+    }
+}
@@ -0,0 +1,97 @@
+package org.caveman.core.level;
+
+import org.caveman.core.GameObjectFactory;
+
+import java.awt.*;
+import java.util.Arrays;
+
+/**
+ * Placements parsed from a level but not created yet, as growable parallel arrays.
+ */
+final class Placements {
+    static final int GROUND = 0;
+    static final int OBSTACLE = 1;
+    static final int PLAYER = 2;
+    static final int LIGHT = 3;
+
+    private int size;
+    private int[] kinds;
+    private float[] xs, ys, widths, heights, speeds, jumps;
+    private Color[] colors;
+
+    Placements(int capacity) {
+        kinds = new int[capacity];
+        xs = new float[capacity];
+        ys = new float[capacity];
+        widths = new float[capacity];
+        heights = new float[capacity];
+        speeds = new float[capacity];
+        jumps = new float[capacity];
+        colors = new Color[capacity];
+    }
+
+    void add(int kind, float x, float y, float width, float height, Color color, float speed, float jump) {
+        if (size == kinds.length) {
+            int capacity = Math.max(4, size * 2);
+            kinds = Arrays.copyOf(kinds, capacity);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            widths = Arrays.copyOf(widths, capacity);
+            heights = Arrays.copyOf(heights, capacity);
+            speeds = Arrays.copyOf(speeds, capacity);
+            jumps = Arrays.copyOf(jumps, capacity);
+            colors = Arrays.copyOf(colors, capacity);
+        }
+        int i = size++;
+        kinds[i] = kind;
+        xs[i] = x;
+        ys[i] = y;
+        widths[i] = width;
+        heights[i] = height;
+        colors[i] = color;
+        speeds[i] = speed;
+        jumps[i] = jump;
+    }
+
+    /**
+     * Appends placement {@code i} of this list to the other.
+     */
+    void copyTo(int i, Placements other) {
+        other.add(kinds[i], xs[i], ys[i], widths[i], heights[i], colors[i], speeds[i], jumps[i]);
+    }
+
+    int size() {
+        return size;
+    }
+
+    int getKind(int i) {
+        return kinds[i];
+    }
+
+    float getX(int i) {
+        return xs[i];
+    }
+
+    float getY(int i) {
+        return ys[i];
+    }
+
+    /**
+     * Builds the entity of placement {@code i}. Safe to call from any thread as long as the
+     * placements are not modified meanwhile.
+     */
+    GameObjectFactory.Blueprint blueprint(int i) {
+        float x = xs[i];
+        float y = ys[i];
+        return switch (kinds[i]) {
+            case GROUND, OBSTACLE -> GameObjectFactory.obstacleBlueprint(x, y, widths[i], heights[i], colors[i]);
+            case PLAYER -> GameObjectFactory.playerBlueprint(speeds[i], jumps[i], x, y, widths[i], heights[i], colors[i]);
+            default -> GameObjectFactory.lightBlueprint(x, y);
+        };
+    }
+
+    void clear() {
+        Arrays.fill(colors, 0, size, null);
+        size = 0;
+    }
+}
@@ -0,0 +1,186 @@
+package org.caveman.core.profiling;
+
+import dev.dominion.ecs.api.Results;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Instruments scheduled systems. Every system handed to {@link #wrap} is timed on each run,
+ * together with the bytes allocated by the running thread and, every {@link #COUNT_INTERVAL}
+ * runs, the number of entities matched by its query. The whole tick is measured between the
+ * {@link #tickStart()} and {@link #tickEnd()} markers, which should be scheduled first and last.
+ * <p>
+ * Overruns of the tick are counted against the tick budget. A system only counts overruns once it
+ * is given a budget of its own with {@link #setBudget(String, long)}; its share of the tick is
+ * reported either way.
+ */
+public class SystemProfiler {
+    public static final String TICK = "tick";
+    private static final int COUNT_INTERVAL = 60;
+
+    private final long budgetNanos;
+    private final Map<String, SystemStats> stats = new LinkedHashMap<>();
+    private final SystemStats tickStats;
+    private final com.sun.management.ThreadMXBean threads;
+    private final List<ObjectName> registered = new ArrayList<>();
+    private volatile long tickStartNanos;
+
+    /**
+     * @param budgetNanos the time budget of one tick; ticks over it are counted as overruns
+     */
+    public SystemProfiler(long budgetNanos) {
+        this.budgetNanos = budgetNanos;
+        this.tickStats = new SystemStats(TICK, budgetNanos);
+        this.stats.put(TICK, tickStats);
+        com.sun.management.ThreadMXBean bean = null;
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean sunBean
+                && sunBean.isThreadAllocatedMemorySupported()) {
+            sunBean.setThreadAllocatedMemoryEnabled(true);
+            bean = sunBean;
+        }
+        this.threads = bean;
+    }
+
+    public Runnable wrap(String name, Runnable system) {
+        return wrap(name, system, null);
+    }
+
+    /**
+     * Wraps a system so that each run is recorded under the given name.
+     *
+     * @param name   the name shown in the stats and used for the MBean
+     * @param system the system to run
+     * @param query  the query the system iterates, used to sample entity counts; may be null
+     * @return the instrumented runnable to hand to the scheduler
+     */
+    public Runnable wrap(String name, Runnable system, Supplier<? extends Results<?>> query) {
+        SystemStats systemStats = new SystemStats(name, 0, tickStats);
+        synchronized (stats) {
+            stats.put(name, systemStats);
+        }
+        return new Runnable() {
+            private long runs;
+
+            @Override
+            public void run() {
+                long allocatedBefore = allocatedBytes();
+                long start = System.nanoTime();
+                system.run();
+                long elapsed = System.nanoTime() - start;
+                long allocatedAfter = allocatedBytes();
+                systemStats.record(elapsed, allocatedBefore < 0 ? -1 : allocatedAfter - allocatedBefore);
+                if (query != null && runs++ % COUNT_INTERVAL == 0) {
+                    systemStats.setEntityCount(count(query.get()));
+                }
+            }
+        };
+    }
+
+    public Runnable tickStart() {
+        return () -> tickStartNanos = System.nanoTime();
+    }
+
+    public Runnable tickEnd() {
+        return () -> tickStats.record(System.nanoTime() - tickStartNanos, -1);
+    }
+
+    /**
+     * Returns the stats of the whole tick followed by every wrapped system in registration order.
+     */
+    public List<SystemStats> getStats() {
+        synchronized (stats) {
+            return Collections.unmodifiableList(new ArrayList<>(stats.values()));
+        }
+    }
+
+    public SystemStats getStats(String name) {
+        synchronized (stats) {
+            return stats.get(name);
+        }
+    }
+
+    /**
+     * Sets the time budget of one run of the named system; later runs over it are counted as
+     * overruns.
+     *
+     * @param budgetNanos the budget, or 0 to count no overruns
+     * @throws IllegalArgumentException if no system of that name was wrapped
+     */
+    public void setBudget(String name, long budgetNanos) {
+        SystemStats systemStats = getStats(name);
+        if (systemStats == null) {
+            throw new IllegalArgumentException("Unknown system '" + name + "'");
+        }
+        systemStats.setBudgetNanos(budgetNanos);
+    }
+
+    public SystemStats getTickStats() {
+        return tickStats;
+    }
+
+    public long getBudgetNanos() {
+        return budgetNanos;
+    }
+
+    /**
+     * Registers one MBean per system with the platform MBean server under
+     * {@code org.caveman:type=SystemStats,engine=<engine>,name=<system>}.
+     *
+     * @param engine identifies the engine the systems belong to, unique within the JVM
+     * @throws IllegalStateException if an MBean of that engine is already registered
+     */
+    public synchronized void registerMBeans(String engine) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (SystemStats systemStats : getStats()) {
+                ObjectName objectName = new ObjectName("org.caveman:type=SystemStats,engine=" + engine
+                        + ",name=" + systemStats.getName());
+                server.registerMBean(systemStats, objectName);
+                registered.add(objectName);
+            }
+        } catch (InstanceAlreadyExistsException e) {
+            unregisterMBeans();
+            throw new IllegalStateException("Profiler MBeans of engine '" + engine + "' are already registered", e);
+        } catch (JMException e) {
+            unregisterMBeans();
+            throw new IllegalStateException("Could not register profiler MBeans", e);
+        }
+    }
+
+    /**
+     * Unregisters the MBeans registered by {@link #registerMBeans(String)}.
+     */
+    public synchronized void unregisterMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName objectName : registered) {
+            try {
+                server.unregisterMBean(objectName);
+            } catch (JMException ignored) {
+                // Already unregistered by someone else
+            }
+        }
+        registered.clear();
+    }
+
+    private long allocatedBytes() {
+        return threads == null ? -1 : threads.getCurrentThreadAllocatedBytes();
+    }
+
+    private static int count(Results<?> results) {
+        int count = 0;
+        for (Object ignored : results) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,145 @@
+package org.caveman.core.profiling;
+
+import java.util.Arrays;
+
+/**
+ * Rolling timing statistics for one system. The last {@link #WINDOW} durations are kept in a ring
+ * buffer and the percentiles are computed from that window when polled; the maximum, invocation
+ * and overrun counters and the share of the tick cover the whole session. A run counts as an
+ * overrun when it exceeds the system's own budget, if it has one.
+ */
+public class SystemStats implements SystemStatsMXBean {
+    public static final int WINDOW = 512;
+
+    private final String name;
+    private final SystemStats tick;
+    private volatile long budgetNanos;
+    private final long[] durations = new long[WINDOW];
+    private int cursor;
+    private long invocations;
+    private long totalNanos;
+    private long maxNanos;
+    private long overruns;
+    private long lastAllocatedBytes;
+    private volatile int entityCount;
+
+    public SystemStats(String name, long budgetNanos) {
+        this(name, budgetNanos, null);
+    }
+
+    /**
+     * @param budgetNanos the time budget of one run, or 0 to count no overruns
+     * @param tick        the stats of the tick the system runs in, to compute its share; may be null
+     */
+    public SystemStats(String name, long budgetNanos, SystemStats tick) {
+        this.name = name;
+        this.budgetNanos = budgetNanos;
+        this.tick = tick;
+    }
+
+    /**
+     * Records one run of the system.
+     *
+     * @param nanos          the wall time of the run
+     * @param allocatedBytes the bytes allocated by the running thread, or -1 if unknown
+     */
+    public synchronized void record(long nanos, long allocatedBytes) {
+        durations[cursor] = nanos;
+        cursor = (cursor + 1) % WINDOW;
+        invocations++;
+        totalNanos += nanos;
+        if (nanos > maxNanos) maxNanos = nanos;
+        if (budgetNanos > 0 && nanos > budgetNanos) overruns++;
+        lastAllocatedBytes = allocatedBytes;
+    }
+
+    /**
+     * Sets the time budget of one run; later runs over it are counted as overruns.
+     *
+     * @param budgetNanos the budget, or 0 to count no overruns
+     */
+    public void setBudgetNanos(long budgetNanos) {
+        this.budgetNanos = budgetNanos;
+    }
+
+    public long getBudgetNanos() {
+        return budgetNanos;
+    }
+
+    synchronized long getTotalNanos() {
+        return totalNanos;
+    }
+
+    void setEntityCount(int entityCount) {
+        this.entityCount = entityCount;
+    }
+
+    /**
+     * Returns the given percentile of the recorded window, in nanoseconds.
+     *
+     * @param percentile a value between 0 and 100
+     */
+    public long percentileNanos(double percentile) {
+        long[] window;
+        synchronized (this) {
+            int size = (int) Math.min(invocations, WINDOW);
+            if (size == 0) return 0;
+            window = Arrays.copyOf(durations, size);
+        }
+        Arrays.sort(window);
+        int index = (int) Math.ceil(percentile / 100.0 * window.length) - 1;
+        return window[Math.max(0, Math.min(window.length - 1, index))];
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public synchronized long getInvocations() {
+        return invocations;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return percentileNanos(50) / 1000.0;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return percentileNanos(99) / 1000.0;
+    }
+
+    @Override
+    public synchronized double getMaxMicros() {
+        return maxNanos / 1000.0;
+    }
+
+    @Override
+    public synchronized long getOverruns() {
+        return overruns;
+    }
+
+    @Override
+    public double getBudgetMicros() {
+        return budgetNanos / 1000.0;
+    }
+
+    @Override
+    public double getTickSharePercent() {
+        if (tick == null) return 100.0;
+        long tickNanos = tick.getTotalNanos();
+        return tickNanos == 0 ? 0.0 : 100.0 * getTotalNanos() / tickNanos;
+    }
+
+    @Override
+    public int getEntityCount() {
+        return entityCount;
+    }
+
+    @Override
+    public synchronized long getAllocatedBytesPerRun() {
+        return lastAllocatedBytes;
+    }
+}
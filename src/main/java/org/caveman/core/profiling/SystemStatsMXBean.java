@@ -0,0 +1,33 @@
+package org.caveman.core.profiling;
+
+/**
+ * JMX view of the timing statistics of a single scheduled system (or of the whole tick).
+ */
+public interface SystemStatsMXBean {
+    String getName();
+
+    long getInvocations();
+
+    double getP50Micros();
+
+    double getP99Micros();
+
+    double getMaxMicros();
+
+    long getOverruns();
+
+    /**
+     * Returns the budget runs are counted as overruns against, or 0 if there is none.
+     */
+    double getBudgetMicros();
+
+    /**
+     * Returns the time spent in this system as a percentage of the time spent in whole ticks.
+     * Systems that run in parallel can add up to more than 100.
+     */
+    double getTickSharePercent();
+
+    int getEntityCount();
+
+    long getAllocatedBytesPerRun();
+}
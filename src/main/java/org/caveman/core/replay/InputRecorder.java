@@ -0,0 +1,121 @@
+package org.caveman.core.replay;
+
+import org.caveman.core.InputHandler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes the input applied in every tick to a compact binary log that {@link InputReplay} can
+ * feed back into a headless engine. Together with the seed of the engine's random generator this
+ * is enough to reproduce a session tick for tick.
+ * <p>
+ * The log starts with a header of the magic number, the format version and the seed. Each tick
+ * follows as a varint event count and its events, each a type byte and the varint code, x and y,
+ * the positions zigzag-encoded. A tick without input takes one byte. Records collect in a direct
+ * buffer and reach the file channel when it fills up or the recorder is closed.
+ */
+public class InputRecorder implements Closeable {
+    static final int MAGIC = 0x43564952; // "CVIR"
+    static final short VERSION = 1;
+    // Largest event: a type byte and three varints of at most five bytes each
+    static final int MAX_EVENT_BYTES = 16;
+    static final int MAX_VARINT_BYTES = 5;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private long tickCount;
+    private boolean closed;
+
+    /**
+     * Creates the log, replacing any existing file, and writes its header.
+     *
+     * @param seed the seed of the engine's random generator
+     */
+    public InputRecorder(Path path, long seed) {
+        this.path = path;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create input log " + path, e);
+        }
+        buffer.putInt(MAGIC).putShort(VERSION).putLong(seed);
+    }
+
+    /**
+     * Appends the events applied by the input handler's last poll as the next tick.
+     */
+    public synchronized void record(InputHandler input) {
+        if (closed) return; // Closed by a shutdown hook while the simulation still runs
+        int count = input.getEventCount();
+        ensureRemaining(MAX_VARINT_BYTES);
+        putVarint(count);
+        for (int i = 0; i < count; i++) {
+            ensureRemaining(MAX_EVENT_BYTES);
+            buffer.put((byte) input.getEventType(i));
+            putVarint(input.getEventCode(i));
+            putVarint(zigzag(input.getEventX(i)));
+            putVarint(zigzag(input.getEventY(i)));
+        }
+        tickCount++;
+    }
+
+    public synchronized long getTickCount() {
+        return tickCount;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Writes the buffered ticks and closes the file. Ticks recorded afterwards are ignored.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        try (channel) {
+            flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write input log " + path, e);
+        }
+    }
+
+    private void ensureRemaining(int bytes) {
+        if (buffer.remaining() >= bytes) return;
+        try {
+            flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write input log " + path, e);
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void putVarint(int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+}
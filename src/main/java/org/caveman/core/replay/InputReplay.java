@@ -0,0 +1,159 @@
+package org.caveman.core.replay;
+
+import org.caveman.core.InputEventQueue;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a log written by {@link InputRecorder} and feeds it back one tick at a time. The events
+ * of each tick are offered to the engine's input queue right before it is polled, taking the
+ * place of the AWT listeners, so the systems see exactly the input they saw when it was recorded.
+ */
+public class InputReplay implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final long seed;
+    private boolean endOfFile;
+    private long tickCount;
+
+    private InputReplay(Path path, FileChannel channel) throws IOException {
+        this.path = path;
+        this.channel = channel;
+        buffer.limit(0);
+        fill(Integer.BYTES + Short.BYTES + Long.BYTES);
+        if (buffer.remaining() < Integer.BYTES + Short.BYTES + Long.BYTES || buffer.getInt() != InputRecorder.MAGIC) {
+            throw new IllegalArgumentException(path + ": not an input log");
+        }
+        short version = buffer.getShort();
+        if (version != InputRecorder.VERSION) {
+            throw new IllegalArgumentException(path + ": unsupported input log version " + version);
+        }
+        seed = buffer.getLong();
+    }
+
+    /**
+     * Opens the log and reads its header.
+     *
+     * @throws IllegalArgumentException if the file is not an input log of a supported version
+     */
+    public static InputReplay open(Path path) {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            return new InputReplay(path, channel);
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw new UncheckedIOException("Failed to read input log " + path, e);
+        } catch (RuntimeException e) {
+            closeQuietly(channel);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the seed the recorded engine's random generator started from.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Returns true if the log holds another tick.
+     */
+    public boolean hasNext() {
+        fill(1);
+        return buffer.hasRemaining();
+    }
+
+    /**
+     * Offers the events of the next tick to the queue. The queue must have no other producer.
+     *
+     * @return false if the log has no more ticks
+     */
+    public boolean feed(InputEventQueue queue) {
+        if (!hasNext()) return false;
+        fill(InputRecorder.MAX_VARINT_BYTES);
+        int count = getVarint();
+        for (int i = 0; i < count; i++) {
+            fill(InputRecorder.MAX_EVENT_BYTES);
+            if (!buffer.hasRemaining()) {
+                throw new IllegalStateException(path + ": truncated at tick " + tickCount);
+            }
+            int type = buffer.get();
+            int code = getVarint();
+            int x = unzigzag(getVarint());
+            int y = unzigzag(getVarint());
+            if (!queue.offer(type, code, x, y, System.nanoTime())) {
+                throw new IllegalStateException(path + ": tick " + tickCount + " holds more events than the input queue");
+            }
+        }
+        tickCount++;
+        return true;
+    }
+
+    /**
+     * Returns the number of ticks fed so far.
+     */
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close input log " + path, e);
+        }
+    }
+
+    // Reads ahead until the buffer holds at least the given number of bytes or the file ends.
+    private void fill(int bytes) {
+        if (buffer.remaining() >= bytes || endOfFile) return;
+        buffer.compact();
+        try {
+            while (buffer.position() < bytes && !endOfFile) {
+                if (channel.read(buffer) < 0) endOfFile = true;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read input log " + path, e);
+        } finally {
+            buffer.flip();
+        }
+    }
+
+    private int getVarint() {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (!buffer.hasRemaining()) {
+                throw new IllegalStateException(path + ": truncated at tick " + tickCount);
+            }
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalStateException(path + ": malformed varint at tick " + tickCount);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Already failing
+        }
+    }
+}
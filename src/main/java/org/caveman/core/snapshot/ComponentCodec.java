@@ -0,0 +1,23 @@
+package org.caveman.core.snapshot;
+
+/**
+ * Writes one component type into a snapshot and reads it back. A codec is identified in the
+ * snapshot by the name of its component class, so components of a type no codec is registered
+ * for are left out of the snapshot.
+ *
+ * @param <T> the component type
+ */
+public interface ComponentCodec<T> {
+
+    Class<T> getType();
+
+    /**
+     * Writes the state of the component.
+     */
+    void write(T component, SnapshotOutput out);
+
+    /**
+     * Reads the fields written by {@link #write} in the same order and returns a new component.
+     */
+    T read(SnapshotInput in);
+}
@@ -0,0 +1,205 @@
+package org.caveman.core.snapshot;
+
+import dev.dominion.ecs.api.Dominion;
+import dev.dominion.ecs.api.Entity;
+import org.caveman.core.assets.ImageCache;
+import org.jbox2d.common.Vec2;
+import org.jbox2d.dynamics.World;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The set of component codecs snapshots are captured and restored with. The {@link #standard()}
+ * format covers the engine's components; games register codecs for their own.
+ * <p>
+ * A snapshot starts with the magic number, the format version, the tick it was taken at, the world
+ * gravity and the component class name of every codec, which the reader maps back to its own
+ * codecs. Each entity follows as its component count and, per component, the codec index, the
+ * length of its data and the data itself.
+ */
+public class SnapshotFormat {
+    static final int MAGIC = 0x43565753; // "CVWS"
+    static final short VERSION = 1;
+
+    private final Map<String, ComponentCodec<?>> codecs = new LinkedHashMap<>();
+    private int expectedBytes = 4096;
+
+    /**
+     * Returns a format with codecs for every component the engine defines.
+     */
+    public static SnapshotFormat standard() {
+        SnapshotFormat format = new SnapshotFormat();
+        for (ComponentCodec<?> codec : StandardCodecs.all()) {
+            format.register(codec);
+        }
+        return format;
+    }
+
+    /**
+     * Adds a codec, replacing any codec registered for the same component type.
+     */
+    public void register(ComponentCodec<?> codec) {
+        codecs.put(codec.getType().getName(), codec);
+    }
+
+    /**
+     * Copies the state of every entity and body into a new snapshot. Must run on the tick thread
+     * between ticks. Only the copy happens here; writing it to disk is left to the caller, so the
+     * tick is not held up by I/O.
+     */
+    public WorldSnapshot capture(Dominion dominion, World world, long tick) {
+        List<Entity> entities = new ArrayList<>();
+        for (Object result : dominion.findAllEntities()) {
+            Entity entity = (Entity) result;
+            if (!entity.isDeleted() && entity.isEnabled()) { // Disabled entities are pooled, not in the world
+                entities.add(entity);
+            }
+        }
+        WorldSnapshot snapshot = encode(entities, world, tick, expectedBytes);
+        expectedBytes = snapshot.getSize() + snapshot.getSize() / 8;
+        return snapshot;
+    }
+
+    /**
+     * Copies the state of the given entities and their bodies into a new snapshot, as
+     * {@link #capture(Dominion, World, long)} does for all of them. References to entities that
+     * are not in the list are saved as no entity.
+     */
+    public WorldSnapshot capture(List<Entity> entities, World world, long tick) {
+        return encode(entities, world, tick, 1024 + entities.size() * 128);
+    }
+
+    private WorldSnapshot encode(List<Entity> entities, World world, long tick, int expectedBytes) {
+        SnapshotOutput out = new SnapshotOutput(expectedBytes, entities);
+        out.putInt(MAGIC).putShort(VERSION).putLong(tick);
+        Vec2 gravity = world.getGravity();
+        out.putFloat(gravity.x).putFloat(gravity.y);
+        ComponentCodec<?>[] codecArray = codecs.values().toArray(new ComponentCodec<?>[0]);
+        out.putInt(codecArray.length);
+        for (ComponentCodec<?> codec : codecArray) {
+            out.putString(codec.getType().getName());
+        }
+
+        out.putInt(entities.size());
+        for (Entity entity : entities) {
+            int countPosition = out.position();
+            out.putInt(0);
+            int count = 0;
+            for (int i = 0; i < codecArray.length; i++) {
+                Object component = entity.get(codecArray[i].getType());
+                if (component == null) continue;
+                out.putShort(i);
+                int lengthPosition = out.position();
+                out.putInt(0);
+                write(codecArray[i], component, out);
+                out.putInt(lengthPosition, out.position() - lengthPosition - Integer.BYTES);
+                count++;
+            }
+            out.putInt(countPosition, count);
+        }
+        ByteBuffer data = out.finish();
+        return new WorldSnapshot(data, tick, entities.size());
+    }
+
+    /**
+     * Creates the snapshot's entities and bodies in the given dominion and world, which are
+     * expected to be empty.
+     *
+     * @param imageCache the cache sprite atlases are loaded into, or null to restore sprites
+     *                   without their texture regions
+     * @return the restored entities, in snapshot order
+     * @throws IllegalArgumentException if the snapshot is not valid or uses a component type this
+     *                                  format has no codec for
+     */
+    public List<Entity> restore(WorldSnapshot snapshot, Dominion dominion, World world, ImageCache imageCache) {
+        return List.of(read(snapshot, dominion::createEntity, world, imageCache, true));
+    }
+
+    /**
+     * Creates the snapshot's entities through the given function and their bodies in the given
+     * world, alongside the ones already there. The world's gravity is left as it is.
+     *
+     * @param create creates an entity from its components, for instance through a lifecycle
+     * @return the restored entities, in snapshot order
+     * @throws IllegalArgumentException if the snapshot is not valid or uses a component type this
+     *                                  format has no codec for
+     */
+    public List<Entity> restoreEntities(WorldSnapshot snapshot, Function<Object[], Entity> create, World world,
+                                        ImageCache imageCache) {
+        return List.of(read(snapshot, create, world, imageCache, false));
+    }
+
+    /**
+     * Decodes the whole snapshot into a scratch world without creating any entity, so a snapshot
+     * can be checked before the world it replaces is torn down. Atlases are loaded into the cache
+     * as they would be by {@link #restore}.
+     *
+     * @throws IllegalArgumentException if {@link #restore} would fail on the snapshot
+     */
+    public void validate(WorldSnapshot snapshot, ImageCache imageCache) {
+        read(snapshot, null, new World(new Vec2()), imageCache, false);
+    }
+
+    // Creates the entities through the function, or only decodes their components if it is null.
+    private Entity[] read(WorldSnapshot snapshot, Function<Object[], Entity> create, World world,
+                          ImageCache imageCache, boolean gravity) {
+        ByteBuffer buffer = snapshot.getData();
+        if (buffer.remaining() < Integer.BYTES + Short.BYTES || buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a world snapshot");
+        }
+        short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported snapshot version " + version);
+        }
+        try {
+            SnapshotInput in = new SnapshotInput(buffer, world, imageCache);
+            in.getLong(); // Tick, already read by WorldSnapshot
+            Vec2 savedGravity = new Vec2(in.getFloat(), in.getFloat());
+            if (gravity) {
+                world.setGravity(savedGravity);
+            }
+            ComponentCodec<?>[] codecArray = new ComponentCodec<?>[in.getInt()];
+            for (int i = 0; i < codecArray.length; i++) {
+                String type = in.getString();
+                codecArray[i] = codecs.get(type);
+                if (codecArray[i] == null) {
+                    throw new IllegalArgumentException("No codec registered for " + type);
+                }
+            }
+
+            Entity[] entities = new Entity[in.getInt()];
+            for (int i = 0; i < entities.length; i++) {
+                Object[] components = new Object[in.getInt()];
+                for (int j = 0; j < components.length; j++) {
+                    ComponentCodec<?> codec = codecArray[in.getShort()];
+                    int length = in.getInt();
+                    int end = buffer.position() + length;
+                    components[j] = codec.read(in);
+                    if (buffer.position() != end) {
+                        throw new IllegalArgumentException("The " + codec.getType().getName() + " codec read "
+                                + (buffer.position() - end + length) + " of " + length + " bytes");
+                    }
+                }
+                if (create != null) {
+                    entities[i] = create.apply(components);
+                }
+                in.created(entities[i]);
+            }
+            in.resolveReferences(entities);
+            return entities;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IllegalArgumentException("Truncated or corrupt snapshot", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void write(ComponentCodec<T> codec, Object component, SnapshotOutput out) {
+        codec.write((T) component, out);
+    }
+}
@@ -0,0 +1,116 @@
+package org.caveman.core.snapshot;
+
+import dev.dominion.ecs.api.Entity;
+import org.caveman.core.assets.ImageCache;
+import org.caveman.core.assets.TextureAtlas;
+import org.jbox2d.dynamics.World;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * The buffer component codecs read from while a snapshot is restored, along with the world and
+ * image cache the restored components belong to. Entity references are resolved once every
+ * entity of the snapshot exists, since they may point at entities restored later.
+ */
+public final class SnapshotInput {
+    private final ByteBuffer buffer;
+    private final World world;
+    private final ImageCache imageCache;
+    private final Map<Path, TextureAtlas> atlases = new HashMap<>();
+    private final List<Consumer<Entity>> createdCallbacks = new ArrayList<>();
+    private final List<Runnable> references = new ArrayList<>();
+    private Entity[] entities;
+
+    SnapshotInput(ByteBuffer buffer, World world, ImageCache imageCache) {
+        this.buffer = buffer;
+        this.world = world;
+        this.imageCache = imageCache;
+    }
+
+    public int getByte() {
+        return buffer.get();
+    }
+
+    public boolean getBoolean() {
+        return buffer.get() != 0;
+    }
+
+    public int getShort() {
+        return buffer.getShort();
+    }
+
+    public int getInt() {
+        return buffer.getInt();
+    }
+
+    public long getLong() {
+        return buffer.getLong();
+    }
+
+    public float getFloat() {
+        return buffer.getFloat();
+    }
+
+    public String getString() {
+        int length = buffer.getInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads an entity reference and passes the restored entity, or null for no entity, to the
+     * setter once every entity of the snapshot has been created.
+     */
+    public void getEntity(Consumer<Entity> setter) {
+        int id = buffer.getInt();
+        references.add(() -> setter.accept(id >= 0 && id < entities.length ? entities[id] : null));
+    }
+
+    /**
+     * Calls back with the entity the component being read is added to, once it is created. Used
+     * to point physics bodies back at their entity.
+     */
+    public void onCreated(Consumer<Entity> callback) {
+        createdCallbacks.add(callback);
+    }
+
+    /**
+     * Returns the world bodies are restored into.
+     */
+    public World getWorld() {
+        return world;
+    }
+
+    /**
+     * Returns the atlas loaded from the descriptor, loading it the first time it is asked for,
+     * or null if no image cache was given.
+     */
+    public TextureAtlas getAtlas(Path descriptor) {
+        if (imageCache == null) return null;
+        return atlases.computeIfAbsent(descriptor, path -> TextureAtlas.load(path, imageCache).join());
+    }
+
+    void created(Entity entity) {
+        for (Consumer<Entity> callback : createdCallbacks) {
+            callback.accept(entity);
+        }
+        createdCallbacks.clear();
+    }
+
+    void resolveReferences(Entity[] entities) {
+        this.entities = entities;
+        for (Runnable reference : references) {
+            reference.run();
+        }
+        references.clear();
+    }
+}
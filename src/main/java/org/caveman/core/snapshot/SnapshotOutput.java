@@ -0,0 +1,109 @@
+package org.caveman.core.snapshot;
+
+import dev.dominion.ecs.api.Entity;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The buffer component codecs write into while a snapshot is captured. It grows as needed.
+ * Entities are written as their index in the snapshot, so references between entities survive
+ * a restore.
+ */
+public final class SnapshotOutput {
+    private final List<Entity> entities;
+    private Map<Entity, Integer> entityIds; // Built on the first reference, most snapshots have few
+    private ByteBuffer buffer;
+
+    SnapshotOutput(int initialCapacity, List<Entity> entities) {
+        this.buffer = ByteBuffer.allocate(Math.max(64, initialCapacity));
+        this.entities = entities;
+    }
+
+    public SnapshotOutput putByte(int value) {
+        ensure(Byte.BYTES).put((byte) value);
+        return this;
+    }
+
+    public SnapshotOutput putBoolean(boolean value) {
+        return putByte(value ? 1 : 0);
+    }
+
+    public SnapshotOutput putShort(int value) {
+        ensure(Short.BYTES).putShort((short) value);
+        return this;
+    }
+
+    public SnapshotOutput putInt(int value) {
+        ensure(Integer.BYTES).putInt(value);
+        return this;
+    }
+
+    public SnapshotOutput putLong(long value) {
+        ensure(Long.BYTES).putLong(value);
+        return this;
+    }
+
+    public SnapshotOutput putFloat(float value) {
+        ensure(Float.BYTES).putFloat(value);
+        return this;
+    }
+
+    /**
+     * Writes a string as its UTF-8 length and bytes; null is written as a length of -1.
+     */
+    public SnapshotOutput putString(String value) {
+        if (value == null) {
+            return putInt(-1);
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putInt(bytes.length);
+        ensure(bytes.length).put(bytes);
+        return this;
+    }
+
+    /**
+     * Writes a reference to an entity. Entities outside the snapshot, deleted ones and null are
+     * written as no entity.
+     */
+    public SnapshotOutput putEntity(Entity entity) {
+        if (entity == null) {
+            return putInt(-1);
+        }
+        if (entityIds == null) {
+            entityIds = new IdentityHashMap<>(entities.size() * 2);
+            for (int i = 0; i < entities.size(); i++) {
+                entityIds.put(entities.get(i), i);
+            }
+        }
+        Integer id = entityIds.get(entity);
+        return putInt(id != null ? id : -1);
+    }
+
+    int position() {
+        return buffer.position();
+    }
+
+    void putInt(int position, int value) {
+        buffer.putInt(position, value);
+    }
+
+    /**
+     * Returns the written bytes, ready to be read.
+     */
+    ByteBuffer finish() {
+        return buffer.flip().asReadOnlyBuffer();
+    }
+
+    private ByteBuffer ensure(int bytes) {
+        if (buffer.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+            grown.put(buffer.flip());
+            buffer = grown;
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,418 @@
+package org.caveman.core.snapshot;
+
+import org.caveman.components.*;
+import org.caveman.core.assets.TextureAtlas;
+import org.caveman.core.assets.TextureRegion;
+import org.jbox2d.collision.shapes.CircleShape;
+import org.jbox2d.collision.shapes.PolygonShape;
+import org.jbox2d.collision.shapes.Shape;
+import org.jbox2d.common.Vec2;
+import org.jbox2d.dynamics.*;
+
+import java.awt.*;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Codecs for the engine's own components.
+ */
+final class StandardCodecs {
+    private static final int SHAPE_POLYGON = 0;
+    private static final int SHAPE_CIRCLE = 1;
+
+    private StandardCodecs() {
+    }
+
+    static List<ComponentCodec<?>> all() {
+        return List.of(TRANSFORM, SPRITE, PHYSICS, COLLISION, MOVEMENT, PLAYER_TAG, GROUND_TAG, LIGHT, CAMERA, CHUNK, TILEMAP, PREFAB);
+    }
+
+    static final ComponentCodec<TransformComponent> TRANSFORM = new ComponentCodec<>() {
+        @Override
+        public Class<TransformComponent> getType() {
+            return TransformComponent.class;
+        }
+
+        @Override
+        public void write(TransformComponent transform, SnapshotOutput out) {
+            out.putFloat(transform.getPrevX()).putFloat(transform.getPrevY()).putFloat(transform.getPrevRotation());
+            out.putFloat(transform.getX()).putFloat(transform.getY()).putFloat(transform.getRotation());
+        }
+
+        @Override
+        public TransformComponent read(SnapshotInput in) {
+            TransformComponent transform = new TransformComponent(in.getFloat(), in.getFloat());
+            transform.setRotation(in.getFloat());
+            transform.storePrevious();
+            transform.setX(in.getFloat());
+            transform.setY(in.getFloat());
+            transform.setRotation(in.getFloat());
+            return transform;
+        }
+    };
+
+    static final ComponentCodec<SpriteComponent> SPRITE = new ComponentCodec<>() {
+        @Override
+        public Class<SpriteComponent> getType() {
+            return SpriteComponent.class;
+        }
+
+        @Override
+        public void write(SpriteComponent sprite, SnapshotOutput out) {
+            out.putInt(sprite.getColor().getRGB()).putInt(sprite.getWidth()).putInt(sprite.getHeight());
+            out.putInt(sprite.getLayer());
+            TextureRegion region = sprite.getRegion();
+            out.putString(region != null ? region.getAtlas().getDescriptorPath().toString() : null);
+            out.putString(region != null ? region.getName() : null);
+        }
+
+        @Override
+        public SpriteComponent read(SnapshotInput in) {
+            Color color = new Color(in.getInt(), true);
+            int width = in.getInt();
+            int height = in.getInt();
+            int layer = in.getInt();
+            String descriptor = in.getString();
+            String regionName = in.getString();
+            SpriteComponent sprite = new SpriteComponent(color, width, height, layer);
+            if (descriptor != null) {
+                TextureAtlas atlas = in.getAtlas(Path.of(descriptor));
+                sprite.setRegion(atlas != null ? atlas.findRegion(regionName) : null);
+            }
+            return sprite;
+        }
+    };
+
+    // The body definition and its current motion, then its fixtures. A component whose body has
+    // not been created yet is written from its definitions and restored without a body.
+    static final ComponentCodec<PhysicsComponent> PHYSICS = new ComponentCodec<>() {
+        @Override
+        public Class<PhysicsComponent> getType() {
+            return PhysicsComponent.class;
+        }
+
+        @Override
+        public void write(PhysicsComponent physics, SnapshotOutput out) {
+            Body body = physics.getBody();
+            out.putBoolean(body != null);
+            if (body == null) {
+                BodyDef def = physics.getBodyDef();
+                out.putByte(def.type.ordinal()).putBoolean(def.fixedRotation).putBoolean(def.bullet);
+                out.putBoolean(def.allowSleep).putBoolean(def.active);
+                out.putFloat(def.gravityScale).putFloat(def.linearDamping).putFloat(def.angularDamping);
+                out.putFloat(def.position.x).putFloat(def.position.y).putFloat(def.angle);
+                out.putFloat(def.linearVelocity.x).putFloat(def.linearVelocity.y).putFloat(def.angularVelocity);
+                out.putBoolean(def.awake).putFloat(0f);
+                FixtureDef fixtureDef = physics.getFixtureDef();
+                out.putInt(fixtureDef != null ? 1 : 0);
+                if (fixtureDef != null) {
+                    writeFixture(fixtureDef.shape, fixtureDef.density, fixtureDef.friction, fixtureDef.restitution,
+                            fixtureDef.isSensor, fixtureDef.filter, out);
+                }
+                return;
+            }
+            out.putByte(body.getType().ordinal()).putBoolean(body.isFixedRotation()).putBoolean(body.isBullet());
+            out.putBoolean(body.isSleepingAllowed()).putBoolean(body.isActive());
+            out.putFloat(body.getGravityScale()).putFloat(body.getLinearDamping()).putFloat(body.getAngularDamping());
+            out.putFloat(body.getPosition().x).putFloat(body.getPosition().y).putFloat(body.getAngle());
+            out.putFloat(body.getLinearVelocity().x).putFloat(body.getLinearVelocity().y).putFloat(body.getAngularVelocity());
+            out.putBoolean(body.isAwake()).putFloat(body.m_sleepTime);
+            int fixtures = 0;
+            for (Fixture fixture = body.getFixtureList(); fixture != null; fixture = fixture.getNext()) {
+                fixtures++;
+            }
+            out.putInt(fixtures);
+            for (Fixture fixture = body.getFixtureList(); fixture != null; fixture = fixture.getNext()) {
+                writeFixture(fixture.getShape(), fixture.getDensity(), fixture.getFriction(), fixture.getRestitution(),
+                        fixture.isSensor(), fixture.getFilterData(), out);
+            }
+        }
+
+        @Override
+        public PhysicsComponent read(SnapshotInput in) {
+            boolean hasBody = in.getBoolean();
+            BodyDef def = new BodyDef();
+            def.type = BodyType.values()[in.getByte()];
+            def.fixedRotation = in.getBoolean();
+            def.bullet = in.getBoolean();
+            def.allowSleep = in.getBoolean();
+            def.active = in.getBoolean();
+            def.gravityScale = in.getFloat();
+            def.linearDamping = in.getFloat();
+            def.angularDamping = in.getFloat();
+            def.position.set(in.getFloat(), in.getFloat());
+            def.angle = in.getFloat();
+            def.linearVelocity.set(in.getFloat(), in.getFloat());
+            def.angularVelocity = in.getFloat();
+            def.awake = in.getBoolean();
+            float sleepTime = in.getFloat();
+            int fixtureCount = in.getInt();
+            List<FixtureDef> fixtureDefs = new ArrayList<>(fixtureCount);
+            for (int i = 0; i < fixtureCount; i++) {
+                fixtureDefs.add(readFixture(in));
+            }
+
+            PhysicsComponent physics = new PhysicsComponent(def, fixtureDefs.isEmpty() ? null : fixtureDefs.get(0));
+            if (!hasBody) return physics;
+
+            Body body = in.getWorld().createBody(def);
+            for (FixtureDef fixtureDef : fixtureDefs) {
+                body.createFixture(fixtureDef);
+            }
+            body.m_sleepTime = sleepTime;
+            physics.setBody(body);
+            in.onCreated(entity -> {
+                body.setUserData(entity);
+                for (Fixture fixture = body.getFixtureList(); fixture != null; fixture = fixture.getNext()) {
+                    fixture.setUserData(entity);
+                }
+            });
+            return physics;
+        }
+    };
+
+    private static void writeFixture(Shape shape, float density, float friction, float restitution, boolean sensor,
+                                     Filter filter, SnapshotOutput out) {
+        out.putFloat(density).putFloat(friction).putFloat(restitution).putBoolean(sensor);
+        out.putInt(filter.categoryBits).putInt(filter.maskBits).putInt(filter.groupIndex);
+        if (shape instanceof PolygonShape polygon) {
+            out.putByte(SHAPE_POLYGON).putFloat(polygon.getRadius()).putInt(polygon.getVertexCount());
+            for (int i = 0; i < polygon.getVertexCount(); i++) {
+                Vec2 vertex = polygon.getVertex(i);
+                out.putFloat(vertex.x).putFloat(vertex.y);
+            }
+        } else if (shape instanceof CircleShape circle) {
+            out.putByte(SHAPE_CIRCLE).putFloat(circle.getRadius());
+            out.putFloat(circle.m_p.x).putFloat(circle.m_p.y);
+        } else {
+            throw new IllegalArgumentException("Snapshots do not support " + shape.getType() + " shapes");
+        }
+    }
+
+    private static FixtureDef readFixture(SnapshotInput in) {
+        FixtureDef def = new FixtureDef();
+        def.density = in.getFloat();
+        def.friction = in.getFloat();
+        def.restitution = in.getFloat();
+        def.isSensor = in.getBoolean();
+        def.filter.categoryBits = in.getInt();
+        def.filter.maskBits = in.getInt();
+        def.filter.groupIndex = in.getInt();
+        int shapeType = in.getByte();
+        if (shapeType == SHAPE_POLYGON) {
+            PolygonShape polygon = new PolygonShape();
+            float radius = in.getFloat();
+            Vec2[] vertices = new Vec2[in.getInt()];
+            for (int i = 0; i < vertices.length; i++) {
+                vertices[i] = new Vec2(in.getFloat(), in.getFloat());
+            }
+            polygon.set(vertices, vertices.length);
+            polygon.setRadius(radius);
+            def.shape = polygon;
+        } else if (shapeType == SHAPE_CIRCLE) {
+            CircleShape circle = new CircleShape();
+            circle.setRadius(in.getFloat());
+            circle.m_p.set(in.getFloat(), in.getFloat());
+            def.shape = circle;
+        } else {
+            throw new IllegalArgumentException("Unknown shape type " + shapeType);
+        }
+        return def;
+    }
+
+    // Contacts are not saved: the first step after a restore reports them again.
+    static final ComponentCodec<CollisionComponent> COLLISION = new ComponentCodec<>() {
+        @Override
+        public Class<CollisionComponent> getType() {
+            return CollisionComponent.class;
+        }
+
+        @Override
+        public void write(CollisionComponent collision, SnapshotOutput out) {
+        }
+
+        @Override
+        public CollisionComponent read(SnapshotInput in) {
+            return new CollisionComponent();
+        }
+    };
+
+    static final ComponentCodec<MovementController> MOVEMENT = new ComponentCodec<>() {
+        @Override
+        public Class<MovementController> getType() {
+            return MovementController.class;
+        }
+
+        @Override
+        public void write(MovementController controller, SnapshotOutput out) {
+            out.putFloat(controller.getMoveSpeed()).putFloat(controller.getJumpForce());
+            out.putBoolean(controller.isJustJumped()).putBoolean(controller.isGrounded());
+        }
+
+        @Override
+        public MovementController read(SnapshotInput in) {
+            MovementController controller = new MovementController(in.getFloat(), in.getFloat());
+            controller.setJustJumped(in.getBoolean());
+            controller.setGrounded(in.getBoolean());
+            return controller;
+        }
+    };
+
+    static final ComponentCodec<Tags.PlayerTag> PLAYER_TAG = new ComponentCodec<>() {
+        @Override
+        public Class<Tags.PlayerTag> getType() {
+            return Tags.PlayerTag.class;
+        }
+
+        @Override
+        public void write(Tags.PlayerTag tag, SnapshotOutput out) {
+        }
+
+        @Override
+        public Tags.PlayerTag read(SnapshotInput in) {
+            return new Tags.PlayerTag();
+        }
+    };
+
+    static final ComponentCodec<Tags.GroundTag> GROUND_TAG = new ComponentCodec<>() {
+        @Override
+        public Class<Tags.GroundTag> getType() {
+            return Tags.GroundTag.class;
+        }
+
+        @Override
+        public void write(Tags.GroundTag tag, SnapshotOutput out) {
+        }
+
+        @Override
+        public Tags.GroundTag read(SnapshotInput in) {
+            return new Tags.GroundTag();
+        }
+    };
+
+    static final ComponentCodec<LightEmitterComponent> LIGHT = new ComponentCodec<>() {
+        @Override
+        public Class<LightEmitterComponent> getType() {
+            return LightEmitterComponent.class;
+        }
+
+        @Override
+        public void write(LightEmitterComponent light, SnapshotOutput out) {
+            out.putInt(light.getColor().getRGB()).putFloat(light.getRange()).putInt(light.getRays());
+            out.putFloat(light.getBaseIntensity()).putFloat(light.getPulseSpeed()).putFloat(light.getPulseAmplitude());
+            out.putByte(light.getShadowMode().ordinal());
+        }
+
+        @Override
+        public LightEmitterComponent read(SnapshotInput in) {
+            LightEmitterComponent light = new LightEmitterComponent(new Color(in.getInt(), true), in.getFloat(),
+                    in.getInt(), in.getFloat(), in.getFloat(), in.getFloat());
+            light.setShadowMode(LightEmitterComponent.ShadowMode.values()[in.getByte()]);
+            return light;
+        }
+    };
+
+    static final ComponentCodec<ChunkComponent> CHUNK = new ComponentCodec<>() {
+        @Override
+        public Class<ChunkComponent> getType() {
+            return ChunkComponent.class;
+        }
+
+        @Override
+        public void write(ChunkComponent chunk, SnapshotOutput out) {
+            out.putInt(chunk.getChunkX()).putInt(chunk.getChunkY());
+        }
+
+        @Override
+        public ChunkComponent read(SnapshotInput in) {
+            return new ChunkComponent(in.getInt(), in.getInt());
+        }
+    };
+
+    static final ComponentCodec<PrefabComponent> PREFAB = new ComponentCodec<>() {
+        @Override
+        public Class<PrefabComponent> getType() {
+            return PrefabComponent.class;
+        }
+
+        @Override
+        public void write(PrefabComponent prefab, SnapshotOutput out) {
+            out.putString(prefab.getPrefab());
+        }
+
+        @Override
+        public PrefabComponent read(SnapshotInput in) {
+            return new PrefabComponent(in.getString());
+        }
+    };
+
+    // The body is not saved: the tilemap system builds a new one from the tiles.
+    static final ComponentCodec<TilemapComponent> TILEMAP = new ComponentCodec<>() {
+        @Override
+        public Class<TilemapComponent> getType() {
+            return TilemapComponent.class;
+        }
+
+        @Override
+        public void write(TilemapComponent tilemap, SnapshotOutput out) {
+            out.putFloat(tilemap.getX()).putFloat(tilemap.getY()).putInt(tilemap.getColumns()).putInt(tilemap.getRows());
+            out.putFloat(tilemap.getTileSize()).putInt(tilemap.getLayer());
+            for (int id = 1; id < 256; id++) {
+                out.putInt(tilemap.getTileColor(id).getRGB());
+            }
+            for (int row = 0; row < tilemap.getRows(); row++) {
+                for (int column = 0; column < tilemap.getColumns(); column++) {
+                    out.putByte(tilemap.getTile(column, row));
+                }
+            }
+        }
+
+        @Override
+        public TilemapComponent read(SnapshotInput in) {
+            TilemapComponent tilemap = new TilemapComponent(in.getFloat(), in.getFloat(), in.getInt(), in.getInt(),
+                    in.getFloat());
+            tilemap.setLayer(in.getInt());
+            for (int id = 1; id < 256; id++) {
+                tilemap.setTileColor(id, new Color(in.getInt(), true));
+            }
+            for (int row = 0; row < tilemap.getRows(); row++) {
+                for (int column = 0; column < tilemap.getColumns(); column++) {
+                    tilemap.setTile(column, row, in.getByte() & 0xFF);
+                }
+            }
+            return tilemap;
+        }
+    };
+
+    static final ComponentCodec<CameraComponent> CAMERA = new ComponentCodec<>() {
+        @Override
+        public Class<CameraComponent> getType() {
+            return CameraComponent.class;
+        }
+
+        @Override
+        public void write(CameraComponent camera, SnapshotOutput out) {
+            out.putFloat(camera.getOrthoWidth()).putFloat(camera.getOrthoHeight());
+            out.putFloat(camera.getMinZoom()).putFloat(camera.getMaxZoom()).putFloat(camera.getZoom());
+            out.putFloat(camera.getFollowSmoothing()).putFloat(camera.getSmoothTime());
+            out.putFloat(camera.getInterpolatedX(0f)).putFloat(camera.getInterpolatedY(0f));
+            out.putFloat(camera.getPosition().x).putFloat(camera.getPosition().y);
+            out.putEntity(camera.getTarget());
+        }
+
+        @Override
+        public CameraComponent read(SnapshotInput in) {
+            CameraComponent camera = new CameraComponent(in.getFloat(), in.getFloat());
+            camera.setMinZoom(in.getFloat());
+            camera.setMaxZoom(in.getFloat());
+            camera.setZoom(in.getFloat());
+            camera.setFollowSmoothing(in.getFloat());
+            camera.setSmoothTime(in.getFloat());
+            camera.setPosition(new Vec2(in.getFloat(), in.getFloat())); // Previous step
+            camera.getPosition().set(in.getFloat(), in.getFloat());
+            in.getEntity(camera::setTarget);
+            return camera;
+        }
+    };
+}
@@ -0,0 +1,85 @@
+package org.caveman.core.snapshot;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The captured state of every entity and body at one tick, encoded in a {@link SnapshotFormat}.
+ * A snapshot is immutable once captured, so it can be written on any thread while the simulation
+ * moves on.
+ */
+public final class WorldSnapshot {
+    private final ByteBuffer data;
+    private final long tick;
+    private final int entityCount;
+
+    WorldSnapshot(ByteBuffer data, long tick, int entityCount) {
+        this.data = data;
+        this.tick = tick;
+        this.entityCount = entityCount;
+    }
+
+    /**
+     * Maps the snapshot file into memory. Restoring reads straight from the mapping.
+     *
+     * @throws IllegalArgumentException if the file is not a world snapshot
+     */
+    public static WorldSnapshot read(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (data.remaining() < Integer.BYTES + Short.BYTES + Long.BYTES || data.getInt(0) != SnapshotFormat.MAGIC) {
+                throw new IllegalArgumentException(path + ": not a world snapshot");
+            }
+            long tick = data.getLong(Integer.BYTES + Short.BYTES);
+            return new WorldSnapshot(data, tick, -1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read snapshot " + path, e);
+        }
+    }
+
+    /**
+     * Writes the snapshot to the file, replacing its contents, through a memory mapping of the
+     * file. Blocks until the data has reached the storage device.
+     */
+    public void write(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer source = getData();
+            MappedByteBuffer target = channel.map(FileChannel.MapMode.READ_WRITE, 0, source.remaining());
+            target.put(source);
+            target.force();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write snapshot " + path, e);
+        }
+    }
+
+    /**
+     * Returns a read-only view of the encoded snapshot.
+     */
+    public ByteBuffer getData() {
+        return data.duplicate().asReadOnlyBuffer();
+    }
+
+    public int getSize() {
+        return data.limit();
+    }
+
+    /**
+     * Returns the number of ticks the engine had run when the snapshot was captured.
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * Returns the number of entities captured, or -1 for a snapshot read from a file.
+     */
+    public int getEntityCount() {
+        return entityCount;
+    }
+}
@@ -0,0 +1,157 @@
+package org.caveman.systems;
+
+import java.awt.*;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Adds the source colour, weighted by its alpha and an extra alpha, to the destination and
+ * saturates at full brightness. Java2D has no additive blend mode, so this runs in software;
+ * it is meant for the small offscreen light map, not for the back buffer.
+ */
+public final class AdditiveComposite implements Composite {
+    // Instances are quantized like the light intensities so they can be shared across frames.
+    private static final AdditiveComposite[] LEVELS = new AdditiveComposite[256];
+
+    private final float alpha;
+
+    private AdditiveComposite(float alpha) {
+        this.alpha = alpha;
+    }
+
+    /**
+     * Returns a shared composite for the given extra alpha.
+     *
+     * @param alpha the weight of the source, between 0 and 1
+     */
+    public static AdditiveComposite getInstance(float alpha) {
+        int level = Math.round(Math.max(0f, Math.min(1f, alpha)) * (LEVELS.length - 1));
+        AdditiveComposite composite = LEVELS[level];
+        if (composite == null) {
+            composite = new AdditiveComposite(level / (float) (LEVELS.length - 1));
+            LEVELS[level] = composite;
+        }
+        return composite;
+    }
+
+    public float getAlpha() {
+        return alpha;
+    }
+
+    @Override
+    public CompositeContext createContext(ColorModel srcColorModel, ColorModel dstColorModel, RenderingHints hints) {
+        return new Context(srcColorModel, dstColorModel, alpha);
+    }
+
+    private static final class Context implements CompositeContext {
+        private final boolean srcPremultiplied;
+        private final boolean srcHasAlpha;
+        private final int srcBands;
+        private final int dstBands;
+        private final int scale; // alpha scaled to 0..256 for integer math
+        private final boolean packedRgb; // both colour models are 0x(AA)RRGGBB packed ints
+        private int[] srcRow = new int[0];
+        private int[] dstRow = new int[0];
+
+        Context(ColorModel srcColorModel, ColorModel dstColorModel, float alpha) {
+            this.srcPremultiplied = srcColorModel.isAlphaPremultiplied();
+            this.srcHasAlpha = srcColorModel.hasAlpha();
+            this.srcBands = srcColorModel.getNumComponents();
+            this.dstBands = dstColorModel.getNumComponents();
+            this.scale = Math.round(alpha * 256);
+            this.packedRgb = isPackedRgb(srcColorModel) && isPackedRgb(dstColorModel);
+        }
+
+        private static boolean isPackedRgb(ColorModel colorModel) {
+            return colorModel instanceof DirectColorModel direct
+                    && direct.getRedMask() == 0xFF0000 && direct.getGreenMask() == 0xFF00 && direct.getBlueMask() == 0xFF
+                    && (!direct.hasAlpha() || direct.getAlphaMask() == 0xFF000000);
+        }
+
+        private static boolean isPackedInts(Raster raster) {
+            return raster.getSampleModel() instanceof SinglePixelPackedSampleModel
+                    && raster.getDataBuffer() instanceof DataBufferInt;
+        }
+
+        @Override
+        public void compose(Raster src, Raster dstIn, WritableRaster dstOut) {
+            if (packedRgb && isPackedInts(src) && isPackedInts(dstIn) && isPackedInts(dstOut)) {
+                composePacked(src, dstIn, dstOut);
+            } else {
+                composeBands(src, dstIn, dstOut);
+            }
+        }
+
+        // Fast path: works on the backing int arrays directly instead of going through per-sample accessors.
+        private void composePacked(Raster src, Raster dstIn, WritableRaster dstOut) {
+            int width = Math.min(src.getWidth(), dstIn.getWidth());
+            int height = Math.min(src.getHeight(), dstIn.getHeight());
+            int[] srcData = ((DataBufferInt) src.getDataBuffer()).getData();
+            int[] inData = ((DataBufferInt) dstIn.getDataBuffer()).getData();
+            int[] outData = ((DataBufferInt) dstOut.getDataBuffer()).getData();
+            int srcStride = ((SinglePixelPackedSampleModel) src.getSampleModel()).getScanlineStride();
+            int inStride = ((SinglePixelPackedSampleModel) dstIn.getSampleModel()).getScanlineStride();
+            int outStride = ((SinglePixelPackedSampleModel) dstOut.getSampleModel()).getScanlineStride();
+            int srcIndex = offset(src);
+            int inIndex = offset(dstIn);
+            int outIndex = offset(dstOut);
+            boolean weighByAlpha = srcHasAlpha && !srcPremultiplied;
+
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    int s = srcData[srcIndex + x];
+                    int d = inData[inIndex + x];
+                    int weight = weighByAlpha ? (scale * (s >>> 24)) / 255 : scale;
+                    int r = Math.min(255, ((d >> 16) & 0xFF) + ((((s >> 16) & 0xFF) * weight) >> 8));
+                    int g = Math.min(255, ((d >> 8) & 0xFF) + ((((s >> 8) & 0xFF) * weight) >> 8));
+                    int b = Math.min(255, (d & 0xFF) + (((s & 0xFF) * weight) >> 8));
+                    outData[outIndex + x] = (d & 0xFF000000) | (r << 16) | (g << 8) | b;
+                }
+                srcIndex += srcStride;
+                inIndex += inStride;
+                outIndex += outStride;
+            }
+        }
+
+        private static int offset(Raster raster) {
+            SinglePixelPackedSampleModel sampleModel = (SinglePixelPackedSampleModel) raster.getSampleModel();
+            return raster.getDataBuffer().getOffset() + sampleModel.getOffset(
+                    raster.getMinX() - raster.getSampleModelTranslateX(),
+                    raster.getMinY() - raster.getSampleModelTranslateY());
+        }
+
+        private void composeBands(Raster src, Raster dstIn, WritableRaster dstOut) {
+            int width = Math.min(src.getWidth(), dstIn.getWidth());
+            int height = Math.min(src.getHeight(), dstIn.getHeight());
+            if (srcRow.length < width * srcBands) srcRow = new int[width * srcBands];
+            if (dstRow.length < width * dstBands) dstRow = new int[width * dstBands];
+
+            for (int y = 0; y < height; y++) {
+                src.getPixels(src.getMinX(), src.getMinY() + y, width, 1, srcRow);
+                dstIn.getPixels(dstIn.getMinX(), dstIn.getMinY() + y, width, 1, dstRow);
+                for (int x = 0; x < width; x++) {
+                    int s = x * srcBands;
+                    int d = x * dstBands;
+                    // Bands are ordered R, G, B(, A) for both packed and component colour models.
+                    int weight = scale;
+                    if (srcHasAlpha && !srcPremultiplied) {
+                        weight = (weight * srcRow[s + 3]) / 255;
+                    }
+                    for (int c = 0; c < 3; c++) {
+                        int value = dstRow[d + c] + ((srcRow[s + c] * weight) >> 8);
+                        dstRow[d + c] = Math.min(255, value);
+                    }
+                }
+                dstOut.setPixels(dstOut.getMinX(), dstOut.getMinY() + y, width, 1, dstRow);
+            }
+        }
+
+        @Override
+        public void dispose() {
+        }
+    }
+}
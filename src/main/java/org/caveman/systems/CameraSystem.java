@@ -1,34 +1,120 @@
 package org.caveman.systems;
 
 import dev.dominion.ecs.api.Dominion;
+import dev.dominion.ecs.api.Entity;
 import org.caveman.components.CameraComponent;
+import org.caveman.components.TransformComponent;
+import org.caveman.core.ComponentAccess;
+import org.caveman.core.EntityLifecycle;
 import org.caveman.core.GameEngine;
 import org.caveman.core.InputHandler;
 
-import java.awt.event.KeyEvent;
+import java.util.Arrays;
 
-public class CameraSystem implements Runnable {
+/**
+ * Zooms the cameras on input and moves them after their targets.
+ * <p>
+ * Cameras are cached like the players of the {@link MovementSystem}: queried on the first run and
+ * again only after the lifecycle reports a camera, or once a cached camera was deleted.
+ */
+public class CameraSystem implements Runnable, ComponentAccess, EntityLifecycle.Listener {
     private final Dominion dominion;
+    private final InputHandler input;
+    private final InputHandler.Action zoomIn;
+    private final InputHandler.Action zoomOut;
+    private Entity[] entities = new Entity[0];
+    private CameraComponent[] cameras = new CameraComponent[0];
+    private int cameraCount;
+    private boolean stale = true;
 
-    public CameraSystem(Dominion dominion) {
+    public CameraSystem(Dominion dominion, InputHandler input) {
         this.dominion = dominion;
+        this.input = input;
+        this.zoomIn = input.getAction("zoomIn");
+        this.zoomOut = input.getAction("zoomOut");
+    }
+
+    @Override
+    public Class<?>[] reads() {
+        return new Class<?>[]{TransformComponent.class, InputHandler.class}; // The followed target
+    }
+
+    @Override
+    public Class<?>[] writes() {
+        return new Class<?>[]{CameraComponent.class};
     }
 
     @Override
     public void run() {
+        if (stale || hasDeletedCamera()) {
+            rebuildCameras();
+        }
+
         // Retrieve the elapsed time since the last update
         float deltaTime = (float) GameEngine.getDeltaTime();
 
-        dominion.findEntitiesWith(CameraComponent.class)
-                .forEach(entity -> {
-                    CameraComponent camera = entity.comp();
-                    if(InputHandler.isKeyPressed(KeyEvent.VK_UP)){
-                        camera.setZoom(camera.getZoom() + 0.01f);
-                    } else if(InputHandler.isKeyPressed(KeyEvent.VK_DOWN)){
-                        camera.setZoom(camera.getZoom() - 0.01f);
-                    }
-                    // Update the camera (which handles smooth target following internally)
-                    camera.update(deltaTime);
-                });
+        for (int i = 0; i < cameraCount; i++) {
+            if (!entities[i].isEnabled()) continue;
+            CameraComponent camera = cameras[i];
+            if(input.isDown(zoomIn)){
+                camera.setZoom(camera.getZoom() + 0.01f);
+            } else if(input.isDown(zoomOut)){
+                camera.setZoom(camera.getZoom() - 0.01f);
+            }
+            // Update the camera (which handles smooth target following internally)
+            camera.update(deltaTime);
+        }
+    }
+
+    /**
+     * Makes the next run query the cameras again, e.g. after a camera was created straight
+     * through Dominion or the world was restored.
+     */
+    public void invalidate() {
+        stale = true;
+    }
+
+    @Override
+    public void entityCreated(Entity entity) {
+        if (entity.has(CameraComponent.class)) {
+            stale = true;
+        }
+    }
+
+    @Override
+    public void componentAdded(Entity entity, Object component) {
+        if (component instanceof CameraComponent) {
+            stale = true;
+        }
+    }
+
+    @Override
+    public void entityDestroyed(Entity entity) {
+        if (entity.has(CameraComponent.class)) {
+            stale = true;
+        }
+    }
+
+    private boolean hasDeletedCamera() {
+        for (int i = 0; i < cameraCount; i++) {
+            if (entities[i].isDeleted()) return true;
+        }
+        return false;
+    }
+
+    private void rebuildCameras() {
+        stale = false;
+        cameraCount = 0;
+        for (var entity : dominion.findEntitiesWith(CameraComponent.class)) {
+            if (cameraCount == entities.length) {
+                int capacity = Math.max(2, cameraCount * 2);
+                entities = Arrays.copyOf(entities, capacity);
+                cameras = Arrays.copyOf(cameras, capacity);
+            }
+            entities[cameraCount] = entity.entity();
+            cameras[cameraCount++] = entity.comp();
+        }
+        Arrays.fill(entities, cameraCount, entities.length, null);
+        Arrays.fill(cameras, cameraCount, cameras.length, null);
     }
 }
@@ -0,0 +1,26 @@
+package org.caveman.systems;
+
+import dev.dominion.ecs.api.Entity;
+
+/**
+ * Receives contact events dispatched by {@link CollisionSystem} after the physics step. A listener
+ * is registered for a component type and is called once for every entity of a contact that has
+ * that component, with the other entity of the contact.
+ */
+public interface CollisionListener {
+
+    /**
+     * Called when the entity starts touching the other entity.
+     *
+     * @param normalX x of the contact normal, pointing from the entity to the other entity
+     * @param normalY y of the contact normal, pointing from the entity to the other entity
+     */
+    default void onContactBegin(Entity entity, Entity other, float normalX, float normalY) {
+    }
+
+    /**
+     * Called when the entity stops touching the other entity.
+     */
+    default void onContactEnd(Entity entity, Entity other) {
+    }
+}
@@ -5,62 +5,131 @@ import dev.dominion.ecs.api.Entity;
 import org.caveman.components.CollisionComponent;
 import org.caveman.components.MovementController;
 import org.caveman.components.Tags;
+import org.caveman.core.ComponentAccess;
 import org.caveman.core.GameEngine;
-import org.jbox2d.collision.WorldManifold;
-import org.jbox2d.common.Vec2;
-import org.jbox2d.dynamics.contacts.Contact;
 
-public class CollisionSystem implements Runnable {
+import java.util.Arrays;
+
+/**
+ * Applies the contact events recorded during the physics step. Each event updates the contact
+ * sets of both entities and is passed to the listeners registered for their components, in the
+ * order the solver reported them. Must run after {@link PhysicsSystem} in the same tick, never
+ * concurrently with it. Listeners run as part of this system, so they should only touch the
+ * types it declares in {@link #writes()}.
+ */
+public class CollisionSystem implements Runnable, ComponentAccess {
     private final Dominion dominion;
+    private final ContactEventQueue contactEvents = new ContactEventQueue();
+    private Class<?>[] listenerTypes = new Class<?>[4];
+    private CollisionListener[] listeners = new CollisionListener[4];
+    private int listenerCount;
 
     public CollisionSystem(Dominion dominion) {
         this.dominion = dominion;
+        addListener(Tags.PlayerTag.class, new GroundListener());
+    }
+
+    /**
+     * Registers a listener for the entities that have the given component.
+     *
+     * @param componentType the component an entity needs for the listener to be called
+     */
+    public void addListener(Class<?> componentType, CollisionListener listener) {
+        if (listenerCount == listeners.length) {
+            listenerTypes = Arrays.copyOf(listenerTypes, listenerCount * 2);
+            listeners = Arrays.copyOf(listeners, listenerCount * 2);
+        }
+        listenerTypes[listenerCount] = componentType;
+        listeners[listenerCount++] = listener;
+    }
+
+    /**
+     * Removes every registration of the given listener.
+     */
+    public void removeListener(CollisionListener listener) {
+        int kept = 0;
+        for (int i = 0; i < listenerCount; i++) {
+            if (listeners[i] == listener) continue;
+            listenerTypes[kept] = listenerTypes[i];
+            listeners[kept++] = listeners[i];
+        }
+        Arrays.fill(listenerTypes, kept, listenerCount, null);
+        Arrays.fill(listeners, kept, listenerCount, null);
+        listenerCount = kept;
     }
 
     @Override
-    public void run() {
-        dominion.findEntitiesWith(CollisionComponent.class)
-                .forEach(entity -> {
-                    CollisionComponent collision = entity.comp();
-                    collision.reset();
-                });
+    public Class<?>[] reads() {
+        return new Class<?>[]{Tags.PlayerTag.class, Tags.GroundTag.class};
     }
 
-    public void handleCollision(Contact contact, boolean entering) {
-        Object dataA = contact.getFixtureA().getUserData();
-        Object dataB = contact.getFixtureB().getUserData();
+    @Override
+    public Class<?>[] writes() {
+        return new Class<?>[]{ContactEventQueue.class, CollisionComponent.class, MovementController.class};
+    }
 
+    /**
+     * Returns the queue the contact listener records into.
+     */
+    public ContactEventQueue getContactEvents() {
+        return contactEvents;
+    }
 
-        if (dataA == null) {
-            System.out.println("Data A is null");
-            return;
-        }
-        if (dataB == null) {
-            System.out.println("Data B is null");
-            return;
+    @Override
+    public void run() {
+        ContactEventQueue events = contactEvents;
+        int count = events.size();
+        for (int i = 0; i < count; i++) {
+            Entity entityA = events.getEntityA(i);
+            Entity entityB = events.getEntityB(i);
+            if (events.isBegin(i)) {
+                float normalX = events.getNormalX(i);
+                float normalY = events.getNormalY(i);
+                begin(entityA, entityB, normalX, normalY);
+                begin(entityB, entityA, -normalX, -normalY);
+            } else {
+                end(entityA, entityB);
+                end(entityB, entityA);
+            }
         }
-        Entity entityA = (Entity) dataA;
-        Entity entityB = (Entity) dataB;
-        entityA.get(CollisionComponent.class).setColliding(true);
-        entityB.get(CollisionComponent.class).setColliding(true);
+        events.discard(count);
+    }
 
+    private void begin(Entity entity, Entity other, float normalX, float normalY) {
+        if (entity.isDeleted() || !entity.isEnabled()) return; // Deleted or despawned since
+        CollisionComponent collision = entity.get(CollisionComponent.class);
+        if (collision != null) {
+            collision.addContact(other);
+        }
+        for (int i = 0; i < listenerCount; i++) {
+            if (entity.has(listenerTypes[i])) {
+                listeners[i].onContactBegin(entity, other, normalX, normalY);
+            }
+        }
+    }
 
-        entityA.get(CollisionComponent.class).setOtherEntity(entityB);
-        entityB.get(CollisionComponent.class).setOtherEntity(entityA);
-        // Check for ground collisions on both fixtures.
-        checkGroundCollision(contact,entityA, entityB, entering);
-        checkGroundCollision(contact,entityB, entityA, entering);
+    private void end(Entity entity, Entity other) {
+        if (entity.isDeleted() || !entity.isEnabled()) return; // Deleted or despawned since
+        CollisionComponent collision = entity.get(CollisionComponent.class);
+        if (collision != null) {
+            collision.removeContact(other);
+        }
+        for (int i = 0; i < listenerCount; i++) {
+            if (entity.has(listenerTypes[i])) {
+                listeners[i].onContactEnd(entity, other);
+            }
+        }
     }
 
-    private void checkGroundCollision(Contact contact ,Entity entity, Entity other, boolean entering) {
-        if (!entering) return;
-        if (entity.has(Tags.PlayerTag.class) && other.has(Tags.GroundTag.class)) {
+    // Grounds a player that lands on top of a ground entity.
+    private static final class GroundListener implements CollisionListener {
+        @Override
+        public void onContactBegin(Entity entity, Entity other, float normalX, float normalY) {
+            if (other.isDeleted() || !other.isEnabled() || !other.has(Tags.GroundTag.class)) return;
             MovementController controller = entity.get(MovementController.class);
             if (controller != null && !controller.isJustJumped()) {
-                WorldManifold worldManifold = new WorldManifold();
-                contact.getWorldManifold(worldManifold);
-                Vec2 normal = worldManifold.normal;
-                float dot = Vec2.dot(normal, GameEngine.UP_VEC);
+                // The normal from the ground to the player must point up.
+                float dot = -(normalX * GameEngine.UP_VEC.x + normalY * GameEngine.UP_VEC.y);
                 if (dot < -0.9f) {
                     controller.setGrounded(true);
                 }
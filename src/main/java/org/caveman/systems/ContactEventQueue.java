@@ -0,0 +1,151 @@
+package org.caveman.systems;
+
+import dev.dominion.ecs.api.Entity;
+
+/**
+ * A ring buffer of contact begin and end events, recorded by {@link GameContactListener} while the
+ * physics world steps and dispatched by {@link CollisionSystem} after it. Events are stored in
+ * preallocated parallel arrays, so recording one costs a few array writes and no ECS lookups
+ * inside the solver. If a step produces more events than fit, the buffer doubles rather than
+ * dropping any.
+ * <p>
+ * The queue is not thread safe: the physics step and the collision system run one after the other.
+ */
+public class ContactEventQueue {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private Entity[] entitiesA;
+    private Entity[] entitiesB;
+    private float[] normalXs; // Contact normal pointing from A to B; zero for end events
+    private float[] normalYs;
+    private boolean[] begins;
+    private int head;
+    private int size;
+
+    public ContactEventQueue() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the initial number of events the queue holds, rounded up to a power of two
+     */
+    public ContactEventQueue(int capacity) {
+        int length = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        entitiesA = new Entity[length];
+        entitiesB = new Entity[length];
+        normalXs = new float[length];
+        normalYs = new float[length];
+        begins = new boolean[length];
+    }
+
+    /**
+     * Records that two fixtures started touching.
+     *
+     * @param normalX x of the contact normal, pointing from A to B
+     * @param normalY y of the contact normal, pointing from A to B
+     */
+    public void addBegin(Entity a, Entity b, float normalX, float normalY) {
+        add(true, a, b, normalX, normalY);
+    }
+
+    /**
+     * Records that two fixtures stopped touching.
+     */
+    public void addEnd(Entity a, Entity b) {
+        add(false, a, b, 0, 0);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns true if the i-th oldest event is a begin event, false for an end event.
+     */
+    public boolean isBegin(int i) {
+        return begins[slot(i)];
+    }
+
+    public Entity getEntityA(int i) {
+        return entitiesA[slot(i)];
+    }
+
+    public Entity getEntityB(int i) {
+        return entitiesB[slot(i)];
+    }
+
+    public float getNormalX(int i) {
+        return normalXs[slot(i)];
+    }
+
+    public float getNormalY(int i) {
+        return normalYs[slot(i)];
+    }
+
+    /**
+     * Removes the given number of oldest events.
+     */
+    public void discard(int count) {
+        if (count < 0 || count > size) {
+            throw new IllegalArgumentException("Cannot discard " + count + " of " + size + " events");
+        }
+        for (int i = 0; i < count; i++) {
+            int slot = slot(i);
+            entitiesA[slot] = null;
+            entitiesB[slot] = null;
+        }
+        head = (head + count) & (begins.length - 1);
+        size -= count;
+    }
+
+    public int getCapacity() {
+        return begins.length;
+    }
+
+    private void add(boolean begin, Entity a, Entity b, float normalX, float normalY) {
+        if (size == begins.length) {
+            grow();
+        }
+        int slot = slot(size++);
+        begins[slot] = begin;
+        entitiesA[slot] = a;
+        entitiesB[slot] = b;
+        normalXs[slot] = normalX;
+        normalYs[slot] = normalY;
+    }
+
+    private int slot(int i) {
+        return (head + i) & (begins.length - 1);
+    }
+
+    // Unrolls the ring into arrays twice the size, oldest event first.
+    private void grow() {
+        int length = begins.length * 2;
+        entitiesA = unroll(entitiesA, new Entity[length]);
+        entitiesB = unroll(entitiesB, new Entity[length]);
+        float[] xs = new float[length];
+        float[] ys = new float[length];
+        boolean[] flags = new boolean[length];
+        for (int i = 0; i < size; i++) {
+            int slot = slot(i);
+            xs[i] = normalXs[slot];
+            ys[i] = normalYs[slot];
+            flags[i] = begins[slot];
+        }
+        normalXs = xs;
+        normalYs = ys;
+        begins = flags;
+        head = 0;
+    }
+
+    private Entity[] unroll(Entity[] source, Entity[] target) {
+        int first = Math.min(size, source.length - head);
+        System.arraycopy(source, head, target, 0, first);
+        System.arraycopy(source, 0, target, first, size - first);
+        return target;
+    }
+}
@@ -1,25 +1,42 @@
 package org.caveman.systems;
 
+import dev.dominion.ecs.api.Entity;
 import org.jbox2d.callbacks.ContactImpulse;
 import org.jbox2d.callbacks.ContactListener;
 import org.jbox2d.collision.Manifold;
+import org.jbox2d.collision.WorldManifold;
+import org.jbox2d.dynamics.Fixture;
 import org.jbox2d.dynamics.contacts.Contact;
 
+/**
+ * Records contact begin and end events into the collision system's {@link ContactEventQueue}.
+ * It runs inside {@code world.step}, so it only reads the entities from the fixtures and the
+ * contact normal; the events are applied once the step has finished.
+ */
 public class GameContactListener implements ContactListener {
-    private final CollisionSystem collisionSystem;
+    private final ContactEventQueue events;
+    private final WorldManifold worldManifold = new WorldManifold();
 
     public GameContactListener(CollisionSystem collisionSystem) {
-        this.collisionSystem = collisionSystem;
+        this.events = collisionSystem.getContactEvents();
     }
 
     @Override
     public void beginContact(Contact contact) {
-        collisionSystem.handleCollision(contact, true);
+        Entity entityA = entityOf(contact.getFixtureA());
+        Entity entityB = entityOf(contact.getFixtureB());
+        if (entityA == null || entityB == null) return;
+        // Contacts are pooled and reused by the world, so the normal is copied out now.
+        contact.getWorldManifold(worldManifold);
+        events.addBegin(entityA, entityB, worldManifold.normal.x, worldManifold.normal.y);
     }
 
     @Override
     public void endContact(Contact contact) {
-        collisionSystem.handleCollision(contact, false);
+        Entity entityA = entityOf(contact.getFixtureA());
+        Entity entityB = entityOf(contact.getFixtureB());
+        if (entityA == null || entityB == null) return;
+        events.addEnd(entityA, entityB);
     }
 
     @Override
@@ -31,4 +48,11 @@ public class GameContactListener implements ContactListener {
     public void postSolve(Contact contact, ContactImpulse impulse) {
         // No post-solve logic needed for this example.
     }
-}
\ No newline at end of file
+
+    // Factories tag fixtures with their entity; bodies created by the physics system only tag the body.
+    private static Entity entityOf(Fixture fixture) {
+        if (fixture.getUserData() instanceof Entity entity) return entity;
+        if (fixture.getBody().getUserData() instanceof Entity entity) return entity;
+        return null;
+    }
+}
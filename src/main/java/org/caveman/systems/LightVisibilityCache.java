@@ -0,0 +1,355 @@
+package org.caveman.systems;
+
+import org.caveman.components.LightEmitterComponent;
+import org.jbox2d.callbacks.QueryCallback;
+import org.jbox2d.callbacks.RayCastCallback;
+import org.jbox2d.collision.AABB;
+import org.jbox2d.collision.shapes.ChainShape;
+import org.jbox2d.collision.shapes.CircleShape;
+import org.jbox2d.collision.shapes.EdgeShape;
+import org.jbox2d.collision.shapes.PolygonShape;
+import org.jbox2d.collision.shapes.Shape;
+import org.jbox2d.common.Transform;
+import org.jbox2d.common.Vec2;
+import org.jbox2d.dynamics.Body;
+import org.jbox2d.dynamics.Fixture;
+import org.jbox2d.dynamics.World;
+
+import java.awt.*;
+import java.awt.geom.Path2D;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Caches the lit polygon and gradient of every light. Ray casting only happens when the light
+ * moved, its settings changed, or the fixtures inside the light's bounding box changed (a body
+ * moved, static ones included, or a fixture or body was created or destroyed). Validating an
+ * entry costs one broadphase query instead of one ray cast per ray.
+ */
+public class LightVisibilityCache {
+    // Angular offset of the two extra rays cast past each corner, so they can slip by the occluder.
+    private static final float CORNER_EPSILON = 0.0001f;
+    // Rays spread evenly around the light so unoccluded areas still follow the light's circle.
+    private static final int BOUNDARY_RAYS = 32;
+    private static final int CIRCLE_SAMPLES = 8;
+
+    private final World world;
+    private final float pixelsPerMeter;
+    private final Map<LightEmitterComponent, Entry> entries = new WeakHashMap<>();
+
+    // Scratch state shared by all lights; the cache is only used from the rendering thread.
+    private final ClosestHitCallback rayCallback = new ClosestHitCallback();
+    private final OccluderCollector occluders = new OccluderCollector();
+    private final AABB queryBounds = new AABB();
+    private final Vec2 origin = new Vec2();
+    private final Vec2 end = new Vec2();
+    private final Vec2 corner = new Vec2();
+    private float[] angles = new float[256];
+    private int angleCount;
+    private long hits;
+    private long misses;
+
+    /**
+     * The cached visibility of a single light.
+     */
+    public static final class Entry {
+        private final Path2D.Float polygon = new Path2D.Float();
+        private RadialGradientPaint gradient;
+        private float x, y, range;
+        private int rays;
+        private LightEmitterComponent.ShadowMode shadowMode;
+        private Color color;
+        private boolean valid;
+        // The fixtures that were inside the light's bounds when the polygon was built, and where
+        // their bodies were.
+        private Fixture[] fixtures = new Fixture[16];
+        private Body[] bodies = new Body[16];
+        private float[] bodyX = new float[16];
+        private float[] bodyY = new float[16];
+        private float[] bodyAngle = new float[16];
+        private int bodyCount;
+
+        public Path2D.Float getPolygon() {
+            return polygon;
+        }
+
+        /**
+         * Returns the gradient at full intensity; the current intensity is applied through the composite.
+         */
+        public RadialGradientPaint getGradient() {
+            return gradient;
+        }
+    }
+
+    public LightVisibilityCache(World world, float pixelsPerMeter) {
+        this.world = world;
+        this.pixelsPerMeter = pixelsPerMeter;
+    }
+
+    /**
+     * Returns the up to date visibility of a light, rebuilding it only if something in range changed.
+     *
+     * @param light the light
+     * @param x     the light's X position (in meters)
+     * @param y     the light's Y position (in meters)
+     */
+    public Entry get(LightEmitterComponent light, float x, float y) {
+        Entry entry = entries.computeIfAbsent(light, key -> new Entry());
+        collectOccluders(x, y, light.getRange());
+
+        if (entry.valid && entry.x == x && entry.y == y && entry.range == light.getRange()
+                && entry.rays == light.getRays() && entry.shadowMode == light.getShadowMode()
+                && entry.color.equals(light.getColor())
+                && occludersUnchanged(entry)) {
+            hits++;
+            return entry;
+        }
+
+        misses++;
+        rebuild(entry, light, x, y);
+        return entry;
+    }
+
+    /**
+     * Forgets a light that is gone.
+     */
+    public void remove(LightEmitterComponent light) {
+        entries.remove(light);
+    }
+
+    /**
+     * Drops every cached polygon, e.g. after the physics world was replaced.
+     */
+    public void invalidateAll() {
+        for (Entry entry : entries.values()) {
+            entry.valid = false;
+        }
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    private void collectOccluders(float x, float y, float range) {
+        occluders.count = 0;
+        queryBounds.lowerBound.set(x - range, y - range);
+        queryBounds.upperBound.set(x + range, y + range);
+        world.queryAABB(occluders, queryBounds);
+    }
+
+    private boolean occludersUnchanged(Entry entry) {
+        if (entry.bodyCount != occluders.count) return false;
+        for (int i = 0; i < occluders.count; i++) {
+            Body body = occluders.bodies[i];
+            // Fixtures are compared too, since they can be swapped on a body that stays put.
+            if (occluders.fixtures[i] != entry.fixtures[i] || body != entry.bodies[i]) return false;
+            // Static bodies are compared as well; they can still be moved with setTransform.
+            Vec2 position = body.getPosition();
+            if (position.x != entry.bodyX[i] || position.y != entry.bodyY[i] || body.getAngle() != entry.bodyAngle[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rebuild(Entry entry, LightEmitterComponent light, float x, float y) {
+        entry.x = x;
+        entry.y = y;
+        entry.range = light.getRange();
+        entry.rays = light.getRays();
+        entry.shadowMode = light.getShadowMode();
+        entry.color = light.getColor();
+        rememberOccluders(entry);
+        if (light.getShadowMode() == LightEmitterComponent.ShadowMode.VISIBILITY_POLYGON) {
+            buildVisibilityPolygon(entry.polygon, x, y, light.getRange());
+        } else {
+            buildRayFan(entry.polygon, x, y, light.getRange(), light.getRays());
+        }
+
+        Color color = light.getColor();
+        Color centerColor = new Color(color.getRed(), color.getGreen(), color.getBlue(), 255);
+        Color edgeColor = new Color(color.getRed(), color.getGreen(), color.getBlue(), 0);
+        entry.gradient = new RadialGradientPaint(
+                x * pixelsPerMeter, y * pixelsPerMeter, light.getRange() * pixelsPerMeter,
+                new float[]{0.0f, 1.0f}, new Color[]{centerColor, edgeColor});
+        entry.valid = true;
+    }
+
+    private void rememberOccluders(Entry entry) {
+        int count = occluders.count;
+        if (entry.bodies.length < count) {
+            int capacity = Math.max(count, entry.bodies.length * 2);
+            entry.fixtures = new Fixture[capacity];
+            entry.bodies = new Body[capacity];
+            entry.bodyX = new float[capacity];
+            entry.bodyY = new float[capacity];
+            entry.bodyAngle = new float[capacity];
+        }
+        for (int i = 0; i < count; i++) {
+            Body body = occluders.bodies[i];
+            entry.fixtures[i] = occluders.fixtures[i];
+            entry.bodies[i] = body;
+            entry.bodyX[i] = body.getPosition().x;
+            entry.bodyY[i] = body.getPosition().y;
+            entry.bodyAngle[i] = body.getAngle();
+        }
+        if (entry.bodyCount > count) {
+            Arrays.fill(entry.fixtures, count, entry.bodyCount, null);
+            Arrays.fill(entry.bodies, count, entry.bodyCount, null);
+        }
+        entry.bodyCount = count;
+    }
+
+    /**
+     * Builds the lit polygon by casting a uniform fan of rays from the light.
+     * Each ray stops at the closest fixture it hits, or at the light's range.
+     */
+    private void buildRayFan(Path2D.Float polygon, float x, float y, float range, int rays) {
+        polygon.reset();
+        origin.set(x, y);
+        float angleStep = (float) (2 * Math.PI / rays);
+
+        for (int i = 0; i < rays; i++) {
+            float angle = i * angleStep;
+            end.set(x + (float) Math.cos(angle) * range, y + (float) Math.sin(angle) * range);
+
+            rayCallback.reset();
+            world.raycast(rayCallback, origin, end);
+            Vec2 hitPoint = rayCallback.hit ? rayCallback.hitPoint : end;
+
+            float pointX = hitPoint.x * pixelsPerMeter;
+            float pointY = hitPoint.y * pixelsPerMeter;
+            if (i == 0) {
+                polygon.moveTo(pointX, pointY);
+            } else {
+                polygon.lineTo(pointX, pointY);
+            }
+        }
+        polygon.closePath();
+    }
+
+    /**
+     * Builds the lit polygon from rays aimed only at the corners of the fixtures in range
+     * (plus one ray on each side of every corner) and a coarse boundary circle. The hit points,
+     * ordered by angle, trace the exact visibility polygon.
+     */
+    private void buildVisibilityPolygon(Path2D.Float polygon, float x, float y, float range) {
+        angleCount = 0;
+        for (int i = 0; i < BOUNDARY_RAYS; i++) {
+            addAngle((float) (2 * Math.PI * i / BOUNDARY_RAYS));
+        }
+        for (int i = 0; i < occluders.count; i++) {
+            addCornerAngles(occluders.fixtures[i], x, y);
+        }
+        Arrays.sort(angles, 0, angleCount);
+
+        polygon.reset();
+        origin.set(x, y);
+        for (int i = 0; i < angleCount; i++) {
+            float angle = angles[i];
+            end.set(x + (float) Math.cos(angle) * range, y + (float) Math.sin(angle) * range);
+
+            rayCallback.reset();
+            world.raycast(rayCallback, origin, end);
+            Vec2 hitPoint = rayCallback.hit ? rayCallback.hitPoint : end;
+
+            float pointX = hitPoint.x * pixelsPerMeter;
+            float pointY = hitPoint.y * pixelsPerMeter;
+            if (i == 0) {
+                polygon.moveTo(pointX, pointY);
+            } else {
+                polygon.lineTo(pointX, pointY);
+            }
+        }
+        polygon.closePath();
+    }
+
+    private void addCornerAngles(Fixture fixture, float x, float y) {
+        Shape shape = fixture.getShape();
+        Transform transform = fixture.getBody().getTransform();
+        if (shape instanceof PolygonShape polygonShape) {
+            for (int i = 0; i < polygonShape.getVertexCount(); i++) {
+                addCorner(transform, polygonShape.getVertex(i), x, y);
+            }
+        } else if (shape instanceof EdgeShape edge) {
+            addCorner(transform, edge.m_vertex1, x, y);
+            addCorner(transform, edge.m_vertex2, x, y);
+        } else if (shape instanceof ChainShape chain) {
+            for (int i = 0; i < chain.m_count; i++) {
+                addCorner(transform, chain.m_vertices[i], x, y);
+            }
+        } else if (shape instanceof CircleShape circle) {
+            // Circles have no corners; sample the outline so their shadows stay roughly round.
+            Transform.mulToOutUnsafe(transform, circle.m_p, corner);
+            for (int i = 0; i < CIRCLE_SAMPLES; i++) {
+                double angle = 2 * Math.PI * i / CIRCLE_SAMPLES;
+                float cornerX = corner.x + (float) Math.cos(angle) * circle.m_radius;
+                float cornerY = corner.y + (float) Math.sin(angle) * circle.m_radius;
+                addAngle((float) Math.atan2(cornerY - y, cornerX - x));
+            }
+        }
+    }
+
+    private void addCorner(Transform transform, Vec2 localVertex, float x, float y) {
+        Transform.mulToOutUnsafe(transform, localVertex, corner);
+        float angle = (float) Math.atan2(corner.y - y, corner.x - x);
+        addAngle(angle - CORNER_EPSILON);
+        addAngle(angle);
+        addAngle(angle + CORNER_EPSILON);
+    }
+
+    private void addAngle(float angle) {
+        // Keep every angle in [0, 2pi) so sorting orders the hit points around the light.
+        if (angle < 0) angle += (float) (2 * Math.PI);
+        else if (angle >= 2 * Math.PI) angle -= (float) (2 * Math.PI);
+        if (angleCount == angles.length) {
+            angles = Arrays.copyOf(angles, angleCount * 2);
+        }
+        angles[angleCount++] = angle;
+    }
+
+    // Records the closest hit along a ray.
+    private static class ClosestHitCallback implements RayCastCallback {
+        boolean hit;
+        final Vec2 hitPoint = new Vec2();
+        float closestFraction;
+
+        void reset() {
+            hit = false;
+            closestFraction = 1.0f;
+        }
+
+        @Override
+        public float reportFixture(Fixture fixture, Vec2 point, Vec2 normal, float fraction) {
+            if (fraction < closestFraction) {
+                closestFraction = fraction;
+                hitPoint.set(point);
+                hit = true;
+            }
+            return fraction;
+        }
+    }
+
+    // Gathers every fixture, and its body, whose bounds overlap the query box.
+    private static class OccluderCollector implements QueryCallback {
+        Fixture[] fixtures = new Fixture[16];
+        Body[] bodies = new Body[16];
+        int count;
+
+        @Override
+        public boolean reportFixture(Fixture fixture) {
+            if (count == bodies.length) {
+                fixtures = Arrays.copyOf(fixtures, count * 2);
+                bodies = Arrays.copyOf(bodies, count * 2);
+            }
+            fixtures[count] = fixture;
+            bodies[count++] = fixture.getBody();
+            return true;
+        }
+    }
+}
@@ -5,58 +5,159 @@ import dev.dominion.ecs.api.Entity;
 import org.caveman.components.MovementController;
 import org.caveman.components.PhysicsComponent;
 import org.caveman.components.Tags;
+import org.caveman.core.ComponentAccess;
+import org.caveman.core.EntityLifecycle;
 import org.caveman.core.InputHandler;
 import org.jbox2d.common.Vec2;
 import org.jbox2d.dynamics.Body;
+import org.jbox2d.dynamics.World;
 
-import java.awt.event.KeyEvent;
+import java.util.Arrays;
 
-public class MovementSystem implements Runnable {
+/**
+ * Turns the player's input into forces on the bodies of the players.
+ * <p>
+ * Players are found with a query on the first run and cached, since every query allocates. As an
+ * {@link EntityLifecycle.Listener} the system re-queries only after a player was created, given a
+ * player component or destroyed, or once a cached player was deleted some other way. Players
+ * created straight through Dominion after the first run are not seen until {@link #invalidate()}.
+ */
+public class MovementSystem implements Runnable, ComponentAccess, EntityLifecycle.Listener {
     private final Dominion dominion;
+    private final InputHandler input;
+    private final InputHandler.Action moveLeft;
+    private final InputHandler.Action moveRight;
+    private final InputHandler.Action jump;
     private final float pixelsPerMeter;
+    private final float timeStep;
+    private final Vec2 force = new Vec2();   // Scratch vectors, copied by the body on use
+    private final Vec2 impulse = new Vec2();
+    // Players cached between ticks, rebuilt when the lifecycle reports a change or a player is deleted.
+    private Entity[] players = new Entity[0];
+    private MovementController[] controllers = new MovementController[0];
+    private PhysicsComponent[] bodies = new PhysicsComponent[0];
+    private int playerCount;
+    private boolean stale = true;
 
-    public MovementSystem(Dominion dominion, float pixelsPerMeter) {
+    public MovementSystem(Dominion dominion, InputHandler input, float pixelsPerMeter, float timeStep) {
         this.dominion = dominion;
+        this.input = input;
+        this.moveLeft = input.getAction("moveLeft");
+        this.moveRight = input.getAction("moveRight");
+        this.jump = input.getAction("jump");
         this.pixelsPerMeter = pixelsPerMeter;
+        this.timeStep = timeStep;
+    }
+
+    @Override
+    public Class<?>[] reads() {
+        return new Class<?>[]{Tags.PlayerTag.class, InputHandler.class};
+    }
+
+    @Override
+    public Class<?>[] writes() {
+        // Forces and impulses go straight to the bodies, which belong to the physics world.
+        return new Class<?>[]{MovementController.class, PhysicsComponent.class, World.class};
     }
 
     @Override
     public void run() {
-        dominion.findEntitiesWith(Tags.PlayerTag.class, MovementController.class, PhysicsComponent.class)
-                .stream()
-                .forEach(entity -> {
-                    MovementController controller = entity.comp2();
-                    PhysicsComponent physics = entity.comp3();
-                    handleMovement(entity.entity(), controller, physics);
-                    handleJump(entity.entity(), controller, physics);
-                });
+        if (stale || hasDeletedPlayer()) {
+            rebuildPlayers();
+        }
+
+        for (int i = 0; i < playerCount; i++) {
+            if (!players[i].isEnabled()) continue; // Despawned into a pool
+            handleMovement(controllers[i], bodies[i]);
+            handleJump(controllers[i], bodies[i]);
+        }
+    }
+
+    private boolean hasDeletedPlayer() {
+        for (int i = 0; i < playerCount; i++) {
+            if (players[i].isDeleted()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Makes the next run query the players again, e.g. after players were created straight
+     * through Dominion or the world was restored.
+     */
+    public void invalidate() {
+        stale = true;
+    }
+
+    @Override
+    public void entityCreated(Entity entity) {
+        if (entity.has(MovementController.class)) {
+            stale = true;
+        }
+    }
+
+    @Override
+    public void componentAdded(Entity entity, Object component) {
+        if (component instanceof MovementController || component instanceof Tags.PlayerTag
+                || component instanceof PhysicsComponent) {
+            stale = true;
+        }
+    }
+
+    @Override
+    public void entityDestroyed(Entity entity) {
+        if (entity.has(MovementController.class)) {
+            stale = true;
+        }
     }
 
-    private void handleMovement(Entity entity, MovementController controller, PhysicsComponent physics) {
+    private void rebuildPlayers() {
+        stale = false;
+        playerCount = 0;
+        for (var entity : dominion.findEntitiesWith(Tags.PlayerTag.class, MovementController.class, PhysicsComponent.class)) {
+            if (playerCount == players.length) {
+                int capacity = Math.max(4, playerCount * 2);
+                players = Arrays.copyOf(players, capacity);
+                controllers = Arrays.copyOf(controllers, capacity);
+                bodies = Arrays.copyOf(bodies, capacity);
+            }
+            players[playerCount] = entity.entity();
+            controllers[playerCount] = entity.comp2();
+            bodies[playerCount++] = entity.comp3();
+        }
+        for (int i = playerCount; i < players.length; i++) {
+            players[i] = null;
+            controllers[i] = null;
+            bodies[i] = null;
+        }
+    }
+
+    private void handleMovement(MovementController controller, PhysicsComponent physics) {
         float moveDirection = 0f;
-        if(InputHandler.isKeyPressed(KeyEvent.VK_A)) moveDirection -= 1;
-        if(InputHandler.isKeyPressed(KeyEvent.VK_D)) moveDirection += 1;
-        if(entity.get(PhysicsComponent.class).getBody().getLinearVelocity().y == 0){
+        if(input.isDown(moveLeft)) moveDirection -= 1;
+        if(input.isDown(moveRight)) moveDirection += 1;
+        Body body = physics.getBody();
+        if(body == null) return;
+        if(body.getLinearVelocity().y == 0){
             controller.setGrounded(true);
             controller.setJustJumped(false);
         }
-        Body body = physics.getBody();
-        if(body == null) return;
         Vec2 velocity = body.getLinearVelocity();
 
         float targetSpeed = moveDirection * controller.getMoveSpeed();
         float speedDifference = targetSpeed - velocity.x;
-        float force = body.getMass() * speedDifference / (1/60f);
+        if (speedDifference == 0) return; // Applying a force wakes the body, even a zero one
+        float force = body.getMass() * speedDifference / timeStep;
 
-        body.applyForceToCenter(new Vec2(force, 0));
+        body.applyForceToCenter(this.force.set(force, 0));
     }
 
-    private void handleJump(Entity entity, MovementController controller, PhysicsComponent physics) {
-        if (InputHandler.isKeyPressed(KeyEvent.VK_SPACE) && controller.isGrounded()) {
+    private void handleJump(MovementController controller, PhysicsComponent physics) {
+        // A tap shorter than a tick has already been released, but still jumps.
+        if ((input.isDown(jump) || input.wasPressed(jump)) && controller.isGrounded()) {
             System.out.println("Jumping");
             Body body = physics.getBody();
             body.applyLinearImpulse(
-                    new Vec2(0, body.getMass() * -controller.getJumpForce()),
+                    impulse.set(0, body.getMass() * -controller.getJumpForce()),
                     body.getWorldCenter()
             );
             controller.setGrounded(false);
@@ -5,23 +5,61 @@ import dev.dominion.ecs.api.Entity;
 import org.caveman.components.PhysicsComponent;
 import org.caveman.components.SpriteComponent;
 import org.caveman.components.TransformComponent;
+import org.caveman.components.TransformStore;
+import org.caveman.core.ComponentAccess;
+import org.caveman.core.EntityLifecycle;
+import org.caveman.core.ParallelFor;
 import org.jbox2d.collision.shapes.PolygonShape;
 import org.jbox2d.common.Vec2;
 import org.jbox2d.dynamics.Body;
 import org.jbox2d.dynamics.BodyDef;
+import org.jbox2d.dynamics.BodyType;
 import org.jbox2d.dynamics.World;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
 /**
  * The PhysicsSystem class is responsible for managing the physics simulation
  * of entities within the game. It integrates with the Dominion ECS framework
  * and the JBox2D physics engine.
+ * <p>
+ * As an {@link EntityLifecycle.Listener}, it builds the body of entities that are created or
+ * given a {@link PhysicsComponent} without one, and destroys the body of destroyed entities.
+ * Entities created straight through Dominion get no body; with assertions enabled, each sync
+ * checks for such entities and fails.
  */
-public class PhysicsSystem implements Runnable {
+public class PhysicsSystem implements Runnable, ComponentAccess, EntityLifecycle.Listener {
     private final Dominion dominion;
     private final World world;
     private final float timeStep;
     private final float pixelsPerMeter;
-
+    private final ParallelFor parallelFor = new ParallelFor(ForkJoinPool.commonPool());
+    private final ParallelFor.RangeAction syncRange = this::syncRange;
+    private SpatialIndex spatialIndex;
+    private TransformStore transformStore;
+    // Bodies with an entity, gathered once per tick so transforms can be synced in chunks
+    private Body[] bodies = new Body[64];
+    private Entity[] entities = new Entity[64];
+    private boolean[] moved = new boolean[64];
+    // Non-static bodies that were awake at the last sync or moved in it, synced again once asleep
+    private Body[] awake = new Body[64];
+    private int awakeCount;
+    // Static bodies synced since they were built, spawned or last resynced
+    private Set<Body> syncedStatics = Collections.newSetFromMap(new IdentityHashMap<>());
+    private Set<Body> spareStatics = Collections.newSetFromMap(new IdentityHashMap<>());
+    // Bodies whose next sync reports their transform as changed, see resync(Body)
+    private final Set<Body> resynced = Collections.newSetFromMap(new IdentityHashMap<>());
+    // Entities whose transform the last sync changed
+    private Entity[] changed = new Entity[64];
+    private int changedCount;
+    private long tick;
+    private long lastChangeTick;
+    // Entities without a body at the previous check, see bodiesBuilt()
+    private Set<Entity> unbuilt = Collections.emptySet();
 
     /**
      * Constructs a new PhysicsSystem.
@@ -38,26 +76,289 @@ public class PhysicsSystem implements Runnable {
         this.pixelsPerMeter = pixelsPerMeter;
     }
 
+    /**
+     * Keeps the given index up to date with the render bounds of every body that has a sprite.
+     * Static bodies are indexed on their first update and not touched again.
+     *
+     * @param spatialIndex the index to maintain, or null to stop maintaining one
+     */
+    public void setSpatialIndex(SpatialIndex spatialIndex) {
+        this.spatialIndex = spatialIndex;
+    }
+
+    public SpatialIndex getSpatialIndex() {
+        return spatialIndex;
+    }
+
+    /**
+     * Stores the previous step of every transform in the given store at once before syncing,
+     * instead of one transform at a time. Transforms that are not attached to it are still
+     * handled one by one.
+     *
+     * @param transformStore the store, or null
+     */
+    public void setTransformStore(TransformStore transformStore) {
+        this.transformStore = transformStore;
+    }
+
+    public TransformStore getTransformStore() {
+        return transformStore;
+    }
+
+    /**
+     * Returns the parallel loop the transform sync runs on, so its grain size and sequential
+     * threshold can be tuned.
+     */
+    public ParallelFor getParallelFor() {
+        return parallelFor;
+    }
+
+    @Override
+    public Class<?>[] reads() {
+        return new Class<?>[]{SpriteComponent.class};
+    }
+
+    @Override
+    public Class<?>[] writes() {
+        // The contact listener records into the collision system's event queue during the step.
+        return new Class<?>[]{PhysicsComponent.class, TransformComponent.class, World.class,
+                SpatialIndex.class, ContactEventQueue.class};
+    }
+
     /**
      * Runs the physics simulation. This method is called periodically to
      * update the physics state of the entities.
      */
     @Override
     public void run() {
-        // Create bodies for new entities
-        dominion.findEntitiesWith(PhysicsComponent.class, TransformComponent.class)
-                .stream()
-                .filter(entity -> entity.comp1().getBody() == null)
-                .forEach(entity -> initializePhysicsBody(entity.entity()));
-
         // Step the physics simulation
         world.step(timeStep, 6, 2);
 
-        // Update transforms from physics bodies
-        dominion.findEntitiesWith(PhysicsComponent.class, TransformComponent.class)
-                .stream()
-                .forEach(entity -> updateTransformFromBody(entity.entity()));
+        syncTransforms();
+    }
+
+    /**
+     * Copies the position and angle of every body that may have moved into its entity's
+     * transform, then updates the spatial index for the transforms that changed. Run by
+     * {@link #run()} after each step. Transforms are written in parallel chunks on large worlds;
+     * the index is not thread-safe, so it is updated afterwards on the calling thread.
+     * <p>
+     * Sleeping bodies are skipped. A body that falls asleep gets a last sync on that step, and if
+     * it moved in that step one more on the next, which finds it at rest and brings its previous
+     * values up to the current ones, so interpolation does not keep replaying the last move.
+     * Static bodies are synced once and then skipped until they are deactivated or {@link #resync(Body) resynced};
+     * which ones are synced is tracked here, not in the solver's sleep state. A scene of resting
+     * scenery therefore costs next to nothing per tick. Each sync counts as a tick, see
+     * {@link #getTick()}.
+     */
+    public void syncTransforms() {
+        assert bodiesBuilt();
+        tick++;
+        // Walking the world's body list reaches every entity with a body without going through
+        // an ECS query.
+        int count = 0;
+        int syncedFound = 0;
+        for (Body body = world.getBodyList(); body != null; body = body.getNext()) {
+            if (body.getType() == BodyType.STATIC) {
+                if (!syncedStatics.contains(body)) {
+                    count = gather(body, count);
+                } else if (body.isActive()) {
+                    syncedFound++;
+                } else {
+                    syncedStatics.remove(body); // Pooled; synced again once spawned
+                }
+            } else if (body.isAwake()) {
+                count = gather(body, count);
+            }
+        }
+        if (syncedFound < syncedStatics.size()) {
+            pruneSyncedStatics(); // Some were destroyed
+        }
+        for (int i = 0; i < awakeCount; i++) {
+            if (!awake[i].isAwake()) {
+                count = gather(awake[i], count);
+            }
+            awake[i] = null;
+        }
+        awakeCount = 0;
+
+        if (transformStore != null) {
+            transformStore.storePrevious();
+        }
+        parallelFor.forRange(count, syncRange);
+
+        SpatialIndex index = spatialIndex;
+        boolean anyResynced = !resynced.isEmpty();
+        Arrays.fill(changed, 0, changedCount, null);
+        changedCount = 0;
+        for (int i = 0; i < count; i++) {
+            Body body = bodies[i];
+            Entity entity = entities[i];
+            boolean moved = this.moved[i];
+            if (!moved && anyResynced && resynced.contains(body)) {
+                moved = markResynced(entity);
+            }
+            if (moved) {
+                if (changedCount == changed.length) {
+                    changed = Arrays.copyOf(changed, changedCount * 2);
+                }
+                changed[changedCount++] = entity;
+            }
+            if (index != null && (moved || index.get(entity) == null)) {
+                updateIndex(index, entity, body, moved);
+            }
+            if (body.getType() == BodyType.STATIC) {
+                syncedStatics.add(body);
+            } else if (moved || body.isAwake()) {
+                if (awakeCount == awake.length) {
+                    awake = Arrays.copyOf(awake, awakeCount * 2);
+                }
+                awake[awakeCount++] = body;
+            }
+        }
+        if (changedCount > 0) {
+            lastChangeTick = tick;
+        }
+        if (anyResynced) {
+            resynced.clear();
+        }
+        Arrays.fill(bodies, 0, count, null);
+        Arrays.fill(entities, 0, count, null);
+    }
+
+    // Stamps the transform of a resynced body that the sync found where it already was.
+    private boolean markResynced(Entity entity) {
+        TransformComponent transform = entity.get(TransformComponent.class);
+        if (transform == null) return false;
+        transform.markChanged(tick);
+        return true;
+    }
+
+    // Inactive bodies belong to pooled entities, which stay where they were despawned.
+    private int gather(Body body, int count) {
+        if (body.isActive() && body.getUserData() instanceof Entity entity && !entity.isDeleted()) {
+            if (count == bodies.length) {
+                bodies = Arrays.copyOf(bodies, count * 2);
+                entities = Arrays.copyOf(entities, count * 2);
+                moved = Arrays.copyOf(moved, count * 2);
+            }
+            bodies[count] = body;
+            entities[count++] = entity;
+        }
+        return count;
+    }
+
+    /**
+     * Syncs the given body on the next tick and reports its transform as changed then, even if
+     * the transform already matches the body. Call it after moving a body with
+     * {@link Body#setTransform}, which the solver does not notice for a static body and which
+     * leaves nothing to sync if the transform was moved along with it.
+     */
+    public void resync(Body body) {
+        resynced.add(body);
+        if (body.getType() == BodyType.STATIC) {
+            syncedStatics.remove(body);
+        } else {
+            body.setAwake(true);
+        }
+    }
+
+    // Drops the destroyed bodies from the synced statics by keeping the ones still in the world.
+    private void pruneSyncedStatics() {
+        Set<Body> live = spareStatics;
+        for (Body body = world.getBodyList(); body != null; body = body.getNext()) {
+            if (syncedStatics.contains(body)) {
+                live.add(body);
+            }
+        }
+        syncedStatics.clear();
+        spareStatics = syncedStatics;
+        syncedStatics = live;
+    }
 
+    /**
+     * Fails if an entity with a physics and a transform component still has no body on the
+     * second sync in a row. The grace sync leaves time for the lifecycle to deliver the events of
+     * entities created during the tick. Only run with assertions enabled, as it queries every
+     * physics entity.
+     */
+    private boolean bodiesBuilt() {
+        Set<Entity> previous = unbuilt;
+        unbuilt = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (var result : dominion.findEntitiesWith(PhysicsComponent.class, TransformComponent.class)) {
+            if (result.comp1().getBody() != null) continue;
+            if (previous.contains(result.entity())) {
+                throw new AssertionError("Entity " + result.entity() + " has a PhysicsComponent but no body;"
+                        + " create it through EntityLifecycle.create so its body is built");
+            }
+            unbuilt.add(result.entity());
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of syncs run so far. Transforms record the tick they last changed on,
+     * see {@link TransformComponent#hasChangedSince(long)}.
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * Returns the last tick on which any transform changed, so a consumer that was up to date at
+     * tick N can skip its work entirely while this is not after N.
+     */
+    public long getLastChangeTick() {
+        return lastChangeTick;
+    }
+
+    /**
+     * Returns the number of entities whose transform the last sync changed.
+     */
+    public int getChangedCount() {
+        return changedCount;
+    }
+
+    /**
+     * Returns the i-th entity whose transform the last sync changed.
+     */
+    public Entity getChangedEntity(int i) {
+        if (i < 0 || i >= changedCount) {
+            throw new IndexOutOfBoundsException("Changed entity " + i + " of " + changedCount);
+        }
+        return changed[i];
+    }
+
+    @Override
+    public void entityCreated(Entity entity) {
+        initializePendingBody(entity);
+    }
+
+    @Override
+    public void componentAdded(Entity entity, Object component) {
+        if (component instanceof PhysicsComponent || component instanceof TransformComponent) {
+            initializePendingBody(entity);
+        }
+    }
+
+    @Override
+    public void entityDestroyed(Entity entity) {
+        if (spatialIndex != null) {
+            spatialIndex.remove(entity);
+        }
+        PhysicsComponent physics = entity.get(PhysicsComponent.class);
+        if (physics != null && physics.getBody() != null) {
+            world.destroyBody(physics.getBody());
+            physics.setBody(null);
+        }
+    }
+
+    private void initializePendingBody(Entity entity) {
+        if (entity.isDeleted() || !entity.isEnabled()) return; // Deleted or despawned before the event was delivered
+        PhysicsComponent physics = entity.get(PhysicsComponent.class);
+        if (physics != null && physics.getBody() == null && entity.has(TransformComponent.class)) {
+            initializePhysicsBody(entity);
+        }
     }
 
     /**
@@ -78,6 +379,7 @@ public class PhysicsSystem implements Runnable {
         );
 
         Body body = world.createBody(bodyDef);
+        body.setUserData(entity);
 
         // Use the fixture definition if provided. This way we use the intended friction,
         // restitution, and other properties.
@@ -104,20 +406,51 @@ public class PhysicsSystem implements Runnable {
         physics.setBody(body);
     }
 
+    // One chunk of the transform sync.
+    private void syncRange(int from, int to) {
+        Body[] bodies = this.bodies;
+        Entity[] entities = this.entities;
+        boolean[] moved = this.moved;
+        for (int i = from; i < to; i++) {
+            moved[i] = updateTransformFromBody(entities[i], bodies[i]);
+        }
+    }
+
     /**
      * Updates the transform component of an entity from its physics body.
      *
      * @param entity the entity to update the transform for
+     * @param body   the body of the entity
+     * @return true if the transform changed
      */
-    private void updateTransformFromBody(Entity entity) {
-        PhysicsComponent physics = entity.get(PhysicsComponent.class);
+    private boolean updateTransformFromBody(Entity entity, Body body) {
         TransformComponent transform = entity.get(TransformComponent.class);
-        Body body = physics.getBody();
-        if(body == null) return;
+        if (transform == null) return false;
         Vec2 position = body.getPosition();
+        float rotation = (float) Math.toDegrees(body.getAngle());
+        if (transformStore == null || transform.getStore() != transformStore) {
+            transform.storePrevious(); // Otherwise stored for the whole store at once
+        }
+        if (position.x == transform.getX() && position.y == transform.getY() && rotation == transform.getRotation()) {
+            return false; // Awake but at rest
+        }
         // Directly store physics coordinates (meters)
-        transform.setX(position.x);
-        transform.setY(position.y);
-        transform.setRotation((float) Math.toDegrees(body.getAngle()));
+        transform.set(position.x, position.y, rotation);
+        transform.markChanged(tick);
+        return true;
+    }
+
+    private void updateIndex(SpatialIndex index, Entity entity, Body body, boolean moved) {
+        SpriteComponent sprite = entity.get(SpriteComponent.class);
+        if (sprite == null) return;
+        TransformComponent transform = entity.get(TransformComponent.class);
+        boolean fixed = body.getType() == BodyType.STATIC;
+        if (fixed) {
+            transform.storePrevious(); // Nothing to interpolate from
+            if (moved) {
+                index.remove(entity); // Fixed entries ignore updates, so move it by reinserting
+            }
+        }
+        index.update(entity, transform, sprite, fixed);
     }
 }
\ No newline at end of file
@@ -0,0 +1,195 @@
+package org.caveman.systems;
+
+import org.caveman.components.SpriteComponent;
+import org.caveman.core.assets.TextureRegion;
+
+import java.awt.*;
+import java.util.Arrays;
+
+/**
+ * Collects the draw commands of a frame, sorts them by layer and color and issues them in that
+ * order. Commands are kept in preallocated parallel arrays that only grow, so a frame does not
+ * allocate once the queue has reached its working size. Coordinates are in device pixels, which
+ * keeps Java2D on its plain rectangle loops, and each run of equally colored rectangles costs a
+ * single color change.
+ * <p>
+ * The sort key packs the layer into the top byte, the material (the ARGB color, the atlas id for
+ * atlas regions, or 0 for other images) into the next 32 bits and the command index into the low 24 bits. Only the layer and material
+ * bytes are radix sorted; the sort is stable, so equal keys keep their submission order.
+ */
+public class RenderQueue {
+    private static final int INDEX_BITS = 24;
+    private static final int MAX_COMMANDS = 1 << INDEX_BITS;
+    private static final int SORTED_BYTES = 5; // 1 layer byte + 4 material bytes
+
+    private long[] keys = new long[1024];
+    private long[] scratch = new long[1024];
+    private final int[] counts = new int[256];
+    private int[] xs = new int[1024];
+    private int[] ys = new int[1024];
+    private int[] widths = new int[1024];
+    private int[] heights = new int[1024];
+    private Color[] colors = new Color[1024];
+    private Image[] images = new Image[1024];
+    private TextureRegion[] regions = new TextureRegion[1024];
+    private int size;
+    private int colorChanges;
+
+    /**
+     * Queues a filled rectangle.
+     *
+     * @param layer the sprite layer, see {@link SpriteComponent#setLayer(int)}
+     */
+    public void addRect(int layer, Color color, int x, int y, int width, int height) {
+        int index = next();
+        xs[index] = x;
+        ys[index] = y;
+        widths[index] = width;
+        heights[index] = height;
+        colors[index] = color;
+        images[index] = null;
+        regions[index] = null;
+        keys[index] = key(layer, color.getRGB() & 0xFFFFFFFFL, index);
+    }
+
+    /**
+     * Queues an image drawn at its own size. Images sort before the rectangles of the same layer.
+     */
+    public void addImage(int layer, Image image, int x, int y) {
+        int index = next();
+        xs[index] = x;
+        ys[index] = y;
+        images[index] = image;
+        colors[index] = null;
+        regions[index] = null;
+        keys[index] = key(layer, 0, index);
+    }
+
+    /**
+     * Queues an atlas region scaled into the given rectangle. Regions of the same atlas sort next
+     * to each other within a layer, so consecutive blits read from the same image.
+     *
+     * @param image the atlas image, as returned by {@link TextureRegion#getImage()}
+     */
+    public void addRegion(int layer, TextureRegion region, Image image, int x, int y, int width, int height) {
+        int index = next();
+        xs[index] = x;
+        ys[index] = y;
+        widths[index] = width;
+        heights[index] = height;
+        images[index] = image;
+        regions[index] = region;
+        colors[index] = null;
+        keys[index] = key(layer, region.getAtlas().getId(), index);
+    }
+
+    /**
+     * Sorts the queued commands and draws them.
+     */
+    public void flush(Graphics2D g) {
+        sort();
+        colorChanges = 0;
+        Color current = null;
+        for (int i = 0; i < size; i++) {
+            int index = (int) (keys[i] & (MAX_COMMANDS - 1));
+            Image image = images[index];
+            if (image != null) {
+                TextureRegion region = regions[index];
+                if (region == null) {
+                    g.drawImage(image, xs[index], ys[index], null);
+                } else {
+                    int x = xs[index];
+                    int y = ys[index];
+                    int sourceX = region.getX();
+                    int sourceY = region.getY();
+                    g.drawImage(image, x, y, x + widths[index], y + heights[index],
+                            sourceX, sourceY, sourceX + region.getWidth(), sourceY + region.getHeight(), null);
+                }
+                continue;
+            }
+            Color color = colors[index];
+            if (color != current) {
+                g.setColor(color);
+                current = color;
+                colorChanges++;
+            }
+            g.fillRect(xs[index], ys[index], widths[index], heights[index]);
+        }
+    }
+
+    /**
+     * Empties the queue. References to colors, images and regions are dropped so they can be collected.
+     */
+    public void clear() {
+        Arrays.fill(colors, 0, size, null);
+        Arrays.fill(images, 0, size, null);
+        Arrays.fill(regions, 0, size, null);
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of color changes issued by the last flush.
+     */
+    public int getColorChanges() {
+        return colorChanges;
+    }
+
+    private static long key(int layer, long material, int index) {
+        long layerByte = (layer - SpriteComponent.MIN_LAYER) & 0xFF;
+        return (layerByte << 56) | (material << INDEX_BITS) | index;
+    }
+
+    private int next() {
+        if (size == keys.length) {
+            if (size == MAX_COMMANDS) {
+                throw new IllegalStateException("Render queue is full: " + size + " commands");
+            }
+            int capacity = Math.min(MAX_COMMANDS, size * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            scratch = new long[capacity];
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            widths = Arrays.copyOf(widths, capacity);
+            heights = Arrays.copyOf(heights, capacity);
+            colors = Arrays.copyOf(colors, capacity);
+            images = Arrays.copyOf(images, capacity);
+            regions = Arrays.copyOf(regions, capacity);
+        }
+        return size++;
+    }
+
+    // LSD radix sort over the layer and material bytes. A pass is skipped when every key has the
+    // same digit, which is the common case for the layer byte and the alpha byte.
+    private void sort() {
+        long[] source = keys;
+        long[] target = scratch;
+        for (int pass = 0; pass < SORTED_BYTES; pass++) {
+            int shift = INDEX_BITS + pass * 8;
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < size; i++) {
+                counts[(int) (source[i] >>> shift) & 0xFF]++;
+            }
+            if (size == 0 || counts[(int) (source[0] >>> shift) & 0xFF] == size) continue;
+
+            int offset = 0;
+            for (int digit = 0; digit < 256; digit++) {
+                int count = counts[digit];
+                counts[digit] = offset;
+                offset += count;
+            }
+            for (int i = 0; i < size; i++) {
+                long key = source[i];
+                target[counts[(int) (key >>> shift) & 0xFF]++] = key;
+            }
+            long[] swap = source;
+            source = target;
+            target = swap;
+        }
+        keys = source;
+        scratch = target;
+    }
+}
@@ -1,42 +1,101 @@
 package org.caveman.systems;
 
 import dev.dominion.ecs.api.Dominion;
+import dev.dominion.ecs.api.Entity;
 import dev.dominion.ecs.api.Results;
 import org.caveman.components.CameraComponent;
 import org.caveman.components.LightEmitterComponent;
+import org.caveman.components.PhysicsComponent;
 import org.caveman.components.SpriteComponent;
+import org.caveman.components.TilemapComponent;
 import org.caveman.components.TransformComponent;
-import org.jbox2d.callbacks.RayCastCallback;
-import org.jbox2d.common.Vec2;
-import org.jbox2d.dynamics.Fixture;
+import org.caveman.core.EntityLifecycle;
+import org.caveman.core.assets.TextureRegion;
+import org.caveman.core.profiling.SystemProfiler;
+import org.caveman.core.profiling.SystemStats;
 import org.jbox2d.dynamics.World;
 
 import java.awt.*;
 import java.awt.geom.AffineTransform;
-import java.awt.geom.Path2D;
 import java.awt.image.BufferStrategy;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.util.ArrayList;
 import java.util.List;
 
-public class RenderingSystem implements Runnable {
+public class RenderingSystem implements Runnable, EntityLifecycle.Listener {
+    private static final Font OVERLAY_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+    private static final Color OVERLAY_BACKGROUND = new Color(0, 0, 0, 170);
+    private static final int OVERLAY_REFRESH_FRAMES = 30;
+    private static final AffineTransform IDENTITY = new AffineTransform();
+
     private final Dominion dominion;
     private final Canvas canvas;
     private final World world;
     private final BufferStrategy bufferStrategy;
     private final float pixelsPerMeter;
+    private final LightVisibilityCache lightCache;
+    private final AffineTransform lightMapTransform = new AffineTransform();
+    private float lightMapScale = 0.5f;
+    private Color ambientLight = new Color(80, 80, 96);
+    private Color ambientShade = shadeOf(ambientLight); // The darkness mask of a frame without lights
+    private int litLights;
+    private BufferedImage lightMap;      // Accumulated light, additive, at reduced resolution
+    private BufferedImage shadeMap;      // The light map turned into a darkness mask, same resolution
+    private Graphics2D lightMapGraphics;
+    private SpatialIndex spatialIndex;
+    private StaticTileCache staticTiles;
+    private final TilemapChunkCache tilemapChunks;
+    private final RenderQueue renderQueue = new RenderQueue();
+    private final List<SpatialIndex.Proxy> visibleProxies = new ArrayList<>();
+    // Visible world rectangle of the frame being drawn, in world units.
+    private float viewMinX, viewMinY, viewMaxX, viewMaxY;
+    // Mapping from world units to device pixels: device = origin + world * scale.
+    private float viewScale, viewOriginX, viewOriginY;
+    private SystemProfiler profiler;
+    private float alpha = 1f; // Interpolation factor between the previous and the current simulation step
+    private final List<String> overlayLines = new ArrayList<>();
+    private int overlayFrame;
 
     public RenderingSystem(Dominion dominion, Canvas canvas,World world, float pixelsPerMeter) {
         this.dominion = dominion;
         this.canvas = canvas;
         this.pixelsPerMeter = pixelsPerMeter;
         this.world = world;
+        this.lightCache = new LightVisibilityCache(world, pixelsPerMeter);
+        this.tilemapChunks = new TilemapChunkCache(dominion);
         canvas.setIgnoreRepaint(true);
         canvas.createBufferStrategy(3);
         bufferStrategy = canvas.getBufferStrategy();
     }
 
+    /**
+     * Creates a rendering system that is not bound to a canvas. Frames can only be drawn through
+     * {@link #renderFrame(Graphics2D, int, int)}, e.g. into an offscreen {@link java.awt.image.BufferedImage}.
+     */
+    public RenderingSystem(Dominion dominion, World world, float pixelsPerMeter) {
+        this.dominion = dominion;
+        this.canvas = null;
+        this.pixelsPerMeter = pixelsPerMeter;
+        this.world = world;
+        this.lightCache = new LightVisibilityCache(world, pixelsPerMeter);
+        this.tilemapChunks = new TilemapChunkCache(dominion);
+        this.bufferStrategy = null;
+    }
+
     @Override
     public void run() {
+        render(1f);
+    }
+
+    /**
+     * Draws a frame to the canvas with entities interpolated between the previous and the current
+     * simulation step.
+     *
+     * @param alpha the interpolation factor (0 = previous step, 1 = current step)
+     */
+    public void render(float alpha) {
+        setInterpolationAlpha(alpha);
         do {
             Graphics2D g = (Graphics2D) bufferStrategy.getDrawGraphics();
             renderFrame(g);
@@ -46,10 +105,25 @@ public class RenderingSystem implements Runnable {
         Toolkit.getDefaultToolkit().sync();
     }
 
+    public void setInterpolationAlpha(float alpha) {
+        this.alpha = alpha;
+    }
+
     public void renderFrame(Graphics2D g) {
+        renderFrame(g, canvas.getWidth(), canvas.getHeight());
+    }
+
+    /**
+     * Renders one frame into the given graphics context.
+     *
+     * @param g      the target graphics
+     * @param width  the width of the target in pixels
+     * @param height the height of the target in pixels
+     */
+    public void renderFrame(Graphics2D g, int width, int height) {
         // Clear the background.
         g.setColor(Color.DARK_GRAY);
-        g.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        g.fillRect(0, 0, width, height);
 
         // Get the camera component (assumes there is at least one camera entity).
         CameraComponent camera = dominion.findEntitiesWith(CameraComponent.class)
@@ -58,153 +132,299 @@ public class RenderingSystem implements Runnable {
                 .map(entity -> entity.comp())
                 .orElseThrow(() -> new RuntimeException("No camera entity found"));
 
-        // Save the original transform.
-        AffineTransform originalTransform = g.getTransform();
-
         // Compute canvas center.
-        float canvasCenterX = canvas.getWidth() / 2f;
-        float canvasCenterY = canvas.getHeight() / 2f;
+        float canvasCenterX = width / 2f;
+        float canvasCenterY = height / 2f;
 
-        // Build the new transform: center, scale (zoom), and translate.
+        // Build the view transform: center, scale (zoom), and translate. Sprites are queued in
+        // device pixels, so it is only applied to the lighting pass.
         AffineTransform transform = new AffineTransform();
         transform.translate(canvasCenterX, canvasCenterY);
         transform.scale(camera.getZoom(), camera.getZoom());
-        transform.translate(-camera.getPosition().x * pixelsPerMeter, -camera.getPosition().y * pixelsPerMeter);
-        g.setTransform(transform);
+        float cameraX = camera.getInterpolatedX(alpha);
+        float cameraY = camera.getInterpolatedY(alpha);
+        transform.translate(-cameraX * pixelsPerMeter, -cameraY * pixelsPerMeter);
+
+        viewScale = pixelsPerMeter * camera.getZoom();
+        viewOriginX = canvasCenterX - cameraX * viewScale;
+        viewOriginY = canvasCenterY - cameraY * viewScale;
+        float halfViewWidth = width / 2f / viewScale;
+        float halfViewHeight = height / 2f / viewScale;
+        viewMinX = cameraX - halfViewWidth;
+        viewMaxX = cameraX + halfViewWidth;
+        viewMinY = cameraY - halfViewHeight;
+        viewMaxY = cameraY + halfViewHeight;
+
+        // Queue the entities that are in view, then draw them sorted by layer and color.
+        renderQueue.clear();
+        tilemapChunks.collect(renderQueue, g.getDeviceConfiguration(), viewScale, viewOriginX, viewOriginY,
+                viewMinX, viewMinY, viewMaxX, viewMaxY);
+        if (spatialIndex != null) {
+            visibleProxies.clear();
+            spatialIndex.query(viewMinX, viewMinY, viewMaxX, viewMaxY, visibleProxies);
+            for (int i = 0; i < visibleProxies.size(); i++) {
+                SpatialIndex.Proxy proxy = visibleProxies.get(i);
+                if (proxy.isFixed()) continue; // Drawn through the static tiles
+                queueIfInView(proxy.getTransform(), proxy.getSprite());
+            }
+            staticTiles.collect(renderQueue, g.getDeviceConfiguration(), viewScale, viewOriginX, viewOriginY,
+                    viewMinX, viewMinY, viewMaxX, viewMaxY);
+            // Only bodies are indexed; the few sprites without one are still checked one by one.
+            dominion.findEntitiesWith(TransformComponent.class, SpriteComponent.class)
+                    .without(PhysicsComponent.class)
+                    .forEach(entity -> queueIfInView(entity.comp1(), entity.comp2()));
+        } else {
+            dominion.findEntitiesWith(TransformComponent.class, SpriteComponent.class)
+                    .forEach(entity -> queueIfInView(entity.comp1(), entity.comp2()));
+        }
+        renderQueue.flush(g);
+        renderQueue.clear();
 
-        // Only render entities that are in view.
-        dominion.findEntitiesWith(TransformComponent.class, SpriteComponent.class)
-                .forEach(entity -> {
-                    TransformComponent transformComponent = entity.comp1();
-                    SpriteComponent sprite = entity.comp2();
-                    // Check if the entity's bounding box is in view.
-                    if (camera.isInView(transformComponent.getX(), transformComponent.getY(),
-                            sprite.getWidth(), sprite.getHeight(), pixelsPerMeter)) {
-                        renderEntity(g, transformComponent, sprite);
-                    }
-                });
+        // Render lighting and other effects over the whole frame.
+        renderLighting(g, transform, width, height);
 
-        // Render lighting and other effects.
-        renderLighting(g,camera);
+        if (profiler != null) {
+            renderProfilerOverlay(g);
+        }
+    }
 
-        // Restore the original transform.
-        g.setTransform(originalTransform);
+    /**
+     * Shows the per-system timings of the given profiler on top of every frame.
+     *
+     * @param profiler the profiler to display, or null to hide the overlay
+     */
+    public void setProfilerOverlay(SystemProfiler profiler) {
+        this.profiler = profiler;
+        this.overlayFrame = 0;
     }
 
+    private void renderProfilerOverlay(Graphics2D g) {
+        // Percentiles sort the sample window, so the text is only refreshed every few frames.
+        if (overlayFrame++ % OVERLAY_REFRESH_FRAMES == 0) {
+            overlayLines.clear();
+            overlayLines.add(String.format("%-10s %8s %8s %8s %6s %6s %7s %9s",
+                    "system", "p50us", "p99us", "maxus", "tick%", "over", "ents", "alloc"));
+            for (SystemStats stats : profiler.getStats()) {
+                overlayLines.add(String.format("%-10s %8.1f %8.1f %8.1f %6.1f %6d %7d %9d",
+                        stats.getName(), stats.getP50Micros(), stats.getP99Micros(), stats.getMaxMicros(),
+                        stats.getTickSharePercent(), stats.getOverruns(), stats.getEntityCount(),
+                        stats.getAllocatedBytesPerRun()));
+            }
+        }
+
+        g.setFont(OVERLAY_FONT);
+        FontMetrics metrics = g.getFontMetrics();
+        int lineHeight = metrics.getHeight();
+        int width = 0;
+        for (String line : overlayLines) {
+            width = Math.max(width, metrics.stringWidth(line));
+        }
+        g.setColor(OVERLAY_BACKGROUND);
+        g.fillRect(4, 4, width + 12, lineHeight * overlayLines.size() + 8);
+        g.setColor(Color.WHITE);
+        int y = 8 + metrics.getAscent();
+        for (String line : overlayLines) {
+            g.drawString(line, 10, y);
+            y += lineHeight;
+        }
+    }
 
-    private void renderEntity(Graphics2D g, TransformComponent transform, SpriteComponent sprite) {
-        float x = transform.getX() * pixelsPerMeter;
-        float y = transform.getY() * pixelsPerMeter;
-        int width = sprite.getWidth();
-        int height = sprite.getHeight();
 
-        // Center the sprite on its transform's position
-        int drawX = (int) (x - width / 2.0f);
-        int drawY = (int) (y - height / 2.0f);
+    private void queueIfInView(TransformComponent transform, SpriteComponent sprite) {
+        float halfWidth = sprite.getWidth() / 2f / pixelsPerMeter;
+        float halfHeight = sprite.getHeight() / 2f / pixelsPerMeter;
+        float x = transform.getInterpolatedX(alpha);
+        float y = transform.getInterpolatedY(alpha);
+        if (!isInView(x, y, halfWidth, halfHeight)) return;
+
+        // Snap both edges rather than the size so adjacent sprites do not open gaps when zoomed.
+        int left = (int) Math.floor(viewOriginX + (x - halfWidth) * viewScale);
+        int top = (int) Math.floor(viewOriginY + (y - halfHeight) * viewScale);
+        int right = (int) Math.floor(viewOriginX + (x + halfWidth) * viewScale);
+        int bottom = (int) Math.floor(viewOriginY + (y + halfHeight) * viewScale);
+        TextureRegion region = sprite.getRegion();
+        BufferedImage image = region != null ? region.getImage() : null;
+        if (image != null) {
+            renderQueue.addRegion(sprite.getLayer(), region, image, left, top, right - left, bottom - top);
+        } else {
+            renderQueue.addRect(sprite.getLayer(), sprite.getColor(), left, top, right - left, bottom - top);
+        }
+    }
 
-        g.setColor(sprite.getColor());
-        g.fillRect(drawX, drawY, width, height);
+    private boolean isInView(float x, float y, float halfWidth, float halfHeight) {
+        return x + halfWidth >= viewMinX && x - halfWidth <= viewMaxX
+                && y + halfHeight >= viewMinY && y - halfHeight <= viewMaxY;
     }
 
-    private void renderLighting(Graphics2D g,CameraComponent camera) {
+    /**
+     * Lighting pass. All visible lights are accumulated additively into a reduced-resolution light
+     * map that starts at the ambient light level. The map is then turned into a darkness mask and
+     * drawn over the scene in a single pass, darkening each pixel in proportion to how little
+     * light reached it. Java2D has no multiply blend for the accelerated back buffer, so the mask
+     * multiplies by the light's brightness only; the hue of coloured lights is not applied.
+     */
+    private void renderLighting(Graphics2D g, AffineTransform view, int width, int height) {
         // Compute the current time once per frame.
         long currentTimeMillis = System.currentTimeMillis();
+        ensureLightMap(width, height);
+
+        Graphics2D lightGraphics = lightMapGraphics;
+        lightGraphics.setTransform(IDENTITY);
+        lightGraphics.setComposite(AlphaComposite.Src);
+        lightGraphics.setColor(ambientLight);
+        lightGraphics.fillRect(0, 0, lightMap.getWidth(), lightMap.getHeight());
 
-        // Save the current composite and set additive blending for light effects.
-        Composite originalComposite = g.getComposite();
-        g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 1.0f));
+        lightMapTransform.setToScale(lightMap.getWidth() / (double) width, lightMap.getHeight() / (double) height);
+        lightMapTransform.concatenate(view);
+        lightGraphics.setTransform(lightMapTransform);
 
+        litLights = 0;
         dominion.findEntitiesWith(TransformComponent.class, LightEmitterComponent.class)
                 .forEach(entity -> {
                     TransformComponent transform = entity.comp1();
                     LightEmitterComponent light = entity.comp2();
-                    if (!camera.isInView(transform.getX(), transform.getY(), light.getRange(), light.getRange(), pixelsPerMeter)) return;
-                    // Get the light's world position (in meters) and convert to pixels.
-                    float lightX_px = transform.getX() * pixelsPerMeter;
-                    float lightY_px = transform.getY() * pixelsPerMeter;
-                    Vec2 lightPos = new Vec2(transform.getX(), transform.getY()); // in meters
+                    if (!isInView(transform.getX(), transform.getY(), light.getRange(), light.getRange())) return;
+
+                    // Reuse the cached polygon and gradient unless something in range changed.
+                    LightVisibilityCache.Entry visibility = lightCache.get(light, transform.getX(), transform.getY());
 
                     // Get the current intensity (which can be animated).
                     float intensity = light.getCurrentIntensity(currentTimeMillis);
-
-                    int rays = light.getRays();
-                    float angleStep = (float) (2 * Math.PI / rays);
-
-                    // Build the light polygon from ray-cast results.
-                    List<Point> polygonPoints = buildLightPolygon(light, lightPos, rays, angleStep);
-
-                    // Create a polygon shape from the computed points.
-                    Path2D.Float lightPolygon = new Path2D.Float();
-                    if (!polygonPoints.isEmpty()) {
-                        Point first = polygonPoints.get(0);
-                        lightPolygon.moveTo(first.x, first.y);
-                        for (int i = 1; i < polygonPoints.size(); i++) {
-                            Point p = polygonPoints.get(i);
-                            lightPolygon.lineTo(p.x, p.y);
-                        }
-                        lightPolygon.closePath();
-                    }
-
-                    // Create a radial gradient paint for a smooth light effect.
-                    int centerX = (int) lightX_px;
-                    int centerY = (int) lightY_px;
-                    float radius = light.getRange() * pixelsPerMeter;
-                    Color lightColor = light.getColor();
-                    // The center color uses the animated intensity; the edge is transparent.
-                    Color centerColor = new Color(lightColor.getRed(), lightColor.getGreen(), lightColor.getBlue(), (int) (255 * intensity));
-                    Color edgeColor = new Color(lightColor.getRed(), lightColor.getGreen(), lightColor.getBlue(), 0);
-                    float[] dist = {0.0f, 1.0f};
-                    Color[] colors = {centerColor, edgeColor};
-                    RadialGradientPaint gradient = new RadialGradientPaint(new Point(centerX, centerY), radius, dist, colors);
-
-                    g.setPaint(gradient);
-                    g.fill(lightPolygon);
+                    lightGraphics.setComposite(AdditiveComposite.getInstance(intensity));
+                    lightGraphics.setPaint(visibility.getGradient());
+                    lightGraphics.fill(visibility.getPolygon());
+                    litLights++;
                 });
 
-        // Restore the original composite mode.
-        g.setComposite(originalComposite);
+        // Without lights the mask is uniform, so skip building and uploading it.
+        if (litLights == 0) {
+            if (ambientShade.getAlpha() > 0) {
+                g.setColor(ambientShade);
+                g.fillRect(0, 0, width, height);
+            }
+            return;
+        }
+        buildShadeMap();
+        // The mask is scaled up to the frame by drawImage. An accelerated surface filters it for
+        // free; a software surface would run the general transform loop, so it takes the much
+        // cheaper nearest-neighbour blit instead.
+        Object interpolation = g.getRenderingHint(RenderingHints.KEY_INTERPOLATION);
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                g.getDeviceConfiguration().getImageCapabilities().isAccelerated()
+                        ? RenderingHints.VALUE_INTERPOLATION_BILINEAR
+                        : RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        g.drawImage(shadeMap, 0, 0, width, height, null);
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                interpolation != null ? interpolation : RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+    }
+
+    private void ensureLightMap(int width, int height) {
+        int mapWidth = Math.max(1, Math.round(width * lightMapScale));
+        int mapHeight = Math.max(1, Math.round(height * lightMapScale));
+        if (lightMap != null && lightMap.getWidth() == mapWidth && lightMap.getHeight() == mapHeight) return;
+
+        if (lightMapGraphics != null) {
+            lightMapGraphics.dispose();
+        }
+        lightMap = new BufferedImage(mapWidth, mapHeight, BufferedImage.TYPE_INT_RGB);
+        lightMapGraphics = lightMap.createGraphics();
+        shadeMap = new BufferedImage(mapWidth, mapHeight, BufferedImage.TYPE_INT_ARGB_PRE);
+    }
+
+    // Turns the light map into the darkness mask: black with a coverage of 255 minus the brightest
+    // channel, so drawing it over the scene multiplies the scene by the light's brightness. The mask
+    // stays at light map resolution, so this touches a quarter of the frame's pixels at half scale.
+    private void buildShadeMap() {
+        int[] light = ((DataBufferInt) lightMap.getRaster().getDataBuffer()).getData();
+        int[] shade = ((DataBufferInt) shadeMap.getRaster().getDataBuffer()).getData();
+        for (int i = 0; i < light.length; i++) {
+            int rgb = light[i];
+            int brightness = Math.max((rgb >> 16) & 0xFF, Math.max((rgb >> 8) & 0xFF, rgb & 0xFF));
+            shade[i] = (255 - brightness) << 24;
+        }
     }
 
     /**
-     * Builds the polygon representing the illuminated area for a given light.
-     * For each ray, we use the physics world ray-cast to detect obstacles.
+     * Sets the resolution of the light map relative to the frame, e.g. 0.5 for half or 0.25 for
+     * quarter resolution. Lower values cut the fill cost of overlapping lights.
      */
-    private List<Point> buildLightPolygon(LightEmitterComponent light, Vec2 lightPos, int rays, float angleStep) {
-        List<Point> polygonPoints = new ArrayList<>();
-
-        for (int i = 0; i < rays; i++) {
-            float angle = i * angleStep;
-            Vec2 dir = new Vec2((float) Math.cos(angle), (float) Math.sin(angle));
-            // Compute the ray's end point (if unobstructed) in meters.
-            Vec2 endPoint = lightPos.add(dir.mul(light.getRange()));
-
-            // Use jbox2d’s ray-cast to check for obstructions.
-            RayCastCallbackImpl callback = new RayCastCallbackImpl();
-            world.raycast(callback, lightPos, endPoint);
-            Vec2 hitPoint = callback.hit ? callback.hitPoint : endPoint;
-
-            // Convert the hit point to pixels.
-            int pointX = (int) (hitPoint.x * pixelsPerMeter);
-            int pointY = (int) (hitPoint.y * pixelsPerMeter);
-            polygonPoints.add(new Point(pointX, pointY));
-        }
-        return polygonPoints;
+    public void setLightMapScale(float lightMapScale) {
+        this.lightMapScale = Math.max(0.05f, Math.min(1f, lightMapScale));
+    }
+
+    public float getLightMapScale() {
+        return lightMapScale;
     }
 
-    // A simple implementation of the RayCastCallback that records the closest hit.
-    private static class RayCastCallbackImpl implements RayCastCallback {
-        public boolean hit = false;
-        public Vec2 hitPoint = new Vec2();
-        public float closestFraction = 1.0f;
+    /**
+     * Sets the light level of areas no light reaches; black is complete darkness, white disables it.
+     */
+    public void setAmbientLight(Color ambientLight) {
+        this.ambientLight = ambientLight;
+        this.ambientShade = shadeOf(ambientLight);
+    }
 
-        @Override
-        public float reportFixture(Fixture fixture, Vec2 point, Vec2 normal, float fraction) {
-            if (fraction < closestFraction) {
-                closestFraction = fraction;
-                hitPoint.set(point);
-                hit = true;
-            }
-            return fraction;
+    private static Color shadeOf(Color light) {
+        int max = Math.max(light.getRed(), Math.max(light.getGreen(), light.getBlue()));
+        return new Color(0, 0, 0, 255 - max);
+    }
+
+    public Color getAmbientLight() {
+        return ambientLight;
+    }
+
+    /**
+     * Culls sprites through the given index instead of testing every sprite each frame. The
+     * index has to be maintained by the {@link PhysicsSystem}; sprites without a physics body are
+     * not indexed and are still tested individually. Fixed sprites in the index are drawn from
+     * cached tiles.
+     *
+     * @param spatialIndex the index to query, or null to test every sprite
+     */
+    public void setSpatialIndex(SpatialIndex spatialIndex) {
+        this.spatialIndex = spatialIndex;
+        this.staticTiles = spatialIndex != null ? new StaticTileCache(spatialIndex, pixelsPerMeter) : null;
+    }
+
+    /**
+     * Rebuilds the cached tiles of fixed sprites. Call this after changing the color, size or
+     * layer of a sprite that belongs to a static body.
+     */
+    public void invalidateStaticTiles() {
+        if (staticTiles != null) {
+            staticTiles.invalidate();
+        }
+    }
+
+    /**
+     * Drops the cached images and light polygon of a destroyed entity right away rather than
+     * when they would have been evicted.
+     */
+    @Override
+    public void entityDestroyed(Entity entity) {
+        TilemapComponent tilemap = entity.get(TilemapComponent.class);
+        if (tilemap != null) {
+            tilemapChunks.remove(tilemap);
+        }
+        LightEmitterComponent light = entity.get(LightEmitterComponent.class);
+        if (light != null) {
+            lightCache.remove(light);
         }
     }
+
+    public RenderQueue getRenderQueue() {
+        return renderQueue;
+    }
+
+    public SpatialIndex getSpatialIndex() {
+        return spatialIndex;
+    }
+
+    public TilemapChunkCache getTilemapChunks() {
+        return tilemapChunks;
+    }
+
+    public LightVisibilityCache getLightCache() {
+        return lightCache;
+    }
 }
@@ -0,0 +1,344 @@
+package org.caveman.systems;
+
+import dev.dominion.ecs.api.Entity;
+import org.caveman.components.SpriteComponent;
+import org.caveman.components.TransformComponent;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A spatial hash of the render bounds of sprites, in world units. The plane is split into square
+ * cells and every sprite is listed in each cell its bounds touch, so a query only visits the
+ * cells under the query rectangle instead of every entity. Cells are created on demand and freed
+ * once empty, so the index has no fixed world size and its memory is bounded by the most cells
+ * ever occupied at once, not by the area sprites have ever covered. Freed cells are kept for
+ * reuse, so sprites moving from cell to cell allocate nothing.
+ * <p>
+ * The index is kept up to date by {@link PhysicsSystem} as it writes transforms; a sprite only
+ * changes cells when its bounds cross a cell border. Sprites marked as fixed (static bodies) are
+ * indexed once and skipped from then on. The index is not thread safe: it is written by the
+ * simulation step and read by the renderer, which the game loop runs one after the other.
+ */
+public class SpatialIndex {
+    private static final float DEFAULT_CELL_SIZE = 4f;
+
+    private final float cellSize;
+    private final float pixelsPerMeter;
+    private final Map<Entity, Proxy> proxies = new IdentityHashMap<>();
+    // Open addressing table from packed cell coordinates to cells.
+    private long[] cellKeys = new long[256];
+    private Cell[] cells = new Cell[256];
+    private int cellCount;
+    private Cell[] spareCells = new Cell[16];
+    private int spareCount;
+    private int queryStamp;
+    private int fixedVersion;
+
+    /**
+     * An indexed sprite and the range of cells it is listed in.
+     */
+    public static final class Proxy {
+        private final Entity entity;
+        private final TransformComponent transform;
+        private final SpriteComponent sprite;
+        private boolean fixed;
+        private int minCellX, minCellY, maxCellX, maxCellY;
+        private int stamp;
+
+        private Proxy(Entity entity, TransformComponent transform, SpriteComponent sprite) {
+            this.entity = entity;
+            this.transform = transform;
+            this.sprite = sprite;
+        }
+
+        public Entity getEntity() {
+            return entity;
+        }
+
+        public TransformComponent getTransform() {
+            return transform;
+        }
+
+        public SpriteComponent getSprite() {
+            return sprite;
+        }
+
+        /**
+         * Returns true if the sprite never moves and is not updated anymore.
+         */
+        public boolean isFixed() {
+            return fixed;
+        }
+    }
+
+    private static final class Cell {
+        private Proxy[] proxies = new Proxy[4];
+        private int size;
+
+        void add(Proxy proxy) {
+            if (size == proxies.length) {
+                proxies = Arrays.copyOf(proxies, size * 2);
+            }
+            proxies[size++] = proxy;
+        }
+
+        void remove(Proxy proxy) {
+            for (int i = 0; i < size; i++) {
+                if (proxies[i] == proxy) {
+                    proxies[i] = proxies[--size];
+                    proxies[size] = null;
+                    return;
+                }
+            }
+        }
+    }
+
+    public SpatialIndex(float pixelsPerMeter) {
+        this(DEFAULT_CELL_SIZE, pixelsPerMeter);
+    }
+
+    /**
+     * @param cellSize       the cell edge length in world units; about the size of a typical sprite or larger
+     * @param pixelsPerMeter conversion factor from sprite pixels to world units
+     */
+    public SpatialIndex(float cellSize, float pixelsPerMeter) {
+        this.cellSize = cellSize;
+        this.pixelsPerMeter = pixelsPerMeter;
+    }
+
+    /**
+     * Returns the proxy of the given entity, or null if it is not indexed.
+     */
+    public Proxy get(Entity entity) {
+        return proxies.get(entity);
+    }
+
+    /**
+     * Inserts the entity or moves it to the cells under its current bounds. The bounds cover the
+     * sprite at both the previous and the current transform, so interpolated frames stay inside.
+     *
+     * @param fixed true if the entity never moves again; later updates are then ignored
+     */
+    public void update(Entity entity, TransformComponent transform, SpriteComponent sprite, boolean fixed) {
+        Proxy proxy = proxies.get(entity);
+        if (proxy == null) {
+            proxy = new Proxy(entity, transform, sprite);
+            proxies.put(entity, proxy);
+            proxy.minCellX = 1;
+            proxy.maxCellX = 0; // Empty range: not in any cell yet
+        } else if (proxy.fixed) {
+            return;
+        }
+        if (fixed) {
+            fixedVersion++;
+        }
+        proxy.fixed = fixed;
+
+        float halfWidth = sprite.getWidth() / 2f / pixelsPerMeter;
+        float halfHeight = sprite.getHeight() / 2f / pixelsPerMeter;
+        float x = transform.getX();
+        float y = transform.getY();
+        float prevX = fixed ? x : transform.getPrevX();
+        float prevY = fixed ? y : transform.getPrevY();
+        int minCellX = cell(Math.min(x, prevX) - halfWidth);
+        int minCellY = cell(Math.min(y, prevY) - halfHeight);
+        int maxCellX = cell(Math.max(x, prevX) + halfWidth);
+        int maxCellY = cell(Math.max(y, prevY) + halfHeight);
+        if (minCellX == proxy.minCellX && minCellY == proxy.minCellY
+                && maxCellX == proxy.maxCellX && maxCellY == proxy.maxCellY) {
+            return;
+        }
+
+        unlink(proxy);
+        proxy.minCellX = minCellX;
+        proxy.minCellY = minCellY;
+        proxy.maxCellX = maxCellX;
+        proxy.maxCellY = maxCellY;
+        for (int cy = minCellY; cy <= maxCellY; cy++) {
+            for (int cx = minCellX; cx <= maxCellX; cx++) {
+                cellAt(cx, cy, true).add(proxy);
+            }
+        }
+    }
+
+    /**
+     * Removes the entity from the index.
+     */
+    public void remove(Entity entity) {
+        Proxy proxy = proxies.remove(entity);
+        if (proxy != null) {
+            if (proxy.fixed) {
+                fixedVersion++;
+            }
+            unlink(proxy);
+        }
+    }
+
+    /**
+     * Collects every indexed sprite whose bounds may overlap the given rectangle. Results are
+     * conservative at cell granularity and each sprite is reported once. Proxies of entities that
+     * were deleted since they were indexed are dropped from the index instead of being reported.
+     *
+     * @param out the list the proxies are added to; it is not cleared
+     */
+    public void query(float minX, float minY, float maxX, float maxY, List<Proxy> out) {
+        int stamp = ++queryStamp;
+        int start = out.size();
+        int minCellX = cell(minX);
+        int minCellY = cell(minY);
+        int maxCellX = cell(maxX);
+        int maxCellY = cell(maxY);
+        for (int cy = minCellY; cy <= maxCellY; cy++) {
+            for (int cx = minCellX; cx <= maxCellX; cx++) {
+                Cell cell = cellAt(cx, cy, false);
+                if (cell == null) continue;
+                for (int i = 0; i < cell.size; i++) {
+                    Proxy proxy = cell.proxies[i];
+                    if (proxy.stamp == stamp) continue;
+                    proxy.stamp = stamp;
+                    out.add(proxy);
+                }
+            }
+        }
+
+        for (int i = out.size() - 1; i >= start; i--) {
+            Proxy proxy = out.get(i);
+            if (proxy.entity.isDeleted()) {
+                remove(proxy.entity);
+                out.set(i, out.get(out.size() - 1));
+                out.remove(out.size() - 1);
+            }
+        }
+    }
+
+    /**
+     * Returns a counter that changes whenever a fixed sprite is added or removed, so caches of
+     * fixed geometry know when to rebuild.
+     */
+    public int getFixedVersion() {
+        return fixedVersion;
+    }
+
+    public int size() {
+        return proxies.size();
+    }
+
+    public float getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * Returns the number of cells that hold at least one sprite.
+     */
+    public int getCellCount() {
+        return cellCount;
+    }
+
+    private int cell(float coordinate) {
+        return (int) Math.floor(coordinate / cellSize);
+    }
+
+    private void unlink(Proxy proxy) {
+        for (int cy = proxy.minCellY; cy <= proxy.maxCellY; cy++) {
+            for (int cx = proxy.minCellX; cx <= proxy.maxCellX; cx++) {
+                int slot = slotOf(cx, cy);
+                if (slot < 0) continue;
+                Cell cell = cells[slot];
+                cell.remove(proxy);
+                if (cell.size == 0) {
+                    freeCell(slot);
+                }
+            }
+        }
+    }
+
+    private Cell cellAt(int cellX, int cellY, boolean create) {
+        long key = key(cellX, cellY);
+        int mask = cells.length - 1;
+        int slot = hash(key) & mask;
+        while (cells[slot] != null) {
+            if (cellKeys[slot] == key) {
+                return cells[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (!create) {
+            return null;
+        }
+
+        Cell cell = spareCount > 0 ? spareCells[--spareCount] : new Cell();
+        spareCells[spareCount] = null;
+        cellKeys[slot] = key;
+        cells[slot] = cell;
+        if (++cellCount * 2 > cells.length) {
+            grow();
+        }
+        return cell;
+    }
+
+    // Returns the table slot of the cell, or -1 if there is none.
+    private int slotOf(int cellX, int cellY) {
+        long key = key(cellX, cellY);
+        int mask = cells.length - 1;
+        int slot = hash(key) & mask;
+        while (cells[slot] != null) {
+            if (cellKeys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    // Takes an empty cell out of the table and keeps it for reuse. The cells probed after it are
+    // shifted back into the hole, so lookups never need tombstones.
+    private void freeCell(int slot) {
+        if (spareCount == spareCells.length) {
+            spareCells = Arrays.copyOf(spareCells, spareCount * 2);
+        }
+        spareCells[spareCount++] = cells[slot];
+        cells[slot] = null;
+        cellCount--;
+
+        int mask = cells.length - 1;
+        int hole = slot;
+        for (int i = (slot + 1) & mask; cells[i] != null; i = (i + 1) & mask) {
+            int home = hash(cellKeys[i]) & mask;
+            if (((i - home) & mask) >= ((i - hole) & mask)) { // The hole lies on the cell's probe path
+                cells[hole] = cells[i];
+                cellKeys[hole] = cellKeys[i];
+                cells[i] = null;
+                hole = i;
+            }
+        }
+    }
+
+    private void grow() {
+        long[] oldKeys = cellKeys;
+        Cell[] oldCells = cells;
+        cellKeys = new long[oldKeys.length * 2];
+        cells = new Cell[oldCells.length * 2];
+        int mask = cells.length - 1;
+        for (int i = 0; i < oldCells.length; i++) {
+            if (oldCells[i] == null) continue;
+            int slot = hash(oldKeys[i]) & mask;
+            while (cells[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            cellKeys[slot] = oldKeys[i];
+            cells[slot] = oldCells[i];
+        }
+    }
+
+    private static long key(int cellX, int cellY) {
+        return ((long) cellX << 32) | (cellY & 0xFFFFFFFFL);
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
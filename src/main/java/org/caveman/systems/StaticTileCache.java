@@ -0,0 +1,255 @@
+package org.caveman.systems;
+
+import org.caveman.components.SpriteComponent;
+import org.caveman.components.TransformComponent;
+import org.caveman.core.assets.TextureRegion;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caches the fixed sprites (static bodies in the {@link SpatialIndex}) in square screen-aligned
+ * tiles, one entry per tile and layer. Layers with many sprites in a tile are pre-rasterized into
+ * an image, so a frame draws one image instead of every ground and obstacle sprite. Sparse layers
+ * keep their rectangles clipped to the tile, because blitting a mostly empty translucent image
+ * costs more than a few rectangle fills; layers with atlas sprites are always rasterized, since an
+ * image sprite clipped to a tile cannot be expressed as a rectangle. Either way, fixed sprites need no culling or transform
+ * work per frame. Tiles are built lazily when they first come into view, dropped after they have
+ * been out of view for a while, and all rebuilt when the zoom changes or a fixed sprite is added
+ * or removed. A tile whose atlas images are still loading is drawn with placeholders and rebuilt
+ * on the next frame instead of being kept.
+ */
+public class StaticTileCache {
+    private static final int TILE_PIXELS = 256;
+    private static final int EVICT_AFTER_FRAMES = 120;
+    // Sprites of one layer in one tile needed before the layer is rasterized into an image.
+    private static final int MIN_RASTERIZED_SPRITES = 48;
+
+    private final SpatialIndex index;
+    private final float pixelsPerMeter;
+    private final Map<Long, Tile> tiles = new HashMap<>();
+    private final List<SpatialIndex.Proxy> tileProxies = new ArrayList<>();
+    private int[] spriteBounds = new int[64]; // Unclipped left, top, right, bottom of the layer's sprites
+    private TextureRegion[] spriteRegions = new TextureRegion[16];
+    private float scale;
+    private int fixedVersion;
+    private long frame;
+
+    private static final class Tile {
+        private TileLayer[] layers;
+        private long lastUsed;
+        private boolean complete = true; // False if an atlas image was missing when it was built
+
+        void flush() {
+            for (TileLayer layer : layers) {
+                if (layer.image != null) {
+                    layer.image.flush();
+                }
+            }
+        }
+    }
+
+    // The sprites of one layer within a tile: an image, or rectangles in tile pixels.
+    private static final class TileLayer {
+        private int layer;
+        private BufferedImage image;
+        private int[] rects; // x, y, width, height per sprite
+        private Color[] colors;
+    }
+
+    /**
+     * @param index          the index the fixed sprites are read from
+     * @param pixelsPerMeter conversion factor from world units to sprite pixels
+     */
+    public StaticTileCache(SpatialIndex index, float pixelsPerMeter) {
+        this.index = index;
+        this.pixelsPerMeter = pixelsPerMeter;
+        this.fixedVersion = index.getFixedVersion();
+    }
+
+    /**
+     * Queues the tiles under the view rectangle, building the missing ones.
+     *
+     * @param config  the configuration tile images are made compatible with
+     * @param scale   device pixels per world unit (pixels per meter times zoom)
+     * @param originX device x of the world origin
+     * @param originY device y of the world origin
+     */
+    public void collect(RenderQueue queue, GraphicsConfiguration config, float scale, float originX, float originY,
+                        float viewMinX, float viewMinY, float viewMaxX, float viewMaxY) {
+        if (scale != this.scale || index.getFixedVersion() != fixedVersion) {
+            invalidate();
+            this.scale = scale;
+            this.fixedVersion = index.getFixedVersion();
+        }
+        frame++;
+
+        int minTileX = (int) Math.floor(viewMinX * scale / TILE_PIXELS);
+        int minTileY = (int) Math.floor(viewMinY * scale / TILE_PIXELS);
+        int maxTileX = (int) Math.floor(viewMaxX * scale / TILE_PIXELS);
+        int maxTileY = (int) Math.floor(viewMaxY * scale / TILE_PIXELS);
+        int baseX = (int) Math.floor(originX);
+        int baseY = (int) Math.floor(originY);
+        for (int tileY = minTileY; tileY <= maxTileY; tileY++) {
+            for (int tileX = minTileX; tileX <= maxTileX; tileX++) {
+                long key = ((long) tileX << 32) | (tileY & 0xFFFFFFFFL);
+                Tile tile = tiles.get(key);
+                if (tile == null) {
+                    tile = build(config, tileX, tileY);
+                    if (tile.complete) {
+                        tiles.put(key, tile);
+                    }
+                }
+                tile.lastUsed = frame;
+                int tileLeft = baseX + tileX * TILE_PIXELS;
+                int tileTop = baseY + tileY * TILE_PIXELS;
+                for (TileLayer layer : tile.layers) {
+                    if (layer.image != null) {
+                        queue.addImage(layer.layer, layer.image, tileLeft, tileTop);
+                        continue;
+                    }
+                    int[] rects = layer.rects;
+                    for (int i = 0; i < layer.colors.length; i++) {
+                        queue.addRect(layer.layer, layer.colors[i], tileLeft + rects[i * 4], tileTop + rects[i * 4 + 1],
+                                rects[i * 4 + 2], rects[i * 4 + 3]);
+                    }
+                }
+            }
+        }
+
+        if (frame % EVICT_AFTER_FRAMES == 0) {
+            tiles.values().removeIf(tile -> {
+                boolean stale = frame - tile.lastUsed > EVICT_AFTER_FRAMES;
+                if (stale) tile.flush();
+                return stale;
+            });
+        }
+    }
+
+    /**
+     * Drops every tile. Call this after changing the color, region, size or layer of a fixed sprite.
+     */
+    public void invalidate() {
+        for (Tile tile : tiles.values()) {
+            tile.flush();
+        }
+        tiles.clear();
+    }
+
+    public int getTileCount() {
+        return tiles.size();
+    }
+
+    private Tile build(GraphicsConfiguration config, int tileX, int tileY) {
+        float tileSize = TILE_PIXELS / scale;
+        tileProxies.clear();
+        index.query(tileX * tileSize, tileY * tileSize, (tileX + 1) * tileSize, (tileY + 1) * tileSize, tileProxies);
+        tileProxies.removeIf(proxy -> !proxy.isFixed());
+        tileProxies.sort((a, b) -> Integer.compare(a.getSprite().getLayer(), b.getSprite().getLayer()));
+
+        int layerCount = 0;
+        for (int i = 0; i < tileProxies.size(); i++) {
+            if (i == 0 || layerOf(i) != layerOf(i - 1)) layerCount++;
+        }
+
+        Tile tile = new Tile();
+        tile.layers = new TileLayer[layerCount];
+        int start = 0;
+        for (int layer = 0; layer < layerCount; layer++) {
+            int end = start + 1;
+            while (end < tileProxies.size() && layerOf(end) == layerOf(start)) end++;
+            tile.layers[layer] = buildLayer(config, tile, tileX, tileY, start, end);
+            start = end;
+        }
+        return tile;
+    }
+
+    private TileLayer buildLayer(GraphicsConfiguration config, Tile tile, int tileX, int tileY, int start, int end) {
+        TileLayer tileLayer = new TileLayer();
+        tileLayer.layer = layerOf(start);
+        tileLayer.rects = new int[(end - start) * 4];
+        tileLayer.colors = new Color[end - start];
+        if (spriteRegions.length < end - start) {
+            spriteRegions = new TextureRegion[Math.max(end - start, spriteRegions.length * 2)];
+            spriteBounds = new int[spriteRegions.length * 4];
+        }
+        boolean hasRegions = false;
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            SpatialIndex.Proxy proxy = tileProxies.get(i);
+            TransformComponent transform = proxy.getTransform();
+            SpriteComponent sprite = proxy.getSprite();
+            float left = transform.getX() - sprite.getWidth() / 2f / pixelsPerMeter;
+            float top = transform.getY() - sprite.getHeight() / 2f / pixelsPerMeter;
+            int spriteLeft = (int) Math.floor(left * scale) - tileX * TILE_PIXELS;
+            int spriteTop = (int) Math.floor(top * scale) - tileY * TILE_PIXELS;
+            int spriteRight = (int) Math.floor((left + sprite.getWidth() / pixelsPerMeter) * scale) - tileX * TILE_PIXELS;
+            int spriteBottom = (int) Math.floor((top + sprite.getHeight() / pixelsPerMeter) * scale) - tileY * TILE_PIXELS;
+            // Clip to the tile so sprites that span several tiles are drawn exactly once.
+            int x = Math.max(0, spriteLeft);
+            int y = Math.max(0, spriteTop);
+            int right = Math.min(TILE_PIXELS, spriteRight);
+            int bottom = Math.min(TILE_PIXELS, spriteBottom);
+            if (right <= x || bottom <= y) continue;
+            tileLayer.rects[count * 4] = x;
+            tileLayer.rects[count * 4 + 1] = y;
+            tileLayer.rects[count * 4 + 2] = right - x;
+            tileLayer.rects[count * 4 + 3] = bottom - y;
+            spriteBounds[count * 4] = spriteLeft;
+            spriteBounds[count * 4 + 1] = spriteTop;
+            spriteBounds[count * 4 + 2] = spriteRight;
+            spriteBounds[count * 4 + 3] = spriteBottom;
+            spriteRegions[count] = sprite.getRegion();
+            hasRegions |= sprite.getRegion() != null;
+            tileLayer.colors[count++] = sprite.getColor();
+        }
+        tileLayer.rects = Arrays.copyOf(tileLayer.rects, count * 4);
+        tileLayer.colors = Arrays.copyOf(tileLayer.colors, count);
+        if (count < MIN_RASTERIZED_SPRITES && !hasRegions) {
+            return tileLayer;
+        }
+
+        int transparency = hasRegions ? Transparency.TRANSLUCENT : transparencyOf(tileLayer.colors);
+        tileLayer.image = config.createCompatibleImage(TILE_PIXELS, TILE_PIXELS, transparency);
+        Graphics2D g = tileLayer.image.createGraphics();
+        for (int i = 0; i < count; i++) {
+            TextureRegion region = spriteRegions[i];
+            spriteRegions[i] = null;
+            BufferedImage image = region != null ? region.getImage() : null;
+            if (image != null) {
+                // Draw the whole sprite and let the tile bounds clip it, so the region is not distorted.
+                int sourceX = region.getX();
+                int sourceY = region.getY();
+                g.drawImage(image, spriteBounds[i * 4], spriteBounds[i * 4 + 1], spriteBounds[i * 4 + 2], spriteBounds[i * 4 + 3],
+                        sourceX, sourceY, sourceX + region.getWidth(), sourceY + region.getHeight(), null);
+                continue;
+            }
+            if (region != null) {
+                tile.complete = false;
+            }
+            g.setColor(tileLayer.colors[i]);
+            g.fillRect(tileLayer.rects[i * 4], tileLayer.rects[i * 4 + 1], tileLayer.rects[i * 4 + 2], tileLayer.rects[i * 4 + 3]);
+        }
+        g.dispose();
+        tileLayer.rects = null;
+        tileLayer.colors = null;
+        return tileLayer;
+    }
+
+    // Opaque sprites only need bitmask transparency, which some pipelines blit faster.
+    private static int transparencyOf(Color[] colors) {
+        for (Color color : colors) {
+            if (color.getAlpha() < 255) return Transparency.TRANSLUCENT;
+        }
+        return Transparency.BITMASK;
+    }
+
+    private int layerOf(int proxy) {
+        return tileProxies.get(proxy).getSprite().getLayer();
+    }
+}
@@ -0,0 +1,213 @@
+package org.caveman.systems;
+
+import dev.dominion.ecs.api.Dominion;
+import org.caveman.components.TilemapComponent;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import static org.caveman.components.TilemapComponent.CHUNK_TILES;
+
+/**
+ * Draws tilemaps as one cached image per chunk, so a frame blits a handful of images however many
+ * tiles are in view. A chunk is redrawn only when its version changes, that is when one of its
+ * tiles or the palette changed, and every chunk is redrawn when the zoom changes. Images are laid
+ * out on the same world-aligned pixel grid at every camera position, so they keep their size while
+ * the camera moves. Chunks out of view for a while and tilemaps that are gone are dropped.
+ */
+public class TilemapChunkCache {
+    private static final int EVICT_AFTER_FRAMES = 120;
+
+    private final Dominion dominion;
+    private final Map<TilemapComponent, ChunkImages> tilemaps = new IdentityHashMap<>();
+    private float scale;
+    private long frame;
+    private int redrawCount;
+
+    private static final class ChunkImages {
+        private final BufferedImage[] images;
+        private final int[] versions;
+        private final boolean[] drawn;
+        private final long[] lastUsed;
+        private long lastSeen;
+
+        ChunkImages(TilemapComponent tilemap) {
+            int chunks = tilemap.getChunkColumns() * tilemap.getChunkRows();
+            images = new BufferedImage[chunks];
+            versions = new int[chunks];
+            drawn = new boolean[chunks];
+            lastUsed = new long[chunks];
+        }
+
+        void flush(int chunk) {
+            if (images[chunk] != null) {
+                images[chunk].flush();
+                images[chunk] = null;
+            }
+            drawn[chunk] = false;
+        }
+    }
+
+    public TilemapChunkCache(Dominion dominion) {
+        this.dominion = dominion;
+    }
+
+    /**
+     * Queues the chunk images of every tilemap under the view rectangle, drawing the missing and
+     * outdated ones.
+     *
+     * @param config  the configuration chunk images are made compatible with
+     * @param scale   device pixels per world unit (pixels per meter times zoom)
+     * @param originX device x of the world origin
+     * @param originY device y of the world origin
+     */
+    public void collect(RenderQueue queue, GraphicsConfiguration config, float scale, float originX, float originY,
+                        float viewMinX, float viewMinY, float viewMaxX, float viewMaxY) {
+        if (scale != this.scale) {
+            invalidate();
+            this.scale = scale;
+        }
+        frame++;
+        int baseX = (int) Math.floor(originX);
+        int baseY = (int) Math.floor(originY);
+
+        for (TilemapComponent tilemap : dominion.findCompositionsWith(TilemapComponent.class)) {
+            ChunkImages images = tilemaps.computeIfAbsent(tilemap, ChunkImages::new);
+            images.lastSeen = frame;
+            float chunkSize = CHUNK_TILES * tilemap.getTileSize();
+            int minChunkX = Math.max(0, (int) Math.floor((viewMinX - tilemap.getX()) / chunkSize));
+            int minChunkY = Math.max(0, (int) Math.floor((viewMinY - tilemap.getY()) / chunkSize));
+            int maxChunkX = Math.min(tilemap.getChunkColumns() - 1, (int) Math.floor((viewMaxX - tilemap.getX()) / chunkSize));
+            int maxChunkY = Math.min(tilemap.getChunkRows() - 1, (int) Math.floor((viewMaxY - tilemap.getY()) / chunkSize));
+            for (int chunkY = minChunkY; chunkY <= maxChunkY; chunkY++) {
+                for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+                    int chunk = chunkY * tilemap.getChunkColumns() + chunkX;
+                    images.lastUsed[chunk] = frame;
+                    if (!images.drawn[chunk] || images.versions[chunk] != tilemap.getChunkVersion(chunk)) {
+                        draw(config, tilemap, images, chunk);
+                    }
+                    BufferedImage image = images.images[chunk];
+                    if (image != null) {
+                        queue.addImage(tilemap.getLayer(), image,
+                                baseX + edge(tilemap.getX(), chunkX * CHUNK_TILES, tilemap.getTileSize()),
+                                baseY + edge(tilemap.getY(), chunkY * CHUNK_TILES, tilemap.getTileSize()));
+                    }
+                }
+            }
+        }
+
+        if (frame % EVICT_AFTER_FRAMES == 0) {
+            tilemaps.values().removeIf(images -> {
+                boolean gone = frame - images.lastSeen > EVICT_AFTER_FRAMES;
+                for (int chunk = 0; chunk < images.images.length; chunk++) {
+                    if (gone || frame - images.lastUsed[chunk] > EVICT_AFTER_FRAMES) {
+                        images.flush(chunk);
+                    }
+                }
+                return gone;
+            });
+        }
+    }
+
+    /**
+     * Drops the chunk images of a tilemap that is gone.
+     */
+    public void remove(TilemapComponent tilemap) {
+        ChunkImages images = tilemaps.remove(tilemap);
+        if (images != null) {
+            for (int chunk = 0; chunk < images.images.length; chunk++) {
+                images.flush(chunk);
+            }
+        }
+    }
+
+    /**
+     * Drops every chunk image.
+     */
+    public void invalidate() {
+        for (ChunkImages images : tilemaps.values()) {
+            for (int chunk = 0; chunk < images.images.length; chunk++) {
+                images.flush(chunk);
+            }
+        }
+        tilemaps.clear();
+    }
+
+    /**
+     * Returns how many chunk images have been drawn, to check that unchanged chunks are not.
+     */
+    public int getRedrawCount() {
+        return redrawCount;
+    }
+
+    private void draw(GraphicsConfiguration config, TilemapComponent tilemap, ChunkImages images, int chunk) {
+        images.versions[chunk] = tilemap.getChunkVersion(chunk);
+        images.drawn[chunk] = true;
+        redrawCount++;
+
+        int firstColumn = (chunk % tilemap.getChunkColumns()) * CHUNK_TILES;
+        int firstRow = (chunk / tilemap.getChunkColumns()) * CHUNK_TILES;
+        int endColumn = Math.min(tilemap.getColumns(), firstColumn + CHUNK_TILES);
+        int endRow = Math.min(tilemap.getRows(), firstRow + CHUNK_TILES);
+        float tileSize = tilemap.getTileSize();
+        boolean translucent = false;
+        boolean empty = true;
+        for (int row = firstRow; row < endRow; row++) {
+            for (int column = firstColumn; column < endColumn; column++) {
+                int id = tilemap.getTile(column, row);
+                if (id == TilemapComponent.EMPTY) continue;
+                empty = false;
+                translucent |= tilemap.getTileColor(id).getAlpha() < 255;
+            }
+        }
+        if (empty) {
+            images.flush(chunk);
+            images.drawn[chunk] = true; // Nothing to draw until a tile changes
+            return;
+        }
+
+        int left = edge(tilemap.getX(), firstColumn, tileSize);
+        int top = edge(tilemap.getY(), firstRow, tileSize);
+        int width = Math.max(1, edge(tilemap.getX(), endColumn, tileSize) - left);
+        int height = Math.max(1, edge(tilemap.getY(), endRow, tileSize) - top);
+        BufferedImage image = images.images[chunk];
+        int transparency = translucent ? Transparency.TRANSLUCENT : Transparency.BITMASK;
+        if (image == null || image.getWidth() != width || image.getHeight() != height
+                || image.getTransparency() != transparency) {
+            if (image != null) image.flush();
+            image = config.createCompatibleImage(width, height, transparency);
+            images.images[chunk] = image;
+        }
+
+        Graphics2D g = image.createGraphics();
+        g.setComposite(AlphaComposite.Clear);
+        g.fillRect(0, 0, width, height);
+        g.setComposite(AlphaComposite.SrcOver);
+        for (int row = firstRow; row < endRow; row++) {
+            int rowTop = edge(tilemap.getY(), row, tileSize) - top;
+            int rowBottom = edge(tilemap.getY(), row + 1, tileSize) - top;
+            int column = firstColumn;
+            while (column < endColumn) {
+                int id = tilemap.getTile(column, row);
+                int runEnd = column + 1;
+                while (runEnd < endColumn && tilemap.getTile(runEnd, row) == id) runEnd++;
+                if (id != TilemapComponent.EMPTY) {
+                    // One rectangle per run of equal tiles, snapped on both edges like sprites.
+                    int runLeft = edge(tilemap.getX(), column, tileSize) - left;
+                    int runRight = edge(tilemap.getX(), runEnd, tileSize) - left;
+                    g.setColor(tilemap.getTileColor(id));
+                    g.fillRect(runLeft, rowTop, runRight - runLeft, rowBottom - rowTop);
+                }
+                column = runEnd;
+            }
+        }
+        g.dispose();
+    }
+
+    // The pixel, relative to the world origin, of the edge before the given tile.
+    private int edge(float origin, int tile, float tileSize) {
+        return (int) Math.floor((origin + tile * tileSize) * scale);
+    }
+}
@@ -0,0 +1,156 @@
+package org.caveman.systems;
+
+import dev.dominion.ecs.api.Dominion;
+import dev.dominion.ecs.api.Entity;
+import org.caveman.components.TilemapComponent;
+import org.caveman.core.ComponentAccess;
+import org.caveman.core.EntityLifecycle;
+import org.jbox2d.collision.shapes.PolygonShape;
+import org.jbox2d.common.Vec2;
+import org.jbox2d.dynamics.Body;
+import org.jbox2d.dynamics.BodyDef;
+import org.jbox2d.dynamics.BodyType;
+import org.jbox2d.dynamics.Fixture;
+import org.jbox2d.dynamics.FixtureDef;
+import org.jbox2d.dynamics.World;
+
+import java.util.Arrays;
+
+import static org.caveman.components.TilemapComponent.CHUNK_TILES;
+
+/**
+ * Keeps the collision of every tilemap in step with its tiles. Each tilemap gets one static body
+ * at its origin; the solid tiles of each chunk are merged greedily into as few rectangles as it
+ * takes, each a box fixture, so a flat run of ground collides through one fixture rather than one
+ * body per tile. Only the chunks whose solid tiles changed are rebuilt. The body and fixtures
+ * belong to the tilemap's entity, so contacts with them are reported for it, and are destroyed
+ * with it.
+ */
+public class TilemapSystem implements Runnable, ComponentAccess, EntityLifecycle.Listener {
+    private final Dominion dominion;
+    private final World world;
+    private final boolean[] covered = new boolean[CHUNK_TILES * CHUNK_TILES];
+    private final PolygonShape box = new PolygonShape(); // Copied by the body on use
+    private final FixtureDef fixtureDef = new FixtureDef();
+    private final Vec2 center = new Vec2();
+    private Fixture[] built = new Fixture[16];
+
+    public TilemapSystem(Dominion dominion, World world) {
+        this.dominion = dominion;
+        this.world = world;
+        fixtureDef.shape = box;
+    }
+
+    @Override
+    public Class<?>[] reads() {
+        return new Class<?>[0];
+    }
+
+    @Override
+    public Class<?>[] writes() {
+        return new Class<?>[]{TilemapComponent.class, World.class};
+    }
+
+    @Override
+    public void run() {
+        // Tilemaps rarely change, so the common case only looks at the components.
+        for (TilemapComponent tilemap : dominion.findCompositionsWith(TilemapComponent.class)) {
+            if (tilemap.getBody() == null || tilemap.hasCollisionChanges()) {
+                rebuildPending();
+                break;
+            }
+        }
+    }
+
+    @Override
+    public void entityDestroyed(Entity entity) {
+        TilemapComponent tilemap = entity.get(TilemapComponent.class);
+        if (tilemap != null && tilemap.getBody() != null) {
+            world.destroyBody(tilemap.getBody());
+        }
+    }
+
+    private void rebuildPending() {
+        for (var result : dominion.findEntitiesWith(TilemapComponent.class)) {
+            TilemapComponent tilemap = result.comp();
+            if (tilemap.getBody() == null) {
+                createBody(result.entity(), tilemap);
+            }
+            if (!tilemap.hasCollisionChanges()) continue;
+            int chunks = tilemap.getChunkColumns() * tilemap.getChunkRows();
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                if (tilemap.isCollisionDirty(chunk)) {
+                    rebuildChunk(tilemap, chunk);
+                }
+            }
+            tilemap.clearCollisionChanges();
+        }
+    }
+
+    private void createBody(Entity entity, TilemapComponent tilemap) {
+        BodyDef bodyDef = new BodyDef();
+        bodyDef.type = BodyType.STATIC;
+        bodyDef.position.set(tilemap.getX(), tilemap.getY());
+        Body body = world.createBody(bodyDef);
+        body.setUserData(entity);
+        tilemap.setBody(body);
+    }
+
+    private void rebuildChunk(TilemapComponent tilemap, int chunk) {
+        Body body = tilemap.getBody();
+        Fixture[] old = tilemap.getChunkFixtures(chunk);
+        if (old != null) {
+            for (Fixture fixture : old) {
+                body.destroyFixture(fixture);
+            }
+        }
+
+        int firstColumn = (chunk % tilemap.getChunkColumns()) * CHUNK_TILES;
+        int firstRow = (chunk / tilemap.getChunkColumns()) * CHUNK_TILES;
+        int width = Math.min(CHUNK_TILES, tilemap.getColumns() - firstColumn);
+        int height = Math.min(CHUNK_TILES, tilemap.getRows() - firstRow);
+        float tileSize = tilemap.getTileSize();
+        Arrays.fill(covered, false);
+        int count = 0;
+        for (int row = 0; row < height; row++) {
+            for (int column = 0; column < width; column++) {
+                if (covered[row * CHUNK_TILES + column] || !tilemap.isSolid(firstColumn + column, firstRow + row)) continue;
+
+                // Grow right as far as the row is solid, then down as long as the whole span is.
+                int right = column + 1;
+                while (right < width && !covered[row * CHUNK_TILES + right]
+                        && tilemap.isSolid(firstColumn + right, firstRow + row)) {
+                    right++;
+                }
+                int bottom = row + 1;
+                while (bottom < height && spanIsFree(tilemap, firstColumn, firstRow, column, right, bottom)) {
+                    bottom++;
+                }
+                for (int r = row; r < bottom; r++) {
+                    Arrays.fill(covered, r * CHUNK_TILES + column, r * CHUNK_TILES + right, true);
+                }
+
+                float halfWidth = (right - column) * tileSize / 2;
+                float halfHeight = (bottom - row) * tileSize / 2;
+                center.set((firstColumn + column) * tileSize + halfWidth, (firstRow + row) * tileSize + halfHeight);
+                box.setAsBox(halfWidth, halfHeight, center, 0);
+                if (count == built.length) {
+                    built = Arrays.copyOf(built, count * 2);
+                }
+                built[count++] = body.createFixture(fixtureDef);
+            }
+        }
+        tilemap.setChunkFixtures(chunk, count > 0 ? Arrays.copyOf(built, count) : null);
+        Arrays.fill(built, 0, count, null);
+    }
+
+    // True if every tile of the row between the two columns is solid and not yet merged.
+    private boolean spanIsFree(TilemapComponent tilemap, int firstColumn, int firstRow, int from, int to, int row) {
+        for (int column = from; column < to; column++) {
+            if (covered[row * CHUNK_TILES + column] || !tilemap.isSolid(firstColumn + column, firstRow + row)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
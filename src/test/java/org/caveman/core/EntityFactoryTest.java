@@ -0,0 +1,118 @@
+package org.caveman.core;
+
+import dev.dominion.ecs.api.Dominion;
+import dev.dominion.ecs.api.Entity;
+import org.caveman.components.SpriteComponent;
+import org.caveman.components.TransformComponent;
+import org.caveman.components.TransformStore;
+import org.caveman.systems.PhysicsSystem;
+import org.caveman.systems.SpatialIndex;
+import org.jbox2d.collision.shapes.PolygonShape;
+import org.jbox2d.common.Vec2;
+import org.jbox2d.dynamics.BodyDef;
+import org.jbox2d.dynamics.BodyType;
+import org.jbox2d.dynamics.FixtureDef;
+import org.jbox2d.dynamics.World;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EntityFactoryTest {
+    private World world;
+    private EntityLifecycle lifecycle;
+    private PhysicsSystem physics;
+    private SpatialIndex index;
+    private EntityFactory factory;
+
+    @BeforeEach
+    void setUp() {
+        Dominion dominion = Dominion.create();
+        world = new World(new Vec2(0, 9.8f));
+        physics = new PhysicsSystem(dominion, world, 1 / 60f, 32f);
+        index = new SpatialIndex(32f);
+        physics.setSpatialIndex(index);
+        lifecycle = new EntityLifecycle(dominion);
+        lifecycle.addListener(physics);
+        factory = new EntityFactory(dominion, world);
+        factory.setSpatialIndex(index);
+        factory.setPhysicsSystem(physics);
+        factory.setLifecycle(lifecycle);
+    }
+
+    @Test
+    void staticInstanceRespawnedBetweenSyncsIsIndexedAgain() {
+        EntityFactory.Prefab crate = define(BodyType.STATIC);
+        Entity entity = factory.spawn(crate, 3, 4);
+        lifecycle.drain();
+        physics.syncTransforms();
+        assertNotNull(index.get(entity));
+
+        factory.despawn(entity);
+        assertSame(entity, factory.spawn(crate, 3, 4));
+        physics.syncTransforms();
+
+        assertNotNull(index.get(entity));
+    }
+
+    @Test
+    void respawnedInstanceIsReportedAsChanged() {
+        for (BodyType type : new BodyType[]{BodyType.STATIC, BodyType.DYNAMIC}) {
+            EntityFactory.Prefab prefab = define(type);
+            Entity entity = factory.spawn(prefab, 3, 4);
+            lifecycle.drain();
+            physics.syncTransforms();
+            long synced = physics.getTick();
+
+            factory.despawn(entity);
+            factory.spawn(prefab, 3, 4); // Where it was, so the sync finds nothing to copy
+            physics.syncTransforms();
+
+            assertTrue(entity.get(TransformComponent.class).hasChangedSince(synced), type.name());
+            assertEquals(physics.getTick(), physics.getLastChangeTick(), type.name());
+            assertTrue(changedEntitiesInclude(entity), type.name());
+        }
+    }
+
+    @Test
+    void prewarmedInstanceIsAttachedToTheTransformStoreWhenSpawned() {
+        TransformStore store = new TransformStore();
+        lifecycle.addListener(store);
+        factory.setTransformStore(store);
+        EntityFactory.Prefab prefab = define(BodyType.DYNAMIC);
+        factory.prewarm(prefab, 2);
+        lifecycle.drain();
+        assertEquals(0, store.size());
+
+        Entity entity = factory.spawn(prefab, 3, 4);
+        TransformComponent transform = entity.get(TransformComponent.class);
+        assertSame(store, transform.getStore());
+        assertEquals(3, transform.getX());
+        assertEquals(1, store.size());
+    }
+
+    private boolean changedEntitiesInclude(Entity entity) {
+        for (int i = 0; i < physics.getChangedCount(); i++) {
+            if (physics.getChangedEntity(i) == entity) return true;
+        }
+        return false;
+    }
+
+    private EntityFactory.Prefab define(BodyType type) {
+        BodyDef bodyDef = new BodyDef();
+        bodyDef.type = type;
+        bodyDef.gravityScale = 0; // Keeps dynamic instances where they were spawned
+        PolygonShape shape = new PolygonShape();
+        shape.setAsBox(0.5f, 0.5f);
+        FixtureDef fixtureDef = new FixtureDef();
+        fixtureDef.shape = shape;
+        fixtureDef.density = 1f;
+        return factory.define(type.name(), bodyDef, fixtureDef,
+                () -> new Object[]{new SpriteComponent(Color.WHITE, 32, 32)});
+    }
+}
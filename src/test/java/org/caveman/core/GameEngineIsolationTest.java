@@ -0,0 +1,86 @@
+package org.caveman.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.event.KeyEvent;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * Checks that engines share no state: engines stepped side by side, on one thread or on several,
+ * go through the same physics states as a single engine with the same seed and input.
+ */
+class GameEngineIsolationTest {
+    private static final long SEED = 7;
+    private static final int TICKS = 300;
+
+    @Test
+    void enginesSteppedSideBySideMatchOneAlone() {
+        long[] alone = run(new GameEngine(true, SEED, null));
+
+        GameEngine first = new GameEngine(true, SEED, null);
+        GameEngine second = new GameEngine(true, SEED, null);
+        long[] firstChecksums = new long[TICKS];
+        long[] secondChecksums = new long[TICKS];
+        try {
+            for (int tick = 0; tick < TICKS; tick++) {
+                script(first, tick);
+                script(second, tick);
+                first.tick();
+                second.tick();
+                firstChecksums[tick] = first.getPhysicsChecksum();
+                secondChecksums[tick] = second.getPhysicsChecksum();
+            }
+        } finally {
+            first.shutDown();
+            second.shutDown();
+        }
+        assertArrayEquals(alone, firstChecksums);
+        assertArrayEquals(alone, secondChecksums);
+    }
+
+    @Test
+    void hostedEnginesOnSeparateThreadsMatchOneAlone() throws Exception {
+        long[] alone = run(new GameEngine(true, SEED, null));
+
+        ExecutorService chunkLoader = Executors.newFixedThreadPool(2);
+        ExecutorService threads = Executors.newFixedThreadPool(2);
+        try {
+            Future<long[]> first = threads.submit(() -> run(new GameEngine(SEED, chunkLoader)));
+            Future<long[]> second = threads.submit(() -> run(new GameEngine(SEED, chunkLoader)));
+            assertArrayEquals(alone, first.get());
+            assertArrayEquals(alone, second.get());
+        } finally {
+            threads.shutdown();
+            chunkLoader.shutdown();
+        }
+    }
+
+    // Runs the engine through the script and returns its checksum after every tick.
+    private static long[] run(GameEngine engine) {
+        long[] checksums = new long[TICKS];
+        try {
+            for (int tick = 0; tick < TICKS; tick++) {
+                script(engine, tick);
+                engine.tick();
+                checksums[tick] = engine.getPhysicsChecksum();
+            }
+        } finally {
+            engine.shutDown();
+        }
+        return checksums;
+    }
+
+    private static void script(GameEngine engine, int tick) {
+        InputEventQueue queue = engine.getInputHandler().getQueue();
+        if (tick == 10) {
+            queue.offer(InputEventQueue.KEY_DOWN, KeyEvent.VK_D, 0, 0, System.nanoTime());
+        } else if (tick == 120) {
+            queue.offer(InputEventQueue.KEY_DOWN, KeyEvent.VK_SPACE, 0, 0, System.nanoTime());
+            queue.offer(InputEventQueue.KEY_UP, KeyEvent.VK_SPACE, 0, 0, System.nanoTime());
+        }
+    }
+}
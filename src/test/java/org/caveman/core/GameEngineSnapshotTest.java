@@ -0,0 +1,169 @@
+package org.caveman.core;
+
+import dev.dominion.ecs.api.Entity;
+import org.caveman.components.PhysicsComponent;
+import org.caveman.components.TransformComponent;
+import org.caveman.core.snapshot.ComponentCodec;
+import org.caveman.core.snapshot.SnapshotInput;
+import org.caveman.core.snapshot.SnapshotOutput;
+import org.jbox2d.dynamics.Body;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.event.KeyEvent;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Saves the world of a running engine, lets it move on, loads the file back and checks that the
+ * engine continues from exactly where it was saved. Files that cannot be restored must leave the
+ * world untouched.
+ */
+class GameEngineSnapshotTest {
+    private static final long SEED = 11;
+
+    @Test
+    void loadedSnapshotContinuesFromTheSavedState(@TempDir Path directory) {
+        Path file = directory.resolve("world.snapshot");
+        GameEngine engine = new GameEngine(true, SEED, null);
+        try {
+            // The player keeps walking right, so the world never comes to rest
+            engine.getInputHandler().getQueue().offer(InputEventQueue.KEY_DOWN, KeyEvent.VK_D, 0, 0, System.nanoTime());
+            engine.runHeadless(120);
+            CompletableFuture<?> save = engine.saveSnapshot(file);
+            engine.tick(); // Captured at the start of the tick, before the step
+            save.join();
+            List<String> saved = describe(engine);
+            long savedTick = engine.getTickCount();
+
+            engine.runHeadless(90);
+            assertNotEquals(saved, describe(engine), "The world should have moved on");
+
+            CompletableFuture<Void> load = engine.loadSnapshot(file);
+            engine.tick(); // Restored at the start of the tick, then stepped as before
+            load.join();
+            assertEquals(saved, describe(engine));
+            assertEquals(savedTick, engine.getTickCount());
+        } finally {
+            engine.shutDown();
+        }
+    }
+
+    @Test
+    void fileThatIsNotASnapshotLeavesTheWorldAsItWas(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("garbage.snapshot");
+        Files.write(file, new byte[256]);
+        assertLoadFailsWithoutChanges(file, "not a world snapshot");
+    }
+
+    @Test
+    void truncatedSnapshotLeavesTheWorldAsItWas(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("world.snapshot");
+        save(new GameEngine(true, SEED, null), file);
+        byte[] data = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(data, data.length / 2));
+        assertLoadFailsWithoutChanges(file, "Truncated or corrupt snapshot");
+    }
+
+    @Test
+    void snapshotWithAnUnknownComponentLeavesTheWorldAsItWas(@TempDir Path directory) {
+        Path file = directory.resolve("world.snapshot");
+        GameEngine saving = new GameEngine(true, SEED, null);
+        saving.getSnapshotFormat().register(new MarkerCodec());
+        saving.getDominion().createEntity(new Marker());
+        save(saving, file);
+        assertLoadFailsWithoutChanges(file, "No codec registered for " + Marker.class.getName());
+    }
+
+    // Loads the file into one of two identical engines and checks they stay identical.
+    private static void assertLoadFailsWithoutChanges(Path file, String message) {
+        GameEngine loading = new GameEngine(true, SEED, null);
+        GameEngine untouched = new GameEngine(true, SEED, null);
+        try {
+            loading.runHeadless(60);
+            untouched.runHeadless(60);
+
+            CompletableFuture<Void> load = loading.loadSnapshot(file);
+            loading.tick();
+            untouched.tick();
+            CompletionException error = assertThrows(CompletionException.class, load::join);
+            assertInstanceOf(IllegalArgumentException.class, error.getCause());
+            assertTrue(error.getCause().getMessage().contains(message), error.getCause().getMessage());
+
+            List<String> expected = describe(untouched);
+            assertFalse(expected.isEmpty());
+            assertEquals(expected, describe(loading));
+            assertEquals(untouched.getPhysicsChecksum(), loading.getPhysicsChecksum());
+        } finally {
+            loading.shutDown();
+            untouched.shutDown();
+        }
+    }
+
+    private static void save(GameEngine engine, Path file) {
+        try {
+            engine.runHeadless(30);
+            CompletableFuture<?> save = engine.saveSnapshot(file);
+            engine.tick();
+            save.join();
+        } finally {
+            engine.shutDown();
+        }
+    }
+
+    // The transform and body state of every entity in the world, sorted since entity order is not kept.
+    private static List<String> describe(GameEngine engine) {
+        List<String> states = new ArrayList<>();
+        for (Object result : engine.getDominion().findAllEntities()) {
+            Entity entity = (Entity) result;
+            if (entity.isDeleted() || !entity.isEnabled()) continue;
+            StringBuilder state = new StringBuilder();
+            TransformComponent transform = entity.get(TransformComponent.class);
+            if (transform != null) {
+                state.append(transform.getX()).append(',').append(transform.getY()).append(',')
+                        .append(transform.getRotation());
+            }
+            PhysicsComponent physics = entity.get(PhysicsComponent.class);
+            Body body = physics != null ? physics.getBody() : null;
+            if (body != null) {
+                state.append(" | ").append(body.getType()).append(' ').append(body.getPosition())
+                        .append(' ').append(body.getAngle()).append(' ').append(body.getLinearVelocity())
+                        .append(' ').append(body.getAngularVelocity()).append(' ').append(body.isAwake());
+            }
+            states.add(state.toString());
+        }
+        states.sort(null);
+        return states;
+    }
+
+    record Marker() {
+    }
+
+    static final class MarkerCodec implements ComponentCodec<Marker> {
+        @Override
+        public Class<Marker> getType() {
+            return Marker.class;
+        }
+
+        @Override
+        public void write(Marker marker, SnapshotOutput out) {
+        }
+
+        @Override
+        public Marker read(SnapshotInput in) {
+            return new Marker();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package org.caveman.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InputHandlerTest {
+    private final InputEventQueue queue = new InputEventQueue(16);
+    private final InputHandler input = new InputHandler(queue);
+    private long time;
+
+    @Test
+    void pressedEdgeLastsOneTickWhileTheKeyIsHeld() {
+        key(InputEventQueue.KEY_DOWN, KeyEvent.VK_A);
+        input.poll();
+        assertTrue(input.isKeyDown(KeyEvent.VK_A));
+        assertTrue(input.wasKeyPressed(KeyEvent.VK_A));
+        assertFalse(input.wasKeyReleased(KeyEvent.VK_A));
+
+        key(InputEventQueue.KEY_DOWN, KeyEvent.VK_A); // Auto-repeat
+        key(InputEventQueue.KEY_DOWN, KeyEvent.VK_B); // Same bit word as A
+        input.poll();
+        assertTrue(input.isKeyDown(KeyEvent.VK_A));
+        assertFalse(input.wasKeyPressed(KeyEvent.VK_A));
+        assertTrue(input.wasKeyPressed(KeyEvent.VK_B));
+
+        key(InputEventQueue.KEY_UP, KeyEvent.VK_A);
+        input.poll();
+        assertFalse(input.isKeyDown(KeyEvent.VK_A));
+        assertTrue(input.wasKeyReleased(KeyEvent.VK_A));
+        assertFalse(input.wasKeyPressed(KeyEvent.VK_B));
+        assertTrue(input.isKeyDown(KeyEvent.VK_B));
+
+        input.poll();
+        assertFalse(input.wasKeyReleased(KeyEvent.VK_A));
+    }
+
+    @Test
+    void keyTappedWithinOneTickIsPressedAndReleased() {
+        key(InputEventQueue.KEY_DOWN, KeyEvent.VK_SPACE);
+        key(InputEventQueue.KEY_UP, KeyEvent.VK_SPACE);
+        input.poll();
+
+        assertTrue(input.wasKeyPressed(KeyEvent.VK_SPACE));
+        assertTrue(input.wasKeyReleased(KeyEvent.VK_SPACE));
+        assertFalse(input.isKeyDown(KeyEvent.VK_SPACE));
+
+        input.poll();
+        assertFalse(input.wasKeyPressed(KeyEvent.VK_SPACE));
+        assertFalse(input.wasKeyReleased(KeyEvent.VK_SPACE));
+    }
+
+    @Test
+    void releaseOfAKeyThatIsNotHeldIsIgnored() {
+        key(InputEventQueue.KEY_UP, KeyEvent.VK_A);
+        key(InputEventQueue.KEY_DOWN, -1);
+        key(InputEventQueue.KEY_DOWN, 1 << 16);
+        input.poll();
+
+        assertFalse(input.wasKeyReleased(KeyEvent.VK_A));
+        assertFalse(input.isKeyDown(-1));
+        assertFalse(input.isKeyDown(1 << 16));
+        assertEquals(3, input.getEventCount());
+    }
+
+    @Test
+    void lostFocusReleasesEveryHeldKeyAndButton() {
+        key(InputEventQueue.KEY_DOWN, KeyEvent.VK_A);
+        key(InputEventQueue.KEY_DOWN, KeyEvent.VK_F12);
+        queue.offer(InputEventQueue.MOUSE_DOWN, MouseEvent.BUTTON1, 10, 20, time++);
+        input.poll();
+
+        queue.offer(InputEventQueue.FOCUS_LOST, 0, 0, 0, time++);
+        input.poll();
+        assertFalse(input.isKeyDown(KeyEvent.VK_A));
+        assertFalse(input.isKeyDown(KeyEvent.VK_F12));
+        assertFalse(input.isButtonDown(MouseEvent.BUTTON1));
+        assertTrue(input.wasKeyReleased(KeyEvent.VK_A));
+        assertTrue(input.wasKeyReleased(KeyEvent.VK_F12));
+        assertTrue(input.wasButtonReleased(MouseEvent.BUTTON1));
+
+        input.poll();
+        assertFalse(input.wasKeyReleased(KeyEvent.VK_A));
+        assertFalse(input.wasKeyReleased(KeyEvent.VK_F12));
+        assertFalse(input.wasButtonReleased(MouseEvent.BUTTON1));
+    }
+
+    @Test
+    void mouseButtonEdgesAndPosition() {
+        queue.offer(InputEventQueue.MOUSE_DOWN, MouseEvent.BUTTON3, 5, 6, time++);
+        queue.offer(InputEventQueue.MOUSE_MOVE, 0, 7, 8, time++);
+        input.poll();
+        assertTrue(input.isButtonDown(MouseEvent.BUTTON3));
+        assertTrue(input.wasButtonPressed(MouseEvent.BUTTON3));
+        assertEquals(7, input.getMouseX());
+        assertEquals(8, input.getMouseY());
+
+        queue.offer(InputEventQueue.MOUSE_UP, MouseEvent.BUTTON3, 9, 10, time++);
+        input.poll();
+        assertFalse(input.isButtonDown(MouseEvent.BUTTON3));
+        assertFalse(input.wasButtonPressed(MouseEvent.BUTTON3));
+        assertTrue(input.wasButtonReleased(MouseEvent.BUTTON3));
+        assertEquals(9, input.getMouseX());
+    }
+
+    @Test
+    void actionsFollowAnyOfTheirKeys() {
+        InputHandler.Action jump = input.bind("jump", KeyEvent.VK_SPACE, KeyEvent.VK_W);
+        key(InputEventQueue.KEY_DOWN, KeyEvent.VK_W);
+        input.poll();
+        assertTrue(input.isDown(jump));
+        assertTrue(input.wasPressed(jump));
+
+        key(InputEventQueue.KEY_DOWN, KeyEvent.VK_SPACE);
+        key(InputEventQueue.KEY_UP, KeyEvent.VK_W);
+        input.poll();
+        assertTrue(input.isDown(jump));
+        assertTrue(input.wasReleased(jump));
+
+        input.unbind("jump");
+        assertFalse(input.isDown(input.getAction("jump")));
+    }
+
+    @Test
+    void eventsBeyondTheCapacityAreDroppedAndCounted() {
+        for (int i = 0; i < 20; i++) {
+            key(i % 2 == 0 ? InputEventQueue.KEY_DOWN : InputEventQueue.KEY_UP, KeyEvent.VK_A);
+        }
+        assertEquals(16, queue.size());
+        assertEquals(4, queue.getDroppedCount());
+
+        input.poll();
+        assertEquals(16, input.getEventCount());
+        assertEquals(0, queue.size());
+        assertEquals(0, input.getEventTime(0));
+        assertEquals(15, input.getEventTime(15));
+        assertTrue(queue.offer(InputEventQueue.KEY_DOWN, KeyEvent.VK_A, 0, 0, time++));
+    }
+
+    private void key(int type, int keyCode) {
+        queue.offer(type, keyCode, 0, 0, time++);
+    }
+}
@@ -0,0 +1,113 @@
+package org.caveman.core;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelForTest {
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+    private final List<int[]> ranges = Collections.synchronizedList(new ArrayList<>());
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void chunksStartOnGrainBoundariesAndCoverEveryIndexOnce() {
+        ParallelFor parallelFor = new ParallelFor(pool, 10, 0);
+        for (int count : new int[]{1, 9, 10, 11, 20, 99, 100, 101, 1_000}) {
+            ranges.clear();
+            parallelFor.forRange(count, this::record);
+
+            List<int[]> sorted = sortedRanges();
+            int expectedChunks = (count + 9) / 10;
+            assertEquals(expectedChunks, sorted.size(), "Chunks of " + count);
+            int next = 0;
+            for (int[] range : sorted) {
+                assertEquals(next, range[0], "Count " + count);
+                assertEquals(Math.min(count, next + 10), range[1], "Count " + count);
+                next = range[1];
+            }
+            assertEquals(count, next);
+        }
+    }
+
+    @Test
+    void loopBelowTheThresholdRunsAsOneRangeOnTheCallingThread() {
+        ParallelFor parallelFor = new ParallelFor(pool, 10, 500);
+        Thread caller = Thread.currentThread();
+        List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+        parallelFor.forRange(499, (from, to) -> {
+            record(from, to);
+            threads.add(Thread.currentThread());
+        });
+
+        assertEquals(1, ranges.size());
+        assertEquals(0, ranges.get(0)[0]);
+        assertEquals(499, ranges.get(0)[1]);
+        assertEquals(List.of(caller), threads);
+    }
+
+    @Test
+    void emptyLoopRunsNothing() {
+        new ParallelFor(pool, 10, 0).forRange(0, this::record);
+        assertTrue(ranges.isEmpty());
+    }
+
+    @Test
+    void forEachVisitsTheFirstCountElementsOnce() {
+        ParallelFor parallelFor = new ParallelFor(pool, 7, 0);
+        Integer[] items = new Integer[300];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = i;
+        }
+        AtomicIntegerArray visits = new AtomicIntegerArray(items.length);
+        parallelFor.forEach(items, 250, visits::incrementAndGet);
+
+        for (int i = 0; i < items.length; i++) {
+            assertEquals(i < 250 ? 1 : 0, visits.get(i), "Item " + i);
+        }
+
+        AtomicIntegerArray listVisits = new AtomicIntegerArray(items.length);
+        parallelFor.forEach(List.of(items), listVisits::incrementAndGet);
+        for (int i = 0; i < items.length; i++) {
+            assertEquals(1, listVisits.get(i), "Item " + i);
+        }
+    }
+
+    @Test
+    void failureInAChunkIsRethrownAndTheLoopCanRunAgain() {
+        ParallelFor parallelFor = new ParallelFor(pool, 10, 0);
+        assertThrows(IllegalStateException.class, () -> parallelFor.forRange(100, (from, to) -> {
+            if (from == 50) throw new IllegalStateException("chunk " + from);
+        }));
+
+        parallelFor.forRange(100, this::record);
+        assertEquals(10, ranges.size());
+    }
+
+    @Test
+    void invalidGrainSizeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new ParallelFor(pool, 0, 0));
+    }
+
+    private void record(int from, int to) {
+        ranges.add(new int[]{from, to});
+    }
+
+    private List<int[]> sortedRanges() {
+        List<int[]> sorted = new ArrayList<>(ranges);
+        sorted.sort((a, b) -> Integer.compare(a[0], b[0]));
+        return sorted;
+    }
+}
@@ -0,0 +1,170 @@
+package org.caveman.core;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SystemGraphTest {
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+    private final List<String> ran = Collections.synchronizedList(new ArrayList<>());
+
+    // Stand-ins for component and resource types.
+    private static final class Position {
+    }
+
+    private static final class Velocity {
+    }
+
+    private static final class Sprite {
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void systemsAreStagedAfterTheEarlierSystemsTheyConflictWith() {
+        SystemGraph graph = new SystemGraph(pool);
+        add(graph, "input", types(), types(Velocity.class));
+        add(graph, "physics", types(Velocity.class), types(Position.class));
+        add(graph, "animation", types(), types(Sprite.class));
+        add(graph, "camera", types(Position.class), types());
+        add(graph, "render", types(Position.class, Sprite.class), types());
+        add(graph, "teleport", types(), types(Position.class));
+
+        assertEquals(List.of(
+                List.of("input", "animation"),
+                List.of("physics"),
+                List.of("camera", "render"),
+                List.of("teleport")), graph.getStages());
+    }
+
+    @Test
+    void accessIsTakenFromTheSystemsOwnDeclaration() {
+        SystemGraph graph = new SystemGraph(pool);
+        graph.add("writer", new Declared("writer", types(), types(Position.class)));
+        graph.add("reader", new Declared("reader", types(Position.class), types()));
+        graph.add("other", new Declared("other", types(Sprite.class), types(Velocity.class)));
+
+        assertEquals(List.of(List.of("writer", "other"), List.of("reader")), graph.getStages());
+    }
+
+    @Test
+    void stagesRunInOrderAndEverySystemRunsOncePerTick() {
+        SystemGraph graph = new SystemGraph(pool);
+        add(graph, "a", types(), types(Position.class));
+        add(graph, "b", types(), types(Velocity.class));
+        add(graph, "c", types(), types(Sprite.class));
+        add(graph, "d", types(Position.class, Velocity.class, Sprite.class), types());
+
+        for (int tick = 0; tick < 50; tick++) {
+            ran.clear();
+            graph.run();
+            assertEquals(4, ran.size());
+            assertEquals("d", ran.get(3), "Tick " + tick);
+            assertTrue(ran.subList(0, 3).containsAll(List.of("a", "b", "c")));
+        }
+    }
+
+    @Test
+    void graphWithoutAPoolRunsInStageOrderOnTheCallingThread() {
+        SystemGraph graph = new SystemGraph(null);
+        Thread caller = Thread.currentThread();
+        List<Thread> threads = new ArrayList<>();
+        graph.add("writer", () -> {
+            ran.add("writer");
+            threads.add(Thread.currentThread());
+        }, types(), types(Position.class), null);
+        graph.add("free", () -> {
+            ran.add("free");
+            threads.add(Thread.currentThread());
+        }, types(), types(Sprite.class), null);
+        graph.add("reader", () -> {
+            ran.add("reader");
+            threads.add(Thread.currentThread());
+        }, types(Position.class), types(), null);
+
+        graph.run();
+        assertEquals(List.of("writer", "free", "reader"), ran);
+        threads.forEach(thread -> assertSame(caller, thread));
+    }
+
+    @Test
+    void systemAddedLaterIsScheduled() {
+        SystemGraph graph = new SystemGraph(pool);
+        add(graph, "a", types(), types(Position.class));
+        graph.run();
+        add(graph, "b", types(Position.class), types());
+
+        assertEquals(List.of(List.of("a"), List.of("b")), graph.getStages());
+        ran.clear();
+        graph.run();
+        assertEquals(List.of("a", "b"), ran);
+    }
+
+    @Test
+    void duplicateNameIsRejected() {
+        SystemGraph graph = new SystemGraph(pool);
+        add(graph, "a", types(), types(Position.class));
+        assertThrows(IllegalArgumentException.class, () -> add(graph, "a", types(), types()));
+    }
+
+    @Test
+    void failureOfAForkedSystemIsRethrownAfterItsStage() {
+        SystemGraph graph = new SystemGraph(pool);
+        graph.add("failing", () -> {
+            throw new IllegalStateException("failed");
+        }, types(), types(Position.class), null);
+        add(graph, "sibling", types(), types(Sprite.class));
+        add(graph, "next", types(Position.class), types());
+
+        IllegalStateException error = assertThrows(IllegalStateException.class, graph::run);
+        assertTrue(error.getMessage().contains("failed"), error.getMessage()); // The pool may wrap it
+        assertEquals(List.of("sibling"), ran);
+    }
+
+    private void add(SystemGraph graph, String name, Class<?>[] reads, Class<?>[] writes) {
+        graph.add(name, () -> ran.add(name), reads, writes, null);
+    }
+
+    private static Class<?>[] types(Class<?>... types) {
+        return types;
+    }
+
+    private final class Declared implements Runnable, ComponentAccess {
+        private final String name;
+        private final Class<?>[] reads;
+        private final Class<?>[] writes;
+
+        Declared(String name, Class<?>[] reads, Class<?>[] writes) {
+            this.name = name;
+            this.reads = reads;
+            this.writes = writes;
+        }
+
+        @Override
+        public void run() {
+            ran.add(name);
+        }
+
+        @Override
+        public Class<?>[] reads() {
+            return reads;
+        }
+
+        @Override
+        public Class<?>[] writes() {
+            return writes;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package org.caveman.core.level;
+
+import dev.dominion.ecs.api.Dominion;
+import dev.dominion.ecs.api.Entity;
+import org.caveman.components.ChunkComponent;
+import org.caveman.components.PhysicsComponent;
+import org.caveman.components.TransformComponent;
+import org.caveman.core.EntityLifecycle;
+import org.caveman.core.snapshot.SnapshotFormat;
+import org.caveman.systems.PhysicsSystem;
+import org.jbox2d.common.Vec2;
+import org.jbox2d.dynamics.Body;
+import org.jbox2d.dynamics.World;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChunkStreamerTest {
+    private static final String LEVEL = """
+            obstacle 2 2
+            obstacle 4 2
+            light    6 6
+            obstacle 102 2
+            """;
+
+    private Dominion dominion;
+    private World world;
+    private EntityLifecycle lifecycle;
+    private ChunkStreamer streamer;
+    private TransformComponent focus;
+
+    @BeforeEach
+    void setUp() {
+        dominion = Dominion.create();
+        world = new World(new Vec2(0, 0));
+        lifecycle = new EntityLifecycle(dominion);
+        lifecycle.addListener(new PhysicsSystem(dominion, world, 1 / 60f, 32f)); // Destroys unloaded bodies
+        streamer = new ChunkStreamer(dominion, world, 10f, 0, 0);
+        streamer.setLifecycle(lifecycle);
+        streamer.setLoadDelay(0);
+        focus = new TransformComponent(5, 5);
+        streamer.setFocus(dominion.createEntity(focus));
+    }
+
+    @AfterEach
+    void tearDown() {
+        streamer.close();
+    }
+
+    @Test
+    void unloadingDeletesAChunkAndReloadingRebuildsItFromTheLevel() {
+        streamer.open(new StringReader(LEVEL), "test");
+        lifecycle.drain();
+        assertEquals(List.of("2.0,2.0", "4.0,2.0", "6.0,6.0"), chunkState(0, 0));
+        int bodies = world.getBodyCount();
+
+        List<Entity> chunk = chunkEntities(0, 0);
+        move(chunk.get(0), 3, 3);
+        lifecycle.destroy(chunk.get(1));
+        lifecycle.drain();
+
+        moveFocus(105, 5);
+        assertEquals(List.of(), chunkState(0, 0));
+        assertEquals(List.of("102.0,2.0"), chunkState(10, 0));
+        assertEquals(1, streamer.getLoadedChunkCount());
+        assertEquals(0, streamer.getSavedChunkCount());
+
+        moveFocus(5, 5);
+        assertEquals(List.of("2.0,2.0", "4.0,2.0", "6.0,6.0"), chunkState(0, 0));
+        assertEquals(List.of(), chunkState(10, 0));
+        assertEquals(bodies, world.getBodyCount());
+    }
+
+    @Test
+    void reloadedChunkKeepsItsStateWithASnapshotFormat() {
+        streamer.setSnapshotFormat(SnapshotFormat.standard(), null);
+        streamer.open(new StringReader(LEVEL), "test");
+        lifecycle.drain();
+        int bodies = world.getBodyCount();
+
+        List<Entity> chunk = chunkEntities(0, 0);
+        move(chunk.get(0), 3, 3);
+        lifecycle.destroy(chunk.get(1));
+        lifecycle.drain();
+
+        moveFocus(105, 5);
+        assertEquals(List.of(), chunkState(0, 0));
+        assertEquals(1, streamer.getSavedChunkCount());
+
+        moveFocus(5, 5);
+        assertEquals(List.of("3.0,3.0", "6.0,6.0"), chunkState(0, 0));
+        assertEquals(1, streamer.getSavedChunkCount()); // The chunk it moved away from
+        assertEquals(bodies - 1, world.getBodyCount());
+        for (Entity entity : chunkEntities(0, 0)) {
+            PhysicsComponent physics = entity.get(PhysicsComponent.class);
+            if (physics == null) continue;
+            Body body = physics.getBody();
+            assertEquals(entity, body.getUserData());
+            assertEquals(new Vec2(3, 3), body.getPosition());
+        }
+
+        moveFocus(105, 5);
+        moveFocus(5, 5);
+        assertEquals(List.of("3.0,3.0", "6.0,6.0"), chunkState(0, 0));
+        assertEquals(bodies - 1, world.getBodyCount());
+    }
+
+    @Test
+    void resyncDropsTheSavedStates() {
+        streamer.setSnapshotFormat(SnapshotFormat.standard(), null);
+        streamer.open(new StringReader(LEVEL), "test");
+        lifecycle.drain();
+        lifecycle.destroy(chunkEntities(0, 0).get(0));
+        lifecycle.drain();
+        moveFocus(105, 5);
+        assertTrue(streamer.getSavedChunkCount() > 0);
+
+        streamer.resync();
+        assertEquals(0, streamer.getSavedChunkCount());
+        moveFocus(5, 5);
+        assertEquals(List.of("2.0,2.0", "4.0,2.0", "6.0,6.0"), chunkState(0, 0));
+    }
+
+    private void moveFocus(float x, float y) {
+        focus.set(x, y, 0);
+        streamer.run();
+        lifecycle.drain();
+    }
+
+    private static void move(Entity entity, float x, float y) {
+        entity.get(PhysicsComponent.class).getBody().setTransform(new Vec2(x, y), 0);
+    }
+
+    private List<Entity> chunkEntities(int chunkX, int chunkY) {
+        List<Entity> entities = new ArrayList<>();
+        for (var result : dominion.findEntitiesWith(ChunkComponent.class, TransformComponent.class)) {
+            ChunkComponent chunk = result.comp1();
+            if (chunk.getChunkX() == chunkX && chunk.getChunkY() == chunkY) {
+                entities.add(result.entity());
+            }
+        }
+        entities.sort((a, b) -> Float.compare(position(a).x, position(b).x));
+        return entities;
+    }
+
+    // The positions of the chunk's entities, ordered by x.
+    private List<String> chunkState(int chunkX, int chunkY) {
+        List<String> state = new ArrayList<>();
+        for (Entity entity : chunkEntities(chunkX, chunkY)) {
+            Vec2 position = position(entity);
+            state.add(position.x + "," + position.y);
+        }
+        return state;
+    }
+
+    // The body position, which the transform follows from the first physics sync on, or the transform.
+    private static Vec2 position(Entity entity) {
+        PhysicsComponent physics = entity.get(PhysicsComponent.class);
+        if (physics != null && physics.getBody() != null) {
+            return physics.getBody().getPosition();
+        }
+        TransformComponent transform = entity.get(TransformComponent.class);
+        return new Vec2(transform.getX(), transform.getY());
+    }
+}
@@ -0,0 +1,145 @@
+package org.caveman.core.level;
+
+import dev.dominion.ecs.api.Dominion;
+import dev.dominion.ecs.api.Entity;
+import org.caveman.components.LightEmitterComponent;
+import org.caveman.components.MovementController;
+import org.caveman.components.SpriteComponent;
+import org.caveman.components.Tags;
+import org.jbox2d.common.Vec2;
+import org.jbox2d.dynamics.World;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.*;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LevelLoaderTest {
+    private static final String LEVEL = """
+            # A comment, then a blank line
+
+            prefab crate obstacle w=2 h=0.5 color=#00ff00
+            prefab bigcrate crate w=3
+            ground 0 10 w=100 h=1 color=gray
+              crate  10 4
+            bigcrate 12 4 color=yellow
+            player -3 -3 speed=7 jump=9 color=BLUE
+            light  6.5 -6.25
+            """;
+
+    private final Dominion dominion = Dominion.create();
+    private final World world = new World(new Vec2(0, 9.8f));
+
+    @Test
+    void placementsAreParsedInFileOrderInBatches() {
+        List<String> placements = new ArrayList<>();
+        List<Integer> batchSizes = new ArrayList<>();
+        int lines = LevelLoader.parse(new StringReader(LEVEL), "test", 2, batch -> {
+            batchSizes.add(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                placements.add(batch.getKind(i) + " " + batch.getX(i) + "," + batch.getY(i));
+            }
+        });
+
+        assertEquals(9, lines);
+        assertEquals(List.of(
+                Placements.GROUND + " 0.0,10.0",
+                Placements.OBSTACLE + " 10.0,4.0",
+                Placements.OBSTACLE + " 12.0,4.0",
+                Placements.PLAYER + " -3.0,-3.0",
+                Placements.LIGHT + " 6.5,-6.25"), placements);
+        assertEquals(List.of(2, 2, 1), batchSizes);
+    }
+
+    @Test
+    void entitiesTakeTheirPropertiesFromTheLineThePrefabAndTheKind() {
+        Level level = new LevelLoader(dominion, world).setBatchSize(3).load(new StringReader(LEVEL), "test");
+        List<Entity> entities = level.getEntities();
+        assertEquals(5, entities.size());
+        assertEquals("test", level.getSource());
+        assertEquals(9, level.getLineCount());
+
+        assertSprite(entities.get(0), Color.GRAY, 100, 1);
+        assertSprite(entities.get(1), Color.GREEN, 2, 0.5f);
+        assertSprite(entities.get(2), Color.YELLOW, 3, 0.5f);
+        assertSprite(entities.get(3), Color.BLUE, 1, 1);
+        assertTrue(entities.get(0).has(Tags.GroundTag.class));
+
+        Entity player = level.getPlayer();
+        assertSame(entities.get(3), player);
+        MovementController controller = player.get(MovementController.class);
+        assertEquals(7, controller.getMoveSpeed());
+        assertEquals(9, controller.getJumpForce());
+        assertTrue(entities.get(4).has(LightEmitterComponent.class));
+        assertEquals(4, world.getBodyCount());
+    }
+
+    @Test
+    void malformedLinesAreReportedWithTheSourceAndLineNumber() {
+        assertError("ground 0", "test:1: expected 'ground <x> <y> [key=value...]'");
+        assertError("\ntree 1 2", "test:2: unknown kind or prefab 'tree'");
+        assertError("ground 1 two", "test:1: invalid number 'two'");
+        assertError("ground 1 2 w", "test:1: expected key=value, got 'w'");
+        assertError("ground 1 2 depth=3", "test:1: unknown property 'depth'");
+        assertError("ground 1 2 color=mauve", "test:1: unknown color 'mauve'");
+        assertError("ground 1 2 color=#gggggg", "test:1: invalid color '#gggggg'");
+        assertError("prefab crate", "test:1: expected 'prefab <name> <kind> [key=value...]'");
+        assertError("prefab crate barrel", "test:1: unknown kind or prefab 'barrel'");
+        assertError("ground 1 2" + " w=1".repeat(14), "test:1: too many properties");
+    }
+
+    @Test
+    void errorStopsTheLoadAfterTheBatchesBeforeIt() {
+        String level = "obstacle 1 1\nobstacle 2 2\nobstacle 3 x\n";
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> new LevelLoader(dominion, world).setBatchSize(1).load(new StringReader(level), "test"));
+
+        assertEquals("test:3: invalid number 'x'", error.getMessage());
+        assertEquals(2, world.getBodyCount());
+    }
+
+    @Test
+    void fileIsLoadedFromItsPath(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("level.txt");
+        Files.writeString(file, "ground 0 10\nplayer 0 0\n");
+        Level level = new LevelLoader(dominion, world).load(file);
+        assertEquals(2, level.getEntities().size());
+        assertEquals(file.toString(), level.getSource());
+
+        Path missing = directory.resolve("missing.txt");
+        assertThrows(UncheckedIOException.class, () -> new LevelLoader(dominion, world).load(missing));
+
+        Files.writeString(file, "ground 0 10\nplayer 0 zero\n");
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> new LevelLoader(dominion, world).load(file));
+        assertEquals(file + ":2: invalid number 'zero'", error.getMessage());
+    }
+
+    @Test
+    void batchSizeMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new LevelLoader(dominion, world).setBatchSize(0));
+    }
+
+    private void assertError(String level, String message) {
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> new LevelLoader(dominion, world).load(new StringReader(level), "test"));
+        assertEquals(message, error.getMessage());
+    }
+
+    private static void assertSprite(Entity entity, Color color, float width, float height) {
+        SpriteComponent sprite = entity.get(SpriteComponent.class);
+        assertEquals(color, sprite.getColor());
+        assertEquals((int) (width * 32), sprite.getWidth());
+        assertEquals((int) (height * 32), sprite.getHeight());
+    }
+}
@@ -0,0 +1,78 @@
+package org.caveman.core.replay;
+
+import org.caveman.core.GameEngine;
+import org.caveman.core.InputEventQueue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.event.KeyEvent;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Records a scripted session and checks that replaying the log in a fresh engine ends in the
+ * same physics state, bit for bit.
+ */
+class InputReplayTest {
+    private static final long SEED = 42;
+    private static final int TICKS = 600;
+
+    @Test
+    void replayEndsInTheRecordedState(@TempDir Path directory) throws Exception {
+        Path log = directory.resolve("session.input");
+        long recorded;
+        GameEngine recording = new GameEngine(true, SEED, log);
+        try {
+            for (int tick = 0; tick < TICKS; tick++) {
+                script(recording.getInputHandler().getQueue(), tick);
+                recording.tick();
+            }
+            recorded = recording.getPhysicsChecksum();
+        } finally {
+            recording.shutDown();
+        }
+        assertTrue(Files.size(log) > 0);
+
+        long idle;
+        GameEngine unscripted = new GameEngine(true, SEED, null);
+        try {
+            unscripted.runHeadless(TICKS);
+            idle = unscripted.getPhysicsChecksum();
+        } finally {
+            unscripted.shutDown();
+        }
+        assertNotEquals(idle, recorded, "The scripted input should move the player");
+
+        for (int run = 0; run < 2; run++) {
+            GameEngine replaying = new GameEngine(true, SEED, null);
+            try (InputReplay replay = InputReplay.open(log)) {
+                replaying.replay(replay);
+                assertEquals(TICKS, replaying.runReplay());
+                assertEquals(recorded, replaying.getPhysicsChecksum());
+            } finally {
+                replaying.shutDown();
+            }
+        }
+    }
+
+    // Walks right, taps jump mid-walk, walks left, then loses focus while a key is held.
+    private static void script(InputEventQueue queue, int tick) {
+        long now = System.nanoTime();
+        switch (tick) {
+            case 30 -> queue.offer(InputEventQueue.KEY_DOWN, KeyEvent.VK_D, 0, 0, now);
+            case 90 -> {
+                queue.offer(InputEventQueue.KEY_DOWN, KeyEvent.VK_SPACE, 0, 0, now);
+                queue.offer(InputEventQueue.KEY_UP, KeyEvent.VK_SPACE, 0, 0, now);
+            }
+            case 200 -> queue.offer(InputEventQueue.KEY_UP, KeyEvent.VK_D, 0, 0, now);
+            case 260 -> queue.offer(InputEventQueue.KEY_DOWN, KeyEvent.VK_A, 0, 0, now);
+            case 400 -> queue.offer(InputEventQueue.FOCUS_LOST, 0, 0, 0, now);
+            default -> {
+            }
+        }
+    }
+}
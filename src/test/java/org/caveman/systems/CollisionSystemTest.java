@@ -0,0 +1,121 @@
+package org.caveman.systems;
+
+import dev.dominion.ecs.api.Dominion;
+import dev.dominion.ecs.api.Entity;
+import org.caveman.components.CollisionComponent;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CollisionSystemTest {
+    private final Dominion dominion = Dominion.create();
+    private final CollisionSystem collisions = new CollisionSystem(dominion);
+    private final ContactEventQueue events = collisions.getContactEvents();
+
+    @Test
+    void entitiesTouchUntilTheirLastContactEnds() {
+        Entity a = dominion.createEntity(new CollisionComponent());
+        Entity b = dominion.createEntity(new CollisionComponent());
+        CollisionComponent contactsOfA = a.get(CollisionComponent.class);
+        CollisionComponent contactsOfB = b.get(CollisionComponent.class);
+
+        // Two fixture pairs of the same entities start touching
+        events.addBegin(a, b, 0, 1);
+        events.addBegin(b, a, 0, -1);
+        collisions.run();
+        assertTrue(contactsOfA.isTouching(b));
+        assertTrue(contactsOfB.isTouching(a));
+        assertEquals(1, contactsOfA.getContactCount());
+        assertTrue(events.isEmpty());
+
+        events.addEnd(a, b);
+        collisions.run();
+        assertTrue(contactsOfA.isTouching(b));
+        assertTrue(contactsOfB.isTouching(a));
+
+        events.addEnd(b, a);
+        collisions.run();
+        assertFalse(contactsOfA.isColliding());
+        assertFalse(contactsOfB.isColliding());
+    }
+
+    @Test
+    void endOfAContactThatNeverBeganIsIgnored() {
+        Entity a = dominion.createEntity(new CollisionComponent());
+        Entity b = dominion.createEntity(new CollisionComponent());
+        Entity c = dominion.createEntity(new CollisionComponent());
+        CollisionComponent contactsOfA = a.get(CollisionComponent.class);
+
+        events.addBegin(a, b, 1, 0);
+        events.addEnd(a, c);
+        events.addBegin(a, c, 1, 0);
+        collisions.run();
+
+        assertEquals(2, contactsOfA.getContactCount());
+        assertSame(b, contactsOfA.getContact(0));
+        assertSame(c, contactsOfA.getContact(1));
+        assertSame(c, contactsOfA.getOtherEntity());
+    }
+
+    @Test
+    void listenersSeeEventsInOrderWithTheNormalPointingAway() {
+        record Marker() {
+        }
+        Entity a = dominion.createEntity(new Marker());
+        Entity b = dominion.createEntity(new Marker());
+        List<String> seen = new ArrayList<>();
+        collisions.addListener(Marker.class, new CollisionListener() {
+            @Override
+            public void onContactBegin(Entity entity, Entity other, float normalX, float normalY) {
+                seen.add("begin " + name(entity, a) + " " + normalX + "," + normalY);
+            }
+
+            @Override
+            public void onContactEnd(Entity entity, Entity other) {
+                seen.add("end " + name(entity, a));
+            }
+        });
+
+        events.addBegin(a, b, 0.5f, -1);
+        events.addEnd(a, b);
+        collisions.run();
+
+        assertEquals(List.of("begin a 0.5,-1.0", "begin b -0.5,1.0", "end a", "end b"), seen);
+    }
+
+    @Test
+    void queueGrowsWithoutLosingOrWrappingEvents() {
+        ContactEventQueue queue = new ContactEventQueue(4);
+        Entity a = dominion.createEntity();
+        Entity b = dominion.createEntity();
+        queue.addBegin(a, b, 0, 0);
+        queue.addBegin(a, b, 1, 0);
+        queue.addBegin(a, b, 2, 0);
+        queue.discard(2); // The next events wrap around the end of the ring
+        for (int i = 3; i < 10; i++) {
+            queue.addBegin(a, b, i, 0);
+        }
+        queue.addEnd(b, a);
+
+        assertEquals(9, queue.size());
+        assertTrue(queue.getCapacity() >= 9);
+        for (int i = 0; i < 8; i++) {
+            assertTrue(queue.isBegin(i));
+            assertEquals(i + 2, queue.getNormalX(i));
+        }
+        assertFalse(queue.isBegin(8));
+        assertSame(b, queue.getEntityA(8));
+        queue.discard(9);
+        assertTrue(queue.isEmpty());
+    }
+
+    private static String name(Entity entity, Entity a) {
+        return entity == a ? "a" : "b";
+    }
+}
@@ -0,0 +1,127 @@
+package org.caveman.systems;
+
+import dev.dominion.ecs.api.Dominion;
+import dev.dominion.ecs.api.Entity;
+import org.caveman.components.PhysicsComponent;
+import org.caveman.components.SpriteComponent;
+import org.caveman.components.TransformComponent;
+import org.caveman.core.EntityLifecycle;
+import org.jbox2d.collision.shapes.PolygonShape;
+import org.jbox2d.common.Vec2;
+import org.jbox2d.dynamics.Body;
+import org.jbox2d.dynamics.BodyDef;
+import org.jbox2d.dynamics.BodyType;
+import org.jbox2d.dynamics.FixtureDef;
+import org.jbox2d.dynamics.World;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PhysicsSystemTest {
+    private Dominion dominion;
+    private EntityLifecycle lifecycle;
+    private PhysicsSystem physics;
+
+    @BeforeEach
+    void setUp() {
+        dominion = Dominion.create();
+        World world = new World(new Vec2(0, 9.8f));
+        physics = new PhysicsSystem(dominion, world, 1 / 60f, 32f);
+        lifecycle = new EntityLifecycle(dominion);
+        lifecycle.addListener(physics);
+    }
+
+    @Test
+    void buildsTheBodyOfEntitiesCreatedThroughTheLifecycle() {
+        Entity entity = lifecycle.create(physicsComponents());
+        lifecycle.drain();
+
+        assertNotNull(entity.get(PhysicsComponent.class).getBody());
+    }
+
+    @Test
+    void allowsEntitiesCreatedDuringTheTickOneSync() {
+        Entity entity = lifecycle.create(physicsComponents());
+        physics.syncTransforms(); // Created by a system that ran before physics in this tick
+        lifecycle.drain();
+
+        assertDoesNotThrow(physics::syncTransforms);
+        assertNotNull(entity.get(PhysicsComponent.class).getBody());
+    }
+
+    @Test
+    void failsForEntitiesCreatedStraightThroughDominion() {
+        Entity entity = dominion.createEntity(physicsComponents());
+        physics.syncTransforms();
+        lifecycle.drain();
+
+        assertNull(entity.get(PhysicsComponent.class).getBody());
+        assertThrows(AssertionError.class, physics::syncTransforms);
+    }
+
+    @Test
+    void syncsStaticBodiesOnceWithoutPuttingThemToSleep() {
+        Entity entity = lifecycle.create(physicsComponents(BodyType.STATIC));
+        lifecycle.drain();
+        Body body = entity.get(PhysicsComponent.class).getBody();
+
+        physics.syncTransforms();
+        assertEquals(1, physics.getChangedCount());
+        assertTrue(body.isAwake());
+
+        body.setTransform(new Vec2(5, 5), 0);
+        physics.syncTransforms();
+        assertEquals(0, physics.getChangedCount());
+
+        physics.resync(body);
+        physics.syncTransforms();
+        assertEquals(1, physics.getChangedCount());
+        assertEquals(5, entity.get(TransformComponent.class).getX());
+    }
+
+    @Test
+    void bodyThatMovedAsItFellAsleepComesToRest() {
+        Entity entity = lifecycle.create(physicsComponents());
+        lifecycle.drain();
+        Body body = entity.get(PhysicsComponent.class).getBody();
+        TransformComponent transform = entity.get(TransformComponent.class);
+        physics.syncTransforms();
+
+        body.setTransform(new Vec2(5, 5), 0);
+        body.setAwake(false); // Its last step moved it
+        physics.syncTransforms();
+        assertEquals(5, transform.getX());
+        assertNotEquals(transform.getX(), transform.getPrevX());
+
+        physics.syncTransforms();
+        assertEquals(0, physics.getChangedCount());
+        assertEquals(transform.getX(), transform.getPrevX());
+        assertEquals(transform.getY(), transform.getPrevY());
+    }
+
+    private static Object[] physicsComponents() {
+        return physicsComponents(BodyType.DYNAMIC);
+    }
+
+    private static Object[] physicsComponents(BodyType type) {
+        BodyDef bodyDef = new BodyDef();
+        bodyDef.type = type;
+        FixtureDef fixtureDef = new FixtureDef();
+        fixtureDef.shape = new PolygonShape();
+        fixtureDef.density = 1f;
+        return new Object[]{
+                new TransformComponent(0, 0),
+                new SpriteComponent(Color.WHITE, 32, 32),
+                new PhysicsComponent(bodyDef, fixtureDef)
+        };
+    }
+}
@@ -0,0 +1,78 @@
+package org.caveman.systems;
+
+import dev.dominion.ecs.api.Dominion;
+import dev.dominion.ecs.api.Entity;
+import org.caveman.components.SpriteComponent;
+import org.caveman.components.TransformComponent;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpatialIndexTest {
+    private static final float PIXELS_PER_METER = 32f;
+
+    private final Dominion dominion = Dominion.create();
+    private final SpatialIndex index = new SpatialIndex(1f, PIXELS_PER_METER);
+
+    @Test
+    void spriteTravellingFarOnlyKeepsTheCellsItIsIn() {
+        Entity entity = dominion.createEntity();
+        TransformComponent transform = new TransformComponent(0.5f, 0.5f);
+        SpriteComponent sprite = new SpriteComponent(Color.WHITE, 16, 16);
+        for (int step = 0; step < 10_000; step++) {
+            transform.storePrevious();
+            transform.set(0.5f + step, 0.5f + step / 2, 0);
+            index.update(entity, transform, sprite, false);
+            assertTrue(index.getCellCount() <= 4, "Cells at step " + step + ": " + index.getCellCount());
+        }
+
+        assertTrue(query(9_999.5f, 4_999.5f).contains(entity));
+        assertFalse(query(0.5f, 0.5f).contains(entity));
+        index.remove(entity);
+        assertEquals(0, index.getCellCount());
+    }
+
+    @Test
+    void remainingSpritesAreFoundAfterOthersAreRemoved() {
+        Random random = new Random(3);
+        List<Entity> entities = new ArrayList<>();
+        List<TransformComponent> transforms = new ArrayList<>();
+        SpriteComponent sprite = new SpriteComponent(Color.WHITE, 8, 8);
+        for (int i = 0; i < 2_000; i++) {
+            Entity entity = dominion.createEntity();
+            TransformComponent transform = new TransformComponent(random.nextInt(200) + 0.5f, random.nextInt(200) + 0.5f);
+            index.update(entity, transform, sprite, i % 3 == 0);
+            entities.add(entity);
+            transforms.add(transform);
+        }
+        for (int i = 0; i < entities.size(); i += 2) {
+            index.remove(entities.get(i));
+        }
+
+        for (int i = 0; i < entities.size(); i++) {
+            TransformComponent transform = transforms.get(i);
+            assertEquals(i % 2 == 1, query(transform.getX(), transform.getY()).contains(entities.get(i)), "Entity " + i);
+        }
+        for (int i = 1; i < entities.size(); i += 2) {
+            index.remove(entities.get(i));
+        }
+        assertEquals(0, index.getCellCount());
+    }
+
+    private List<Entity> query(float x, float y) {
+        List<SpatialIndex.Proxy> proxies = new ArrayList<>();
+        index.query(x, y, x, y, proxies);
+        List<Entity> entities = new ArrayList<>();
+        for (SpatialIndex.Proxy proxy : proxies) {
+            entities.add(proxy.getEntity());
+        }
+        return entities;
+    }
+}
@@ -0,0 +1,137 @@
+package org.caveman.systems;
+
+import dev.dominion.ecs.api.Dominion;
+import dev.dominion.ecs.api.Entity;
+import org.caveman.components.TilemapComponent;
+import org.caveman.core.EntityLifecycle;
+import org.jbox2d.collision.shapes.PolygonShape;
+import org.jbox2d.common.Vec2;
+import org.jbox2d.dynamics.Body;
+import org.jbox2d.dynamics.Fixture;
+import org.jbox2d.dynamics.World;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class TilemapSystemTest {
+    private static final float TILE_SIZE = 0.5f;
+
+    private final Dominion dominion = Dominion.create();
+    private final World world = new World(new Vec2(0, 9.8f));
+    private final TilemapSystem system = new TilemapSystem(dominion, world);
+
+    @Test
+    void solidTilesAreMergedIntoAsFewRectanglesAsTheGreedyScanFinds() {
+        TilemapComponent tilemap = new TilemapComponent(2, 3, 16, 16, TILE_SIZE);
+        tilemap.fill(0, 15, 16, 1, 1);  // Floor
+        tilemap.fill(2, 2, 4, 3, 2);    // Block of two tile ids
+        tilemap.fill(2, 5, 2, 1, 1);    // Narrower row under the block
+        tilemap.setTile(10, 10, 1);     // Single tile
+        dominion.createEntity(tilemap);
+        system.run();
+
+        assertEquals(List.of(
+                "2,2 4x3",
+                "2,5 2x1",
+                "10,10 1x1",
+                "0,15 16x1"), rectangles(tilemap, 0));
+        assertEquals(4, tilemap.getFixtureCount());
+        assertEquals(4, fixtureCount(tilemap.getBody()));
+        assertEquals(new Vec2(2, 3), tilemap.getBody().getPosition());
+        assertFalse(tilemap.hasCollisionChanges());
+    }
+
+    @Test
+    void checkerboardNeedsOneRectanglePerTile() {
+        TilemapComponent tilemap = new TilemapComponent(0, 0, 4, 4, TILE_SIZE);
+        for (int row = 0; row < 4; row++) {
+            for (int column = (row & 1); column < 4; column += 2) {
+                tilemap.setTile(column, row, 1);
+            }
+        }
+        dominion.createEntity(tilemap);
+        system.run();
+
+        assertEquals(8, tilemap.getFixtureCount());
+    }
+
+    @Test
+    void setTileRebuildsOnlyTheChunkItChanged() {
+        TilemapComponent tilemap = new TilemapComponent(0, 0, 40, 20, TILE_SIZE);
+        tilemap.fill(0, 19, 40, 1, 1);
+        dominion.createEntity(tilemap);
+        system.run();
+        // Three chunk columns by two chunk rows; the floor is in the second row of chunks
+        Fixture[] left = tilemap.getChunkFixtures(3);
+        Fixture[] middle = tilemap.getChunkFixtures(4);
+        Fixture[] right = tilemap.getChunkFixtures(5);
+        assertEquals(List.of("16,19 16x1"), rectangles(tilemap, 4));
+        assertNull(tilemap.getChunkFixtures(0));
+
+        tilemap.setTile(20, 19, TilemapComponent.EMPTY);
+        tilemap.setTile(0, 19, 2); // Still solid, so its chunk keeps its fixtures
+        system.run();
+
+        assertSame(left, tilemap.getChunkFixtures(3));
+        assertNotSame(middle, tilemap.getChunkFixtures(4));
+        assertSame(right, tilemap.getChunkFixtures(5));
+        assertEquals(List.of("16,19 4x1", "21,19 11x1"), rectangles(tilemap, 4));
+        assertEquals(4, fixtureCount(tilemap.getBody()));
+
+        tilemap.fill(16, 19, 16, 1, TilemapComponent.EMPTY);
+        system.run();
+        assertNull(tilemap.getChunkFixtures(4));
+        assertEquals(2, fixtureCount(tilemap.getBody()));
+    }
+
+    @Test
+    void destroyedTilemapTakesItsBodyAlong() {
+        EntityLifecycle lifecycle = new EntityLifecycle(dominion);
+        lifecycle.addListener(system);
+        TilemapComponent tilemap = new TilemapComponent(0, 0, 16, 16, TILE_SIZE);
+        tilemap.fill(0, 0, 16, 1, 1);
+        Entity entity = lifecycle.create(tilemap);
+        lifecycle.drain();
+        system.run();
+        assertEquals(1, world.getBodyCount());
+        assertSame(entity, tilemap.getBody().getUserData());
+
+        lifecycle.destroy(entity);
+        lifecycle.drain();
+        assertEquals(0, world.getBodyCount());
+    }
+
+    // The fixtures of a chunk as "column,row widthxheight" in tiles, in the order they were built.
+    private static List<String> rectangles(TilemapComponent tilemap, int chunk) {
+        List<String> rectangles = new ArrayList<>();
+        for (Fixture fixture : tilemap.getChunkFixtures(chunk)) {
+            PolygonShape box = (PolygonShape) fixture.getShape();
+            float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+            for (int i = 0; i < box.getVertexCount(); i++) {
+                Vec2 vertex = box.getVertex(i);
+                minX = Math.min(minX, vertex.x);
+                minY = Math.min(minY, vertex.y);
+                maxX = Math.max(maxX, vertex.x);
+                maxY = Math.max(maxY, vertex.y);
+            }
+            rectangles.add(Math.round(minX / TILE_SIZE) + "," + Math.round(minY / TILE_SIZE) + " "
+                    + Math.round((maxX - minX) / TILE_SIZE) + "x" + Math.round((maxY - minY) / TILE_SIZE));
+        }
+        return rectangles;
+    }
+
+    private static int fixtureCount(Body body) {
+        int count = 0;
+        for (Fixture fixture = body.getFixtureList(); fixture != null; fixture = fixture.getNext()) {
+            count++;
+        }
+        return count;
+    }
+}